@@ -0,0 +1,176 @@
+package jerem.coopcycle.build;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the row mappers of the entities, in the generate-sources phase of the build.
+ * <p>
+ * The domain classes are not compiled yet in that phase, so their columns are read from their sources: every non static field
+ * of the entity class which is not {@code @Transient} is a column, which the {@code *SqlHelper} classes alias by the name of
+ * the field in snake case, such as {@code password} for the {@code password_hash} column of the users. Each mapper declares
+ * its aliases once in a {@code ColumnPositions}, and reads every row by index through the {@code ColumnConverter}.
+ * <p>
+ * Run by the build as a single-file source program:
+ * {@code java RowMapperGenerator.java <domain sources> <output sources> <entity>...}.
+ */
+public final class RowMapperGenerator {
+
+    private static final String DOMAIN_PACKAGE = "jerem.coopcycle.domain";
+
+    private static final String ROWMAPPER_PACKAGE = "jerem.coopcycle.repository.rowmapper";
+
+    private static final Pattern FIELD = Pattern.compile("^    private (static )?(final )?(\\w+) (\\w+)( = .*)?;$");
+
+    private static final Pattern IMPORT = Pattern.compile("^import ([\\w.]+)\\.(\\w+);$");
+
+    private static final int PRINT_WIDTH = 140;
+
+    private RowMapperGenerator() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: RowMapperGenerator <domain sources> <output sources> <entity>...");
+        }
+        Path domain = Paths.get(args[0], DOMAIN_PACKAGE.split("\\."));
+        Path output = Paths.get(args[1], ROWMAPPER_PACKAGE.split("\\."));
+        Files.createDirectories(output);
+        for (int i = 2; i < args.length; i++) {
+            String entity = args[i];
+            String source = generate(entity, Files.readAllLines(domain.resolve(entity + ".java"), StandardCharsets.UTF_8), domain);
+            Path mapper = output.resolve(entity + "RowMapper.java");
+            // an unchanged mapper keeps its date, so that it is not compiled again
+            if (!Files.exists(mapper) || !Files.readString(mapper, StandardCharsets.UTF_8).equals(source)) {
+                Files.writeString(mapper, source, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    private static String generate(String entity, List<String> lines, Path domain) {
+        Set<String> imports = new TreeSet<>(
+            List.of(
+                "io.r2dbc.spi.Row",
+                "java.util.function.BiFunction",
+                DOMAIN_PACKAGE + "." + entity,
+                "org.springframework.stereotype.Service"
+            )
+        );
+        List<String> columns = new ArrayList<>();
+        List<String> reads = new ArrayList<>();
+        boolean transientField = false;
+        boolean inClass = false;
+        for (String line : lines) {
+            if (!inClass) {
+                inClass = line.startsWith("public class " + entity + " ");
+                continue;
+            }
+            if (line.startsWith("    @")) {
+                transientField |= line.equals("    @Transient");
+                continue;
+            }
+            Matcher matcher = FIELD.matcher(line);
+            if (matcher.matches() && matcher.group(1) == null && !transientField) {
+                String type = matcher.group(3);
+                String field = matcher.group(4);
+                int position = columns.size();
+                columns.add(field.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase());
+                String setter = "set" + Character.toUpperCase(field.charAt(0)) + field.substring(1);
+                reads.add("entity." + setter + "(" + read(entity, type, position) + ");");
+                String qualifiedType = qualifiedType(type, lines, domain);
+                if (qualifiedType != null) {
+                    imports.add(qualifiedType);
+                }
+            }
+            if (!line.isBlank()) {
+                // the annotations only apply to the next field
+                transientField = false;
+            }
+        }
+        if (!inClass || columns.isEmpty()) {
+            throw new IllegalStateException("No column found in the entity " + entity);
+        }
+
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(ROWMAPPER_PACKAGE).append(";\n\n");
+        imports.forEach(qualifiedType -> source.append("import ").append(qualifiedType).append(";\n"));
+        source.append("\n");
+        source.append("/**\n");
+        source.append(" * Converter between {@link Row} to {@link ").append(entity).append("}, with proper type conversions.\n");
+        source.append(" * <p>\n");
+        source.append(" * Generated from the columns of {@link ").append(entity).append("} by the build, do not edit.\n");
+        source.append(" */\n");
+        source.append("@Service\n");
+        source.append("public class ").append(entity).append("RowMapper implements BiFunction<Row, String, ");
+        source.append(entity).append("> {\n\n");
+        source.append("    private final ColumnConverter converter;\n\n");
+        source.append(columnPositions(columns)).append("\n");
+        source.append("    public ").append(entity).append("RowMapper(ColumnConverter converter) {\n");
+        source.append("        this.converter = converter;\n");
+        source.append("    }\n\n");
+        source.append("    /**\n");
+        source.append("     * Take a {@link Row} and a column prefix, and extract all the fields.\n");
+        source.append("     * @return the {@link ").append(entity).append("} stored in the database.\n");
+        source.append("     */\n");
+        source.append("    @Override\n");
+        source.append("    public ").append(entity).append(" apply(Row row, String prefix) {\n");
+        source.append("        int[] position = columns.resolve(row, prefix);\n");
+        source.append("        ").append(entity).append(" entity = new ").append(entity).append("();\n");
+        reads.forEach(read -> source.append("        ").append(read).append("\n"));
+        source.append("        return entity;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static String read(String entity, String type, int position) {
+        String fromRow = "converter.fromRow(row, position[" + position + "], ";
+        switch (type) {
+            case "boolean":
+                return "Boolean.TRUE.equals(" + fromRow + "Boolean.class))";
+            case "byte":
+            case "short":
+            case "int":
+            case "long":
+            case "float":
+            case "double":
+            case "char":
+                throw new IllegalStateException("The primitive " + type + " column of the entity " + entity + " is not supported");
+            default:
+                return fromRow + type + ".class)";
+        }
+    }
+
+    /**
+     * @return the qualified name of a field type to import in the mapper, or {@code null} for the types of {@code java.lang}.
+     */
+    private static String qualifiedType(String type, List<String> lines, Path domain) {
+        for (String line : lines) {
+            Matcher matcher = IMPORT.matcher(line);
+            if (matcher.matches() && matcher.group(2).equals(type)) {
+                return matcher.group(1) + "." + type;
+            }
+        }
+        if (Files.exists(domain.resolve(type + ".java"))) {
+            return DOMAIN_PACKAGE + "." + type;
+        }
+        return null;
+    }
+
+    private static String columnPositions(List<String> columns) {
+        String declaration = "    private final ColumnPositions columns = new ColumnPositions(";
+        String inline = declaration + "\"" + String.join("\", \"", columns) + "\");\n";
+        if (inline.length() - 1 <= PRINT_WIDTH) {
+            return inline;
+        }
+        return declaration + "\n        \"" + String.join("\",\n        \"", columns) + "\"\n    );\n";
+    }
+}
@@ -0,0 +1,67 @@
+package jerem.coopcycle.aop.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jerem.coopcycle.management.QueryMetrics;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aspect naming the statements run by the repositories after the repository method, for {@link QueryMetrics}.
+ * <p>
+ * The name, such as {@code CommandeRepositoryInternalImpl.findAllBy} or {@code UserRepository.findOneByLogin}, is put in the Reactor
+ * context of the returned {@link Mono} or {@link Flux}. When a repository calls another one, the innermost method names the statements.
+ */
+@Aspect
+public class RepositoryMetricsAspect {
+
+    private final Map<Method, String> queryNames = new ConcurrentHashMap<>();
+
+    /**
+     * Pointcut that matches all the methods of the repositories, their custom fragments and the entity manager, but not the row
+     * mappers and the connection factories.
+     */
+    @Pointcut(
+        "within(jerem.coopcycle.repository..*)" +
+        " && !within(jerem.coopcycle.repository.rowmapper..*)" +
+        " && !within(jerem.coopcycle.repository.routing..*)"
+    )
+    public void repositoryPointcut() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    /**
+     * Advice that names the statements of the reactive repository methods.
+     *
+     * @param joinPoint join point for advice.
+     * @return result.
+     * @throws Throwable the exception thrown by the repository method.
+     */
+    @Around("repositoryPointcut()")
+    public Object nameQueries(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object result = joinPoint.proceed();
+        if (result instanceof Mono) {
+            String queryName = queryName(joinPoint);
+            return ((Mono<?>) result).contextWrite(context -> context.put(QueryMetrics.QUERY_NAME_CONTEXT_KEY, queryName));
+        }
+        if (result instanceof Flux) {
+            String queryName = queryName(joinPoint);
+            return ((Flux<?>) result).contextWrite(context -> context.put(QueryMetrics.QUERY_NAME_CONTEXT_KEY, queryName));
+        }
+        return result;
+    }
+
+    private String queryName(ProceedingJoinPoint joinPoint) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        return queryNames.computeIfAbsent(
+            signature.getMethod(),
+            method -> signature.getDeclaringType().getSimpleName() + "." + method.getName()
+        );
+    }
+}
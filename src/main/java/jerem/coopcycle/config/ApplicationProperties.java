@@ -1,5 +1,11 @@
 package jerem.coopcycle.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jerem.coopcycle.service.count.TotalCountMode;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -10,7 +16,482 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Pagination pagination = new Pagination();
+
+    private final Database database = new Database();
+
+    private final Archive archive = new Archive();
+
+    private final Analytics analytics = new Analytics();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final Outbox outbox = new Outbox();
+
+    private final CommandeStream commandeStream = new CommandeStream();
+
+    private final Dispatch dispatch = new Dispatch();
+
+    private final Geolocation geolocation = new Geolocation();
+
     // jhipster-needle-application-properties-property
+
+    public Pagination getPagination() {
+        return pagination;
+    }
+
+    public Database getDatabase() {
+        return database;
+    }
+
+    public Archive getArchive() {
+        return archive;
+    }
+
+    public Analytics getAnalytics() {
+        return analytics;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    public CommandeStream getCommandeStream() {
+        return commandeStream;
+    }
+
+    public Dispatch getDispatch() {
+        return dispatch;
+    }
+
+    public Geolocation getGeolocation() {
+        return geolocation;
+    }
+
     // jhipster-needle-application-properties-property-getter
+
+    public static class Pagination {
+
+        private final TotalCount totalCount = new TotalCount();
+
+        public TotalCount getTotalCount() {
+            return totalCount;
+        }
+    }
+
+    public static class TotalCount {
+
+        private TotalCountMode defaultMode = TotalCountMode.EXACT;
+
+        private Duration cacheTtl = Duration.ofSeconds(30);
+
+        private Map<String, TotalCountMode> entities = new HashMap<>();
+
+        public TotalCountMode getDefaultMode() {
+            return defaultMode;
+        }
+
+        public void setDefaultMode(TotalCountMode defaultMode) {
+            this.defaultMode = defaultMode;
+        }
+
+        public Duration getCacheTtl() {
+            return cacheTtl;
+        }
+
+        public void setCacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+        }
+
+        public Map<String, TotalCountMode> getEntities() {
+            return entities;
+        }
+
+        public void setEntities(Map<String, TotalCountMode> entities) {
+            this.entities = entities;
+        }
+    }
+
+    public static class Database {
+
+        private List<Replica> replicas = new ArrayList<>();
+
+        private Duration replicaLagTolerance = Duration.ofSeconds(5);
+
+        private Duration replicaLagCheckInterval = Duration.ofSeconds(5);
+
+        private String replicaLagQuery;
+
+        private Duration slowQueryThreshold = Duration.ofMillis(500);
+
+        public List<Replica> getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(List<Replica> replicas) {
+            this.replicas = replicas;
+        }
+
+        public Duration getReplicaLagTolerance() {
+            return replicaLagTolerance;
+        }
+
+        public void setReplicaLagTolerance(Duration replicaLagTolerance) {
+            this.replicaLagTolerance = replicaLagTolerance;
+        }
+
+        public Duration getReplicaLagCheckInterval() {
+            return replicaLagCheckInterval;
+        }
+
+        public void setReplicaLagCheckInterval(Duration replicaLagCheckInterval) {
+            this.replicaLagCheckInterval = replicaLagCheckInterval;
+        }
+
+        public String getReplicaLagQuery() {
+            return replicaLagQuery;
+        }
+
+        public void setReplicaLagQuery(String replicaLagQuery) {
+            this.replicaLagQuery = replicaLagQuery;
+        }
+
+        public Duration getSlowQueryThreshold() {
+            return slowQueryThreshold;
+        }
+
+        public void setSlowQueryThreshold(Duration slowQueryThreshold) {
+            this.slowQueryThreshold = slowQueryThreshold;
+        }
+    }
+
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+
+    public static class Archive {
+
+        private String cron = "0 30 2 * * ?";
+
+        private Duration retention = Duration.ofDays(28);
+
+        private int chunkSize = 500;
+
+        private int partitionsAhead = 3;
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getPartitionsAhead() {
+            return partitionsAhead;
+        }
+
+        public void setPartitionsAhead(int partitionsAhead) {
+            this.partitionsAhead = partitionsAhead;
+        }
+    }
+
+    public static class Analytics {
+
+        private String reconciliationCron = "0 0 3 * * ?";
+
+        public String getReconciliationCron() {
+            return reconciliationCron;
+        }
+
+        public void setReconciliationCron(String reconciliationCron) {
+            this.reconciliationCron = reconciliationCron;
+        }
+    }
+
+    public static class Idempotency {
+
+        private Duration retention = Duration.ofHours(24);
+
+        private int cacheSize = 10000;
+
+        private Duration lease = Duration.ofSeconds(30);
+
+        private Duration pollInterval = Duration.ofMillis(100);
+
+        private String cleanupCron = "0 0 * * * ?";
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public Duration getLease() {
+            return lease;
+        }
+
+        public void setLease(Duration lease) {
+            this.lease = lease;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public String getCleanupCron() {
+            return cleanupCron;
+        }
+
+        public void setCleanupCron(String cleanupCron) {
+            this.cleanupCron = cleanupCron;
+        }
+    }
+
+    public static class Outbox {
+
+        private String relayCron = "* * * * * ?";
+
+        private int batchSize = 100;
+
+        private int maxAttempts = 10;
+
+        private Duration retention = Duration.ofDays(7);
+
+        private String cleanupCron = "0 15 * * * ?";
+
+        public String getRelayCron() {
+            return relayCron;
+        }
+
+        public void setRelayCron(String relayCron) {
+            this.relayCron = relayCron;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public String getCleanupCron() {
+            return cleanupCron;
+        }
+
+        public void setCleanupCron(String cleanupCron) {
+            this.cleanupCron = cleanupCron;
+        }
+    }
+
+    public static class CommandeStream {
+
+        private boolean listenNotify = true;
+
+        private int bufferSize = 256;
+
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+        public boolean isListenNotify() {
+            return listenNotify;
+        }
+
+        public void setListenNotify(boolean listenNotify) {
+            this.listenNotify = listenNotify;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public Duration getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(Duration heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+    }
+
+    public static class Dispatch {
+
+        private String cycleCron = "* * * * * ?";
+
+        private String reloadCron = "0 * * * * ?";
+
+        private boolean restaurantAffinity = true;
+
+        private int concurrency = 8;
+
+        public String getCycleCron() {
+            return cycleCron;
+        }
+
+        public void setCycleCron(String cycleCron) {
+            this.cycleCron = cycleCron;
+        }
+
+        public String getReloadCron() {
+            return reloadCron;
+        }
+
+        public void setReloadCron(String reloadCron) {
+            this.reloadCron = reloadCron;
+        }
+
+        public boolean isRestaurantAffinity() {
+            return restaurantAffinity;
+        }
+
+        public void setRestaurantAffinity(boolean restaurantAffinity) {
+            this.restaurantAffinity = restaurantAffinity;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+    }
+
+    public static class Geolocation {
+
+        private String gazetteer;
+
+        private double cellSize = 0.01;
+
+        private String refreshCron = "0 */5 * * * ?";
+
+        private double maxRadius = 50_000;
+
+        private int maxResults = 100;
+
+        public String getGazetteer() {
+            return gazetteer;
+        }
+
+        public void setGazetteer(String gazetteer) {
+            this.gazetteer = gazetteer;
+        }
+
+        public double getCellSize() {
+            return cellSize;
+        }
+
+        public void setCellSize(double cellSize) {
+            this.cellSize = cellSize;
+        }
+
+        public String getRefreshCron() {
+            return refreshCron;
+        }
+
+        public void setRefreshCron(String refreshCron) {
+            this.refreshCron = refreshCron;
+        }
+
+        public double getMaxRadius() {
+            return maxRadius;
+        }
+
+        public void setMaxRadius(double maxRadius) {
+            this.maxRadius = maxRadius;
+        }
+
+        public int getMaxResults() {
+            return maxResults;
+        }
+
+        public void setMaxResults(int maxResults) {
+            this.maxResults = maxResults;
+        }
+    }
     // jhipster-needle-application-properties-property-class
 }
@@ -1,6 +1,10 @@
 package jerem.coopcycle.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
 import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Option;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
@@ -12,8 +16,26 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import jerem.coopcycle.aop.metrics.RepositoryMetricsAspect;
+import jerem.coopcycle.management.InstrumentedConnectionFactory;
+import jerem.coopcycle.management.InstrumentedConnectionPool;
+import jerem.coopcycle.management.QueryMetrics;
+import jerem.coopcycle.repository.PostgresNotificationListener;
+import jerem.coopcycle.repository.routing.ReplicaRoutingConnectionFactory;
+import jerem.coopcycle.repository.routing.ReplicaRoutingTransactionManager;
+import jerem.coopcycle.web.filter.ReadYourWritesWebFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.ConnectionFactoryOptionsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -31,7 +53,10 @@ import org.springframework.data.r2dbc.query.UpdateMapper;
 import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
 import org.springframework.data.relational.core.dialect.RenderContextFactory;
 import org.springframework.data.relational.core.sql.render.SqlRenderer;
+import org.springframework.transaction.ReactiveTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import tech.jhipster.config.JHipsterConstants;
 import tech.jhipster.config.h2.H2ConfigurationHelper;
 
@@ -76,6 +101,194 @@ public class DatabaseConfiguration {
         return String.valueOf(port);
     }
 
+    /**
+     * Creates the connection pool of the database, its connections and statements instrumented with Micrometer, and routes the
+     * read-only transactions to the read replicas when some are configured.
+     * <p>
+     * The connection factories are built from the {@code spring.r2dbc} properties as Spring Boot does, with the driver options
+     * of {@code spring.r2dbc.properties}, the pool settings of {@code spring.r2dbc.pool} and the options customizers. Without
+     * pool, when {@code spring.r2dbc.pool.enabled} is false or when the URL is pooled by the driver, only the statements are
+     * instrumented.
+     *
+     * @param r2dbcProperties the properties of the primary database, the replicas use the same credentials, options and pool
+     * settings by default.
+     * @param applicationProperties the replicas and slow query properties.
+     * @param customizers the customizers of the connection factory options.
+     * @param meterRegistry the registry of the pool meters.
+     * @return the connection factory.
+     */
+    @Bean
+    public ConnectionFactory connectionFactory(
+        R2dbcProperties r2dbcProperties,
+        ApplicationProperties applicationProperties,
+        ObjectProvider<ConnectionFactoryOptionsBuilderCustomizer> customizers,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.Database database = applicationProperties.getDatabase();
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry, database.getSlowQueryThreshold());
+        List<ConnectionFactoryOptionsBuilderCustomizer> orderedCustomizers = customizers.orderedStream().collect(Collectors.toList());
+        ConnectionFactory primary = createConnectionFactory(
+            "primary",
+            r2dbcProperties.getUrl(),
+            r2dbcProperties.getUsername(),
+            r2dbcProperties.getPassword(),
+            r2dbcProperties,
+            orderedCustomizers,
+            meterRegistry,
+            queryMetrics
+        );
+        if (database.getReplicas().isEmpty()) {
+            return primary;
+        }
+        List<ConnectionFactory> replicas = new ArrayList<>();
+        for (ApplicationProperties.Replica replica : database.getReplicas()) {
+            log.info("Routing the read-only transactions to the read replica {}", replica.getUrl());
+            replicas.add(
+                createConnectionFactory(
+                    "replica-" + replicas.size(),
+                    replica.getUrl(),
+                    replica.getUsername() != null ? replica.getUsername() : r2dbcProperties.getUsername(),
+                    replica.getPassword() != null ? replica.getPassword() : r2dbcProperties.getPassword(),
+                    r2dbcProperties,
+                    orderedCustomizers,
+                    meterRegistry,
+                    queryMetrics
+                )
+            );
+        }
+        return new ReplicaRoutingConnectionFactory(
+            primary,
+            replicas,
+            database.getReplicaLagTolerance(),
+            database.getReplicaLagCheckInterval(),
+            database.getReplicaLagQuery()
+        );
+    }
+
+    /**
+     * Opens the initial connections of the pools before the application is ready: the readiness state only accepts traffic once
+     * the application runners are done, so the first requests don't wait for the connections to be set up.
+     *
+     * @param connectionFactory the connection factory of the database.
+     * @param r2dbcProperties the pool properties, the warm-up is given up after the maximum connection creation time, 30s by default.
+     * @return the warm-up runner.
+     */
+    @Bean
+    public ApplicationRunner connectionPoolWarmUp(ConnectionFactory connectionFactory, R2dbcProperties r2dbcProperties) {
+        List<ConnectionFactory> connectionFactories = connectionFactory instanceof ReplicaRoutingConnectionFactory
+            ? ((ReplicaRoutingConnectionFactory) connectionFactory).getConnectionFactories()
+            : List.of(connectionFactory);
+        Duration timeout = Optional.ofNullable(r2dbcProperties.getPool().getMaxCreateConnectionTime()).orElse(Duration.ofSeconds(30));
+        return args ->
+            Flux
+                .fromIterable(connectionFactories)
+                .ofType(InstrumentedConnectionPool.class)
+                .flatMap(pool ->
+                    pool
+                        .warmUp()
+                        .doOnNext(count -> log.info("Opened {} connections of the {} connection pool", count, pool.getName()))
+                        .timeout(timeout)
+                        .onErrorResume(e -> {
+                            log.warn("Cannot warm up the {} connection pool: {}", pool.getName(), e.getMessage());
+                            return Mono.empty();
+                        })
+                )
+                .blockLast();
+    }
+
+    @Bean
+    public RepositoryMetricsAspect repositoryMetricsAspect() {
+        return new RepositoryMetricsAspect();
+    }
+
+    @Bean
+    @ConditionalOnProperty("application.database.replicas[0].url")
+    public ReactiveTransactionManager transactionManager(ConnectionFactory connectionFactory) {
+        return new ReplicaRoutingTransactionManager(connectionFactory);
+    }
+
+    @Bean
+    @ConditionalOnProperty("application.database.replicas[0].url")
+    public ReadYourWritesWebFilter readYourWritesWebFilter(ApplicationProperties applicationProperties) {
+        return new ReadYourWritesWebFilter(applicationProperties.getDatabase().getReplicaLagTolerance());
+    }
+
+    private static ConnectionFactory createConnectionFactory(
+        String name,
+        String url,
+        String username,
+        String password,
+        R2dbcProperties r2dbcProperties,
+        List<ConnectionFactoryOptionsBuilderCustomizer> customizers,
+        MeterRegistry meterRegistry,
+        QueryMetrics queryMetrics
+    ) {
+        PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+        ConnectionFactory connectionFactory = connectionFactoryBuilder(url, username, password, r2dbcProperties, customizers).build();
+        R2dbcProperties.Pool pool = r2dbcProperties.getPool();
+        if (!pool.isEnabled() || url.contains(":pool:")) {
+            return new InstrumentedConnectionFactory(name, connectionFactory, queryMetrics);
+        }
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(connectionFactory);
+        map.from(pool.getInitialSize()).to(configuration::initialSize);
+        map.from(pool.getMaxSize()).to(configuration::maxSize);
+        map.from(pool.getMaxIdleTime()).to(configuration::maxIdleTime);
+        map.from(pool.getMaxLifeTime()).to(configuration::maxLifeTime);
+        map.from(pool.getMaxAcquireTime()).to(configuration::maxAcquireTime);
+        map.from(pool.getMaxCreateConnectionTime()).to(configuration::maxCreateConnectionTime);
+        map.from(pool.getValidationQuery()).whenHasText().to(configuration::validationQuery);
+        map.from(pool.getValidationDepth()).to(configuration::validationDepth);
+        return new InstrumentedConnectionPool(name, configuration, pool.getInitialSize(), meterRegistry, queryMetrics);
+    }
+
+    private static ConnectionFactoryBuilder connectionFactoryBuilder(
+        String url,
+        String username,
+        String password,
+        R2dbcProperties r2dbcProperties,
+        List<ConnectionFactoryOptionsBuilderCustomizer> customizers
+    ) {
+        PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+        ConnectionFactoryBuilder builder = ConnectionFactoryBuilder.withUrl(url);
+        map.from(username).whenHasText().to(builder::username);
+        map.from(password).whenHasText().to(builder::password);
+        return builder.configure(options -> {
+            r2dbcProperties.getProperties().forEach((key, value) -> options.option(Option.valueOf(key), value));
+            customizers.forEach(customizer -> customizer.customize(options));
+        });
+    }
+
+    /**
+     * Configures the listener of the Postgres notifications when the r2dbc-postgresql driver is on the classpath.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(PostgresqlConnection.class)
+    static class PostgresNotificationConfiguration {
+
+        /**
+         * Creates the listener of the notifications, with its own connection factory: the listening connections are held as
+         * long as their subscription, so they are opened on the primary database, without pool and without replica routing.
+         *
+         * @param r2dbcProperties the properties of the primary database, a pooled URL being opened without its pool.
+         * @param customizers the customizers of the connection factory options.
+         * @return the listener.
+         */
+        @Bean
+        public PostgresNotificationListener postgresNotificationListener(
+            R2dbcProperties r2dbcProperties,
+            ObjectProvider<ConnectionFactoryOptionsBuilderCustomizer> customizers
+        ) {
+            ConnectionFactoryBuilder builder = connectionFactoryBuilder(
+                r2dbcProperties.getUrl().replace(":pool:", ":"),
+                r2dbcProperties.getUsername(),
+                r2dbcProperties.getPassword(),
+                r2dbcProperties,
+                customizers.orderedStream().collect(Collectors.toList())
+            );
+            return new PostgresNotificationListener(builder.build());
+        }
+    }
+
     // LocalDateTime seems to be the only type that is supported across all drivers atm
     // See https://github.com/r2dbc/r2dbc-h2/pull/139 https://github.com/mirromutth/r2dbc-mysql/issues/105
     @Bean
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import javax.validation.constraints.*;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -21,6 +22,10 @@ public class Client implements Serializable {
     @Column("id")
     private Long id;
 
+    @Version
+    @Column("version")
+    private Long version;
+
     @NotNull(message = "must not be null")
     @Size(min = 2, max = 50)
     @Column("first_name")
@@ -53,6 +58,18 @@ public class Client implements Serializable {
     @Column("commande_id")
     private Long commandeId;
 
+    /**
+     * The latitude of the address in degrees, filled by the geocoder, {@code null} if the address is not geocoded.
+     */
+    @Column("latitude")
+    private Double latitude;
+
+    /**
+     * The longitude of the address in degrees, filled by the geocoder, {@code null} if the address is not geocoded.
+     */
+    @Column("longitude")
+    private Double longitude;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
     public Long getId() {
@@ -68,6 +85,19 @@ public class Client implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public Client version(Long version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getFirstName() {
         return this.firstName;
     }
@@ -155,6 +185,32 @@ public class Client implements Serializable {
         this.commandeId = commande;
     }
 
+    public Double getLatitude() {
+        return this.latitude;
+    }
+
+    public Client latitude(Double latitude) {
+        this.setLatitude(latitude);
+        return this;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return this.longitude;
+    }
+
+    public Client longitude(Double longitude) {
+        this.setLongitude(longitude);
+        return this;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -179,11 +235,14 @@ public class Client implements Serializable {
     public String toString() {
         return "Client{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", firstName='" + getFirstName() + "'" +
             ", lastName='" + getLastName() + "'" +
             ", email='" + getEmail() + "'" +
             ", phone='" + getPhone() + "'" +
             ", address='" + getAddress() + "'" +
+            ", latitude=" + getLatitude() +
+            ", longitude=" + getLongitude() +
             "}";
     }
 }
@@ -7,8 +7,11 @@ import java.util.HashSet;
 import java.util.Set;
 import javax.validation.constraints.*;
 import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.SocietaireType;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -25,6 +28,10 @@ public class Commande implements Serializable {
     @Column("id")
     private Long id;
 
+    @Version
+    @Column("version")
+    private Long version;
+
     @NotNull(message = "must not be null")
     @Column("date_time")
     private Instant dateTime;
@@ -53,6 +60,13 @@ public class Commande implements Serializable {
     @Column("paiement_id")
     private Long paiementId;
 
+    /**
+     * The {@link SocietaireType#LIVREUR} delivering the commande, only written by the dispatch.
+     */
+    @ReadOnlyProperty
+    @Column("livreur_id")
+    private Long livreurId;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
     public Long getId() {
@@ -68,6 +82,19 @@ public class Commande implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public Commande version(Long version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Instant getDateTime() {
         return this.dateTime;
     }
@@ -200,6 +227,19 @@ public class Commande implements Serializable {
         this.paiementId = paiement;
     }
 
+    public Long getLivreurId() {
+        return this.livreurId;
+    }
+
+    public Commande livreurId(Long livreurId) {
+        this.setLivreurId(livreurId);
+        return this;
+    }
+
+    public void setLivreurId(Long livreurId) {
+        this.livreurId = livreurId;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -224,8 +264,10 @@ public class Commande implements Serializable {
     public String toString() {
         return "Commande{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", dateTime='" + getDateTime() + "'" +
             ", status='" + getStatus() + "'" +
+            ", livreurId=" + getLivreurId() +
             "}";
     }
 }
@@ -0,0 +1,162 @@
+package jerem.coopcycle.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * The {@code Idempotency-Key} of a creation, with the hash of its request and its response.
+ * <p>
+ * The keys are scoped by entity and by user, and the response is null while the creation is in flight.
+ */
+@Table("idempotency_key")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class IdempotencyKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column("id")
+    private Long id;
+
+    @Column("scope")
+    private String scope;
+
+    @Column("login")
+    private String login;
+
+    @Column("idempotency_key")
+    private String key;
+
+    @Column("request_hash")
+    private String requestHash;
+
+    @Column("response")
+    private String response;
+
+    @Column("created_date")
+    private Instant createdDate;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public IdempotencyKey id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getScope() {
+        return this.scope;
+    }
+
+    public IdempotencyKey scope(String scope) {
+        this.setScope(scope);
+        return this;
+    }
+
+    public void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    public String getLogin() {
+        return this.login;
+    }
+
+    public IdempotencyKey login(String login) {
+        this.setLogin(login);
+        return this;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public IdempotencyKey key(String key) {
+        this.setKey(key);
+        return this;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getRequestHash() {
+        return this.requestHash;
+    }
+
+    public IdempotencyKey requestHash(String requestHash) {
+        this.setRequestHash(requestHash);
+        return this;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public String getResponse() {
+        return this.response;
+    }
+
+    public IdempotencyKey response(String response) {
+        this.setResponse(response);
+        return this;
+    }
+
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
+    public Instant getCreatedDate() {
+        return this.createdDate;
+    }
+
+    public IdempotencyKey createdDate(Instant createdDate) {
+        this.setCreatedDate(createdDate);
+        return this;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IdempotencyKey)) {
+            return false;
+        }
+        return id != null && id.equals(((IdempotencyKey) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "IdempotencyKey{" +
+            "id=" + getId() +
+            ", scope='" + getScope() + "'" +
+            ", login='" + getLogin() + "'" +
+            ", key='" + getKey() + "'" +
+            ", requestHash='" + getRequestHash() + "'" +
+            ", createdDate='" + getCreatedDate() + "'" +
+            "}";
+    }
+}
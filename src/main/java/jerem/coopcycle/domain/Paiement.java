@@ -5,6 +5,7 @@ import javax.validation.constraints.*;
 import jerem.coopcycle.domain.enumeration.PaymentType;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -21,6 +22,10 @@ public class Paiement implements Serializable {
     @Column("id")
     private Long id;
 
+    @Version
+    @Column("version")
+    private Long version;
+
     @NotNull(message = "must not be null")
     @DecimalMin(value = "0")
     @Column("amount")
@@ -45,6 +50,19 @@ public class Paiement implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public Paiement version(Long version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Float getAmount() {
         return this.amount;
     }
@@ -95,6 +113,7 @@ public class Paiement implements Serializable {
     public String toString() {
         return "Paiement{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", amount=" + getAmount() +
             ", paymentType='" + getPaymentType() + "'" +
             "}";
@@ -7,6 +7,7 @@ import java.util.Set;
 import javax.validation.constraints.*;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -23,6 +24,10 @@ public class Restaurant implements Serializable {
     @Column("id")
     private Long id;
 
+    @Version
+    @Column("version")
+    private Long version;
+
     @NotNull(message = "must not be null")
     @Size(min = 2, max = 100)
     @Column("name")
@@ -48,6 +53,18 @@ public class Restaurant implements Serializable {
     @Column("restaurateur_id")
     private Long restaurateurId;
 
+    /**
+     * The latitude of the address in degrees, filled by the geocoder, {@code null} if the address is not geocoded.
+     */
+    @Column("latitude")
+    private Double latitude;
+
+    /**
+     * The longitude of the address in degrees, filled by the geocoder, {@code null} if the address is not geocoded.
+     */
+    @Column("longitude")
+    private Double longitude;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
     public Long getId() {
@@ -63,6 +80,19 @@ public class Restaurant implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public Restaurant version(Long version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return this.name;
     }
@@ -155,6 +185,32 @@ public class Restaurant implements Serializable {
         this.restaurateurId = restaurateur;
     }
 
+    public Double getLatitude() {
+        return this.latitude;
+    }
+
+    public Restaurant latitude(Double latitude) {
+        this.setLatitude(latitude);
+        return this;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return this.longitude;
+    }
+
+    public Restaurant longitude(Double longitude) {
+        this.setLongitude(longitude);
+        return this;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -179,8 +235,11 @@ public class Restaurant implements Serializable {
     public String toString() {
         return "Restaurant{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", name='" + getName() + "'" +
             ", address='" + getAddress() + "'" +
+            ", latitude=" + getLatitude() +
+            ", longitude=" + getLongitude() +
             ", menu='" + getMenu() + "'" +
             "}";
     }
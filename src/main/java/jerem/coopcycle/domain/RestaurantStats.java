@@ -0,0 +1,184 @@
+package jerem.coopcycle.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.PaymentType;
+import jerem.coopcycle.domain.enumeration.StatsGranularity;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * The number of commandes of a restaurant and their revenue, for a time bucket, a status and a payment type.
+ * <p>
+ * These rows are derived from the commandes, their panier and their paiement, archived ones included: they are refreshed
+ * when the commandes and the paiements are written, and rebuilt by the reconciliation job.
+ */
+@Table("restaurant_stats")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class RestaurantStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column("id")
+    private Long id;
+
+    @Column("restaurant_id")
+    private Long restaurantId;
+
+    @Column("granularity")
+    private StatsGranularity granularity;
+
+    @Column("bucket")
+    private Instant bucket;
+
+    @Column("status")
+    private CommandeStatus status;
+
+    @Column("payment_type")
+    private PaymentType paymentType;
+
+    @Column("commande_count")
+    private Long commandeCount;
+
+    @Column("revenue")
+    private Double revenue;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public RestaurantStats id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getRestaurantId() {
+        return this.restaurantId;
+    }
+
+    public RestaurantStats restaurantId(Long restaurantId) {
+        this.setRestaurantId(restaurantId);
+        return this;
+    }
+
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public StatsGranularity getGranularity() {
+        return this.granularity;
+    }
+
+    public RestaurantStats granularity(StatsGranularity granularity) {
+        this.setGranularity(granularity);
+        return this;
+    }
+
+    public void setGranularity(StatsGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public Instant getBucket() {
+        return this.bucket;
+    }
+
+    public RestaurantStats bucket(Instant bucket) {
+        this.setBucket(bucket);
+        return this;
+    }
+
+    public void setBucket(Instant bucket) {
+        this.bucket = bucket;
+    }
+
+    public CommandeStatus getStatus() {
+        return this.status;
+    }
+
+    public RestaurantStats status(CommandeStatus status) {
+        this.setStatus(status);
+        return this;
+    }
+
+    public void setStatus(CommandeStatus status) {
+        this.status = status;
+    }
+
+    public PaymentType getPaymentType() {
+        return this.paymentType;
+    }
+
+    public RestaurantStats paymentType(PaymentType paymentType) {
+        this.setPaymentType(paymentType);
+        return this;
+    }
+
+    public void setPaymentType(PaymentType paymentType) {
+        this.paymentType = paymentType;
+    }
+
+    public Long getCommandeCount() {
+        return this.commandeCount;
+    }
+
+    public RestaurantStats commandeCount(Long commandeCount) {
+        this.setCommandeCount(commandeCount);
+        return this;
+    }
+
+    public void setCommandeCount(Long commandeCount) {
+        this.commandeCount = commandeCount;
+    }
+
+    public Double getRevenue() {
+        return this.revenue;
+    }
+
+    public RestaurantStats revenue(Double revenue) {
+        this.setRevenue(revenue);
+        return this;
+    }
+
+    public void setRevenue(Double revenue) {
+        this.revenue = revenue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RestaurantStats)) {
+            return false;
+        }
+        return id != null && id.equals(((RestaurantStats) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "RestaurantStats{" +
+            "id=" + getId() +
+            ", restaurantId=" + getRestaurantId() +
+            ", granularity='" + getGranularity() + "'" +
+            ", bucket='" + getBucket() + "'" +
+            ", status='" + getStatus() + "'" +
+            ", paymentType='" + getPaymentType() + "'" +
+            ", commandeCount=" + getCommandeCount() +
+            ", revenue=" + getRevenue() +
+            "}";
+    }
+}
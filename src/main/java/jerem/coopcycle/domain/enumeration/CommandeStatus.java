@@ -2,9 +2,27 @@ package jerem.coopcycle.domain.enumeration;
 
 /**
  * The CommandeStatus enumeration.
+ * <p>
+ * A commande is prepared, then delivered: {@code EN_COURS -> PRETE -> LIVREE}.
  */
 public enum CommandeStatus {
     EN_COURS,
     PRETE,
-    LIVREE,
+    LIVREE;
+
+    /**
+     * Checks whether a commande can move from this status to the given one.
+     * @param next the requested status.
+     * @return {@code true} if {@code next} directly follows this status.
+     */
+    public boolean canTransitionTo(CommandeStatus next) {
+        switch (this) {
+            case EN_COURS:
+                return next == PRETE;
+            case PRETE:
+                return next == LIVREE;
+            default:
+                return false;
+        }
+    }
 }
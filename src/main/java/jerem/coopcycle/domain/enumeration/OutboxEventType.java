@@ -0,0 +1,12 @@
+package jerem.coopcycle.domain.enumeration;
+
+/**
+ * The OutboxEventType enumeration: the change of an entity an outbox event tells about. The payload of an {@code UPDATED}
+ * event holds the written properties only when the entity was partially updated, and a {@code DELETED} event has no payload.
+ */
+public enum OutboxEventType {
+    CREATED,
+    UPDATED,
+    STATUS_CHANGED,
+    DELETED,
+}
@@ -0,0 +1,9 @@
+package jerem.coopcycle.domain.enumeration;
+
+/**
+ * The StatsGranularity enumeration: the length of the time buckets of the restaurant statistics.
+ */
+public enum StatsGranularity {
+    HOUR,
+    DAY,
+}
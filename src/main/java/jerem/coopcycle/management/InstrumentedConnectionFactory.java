@@ -0,0 +1,50 @@
+package jerem.coopcycle.management;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC {@link ConnectionFactory} timing the statements of its connections with {@link QueryMetrics}, for the databases
+ * accessed without the application pool: with {@code spring.r2dbc.pool.enabled=false}, or with an {@code r2dbc:pool:} URL
+ * pooled by the driver.
+ */
+public class InstrumentedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory> {
+
+    private final String name;
+    private final ConnectionFactory connectionFactory;
+    private final QueryMetrics queryMetrics;
+
+    /**
+     * @param name the name of the database, used as pool tag of the statement meters.
+     * @param connectionFactory the connection factory to instrument.
+     * @param queryMetrics the metrics of the statements.
+     */
+    public InstrumentedConnectionFactory(String name, ConnectionFactory connectionFactory, QueryMetrics queryMetrics) {
+        this.name = name;
+        this.connectionFactory = connectionFactory;
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.from(connectionFactory.create()).map(connection -> queryMetrics.instrument(connection, name));
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return connectionFactory.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return connectionFactory;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,211 @@
+package jerem.coopcycle.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.ValidationDepth;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.pool.PoolMetricsRecorder;
+
+/**
+ * R2DBC {@link ConnectionPool} exporting its state and timings to Micrometer, tagged with the name of the pool:
+ * <ul>
+ *     <li>the number of acquired, allocated, idle and pending connections, and the pool limits;</li>
+ *     <li>the time spent by the callers waiting for a connection, published as a histogram;</li>
+ *     <li>the creation time and the lifetime of the connections.</li>
+ * </ul>
+ * The time spent on the queries is not part of the acquisition time, so a latency spike can be attributed to either: the statements
+ * run with the acquired connections are timed by {@link QueryMetrics}.
+ */
+public class InstrumentedConnectionPool implements ConnectionFactory, DisposableBean {
+
+    public static final String ACQUIRE_METER_NAME = "r2dbc.pool.acquire";
+    public static final String ACQUIRE_METER_DESCRIPTION = "Time spent waiting for a connection of the pool.";
+    public static final String CREATION_METER_NAME = "r2dbc.pool.connection.creation";
+    public static final String LIFETIME_METER_NAME = "r2dbc.pool.connection.lifetime";
+    public static final String IDLE_TIME_METER_NAME = "r2dbc.pool.connection.idle";
+    public static final String DESTROYED_METER_NAME = "r2dbc.pool.connection.destroyed";
+    public static final String POOL_NAME_DIMENSION = "name";
+    public static final String OUTCOME_DIMENSION = "outcome";
+
+    private final String name;
+    private final int initialSize;
+    private final ConnectionPool pool;
+    private final MeterRegistry registry;
+    private final QueryMetrics queryMetrics;
+    private final Timer acquireSuccessTimer;
+    private final Timer acquireFailureTimer;
+
+    /**
+     * @param name the name of the pool, used as tag of its meters.
+     * @param configuration the pool configuration, its metrics recorder is replaced.
+     * @param initialSize the initial size of the pool, the number of connections opened by {@link #warmUp()}.
+     * @param registry the registry of the meters.
+     * @param queryMetrics the metrics of the statements.
+     */
+    public InstrumentedConnectionPool(
+        String name,
+        ConnectionPoolConfiguration.Builder configuration,
+        int initialSize,
+        MeterRegistry registry,
+        QueryMetrics queryMetrics
+    ) {
+        this.name = name;
+        this.initialSize = initialSize;
+        this.registry = registry;
+        this.queryMetrics = queryMetrics;
+        this.pool = new ConnectionPool(configuration.metricsRecorder(new MicrometerPoolMetricsRecorder()).build());
+        this.acquireSuccessTimer = acquireTimerForOutcomeBuilder("success").register(registry);
+        this.acquireFailureTimer = acquireTimerForOutcomeBuilder("failure").register(registry);
+        registerGauge("r2dbc.pool.acquired", "Size of acquired connections which are in active use.", PoolMetrics::acquiredSize);
+        registerGauge("r2dbc.pool.allocated", "Size of connections in the pool, in active use or idle.", PoolMetrics::allocatedSize);
+        registerGauge("r2dbc.pool.idle", "Size of idle connections in the pool.", PoolMetrics::idleSize);
+        registerGauge("r2dbc.pool.pending", "Size of pending to acquire connections from the pool.", PoolMetrics::pendingAcquireSize);
+        registerGauge("r2dbc.pool.max.allocated", "Maximum size of allocated connections.", PoolMetrics::getMaxAllocatedSize);
+        registerGauge("r2dbc.pool.max.pending", "Maximum size of pending acquirers.", PoolMetrics::getMaxPendingAcquireSize);
+    }
+
+    private Timer.Builder acquireTimerForOutcomeBuilder(String outcome) {
+        return Timer
+            .builder(ACQUIRE_METER_NAME)
+            .description(ACQUIRE_METER_DESCRIPTION)
+            .publishPercentileHistogram()
+            .tag(POOL_NAME_DIMENSION, name)
+            .tag(OUTCOME_DIMENSION, outcome);
+    }
+
+    private void registerGauge(String meterName, String description, ToIntFunction<PoolMetrics> metric) {
+        Gauge
+            .builder(meterName, pool, p -> p.getMetrics().map(metric::applyAsInt).orElse(0))
+            .description(description)
+            .tag(POOL_NAME_DIMENSION, name)
+            .register(registry);
+    }
+
+    /**
+     * Acquires a connection of the pool, recording the time spent waiting for it, and instruments its statements.
+     */
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return pool
+                .create()
+                .doOnSuccess(connection -> sample.stop(acquireSuccessTimer))
+                .doOnError(e -> sample.stop(acquireFailureTimer))
+                .map(connection -> queryMetrics.instrument(connection, name));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return pool.getMetadata();
+    }
+
+    /**
+     * Opens the initial connections of the pool, and checks each of them against the database.
+     * @return the number of valid connections.
+     */
+    public Mono<Long> warmUp() {
+        return pool
+            .warmup()
+            .thenMany(
+                Flux
+                    .range(0, initialSize)
+                    .flatMap(i -> Mono.usingWhen(pool.create(), InstrumentedConnectionPool::validate, Connection::close))
+            )
+            .filter(Boolean::booleanValue)
+            .count();
+    }
+
+    private static Mono<Boolean> validate(Connection connection) {
+        return Mono.from(connection.validate(ValidationDepth.REMOTE));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void destroy() {
+        pool.dispose();
+    }
+
+    private class MicrometerPoolMetricsRecorder implements PoolMetricsRecorder {
+
+        private final Timer creationSuccessTimer = creationTimerForOutcomeBuilder("success").register(registry);
+        private final Timer creationFailureTimer = creationTimerForOutcomeBuilder("failure").register(registry);
+        private final Timer lifetimeTimer = Timer
+            .builder(LIFETIME_METER_NAME)
+            .description("Time between the creation and the destruction of the connections.")
+            .tag(POOL_NAME_DIMENSION, name)
+            .register(registry);
+        private final Timer idleTimer = Timer
+            .builder(IDLE_TIME_METER_NAME)
+            .description("Time the connections stayed idle in the pool before being acquired.")
+            .tag(POOL_NAME_DIMENSION, name)
+            .register(registry);
+        private final Counter destroyedCounter = Counter
+            .builder(DESTROYED_METER_NAME)
+            .description("Number of connections closed by the pool.")
+            .tag(POOL_NAME_DIMENSION, name)
+            .register(registry);
+
+        private Timer.Builder creationTimerForOutcomeBuilder(String outcome) {
+            return Timer
+                .builder(CREATION_METER_NAME)
+                .description("Time spent opening new connections.")
+                .tag(POOL_NAME_DIMENSION, name)
+                .tag(OUTCOME_DIMENSION, outcome);
+        }
+
+        @Override
+        public void recordAllocationSuccessAndLatency(long latencyMs) {
+            creationSuccessTimer.record(latencyMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void recordAllocationFailureAndLatency(long latencyMs) {
+            creationFailureTimer.record(latencyMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void recordResetLatency(long latencyMs) {}
+
+        @Override
+        public void recordDestroyLatency(long latencyMs) {
+            destroyedCounter.increment();
+        }
+
+        @Override
+        public void recordRecycled() {}
+
+        @Override
+        public void recordLifetimeDuration(long millisecondsSinceAllocation) {
+            lifetimeTimer.record(millisecondsSinceAllocation, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void recordIdleTime(long millisecondsIdle) {
+            idleTimer.record(millisecondsIdle, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void recordSlowPath() {}
+
+        @Override
+        public void recordFastPath() {}
+    }
+}
@@ -0,0 +1,305 @@
+package jerem.coopcycle.management;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
+import io.r2dbc.spi.Wrapped;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+
+/**
+ * Times the SQL statements, and logs the slow ones.
+ * <p>
+ * The statements are tagged with the name of the query put in the Reactor context under {@link #QUERY_NAME_CONTEXT_KEY}, by
+ * default the repository method running them, see {@link jerem.coopcycle.aop.metrics.RepositoryMetricsAspect}. A statement is timed
+ * from its execution until its result is consumed, and the number of rows it returned is recorded.
+ * <p>
+ * The slow statements are logged with the type of their bound parameters only, as their values may hold personal data.
+ */
+public class QueryMetrics {
+
+    public static final String QUERY_NAME_CONTEXT_KEY = QueryMetrics.class.getName() + ".QUERY_NAME";
+
+    public static final String QUERY_METER_NAME = "r2dbc.query";
+    public static final String QUERY_METER_DESCRIPTION = "Time spent executing a statement and reading its result.";
+    public static final String ROWS_METER_NAME = "r2dbc.query.rows";
+    public static final String ROWS_METER_DESCRIPTION = "Number of rows returned by a statement.";
+    public static final String QUERY_DIMENSION = "query";
+    public static final String POOL_DIMENSION = "pool";
+    public static final String OUTCOME_DIMENSION = "outcome";
+
+    static final String UNKNOWN_QUERY = "unknown";
+
+    private final Logger log = LoggerFactory.getLogger(QueryMetrics.class);
+
+    private final MeterRegistry registry;
+    private final Duration slowQueryThreshold;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rowSummaries = new ConcurrentHashMap<>();
+
+    /**
+     * @param registry the registry of the meters.
+     * @param slowQueryThreshold the duration from which a statement is logged.
+     */
+    public QueryMetrics(MeterRegistry registry, Duration slowQueryThreshold) {
+        this.registry = registry;
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    /**
+     * Instruments the statements created with a connection.
+     * @param connection the connection to instrument.
+     * @param pool the name of the pool of the connection.
+     * @return the instrumented connection, which can be unwrapped to the given one.
+     */
+    public Connection instrument(Connection connection, String pool) {
+        // only the creation of the statements changes, the other methods are delegated as is
+        return (Connection) Proxy.newProxyInstance(
+            QueryMetrics.class.getClassLoader(),
+            new Class<?>[] { Connection.class, Wrapped.class },
+            (proxy, method, args) -> {
+                if ("unwrap".equals(method.getName()) && method.getParameterCount() == 0) {
+                    return connection;
+                }
+                Object result = invoke(connection, method, args);
+                if ("createStatement".equals(method.getName())) {
+                    return new TimedStatement((Statement) result, (String) args[0], pool);
+                }
+                return result;
+            }
+        );
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void record(Execution execution, long rows, boolean success) {
+        long nanos = System.nanoTime() - execution.start;
+        String key = execution.query + '|' + execution.pool;
+        timers
+            .computeIfAbsent(key + '|' + success, k -> timerBuilder(execution, success ? "success" : "failure").register(registry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+        if (success) {
+            rowSummaries
+                .computeIfAbsent(
+                    key,
+                    k ->
+                        DistributionSummary
+                            .builder(ROWS_METER_NAME)
+                            .description(ROWS_METER_DESCRIPTION)
+                            .tag(QUERY_DIMENSION, execution.query)
+                            .tag(POOL_DIMENSION, execution.pool)
+                            .register(registry)
+                )
+                .record(rows);
+        }
+        if (nanos >= slowQueryThreshold.toNanos()) {
+            log.warn(
+                "Slow query {} took {} ms and returned {} rows: {} with parameters {}",
+                execution.query,
+                TimeUnit.NANOSECONDS.toMillis(nanos),
+                rows,
+                execution.sql,
+                execution.parameters
+            );
+        }
+    }
+
+    private Timer.Builder timerBuilder(Execution execution, String outcome) {
+        return Timer
+            .builder(QUERY_METER_NAME)
+            .description(QUERY_METER_DESCRIPTION)
+            .publishPercentileHistogram()
+            .tag(QUERY_DIMENSION, execution.query)
+            .tag(POOL_DIMENSION, execution.pool)
+            .tag(OUTCOME_DIMENSION, outcome);
+    }
+
+    /**
+     * Describes a bound value by its type, and its size for collections.
+     */
+    private static String shapeOf(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Collection) {
+            return value.getClass().getSimpleName() + "[" + ((Collection<?>) value).size() + "]";
+        }
+        return value.getClass().getSimpleName();
+    }
+
+    private static final class Execution {
+
+        private final String query;
+        private final String sql;
+        private final String pool;
+        private final String parameters;
+        private final long start = System.nanoTime();
+
+        private Execution(String query, String sql, String pool, String parameters) {
+            this.query = query;
+            this.sql = sql;
+            this.pool = pool;
+            this.parameters = parameters;
+        }
+    }
+
+    private class TimedStatement implements Statement, Wrapped<Statement> {
+
+        private final Statement delegate;
+        private final String sql;
+        private final String pool;
+        private final Map<String, String> parameters = new LinkedHashMap<>();
+        private int bindings = 1;
+
+        private TimedStatement(Statement delegate, String sql, String pool) {
+            this.delegate = delegate;
+            this.sql = sql;
+            this.pool = pool;
+        }
+
+        @Override
+        public Statement add() {
+            delegate.add();
+            bindings++;
+            return this;
+        }
+
+        @Override
+        public Statement bind(int index, Object value) {
+            delegate.bind(index, value);
+            parameters.putIfAbsent("$" + (index + 1), shapeOf(value));
+            return this;
+        }
+
+        @Override
+        public Statement bind(String name, Object value) {
+            delegate.bind(name, value);
+            parameters.putIfAbsent(name, shapeOf(value));
+            return this;
+        }
+
+        @Override
+        public Statement bindNull(int index, Class<?> type) {
+            delegate.bindNull(index, type);
+            parameters.putIfAbsent("$" + (index + 1), "null " + type.getSimpleName());
+            return this;
+        }
+
+        @Override
+        public Statement bindNull(String name, Class<?> type) {
+            delegate.bindNull(name, type);
+            parameters.putIfAbsent(name, "null " + type.getSimpleName());
+            return this;
+        }
+
+        @Override
+        public Statement returnGeneratedValues(String... columns) {
+            delegate.returnGeneratedValues(columns);
+            return this;
+        }
+
+        @Override
+        public Statement fetchSize(int rows) {
+            delegate.fetchSize(rows);
+            return this;
+        }
+
+        @Override
+        public Publisher<? extends Result> execute() {
+            return Flux.deferContextual(context -> {
+                String description = bindings > 1 ? parameters + " x " + bindings : parameters.toString();
+                Execution execution = new Execution(context.getOrDefault(QUERY_NAME_CONTEXT_KEY, UNKNOWN_QUERY), sql, pool, description);
+                return Flux
+                    .from(delegate.execute())
+                    .<Result>map(result -> new TimedResult(result, execution))
+                    .doOnError(e -> record(execution, 0, false));
+            });
+        }
+
+        @Override
+        public Statement unwrap() {
+            return delegate;
+        }
+    }
+
+    private class TimedResult implements Result, Wrapped<Result> {
+
+        private final Result delegate;
+        private final Execution execution;
+
+        private TimedResult(Result delegate, Execution execution) {
+            this.delegate = delegate;
+            this.execution = execution;
+        }
+
+        @Override
+        public Publisher<Integer> getRowsUpdated() {
+            return Flux
+                .from(delegate.getRowsUpdated())
+                .doOnComplete(() -> record(execution, 0, true))
+                .doOnError(e -> record(execution, 0, false));
+        }
+
+        @Override
+        public <T> Publisher<T> map(BiFunction<Row, RowMetadata, ? extends T> mappingFunction) {
+            return count(delegate.map(mappingFunction));
+        }
+
+        @Override
+        public <T> Publisher<T> map(Function<? super Readable, ? extends T> mappingFunction) {
+            return count(delegate.map(mappingFunction));
+        }
+
+        @Override
+        public Result filter(Predicate<Segment> filter) {
+            return new TimedResult(delegate.filter(filter), execution);
+        }
+
+        @Override
+        public <T> Publisher<T> flatMap(Function<Segment, ? extends Publisher<? extends T>> mappingFunction) {
+            return count(delegate.flatMap(mappingFunction));
+        }
+
+        private <T> Publisher<T> count(Publisher<T> rows) {
+            AtomicLong count = new AtomicLong();
+            return Flux
+                .from(rows)
+                .doOnNext(row -> count.incrementAndGet())
+                .doOnComplete(() -> record(execution, count.get(), true))
+                .doOnCancel(() -> record(execution, count.get(), true))
+                .doOnError(e -> record(execution, count.get(), false));
+        }
+
+        @Override
+        public Result unwrap() {
+            return delegate;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package jerem.coopcycle.repository;
 
 import jerem.coopcycle.domain.Client;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
@@ -14,7 +15,7 @@ import reactor.core.publisher.Mono;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface ClientRepository extends ReactiveCrudRepository<Client, Long>, ClientRepositoryInternal {
+public interface ClientRepository extends ReactiveCrudRepository<Client, Long>, ClientRepositoryInternal, UpdateByIdRepository<Client> {
     Flux<Client> findAllBy(Pageable pageable);
 
     @Query("SELECT * FROM client entity WHERE entity.commande_id = :id")
@@ -23,6 +24,15 @@ public interface ClientRepository extends ReactiveCrudRepository<Client, Long>,
     @Query("SELECT * FROM client entity WHERE entity.commande_id IS NULL")
     Flux<Client> findAllWhereCommandeIsNull();
 
+    /**
+     * Clears the coordinates of a client, when its new address is not geocoded.
+     *
+     * @return the number of updated rows.
+     */
+    @Modifying
+    @Query("UPDATE client SET latitude = NULL, longitude = NULL WHERE id = :id")
+    Mono<Integer> clearLocation(Long id);
+
     @Override
     <S extends Client> Mono<S> save(S entity);
 
@@ -41,6 +51,8 @@ interface ClientRepositoryInternal {
 
     Flux<Client> findAllBy(Pageable pageable);
 
+    Flux<Client> findAllBy(Pageable pageable, Keyset keyset);
+
     Flux<Client> findAll();
 
     Mono<Client> findById(Long id);
@@ -25,11 +25,13 @@ import org.springframework.data.relational.core.sql.Comparison;
 import org.springframework.data.relational.core.sql.Condition;
 import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.SQL;
 import org.springframework.data.relational.core.sql.Select;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoinCondition;
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.repository.support.MappingRelationalEntityInformation;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
 import org.springframework.r2dbc.core.RowsFetchSpec;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -72,22 +74,30 @@ class ClientRepositoryInternalImpl extends SimpleR2dbcRepository<Client, Long> i
 
     @Override
     public Flux<Client> findAllBy(Pageable pageable) {
-        return createQuery(pageable, null).all();
+        return findAllBy(pageable, null);
     }
 
-    RowsFetchSpec<Client> createQuery(Pageable pageable, Condition whereClause) {
+    @Override
+    public Flux<Client> findAllBy(Pageable pageable, Keyset keyset) {
+        return createQuery("findAllBy", pageable, keyset, null).map(this::process).all();
+    }
+
+    GenericExecuteSpec createQuery(String queryName, Pageable pageable, Keyset keyset, Condition whereClause) {
+        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
+        String select = entityManager.createSelect(Client.class, queryName, pageable, keyset, this::createSelectFrom, whereClause);
+        return entityManager.bindPage(db.sql(select), Client.class, pageable, keyset);
+    }
+
+    private SelectFromAndJoinCondition createSelectFrom() {
         List<Expression> columns = ClientSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
         columns.addAll(CommandeSqlHelper.getColumns(commandeTable, "commande"));
-        SelectFromAndJoinCondition selectFrom = Select
+        return Select
             .builder()
             .select(columns)
             .from(entityTable)
             .leftOuterJoin(commandeTable)
             .on(Column.create("commande_id", entityTable))
             .equals(Column.create("id", commandeTable));
-        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
-        String select = entityManager.createSelect(selectFrom, Client.class, pageable, whereClause);
-        return db.sql(select).map(this::process);
     }
 
     @Override
@@ -97,8 +107,8 @@ class ClientRepositoryInternalImpl extends SimpleR2dbcRepository<Client, Long> i
 
     @Override
     public Mono<Client> findById(Long id) {
-        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), Conditions.just(id.toString()));
-        return createQuery(null, whereClause).one();
+        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), SQL.bindMarker(":id"));
+        return createQuery("findById", null, null, whereClause).bind("id", id).map(this::process).one();
     }
 
     private Client process(Row row, RowMetadata metadata) {
@@ -11,11 +11,14 @@ public class ClientSqlHelper {
     public static List<Expression> getColumns(Table table, String columnPrefix) {
         List<Expression> columns = new ArrayList<>();
         columns.add(Column.aliased("id", table, columnPrefix + "_id"));
+        columns.add(Column.aliased("version", table, columnPrefix + "_version"));
         columns.add(Column.aliased("first_name", table, columnPrefix + "_first_name"));
         columns.add(Column.aliased("last_name", table, columnPrefix + "_last_name"));
         columns.add(Column.aliased("email", table, columnPrefix + "_email"));
         columns.add(Column.aliased("phone", table, columnPrefix + "_phone"));
         columns.add(Column.aliased("address", table, columnPrefix + "_address"));
+        columns.add(Column.aliased("latitude", table, columnPrefix + "_latitude"));
+        columns.add(Column.aliased("longitude", table, columnPrefix + "_longitude"));
 
         columns.add(Column.aliased("commande_id", table, columnPrefix + "_commande_id"));
         return columns;
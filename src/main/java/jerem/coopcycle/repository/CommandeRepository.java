@@ -1,20 +1,27 @@
 package jerem.coopcycle.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
 import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 /**
  * Spring Data R2DBC repository for the Commande entity.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface CommandeRepository extends ReactiveCrudRepository<Commande, Long>, CommandeRepositoryInternal {
+public interface CommandeRepository
+    extends ReactiveCrudRepository<Commande, Long>, CommandeRepositoryInternal, UpdateByIdRepository<Commande> {
     Flux<Commande> findAllBy(Pageable pageable);
 
     @Query("SELECT * FROM commande entity WHERE entity.panier_id = :id")
@@ -29,6 +36,15 @@ public interface CommandeRepository extends ReactiveCrudRepository<Commande, Lon
     @Query("SELECT * FROM commande entity WHERE entity.paiement_id IS NULL")
     Flux<Commande> findAllWherePaiementIsNull();
 
+    /**
+     * Assigns a livreur to a commande, if it is still ready and unassigned.
+     *
+     * @return the number of updated rows, 0 if the commande was assigned meanwhile or is not ready anymore.
+     */
+    @Modifying
+    @Query("UPDATE commande SET livreur_id = :livreurId, version = version + 1 WHERE id = :id AND status = 'PRETE' AND livreur_id IS NULL")
+    Mono<Integer> assignLivreur(Long id, Long livreurId);
+
     @Override
     <S extends Commande> Mono<S> save(S entity);
 
@@ -47,9 +63,37 @@ interface CommandeRepositoryInternal {
 
     Flux<Commande> findAllBy(Pageable pageable);
 
+    Flux<Commande> findAllBy(Pageable pageable, Keyset keyset);
+
+    Flux<Commande> findAllBy(Pageable pageable, Keyset keyset, Set<String> fields);
+
+    Flux<Commande> findAllBy(Pageable pageable, Keyset keyset, Set<String> fields, boolean includeArchive);
+
     Flux<Commande> findAll();
 
     Mono<Commande> findById(Long id);
+
+    Mono<Commande> findById(Long id, boolean includeArchive);
+
+    Mono<Long> countWithArchive();
+
+    Mono<Integer> archive(CommandeStatus status, Instant before, int limit);
+
+    Mono<Integer> createPartitions(int monthsAhead);
+
+    Mono<Integer> updateStatus(Long id, CommandeStatus from, CommandeStatus to);
+
+    Mono<CommandeStatus> findStatusById(Long id);
+
+    Mono<Integer> updateStatus(Collection<Long> ids, CommandeStatus from, CommandeStatus to);
+
+    Flux<Commande> findStatusByIdInForUpdate(Collection<Long> ids);
+
+    Flux<Tuple2<Long, Long>> findRestaurantIdByIdIn(Collection<Long> ids);
+
+    Flux<Commande> findAllToDispatch();
+
+    Flux<Commande> findAllToDispatchByIdIn(Collection<Long> ids);
     // this is not supported at the moment because of https://github.com/jhipster/generator-jhipster/issues/18269
     // Flux<Commande> findAllBy(Pageable pageable, Criteria criteria);
 
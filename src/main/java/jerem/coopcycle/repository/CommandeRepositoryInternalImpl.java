@@ -5,13 +5,22 @@ import static org.springframework.data.relational.core.query.Criteria.where;
 import io.r2dbc.spi.Row;
 import io.r2dbc.spi.RowMetadata;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Paiement;
+import jerem.coopcycle.domain.Panier;
 import jerem.coopcycle.domain.enumeration.CommandeStatus;
 import jerem.coopcycle.repository.rowmapper.CommandeRowMapper;
 import jerem.coopcycle.repository.rowmapper.PaiementRowMapper;
@@ -21,6 +30,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.r2dbc.convert.R2dbcConverter;
 import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
 import org.springframework.data.r2dbc.repository.support.SimpleR2dbcRepository;
 import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.data.relational.core.sql.Column;
@@ -28,14 +39,19 @@ import org.springframework.data.relational.core.sql.Comparison;
 import org.springframework.data.relational.core.sql.Condition;
 import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.SQL;
 import org.springframework.data.relational.core.sql.Select;
+import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoin;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoinCondition;
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.repository.support.MappingRelationalEntityInformation;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
 import org.springframework.r2dbc.core.RowsFetchSpec;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 /**
  * Spring Data R2DBC custom repository implementation for the Commande entity.
@@ -46,6 +62,7 @@ class CommandeRepositoryInternalImpl extends SimpleR2dbcRepository<Commande, Lon
     private final DatabaseClient db;
     private final R2dbcEntityTemplate r2dbcEntityTemplate;
     private final EntityManager entityManager;
+    private final R2dbcDialect dialect;
 
     private final PanierRowMapper panierMapper;
     private final PaiementRowMapper paiementMapper;
@@ -55,6 +72,15 @@ class CommandeRepositoryInternalImpl extends SimpleR2dbcRepository<Commande, Lon
     private static final Table panierTable = Table.aliased("panier", "panier");
     private static final Table paiementTable = Table.aliased("paiement", "paiement");
 
+    // the views of the current rows together with the archived ones
+    private static final Table entityTableWithArchive = Table.aliased("commande_all", EntityManager.ENTITY_ALIAS);
+    private static final Table panierTableWithArchive = Table.aliased("panier_all", "panier");
+    private static final Table paiementTableWithArchive = Table.aliased("paiement_all", "paiement");
+
+    private static final String COMMANDE_COLUMNS = "id, version, date_time, status, panier_id, paiement_id, livreur_id";
+    private static final String PANIER_COLUMNS = "id, version, description, price, restaurant_id";
+    private static final String PAIEMENT_COLUMNS = "id, version, amount, payment_type";
+
     public CommandeRepositoryInternalImpl(
         R2dbcEntityTemplate template,
         EntityManager entityManager,
@@ -62,7 +88,8 @@ class CommandeRepositoryInternalImpl extends SimpleR2dbcRepository<Commande, Lon
         PaiementRowMapper paiementMapper,
         CommandeRowMapper commandeMapper,
         R2dbcEntityOperations entityOperations,
-        R2dbcConverter converter
+        R2dbcConverter converter,
+        R2dbcDialect dialect
     ) {
         super(
             new MappingRelationalEntityInformation(converter.getMappingContext().getRequiredPersistentEntity(Commande.class)),
@@ -72,6 +99,7 @@ class CommandeRepositoryInternalImpl extends SimpleR2dbcRepository<Commande, Lon
         this.db = template.getDatabaseClient();
         this.r2dbcEntityTemplate = template;
         this.entityManager = entityManager;
+        this.dialect = dialect;
         this.panierMapper = panierMapper;
         this.paiementMapper = paiementMapper;
         this.commandeMapper = commandeMapper;
@@ -79,14 +107,69 @@ class CommandeRepositoryInternalImpl extends SimpleR2dbcRepository<Commande, Lon
 
     @Override
     public Flux<Commande> findAllBy(Pageable pageable) {
-        return createQuery(pageable, null).all();
+        return findAllBy(pageable, null);
+    }
+
+    @Override
+    public Flux<Commande> findAllBy(Pageable pageable, Keyset keyset) {
+        return findAllBy(pageable, keyset, null, false);
+    }
+
+    @Override
+    public Flux<Commande> findAllBy(Pageable pageable, Keyset keyset, Set<String> fields) {
+        return findAllBy(pageable, keyset, fields, false);
     }
 
-    RowsFetchSpec<Commande> createQuery(Pageable pageable, Condition whereClause) {
+    @Override
+    public Flux<Commande> findAllBy(Pageable pageable, Keyset keyset, Set<String> fields, boolean includeArchive) {
+        String queryName = includeArchive ? "findAllByWithArchive" : "findAllBy";
+        if (fields == null) {
+            return createQuery(queryName, pageable, keyset, null, includeArchive).map(this::process).all();
+        }
+        // the keyset pagination reads the sort property of the last row
+        Set<String> properties = new TreeSet<>(fields);
+        if (keyset != null) {
+            properties.add(keyset.getProperty());
+        }
+        String select = entityManager.createSelect(
+            Commande.class,
+            queryName + properties,
+            pageable,
+            keyset,
+            () -> createSelectFrom(properties, includeArchive),
+            null
+        );
+        return entityManager.bindPage(db.sql(select), Commande.class, pageable, keyset).map(this::processWithoutJoins).all();
+    }
+
+    GenericExecuteSpec createQuery(String queryName, Pageable pageable, Keyset keyset, Condition whereClause) {
+        return createQuery(queryName, pageable, keyset, whereClause, false);
+    }
+
+    /**
+     * @param includeArchive whether the archived commandes are read too, the query names must differ as the templates are cached.
+     */
+    GenericExecuteSpec createQuery(String queryName, Pageable pageable, Keyset keyset, Condition whereClause, boolean includeArchive) {
+        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
+        String select = entityManager.createSelect(
+            Commande.class,
+            queryName,
+            pageable,
+            keyset,
+            () -> createSelectFrom(includeArchive),
+            whereClause
+        );
+        return entityManager.bindPage(db.sql(select), Commande.class, pageable, keyset);
+    }
+
+    private SelectFromAndJoinCondition createSelectFrom(boolean includeArchive) {
+        Table entityTable = includeArchive ? entityTableWithArchive : CommandeRepositoryInternalImpl.entityTable;
+        Table panierTable = includeArchive ? panierTableWithArchive : CommandeRepositoryInternalImpl.panierTable;
+        Table paiementTable = includeArchive ? paiementTableWithArchive : CommandeRepositoryInternalImpl.paiementTable;
         List<Expression> columns = CommandeSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
         columns.addAll(PanierSqlHelper.getColumns(panierTable, "panier"));
         columns.addAll(PaiementSqlHelper.getColumns(paiementTable, "paiement"));
-        SelectFromAndJoinCondition selectFrom = Select
+        return Select
             .builder()
             .select(columns)
             .from(entityTable)
@@ -96,9 +179,16 @@ class CommandeRepositoryInternalImpl extends SimpleR2dbcRepository<Commande, Lon
             .leftOuterJoin(paiementTable)
             .on(Column.create("paiement_id", entityTable))
             .equals(Column.create("id", paiementTable));
-        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
-        String select = entityManager.createSelect(selectFrom, Commande.class, pageable, whereClause);
-        return db.sql(select).map(this::process);
+    }
+
+    /**
+     * Selects the given properties only, without joins: the DTOs only expose the id of the associated entities, which is read
+     * from the foreign key.
+     */
+    private SelectFromAndJoin createSelectFrom(Set<String> fields, boolean includeArchive) {
+        Table entityTable = includeArchive ? entityTableWithArchive : CommandeRepositoryInternalImpl.entityTable;
+        List<Expression> columns = CommandeSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS, fields);
+        return Select.builder().select(columns).from(entityTable);
     }
 
     @Override
@@ -108,8 +198,208 @@ class CommandeRepositoryInternalImpl extends SimpleR2dbcRepository<Commande, Lon
 
     @Override
     public Mono<Commande> findById(Long id) {
-        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), Conditions.just(id.toString()));
-        return createQuery(null, whereClause).one();
+        return findById(id, false);
+    }
+
+    @Override
+    public Mono<Commande> findById(Long id, boolean includeArchive) {
+        Table table = includeArchive ? entityTableWithArchive : entityTable;
+        Comparison whereClause = Conditions.isEqual(table.column("id"), SQL.bindMarker(":id"));
+        String queryName = includeArchive ? "findByIdWithArchive" : "findById";
+        return createQuery(queryName, null, null, whereClause, includeArchive).bind("id", id).map(this::process).one();
+    }
+
+    @Override
+    public Mono<Long> countWithArchive() {
+        return db.sql("SELECT COUNT(*) AS total FROM commande_all").map(row -> row.get("total", Long.class)).one();
+    }
+
+    /**
+     * Moves a chunk of commandes, with their panier and paiement when no other commande refers to them, into the archive
+     * tables. The chunk is locked first, so that it is not updated while it is moved; the statements must run in the same
+     * transaction.
+     */
+    @Override
+    public Mono<Integer> archive(CommandeStatus status, Instant before, int limit) {
+        return db
+            .sql(
+                "SELECT id, panier_id, paiement_id FROM commande WHERE status = :status AND date_time < :before " +
+                "ORDER BY date_time, id LIMIT :limit FOR UPDATE"
+            )
+            .bind("status", status.name())
+            // the date_time column has no time zone, the instants being stored in UTC
+            .bind("before", LocalDateTime.ofInstant(before, ZoneOffset.UTC))
+            .bind("limit", limit)
+            .map(row -> {
+                Commande commande = new Commande().id(row.get("id", Long.class));
+                commande.setPanierId(row.get("panier_id", Long.class));
+                commande.setPaiementId(row.get("paiement_id", Long.class));
+                return commande;
+            })
+            .all()
+            .collectList()
+            .flatMap(commandes -> {
+                if (commandes.isEmpty()) {
+                    return Mono.just(0);
+                }
+                List<Long> ids = commandes.stream().map(Commande::getId).collect(Collectors.toList());
+                Set<Long> panierIds = commandes.stream().map(Commande::getPanierId).collect(Collectors.toSet());
+                Set<Long> paiementIds = commandes
+                    .stream()
+                    .map(Commande::getPaiementId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+                return moveToArchive("commande", COMMANDE_COLUMNS, "", ids)
+                    .flatMap(archived ->
+                        moveToArchive(
+                            "panier",
+                            PANIER_COLUMNS,
+                            " AND NOT EXISTS (SELECT 1 FROM commande WHERE panier_id = panier.id)",
+                            panierIds
+                        )
+                            .then(
+                                moveToArchive(
+                                    "paiement",
+                                    PAIEMENT_COLUMNS,
+                                    " AND NOT EXISTS (SELECT 1 FROM commande WHERE paiement_id = paiement.id)",
+                                    paiementIds
+                                )
+                            )
+                            .thenReturn(archived)
+                    );
+            });
+    }
+
+    /**
+     * Copies the rows with the given ids into the archive table of the table, then deletes them.
+     *
+     * @param condition the additional condition of the rows to move, starting with {@code AND}.
+     */
+    private Mono<Integer> moveToArchive(String table, String columns, String condition, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(0);
+        }
+        String where = " WHERE id IN (:ids)" + condition;
+        return db
+            .sql("INSERT INTO " + table + "_archive (" + columns + ") SELECT " + columns + " FROM " + table + where)
+            .bind("ids", ids)
+            .fetch()
+            .rowsUpdated()
+            .then(db.sql("DELETE FROM " + table + where).bind("ids", ids).fetch().rowsUpdated());
+    }
+
+    /**
+     * Creates the monthly partitions of the coming months, the commandes are only partitioned on PostgreSQL.
+     */
+    @Override
+    public Mono<Integer> createPartitions(int monthsAhead) {
+        if (!(dialect instanceof PostgresDialect)) {
+            return Mono.just(0);
+        }
+        return db
+            .sql("SELECT create_commande_partitions(localtimestamp, :monthsAhead) AS created")
+            .bind("monthsAhead", monthsAhead)
+            .map(row -> row.get("created", Integer.class))
+            .one();
+    }
+
+    @Override
+    public Mono<Integer> updateStatus(Long id, CommandeStatus from, CommandeStatus to) {
+        return db
+            .sql("UPDATE commande SET status = :to, version = version + 1 WHERE id = :id AND status = :from")
+            .bind("to", to.name())
+            .bind("id", id)
+            .bind("from", from.name())
+            .fetch()
+            .rowsUpdated();
+    }
+
+    @Override
+    public Mono<CommandeStatus> findStatusById(Long id) {
+        return db
+            .sql("SELECT status FROM commande WHERE id = :id")
+            .bind("id", id)
+            .map(row -> CommandeStatus.valueOf(row.get("status", String.class)))
+            .one();
+    }
+
+    @Override
+    public Mono<Integer> updateStatus(Collection<Long> ids, CommandeStatus from, CommandeStatus to) {
+        return db
+            .sql("UPDATE commande SET status = :to, version = version + 1 WHERE id IN (:ids) AND status = :from")
+            .bind("to", to.name())
+            .bind("ids", ids)
+            .bind("from", from.name())
+            .fetch()
+            .rowsUpdated();
+    }
+
+    /**
+     * Reads the id and the status only, and locks the rows until the end of the transaction.
+     */
+    @Override
+    public Flux<Commande> findStatusByIdInForUpdate(Collection<Long> ids) {
+        return db
+            .sql("SELECT id, status FROM commande WHERE id IN (:ids) FOR UPDATE")
+            .bind("ids", ids)
+            .map(row -> new Commande().id(row.get("id", Long.class)).status(CommandeStatus.valueOf(row.get("status", String.class))))
+            .all();
+    }
+
+    /**
+     * Reads the restaurant of the commandes, through their panier. The commandes without restaurant are left out.
+     *
+     * @return the id of each commande with the id of its restaurant.
+     */
+    @Override
+    public Flux<Tuple2<Long, Long>> findRestaurantIdByIdIn(Collection<Long> ids) {
+        return db
+            .sql(
+                "SELECT commande.id AS id, panier.restaurant_id AS restaurant_id FROM commande " +
+                "JOIN panier ON panier.id = commande.panier_id " +
+                "WHERE commande.id IN (:ids) AND panier.restaurant_id IS NOT NULL"
+            )
+            .bind("ids", ids)
+            .map(row -> Tuples.of(row.get("id", Long.class), row.get("restaurant_id", Long.class)))
+            .all();
+    }
+
+    /**
+     * Reads the ready commandes without livreur: their id, date and status, with the restaurant of their panier.
+     */
+    @Override
+    public Flux<Commande> findAllToDispatch() {
+        return findAllToDispatch("", null);
+    }
+
+    /**
+     * Reads the given commandes which are ready and without livreur, as {@link #findAllToDispatch()}.
+     */
+    @Override
+    public Flux<Commande> findAllToDispatchByIdIn(Collection<Long> ids) {
+        return findAllToDispatch(" AND e.id IN (:ids)", ids);
+    }
+
+    private Flux<Commande> findAllToDispatch(String where, Collection<Long> ids) {
+        GenericExecuteSpec spec = db
+            .sql(
+                "SELECT e.id AS e_id, e.date_time AS e_date_time, e.status AS e_status, e.panier_id AS e_panier_id, " +
+                "panier.id AS panier_id, panier.restaurant_id AS panier_restaurant_id " +
+                "FROM commande e JOIN panier ON panier.id = e.panier_id " +
+                "WHERE e.status = :status AND e.livreur_id IS NULL" +
+                where
+            )
+            .bind("status", CommandeStatus.PRETE.name());
+        if (ids != null) {
+            spec = spec.bind("ids", ids);
+        }
+        return spec
+            .map((row, metadata) -> {
+                Commande entity = commandeMapper.apply(row, "e");
+                entity.setPanier(panierMapper.apply(row, "panier"));
+                return entity;
+            })
+            .all();
     }
 
     private Commande process(Row row, RowMetadata metadata) {
@@ -119,6 +409,17 @@ class CommandeRepositoryInternalImpl extends SimpleR2dbcRepository<Commande, Lon
         return entity;
     }
 
+    private Commande processWithoutJoins(Row row, RowMetadata metadata) {
+        Commande entity = commandeMapper.apply(row, "e");
+        if (entity.getPanierId() != null) {
+            entity.setPanier(new Panier().id(entity.getPanierId()));
+        }
+        if (entity.getPaiementId() != null) {
+            entity.setPaiement(new Paiement().id(entity.getPaiementId()));
+        }
+        return entity;
+    }
+
     @Override
     public <S extends Commande> Mono<S> save(S entity) {
         return super.save(entity);
@@ -2,6 +2,7 @@ package jerem.coopcycle.repository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import org.springframework.data.relational.core.sql.Column;
 import org.springframework.data.relational.core.sql.Expression;
 import org.springframework.data.relational.core.sql.Table;
@@ -11,11 +12,36 @@ public class CommandeSqlHelper {
     public static List<Expression> getColumns(Table table, String columnPrefix) {
         List<Expression> columns = new ArrayList<>();
         columns.add(Column.aliased("id", table, columnPrefix + "_id"));
+        columns.add(Column.aliased("version", table, columnPrefix + "_version"));
         columns.add(Column.aliased("date_time", table, columnPrefix + "_date_time"));
         columns.add(Column.aliased("status", table, columnPrefix + "_status"));
 
         columns.add(Column.aliased("panier_id", table, columnPrefix + "_panier_id"));
         columns.add(Column.aliased("paiement_id", table, columnPrefix + "_paiement_id"));
+        columns.add(Column.aliased("livreur_id", table, columnPrefix + "_livreur_id"));
+        return columns;
+    }
+
+    /**
+     * Gets the columns of the given properties only, the id is always selected.
+     * @param fields the names of the properties to select, {@code panier} and {@code paiement} selecting their foreign key.
+     */
+    public static List<Expression> getColumns(Table table, String columnPrefix, Set<String> fields) {
+        List<Expression> columns = new ArrayList<>();
+        columns.add(Column.aliased("id", table, columnPrefix + "_id"));
+        if (fields.contains("dateTime")) {
+            columns.add(Column.aliased("date_time", table, columnPrefix + "_date_time"));
+        }
+        if (fields.contains("status")) {
+            columns.add(Column.aliased("status", table, columnPrefix + "_status"));
+        }
+
+        if (fields.contains("panier")) {
+            columns.add(Column.aliased("panier_id", table, columnPrefix + "_panier_id"));
+        }
+        if (fields.contains("paiement")) {
+            columns.add(Column.aliased("paiement_id", table, columnPrefix + "_paiement_id"));
+        }
         return columns;
     }
 }
@@ -1,34 +1,50 @@
 package jerem.coopcycle.repository;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.validation.constraints.NotNull;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.r2dbc.convert.R2dbcConverter;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.r2dbc.core.StatementMapper;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
 import org.springframework.data.r2dbc.mapping.OutboundRow;
 import org.springframework.data.r2dbc.query.UpdateMapper;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
 import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.sql.BindMarker;
+import org.springframework.data.relational.core.sql.Column;
 import org.springframework.data.relational.core.sql.Condition;
 import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.OrderByField;
+import org.springframework.data.relational.core.sql.SQL;
 import org.springframework.data.relational.core.sql.Select;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoin;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoinCondition;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectOrdered;
+import org.springframework.data.relational.core.sql.SelectBuilder.SelectWhere;
 import org.springframework.data.relational.core.sql.SqlIdentifier;
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.core.sql.render.SqlRenderer;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
 import org.springframework.r2dbc.core.Parameter;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -40,6 +56,17 @@ public class EntityManager {
 
     public static final String ENTITY_ALIAS = "e";
     public static final String ALIAS_PREFIX = "e_";
+    public static final String LAST_SORT_VALUE_PARAMETER = "lastSortValue";
+    public static final String LAST_ID_PARAMETER = "lastId";
+    public static final String LIMIT_PARAMETER = "limit";
+    public static final String OFFSET_PARAMETER = "offset";
+
+    public static final String SELECT_TEMPLATE_CACHE_METER_NAME = "repository.select.template.cache";
+    public static final String SELECT_TEMPLATE_CACHE_METER_DESCRIPTION = "Indicates the lookups of rendered SQL select templates.";
+    public static final String SELECT_TEMPLATE_CACHE_RESULT_DIMENSION = "result";
+
+    // bounds the cache, as the sort of a query shape comes from the request
+    private static final int MAX_SELECT_TEMPLATES = 1000;
 
     public static class LinkTable {
 
@@ -61,12 +88,32 @@ public class EntityManager {
     private final UpdateMapper updateMapper;
     private final R2dbcEntityTemplate r2dbcEntityTemplate;
     private final StatementMapper statementMapper;
+    private final R2dbcDialect dialect;
+    private final Map<String, String> selectTemplates = new ConcurrentHashMap<>();
+    private final Counter templateCacheHits;
+    private final Counter templateCacheMisses;
 
-    public EntityManager(SqlRenderer sqlRenderer, UpdateMapper updateMapper, R2dbcEntityTemplate r2dbcEntityTemplate) {
+    public EntityManager(
+        SqlRenderer sqlRenderer,
+        UpdateMapper updateMapper,
+        R2dbcEntityTemplate r2dbcEntityTemplate,
+        R2dbcDialect dialect,
+        MeterRegistry meterRegistry
+    ) {
         this.sqlRenderer = sqlRenderer;
         this.updateMapper = updateMapper;
         this.r2dbcEntityTemplate = r2dbcEntityTemplate;
         this.statementMapper = r2dbcEntityTemplate.getDataAccessStrategy().getStatementMapper();
+        this.dialect = dialect;
+        this.templateCacheHits = templateCacheCounterForResultBuilder("hit").register(meterRegistry);
+        this.templateCacheMisses = templateCacheCounterForResultBuilder("miss").register(meterRegistry);
+    }
+
+    private static Counter.Builder templateCacheCounterForResultBuilder(String result) {
+        return Counter
+            .builder(SELECT_TEMPLATE_CACHE_METER_NAME)
+            .description(SELECT_TEMPLATE_CACHE_METER_DESCRIPTION)
+            .tag(SELECT_TEMPLATE_CACHE_RESULT_DIMENSION, result);
     }
 
     /**
@@ -133,6 +180,65 @@ public class EntityManager {
         }
     }
 
+    /**
+     * Returns the SQL select statement of the given query shape, rendered once and then cached as a template.
+     * <p>
+     * A shape is identified by the entity, the query name - which stands for the joins and the where clause - the sort, and
+     * whether the result is paged by offset or by keyset. Values never end up in the template: the where clause has to use bind
+     * markers, and the page and keyset bind markers are bound by {@link #bindPage(GenericExecuteSpec, Class, Pageable, Keyset)}.
+     * The paging clause is appended as {@code LIMIT :limit OFFSET :offset}, as supported by PostgreSQL and H2.
+     * @param entityType the entity type which holds the table name.
+     * @param queryName the name of the query, unique for a given select fragment and where clause.
+     * @param pageable page parameter, or null, if everything needs to be returned.
+     * @param keyset the position to seek to, or null to page with an offset.
+     * @param selectFrom supplies a representation of a select statement, only called when the template is not cached yet.
+     * @param where condition or null. The condition to apply as where clause.
+     * @param <S> the type of the select fragment.
+     * @return sql select statement
+     */
+    public <S extends SelectWhere & SelectOrdered> String createSelect(
+        Class<?> entityType,
+        String queryName,
+        Pageable pageable,
+        Keyset keyset,
+        Supplier<S> selectFrom,
+        Condition where
+    ) {
+        String key = createTemplateKey(entityType, queryName, pageable, keyset);
+        String template = selectTemplates.get(key);
+        if (template != null) {
+            templateCacheHits.increment();
+            return template;
+        }
+        templateCacheMisses.increment();
+        template = createSelectTemplate(entityType, pageable, keyset, selectFrom.get(), where);
+        if (selectTemplates.size() < MAX_SELECT_TEMPLATES) {
+            selectTemplates.putIfAbsent(key, template);
+        }
+        return template;
+    }
+
+    /**
+     * Binds the page size, offset and keyset position to a statement created by
+     * {@link #createSelect(Class, String, Pageable, Keyset, Supplier, Condition)}.
+     * @param spec the statement to bind.
+     * @param entityType the entity type which holds the sort property.
+     * @param pageable page parameter, or null.
+     * @param keyset the position to seek to, or null.
+     * @return the bound statement.
+     * @throws IllegalArgumentException if the last sort value can't be read as the type of the sort property.
+     */
+    public GenericExecuteSpec bindPage(GenericExecuteSpec spec, Class<?> entityType, Pageable pageable, Keyset keyset) {
+        if (!isPaged(pageable)) {
+            return spec;
+        }
+        spec = spec.bind(LIMIT_PARAMETER, pageable.getPageSize());
+        if (keyset == null) {
+            return spec.bind(OFFSET_PARAMETER, pageable.getOffset());
+        }
+        return bindKeyset(spec, entityType, keyset);
+    }
+
     /**
      * Generate an actual SQL from the given {@link Select}.
      * @param select a representation of a select statement.
@@ -161,6 +267,31 @@ public class EntityManager {
         return r2dbcEntityTemplate.getDatabaseClient().sql(statementMapper.getMappedObject(delete)).fetch().rowsUpdated();
     }
 
+    /**
+     * Estimates the number of rows of the entity table from the planner statistics, without scanning the table.
+     * Only PostgreSQL keeps such statistics ({@code pg_class.reltuples}). The rows of a partitioned table are the sum of the rows
+     * of its partitions.
+     * @param entityType the entity type which holds the table name.
+     * @return the estimated number of rows, or an empty Mono if the database has no statistics for the table.
+     */
+    public Mono<Long> estimateCount(Class<?> entityType) {
+        if (!(dialect instanceof PostgresDialect)) {
+            return Mono.empty();
+        }
+        String tableName = getRequiredPersistentEntity(entityType).getTableName().getReference();
+        return r2dbcEntityTemplate
+            .getDatabaseClient()
+            .sql(
+                "SELECT coalesce(sum(greatest(reltuples, 0)), 0)::bigint AS estimate FROM pg_class WHERE relkind = 'r' " +
+                "AND (oid = to_regclass(:tableName) OR oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = to_regclass(:tableName)))"
+            )
+            .bind("tableName", tableName)
+            .map(row -> row.get("estimate", Long.class))
+            .one()
+            // a table which was never analyzed has no statistics (-1 since PostgreSQL 14, 0 before)
+            .filter(estimate -> estimate > 0);
+    }
+
     /**
      * Inserts the given entity into the database - and sets the id, if it's an autoincrement field.
      * @param <S> the type of the persisted entity.
@@ -172,30 +303,46 @@ public class EntityManager {
     }
 
     /**
-     * Updates the table, which links the entity with the referred entities.
+     * Updates the table, which links the entity with the referred entities: only the links which are not wanted anymore are
+     * deleted, and only the missing ones are inserted, with one multi-row statement each.
      * @param table describes the link table, it contains a table name, the column name for the id, and for the referred entity id.
      * @param entityId the id of the entity, for which the links are created.
      * @param referencedIds the id of the referred entities.
-     * @return the number of inserted rows.
+     * @return the number of inserted and deleted rows.
      */
     public Mono<Integer> updateLinkTable(LinkTable table, Object entityId, Stream<?> referencedIds) {
-        return deleteFromLinkTable(table, entityId)
-            .then(
-                Flux
-                    .fromStream(referencedIds)
-                    .flatMap((Object referenceId) -> {
-                        StatementMapper.InsertSpec insert = r2dbcEntityTemplate
-                            .getDataAccessStrategy()
-                            .getStatementMapper()
-                            .createInsert(table.tableName)
-                            .withColumn(table.idColumn, Parameter.from(entityId))
-                            .withColumn(table.referenceColumn, Parameter.from(referenceId));
-
-                        return r2dbcEntityTemplate.getDatabaseClient().sql(statementMapper.getMappedObject(insert)).fetch().rowsUpdated();
-                    })
-                    .collectList()
-                    .map((List<Integer> updates) -> updates.stream().reduce(Integer::sum).orElse(0))
-            );
+        Assert.notNull(entityId, "entityId is null");
+        Set<Object> wanted = referencedIds.collect(Collectors.toCollection(LinkedHashSet::new));
+        if (wanted.isEmpty()) {
+            return deleteLinks(table, entityId, null);
+        }
+        return findLinks(table, entityId, wanted.iterator().next().getClass())
+            .flatMap(existing -> {
+                List<Object> removed = existing.stream().filter(referenceId -> !wanted.contains(referenceId)).collect(Collectors.toList());
+                wanted.removeAll(existing);
+                return deleteLinks(table, entityId, removed)
+                    .flatMap(deleted -> insertLinks(table, entityId, wanted).map(inserted -> deleted + inserted));
+            });
+    }
+
+    /**
+     * Adds the missing links of the entity to the referred entities, keeping the existing ones, with one multi-row statement.
+     * @param table describes the link table, it contains a table name, the column name for the id, and for the referred entity id.
+     * @param entityId the id of the entity, for which the links are created.
+     * @param referencedIds the id of the referred entities.
+     * @return the number of inserted rows.
+     */
+    public Mono<Integer> addToLinkTable(LinkTable table, Object entityId, Stream<?> referencedIds) {
+        Assert.notNull(entityId, "entityId is null");
+        Set<Object> wanted = referencedIds.collect(Collectors.toCollection(LinkedHashSet::new));
+        if (wanted.isEmpty()) {
+            return Mono.just(0);
+        }
+        return findLinks(table, entityId, wanted.iterator().next().getClass())
+            .flatMap(existing -> {
+                wanted.removeAll(existing);
+                return insertLinks(table, entityId, wanted);
+            });
     }
 
     public Mono<Void> deleteFromLinkTable(LinkTable table, Object entityId) {
@@ -208,6 +355,63 @@ public class EntityManager {
         return r2dbcEntityTemplate.getDatabaseClient().sql(statementMapper.getMappedObject(deleteSpec)).then();
     }
 
+    private Mono<Set<Object>> findLinks(LinkTable table, Object entityId, Class<?> referenceType) {
+        String sql = "SELECT " + table.referenceColumn + " FROM " + table.tableName + " WHERE " + table.idColumn + " = :entityId";
+        return r2dbcEntityTemplate
+            .getDatabaseClient()
+            .sql(sql)
+            .bind("entityId", entityId)
+            .map(row -> (Object) row.get(0, referenceType))
+            .all()
+            .collect(Collectors.toSet());
+    }
+
+    /**
+     * Deletes links of the entity in one statement.
+     * @param referenceIds the referred ids to unlink, or {@code null} to delete every link of the entity.
+     */
+    private Mono<Integer> deleteLinks(LinkTable table, Object entityId, Collection<Object> referenceIds) {
+        if (referenceIds != null && referenceIds.isEmpty()) {
+            return Mono.just(0);
+        }
+        String sql = "DELETE FROM " + table.tableName + " WHERE " + table.idColumn + " = :entityId";
+        if (referenceIds == null) {
+            return r2dbcEntityTemplate.getDatabaseClient().sql(sql).bind("entityId", entityId).fetch().rowsUpdated();
+        }
+        return r2dbcEntityTemplate
+            .getDatabaseClient()
+            .sql(sql + " AND " + table.referenceColumn + " IN (:referenceIds)")
+            .bind("entityId", entityId)
+            .bind("referenceIds", referenceIds)
+            .fetch()
+            .rowsUpdated();
+    }
+
+    /**
+     * Inserts links of the entity with a single multi-row {@code INSERT ... VALUES (...), (...)} statement.
+     */
+    private Mono<Integer> insertLinks(LinkTable table, Object entityId, Collection<Object> referenceIds) {
+        if (referenceIds.isEmpty()) {
+            return Mono.just(0);
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+            .append(table.tableName)
+            .append(" (")
+            .append(table.idColumn)
+            .append(", ")
+            .append(table.referenceColumn)
+            .append(") VALUES ");
+        for (int i = 0; i < referenceIds.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(:entityId, :referenceId").append(i).append(')');
+        }
+        GenericExecuteSpec insert = r2dbcEntityTemplate.getDatabaseClient().sql(sql.toString()).bind("entityId", entityId);
+        int i = 0;
+        for (Object referenceId : referenceIds) {
+            insert = insert.bind("referenceId" + i++, referenceId);
+        }
+        return insert.fetch().rowsUpdated();
+    }
+
     private String createSelectImpl(SelectOrdered selectFrom, Class<?> entityType, Sort sortParameter) {
         if (sortParameter != null && sortParameter.isSorted()) {
             RelationalPersistentEntity<?> entity = getPersistentEntity(entityType);
@@ -220,6 +424,123 @@ public class EntityManager {
         return createSelect(selectFrom.build());
     }
 
+    private <S extends SelectWhere & SelectOrdered> String createSelectTemplate(
+        Class<?> entityType,
+        Pageable pageable,
+        Keyset keyset,
+        S selectFrom,
+        Condition where
+    ) {
+        boolean paged = isPaged(pageable);
+        Assert.isTrue(keyset == null || paged, "keyset pagination requires a page size");
+        Condition condition = keyset != null ? createKeysetCondition(entityType, keyset, where) : where;
+        SelectOrdered select = condition != null ? selectFrom.where(condition) : selectFrom;
+        Sort sort = keyset != null ? createKeysetSort(entityType, keyset) : paged ? pageable.getSort() : null;
+        String sql = createSelectImpl(select, entityType, sort);
+        if (keyset != null) {
+            return sql + " LIMIT :" + LIMIT_PARAMETER;
+        }
+        if (paged) {
+            return sql + " LIMIT :" + LIMIT_PARAMETER + " OFFSET :" + OFFSET_PARAMETER;
+        }
+        return sql;
+    }
+
+    private static String createTemplateKey(Class<?> entityType, String queryName, Pageable pageable, Keyset keyset) {
+        StringBuilder key = new StringBuilder(entityType.getName()).append('#').append(queryName);
+        if (keyset != null) {
+            key
+                .append("#keyset:")
+                .append(keyset.getProperty())
+                .append(',')
+                .append(keyset.getDirection())
+                .append(keyset.isFirst() ? ",first" : ",after");
+        } else if (isPaged(pageable)) {
+            key.append("#page:").append(pageable.getSort());
+        }
+        return key.toString();
+    }
+
+    private static boolean isPaged(Pageable pageable) {
+        return pageable != null && pageable.isPaged();
+    }
+
+    private GenericExecuteSpec bindKeyset(GenericExecuteSpec spec, Class<?> entityType, Keyset keyset) {
+        if (keyset.isFirst()) {
+            return spec;
+        }
+        spec = spec.bind(LAST_ID_PARAMETER, keyset.getLastId());
+        if (keyset.isById()) {
+            return spec;
+        }
+        RelationalPersistentProperty property = getKeysetProperty(getRequiredPersistentEntity(entityType), keyset);
+        Object value = readKeysetValue(keyset.getLastValue(), property.getType());
+        Parameter bindValue = r2dbcEntityTemplate.getDataAccessStrategy().getBindValue(Parameter.from(value));
+        return spec.bind(LAST_SORT_VALUE_PARAMETER, bindValue.getValue());
+    }
+
+    private Condition createKeysetCondition(Class<?> entityType, Keyset keyset, Condition where) {
+        if (keyset.isFirst()) {
+            return where;
+        }
+        RelationalPersistentEntity<?> entity = getRequiredPersistentEntity(entityType);
+        Table table = Table.create(entity.getTableName()).as(EntityManager.ENTITY_ALIAS);
+        boolean ascending = keyset.getDirection().isAscending();
+
+        Column idColumn = table.column(entity.getRequiredIdProperty().getColumnName());
+        BindMarker lastId = SQL.bindMarker(":" + LAST_ID_PARAMETER);
+        Condition keysetCondition = ascending ? Conditions.isGreater(idColumn, lastId) : Conditions.isLess(idColumn, lastId);
+        if (!keyset.isById()) {
+            // (sort_col, id) > (:lastSortValue, :lastId), expanded as not every dialect supports row value comparisons
+            Column sortColumn = table.column(getKeysetProperty(entity, keyset).getColumnName());
+            BindMarker lastSortValue = SQL.bindMarker(":" + LAST_SORT_VALUE_PARAMETER);
+            Condition afterSortValue = ascending
+                ? Conditions.isGreater(sortColumn, lastSortValue)
+                : Conditions.isLess(sortColumn, lastSortValue);
+            keysetCondition = afterSortValue.or(Conditions.isEqual(sortColumn, lastSortValue).and(keysetCondition));
+        }
+        keysetCondition = Conditions.nest(keysetCondition);
+        return where != null ? where.and(keysetCondition) : keysetCondition;
+    }
+
+    private Sort createKeysetSort(Class<?> entityType, Keyset keyset) {
+        RelationalPersistentEntity<?> entity = getRequiredPersistentEntity(entityType);
+        String idProperty = entity.getRequiredIdProperty().getName();
+        if (keyset.isById()) {
+            return Sort.by(keyset.getDirection(), idProperty);
+        }
+        return Sort.by(keyset.getDirection(), getKeysetProperty(entity, keyset).getName(), idProperty);
+    }
+
+    private RelationalPersistentProperty getKeysetProperty(RelationalPersistentEntity<?> entity, Keyset keyset) {
+        RelationalPersistentProperty property = entity.getPersistentProperty(keyset.getProperty());
+        if (property == null) {
+            throw new IllegalArgumentException("Unknown sort property: " + keyset.getProperty());
+        }
+        // rows with a null sort value could not be reached by the seek predicate
+        if (!property.isIdProperty() && !property.isAnnotationPresent(NotNull.class)) {
+            throw new IllegalArgumentException("Keyset pagination requires a non-null sort property: " + keyset.getProperty());
+        }
+        return property;
+    }
+
+    private Object readKeysetValue(String value, Class<?> type) {
+        try {
+            if (Instant.class.equals(type)) {
+                return Instant.parse(value);
+            }
+            Object converted = r2dbcEntityTemplate.getConverter().getConversionService().convert(value, type);
+            Assert.notNull(converted, "converted value is null");
+            return converted;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor value for type " + type.getSimpleName(), e);
+        }
+    }
+
+    private RelationalPersistentEntity<?> getRequiredPersistentEntity(Class<?> entityType) {
+        return r2dbcEntityTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(entityType);
+    }
+
     private RelationalPersistentEntity<?> getPersistentEntity(Class<?> entityType) {
         return r2dbcEntityTemplate.getConverter().getMappingContext().getPersistentEntity(entityType);
     }
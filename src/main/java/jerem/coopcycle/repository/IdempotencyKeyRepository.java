@@ -0,0 +1,46 @@
+package jerem.coopcycle.repository;
+
+import java.time.Instant;
+import jerem.coopcycle.domain.IdempotencyKey;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Spring Data R2DBC repository for the IdempotencyKey entity.
+ * <p>
+ * The unique constraint on the scope, the login and the key lets a single request insert a key: the others fail with a
+ * {@link org.springframework.dao.DataIntegrityViolationException}.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface IdempotencyKeyRepository extends ReactiveCrudRepository<IdempotencyKey, Long> {
+    @Query(
+        "SELECT * FROM idempotency_key entity WHERE entity.scope = :scope AND entity.login = :login AND entity.idempotency_key = :key"
+    )
+    Mono<IdempotencyKey> findOneByScopeAndLoginAndKey(String scope, String login, String key);
+
+    /**
+     * Takes over a key whose request did not complete within its lease, because its instance stopped.
+     */
+    @Modifying
+    @Query("UPDATE idempotency_key SET created_date = :now WHERE id = :id AND response IS NULL AND created_date < :expiredBefore")
+    Mono<Integer> takeOver(Long id, Instant now, Instant expiredBefore);
+
+    @Modifying
+    @Query("UPDATE idempotency_key SET response = :response WHERE id = :id")
+    Mono<Integer> complete(Long id, String response);
+
+    /**
+     * Deletes a key whose request failed, so that it can be retried.
+     */
+    @Modifying
+    @Query("DELETE FROM idempotency_key WHERE id = :id AND response IS NULL")
+    Mono<Integer> release(Long id);
+
+    @Modifying
+    @Query("DELETE FROM idempotency_key WHERE created_date < :before")
+    Mono<Integer> deleteByCreatedDateBefore(Instant before);
+}
@@ -0,0 +1,170 @@
+package jerem.coopcycle.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+/**
+ * Position of a seek (keyset) page: the sort property and direction, and the sort value and id of the last row already returned.
+ * <p>
+ * A page is selected with {@code WHERE (sort_col, id) > (:lastSortValue, :lastId)} instead of an {@code OFFSET}, so every page
+ * costs the same as the first one. The position is exchanged with clients as an opaque token, see {@link #encode()}.
+ */
+public final class Keyset {
+
+    public static final String ID_PROPERTY = "id";
+
+    private static final String SEPARATOR = "|";
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("[A-Za-z][A-Za-z0-9]*");
+
+    private final String property;
+    private final Sort.Direction direction;
+    private final String lastValue;
+    private final Long lastId;
+
+    private Keyset(String property, Sort.Direction direction, String lastValue, Long lastId) {
+        Assert.notNull(property, "property is null");
+        Assert.notNull(direction, "direction is null");
+        this.property = property;
+        this.direction = direction;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+    }
+
+    /**
+     * Creates the position of the first page, ordered by the first order of the given sort, or by id if it is unsorted.
+     * @param sort the requested sort.
+     * @return the position before the first row.
+     */
+    public static Keyset first(Sort sort) {
+        Sort.Order order = sort == null ? null : sort.stream().findFirst().orElse(null);
+        if (order == null) {
+            return new Keyset(ID_PROPERTY, Sort.Direction.ASC, null, null);
+        }
+        if (!PROPERTY_PATTERN.matcher(order.getProperty()).matches()) {
+            throw new IllegalArgumentException("Invalid sort property: " + order.getProperty());
+        }
+        return new Keyset(order.getProperty(), order.getDirection(), null, null);
+    }
+
+    /**
+     * Creates the position right after the given row.
+     * @param sortValue the value of the sort property of the last returned row, ignored when sorting by id.
+     * @param id the id of the last returned row.
+     * @return the position of the following page.
+     */
+    public Keyset after(Object sortValue, Long id) {
+        Assert.notNull(id, "id is null");
+        if (sortValue == null && !isById()) {
+            throw new IllegalArgumentException("Keyset pagination requires a non-null value for " + property);
+        }
+        if (isById()) {
+            return new Keyset(property, direction, null, id);
+        }
+        String value = sortValue instanceof Enum ? ((Enum<?>) sortValue).name() : sortValue.toString();
+        return new Keyset(property, direction, value, id);
+    }
+
+    /**
+     * Serializes the position into an opaque, URL-safe token.
+     * @return the cursor token.
+     */
+    public String encode() {
+        String raw = direction.name() + SEPARATOR + property + SEPARATOR + (lastId == null ? "" : lastId) + SEPARATOR;
+        if (lastValue != null) {
+            raw += lastValue;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a token created by {@link #encode()}.
+     * @param token the cursor token.
+     * @return the decoded position.
+     * @throws IllegalArgumentException if the token is malformed.
+     */
+    public static Keyset decode(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        String[] parts = raw.split(Pattern.quote(SEPARATOR), 4);
+        if (parts.length != 4 || !PROPERTY_PATTERN.matcher(parts[1]).matches()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        Sort.Direction direction = Sort.Direction.fromString(parts[0]);
+        Long lastId;
+        try {
+            lastId = parts[2].isEmpty() ? null : Long.valueOf(parts[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        boolean byId = ID_PROPERTY.equals(parts[1]);
+        if (lastId != null && !byId && parts[3].isEmpty()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new Keyset(parts[1], direction, lastId == null || byId ? null : parts[3], lastId);
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    public boolean isById() {
+        return ID_PROPERTY.equals(property);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Keyset)) {
+            return false;
+        }
+        Keyset keyset = (Keyset) o;
+        return (
+            property.equals(keyset.property) &&
+            direction == keyset.direction &&
+            Objects.equals(lastValue, keyset.lastValue) &&
+            Objects.equals(lastId, keyset.lastId)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(property, direction, lastValue, lastId);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "Keyset{" +
+            "property='" + property + "'" +
+            ", direction=" + direction +
+            ", lastValue='" + lastValue + "'" +
+            ", lastId=" + lastId +
+            "}";
+    }
+}
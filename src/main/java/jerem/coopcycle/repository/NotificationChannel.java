@@ -0,0 +1,68 @@
+package jerem.coopcycle.repository;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Notifications between the instances of the application, with the {@code LISTEN} and {@code NOTIFY} commands of Postgres.
+ * <p>
+ * A notification is sent by the transaction of its writer and only delivered when it commits, to every connection listening
+ * to its channel. The notifications are read by the {@link PostgresNotificationListener}, which is only configured when the
+ * r2dbc-postgresql driver is on the classpath.
+ */
+@Component
+public class NotificationChannel {
+
+    private final DatabaseClient db;
+    private final PostgresNotificationListener listener;
+    private final boolean supported;
+
+    public NotificationChannel(
+        R2dbcEntityTemplate template,
+        R2dbcDialect dialect,
+        ObjectProvider<PostgresNotificationListener> listenerProvider
+    ) {
+        this.db = template.getDatabaseClient();
+        this.listener = listenerProvider.getIfAvailable();
+        this.supported = dialect instanceof PostgresDialect && listener != null;
+    }
+
+    /**
+     * @return whether the database supports the notifications.
+     */
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Sends a notification, delivered when the current transaction commits, or at once without transaction.
+     *
+     * @param channel the name of the channel.
+     * @param payload the payload of the notification, shorter than 8000 bytes.
+     * @return a Mono to signal the notification.
+     */
+    public Mono<Void> notify(String channel, String payload) {
+        return db.sql("SELECT pg_notify(:channel, :payload)").bind("channel", channel).bind("payload", payload).then();
+    }
+
+    /**
+     * Listens to a channel on a dedicated connection of the primary database, until the subscription is cancelled.
+     * <p>
+     * The notifications sent while the connection is lost are not delivered.
+     *
+     * @param channel the name of the channel, a plain identifier.
+     * @return the payloads of the notifications.
+     */
+    public Flux<String> listen(String channel) {
+        if (!supported) {
+            return Flux.error(new IllegalStateException("The database does not support the notifications"));
+        }
+        return listener.listen(channel);
+    }
+}
@@ -0,0 +1,49 @@
+package jerem.coopcycle.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import jerem.coopcycle.domain.OutboxEvent;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+/**
+ * Spring Data R2DBC repository for the OutboxEvent entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface OutboxEventRepository extends ReactiveCrudRepository<OutboxEvent, Long>, OutboxEventRepositoryInternal {
+    /**
+     * Locks the oldest pending events until the end of the transaction. The events locked by another relay are skipped
+     * instead of waited for, so that the relays of several instances drain the outbox together.
+     */
+    @Query("SELECT * FROM outbox_event WHERE processed_date IS NULL ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED")
+    Flux<OutboxEvent> lockPending(Long limit);
+
+    @Modifying
+    @Query("UPDATE outbox_event SET processed_date = :processedDate WHERE id IN (:ids)")
+    Mono<Integer> markProcessed(Collection<Long> ids, Instant processedDate);
+
+    @Modifying
+    @Query("UPDATE outbox_event SET attempts = attempts + 1 WHERE id = :id")
+    Mono<Integer> incrementAttempts(Long id);
+
+    @Query("SELECT COUNT(*) FROM outbox_event WHERE processed_date IS NULL")
+    Mono<Long> countPending();
+
+    @Modifying
+    @Query("DELETE FROM outbox_event WHERE processed_date < :before")
+    Mono<Integer> deleteByProcessedDateBefore(Instant before);
+}
+
+interface OutboxEventRepositoryInternal {
+    /**
+     * Finds the entities with pending events older than the given ones, other than the given ones: these events are locked by
+     * another relay, so the later events of their entities must wait for them.
+     */
+    Flux<Tuple2<String, Long>> findBlockedAggregates(Collection<Long> ids, Long maxId);
+}
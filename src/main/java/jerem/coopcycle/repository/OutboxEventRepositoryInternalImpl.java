@@ -0,0 +1,33 @@
+package jerem.coopcycle.repository;
+
+import java.util.Collection;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Spring Data R2DBC custom repository implementation for the OutboxEvent entity.
+ */
+class OutboxEventRepositoryInternalImpl implements OutboxEventRepositoryInternal {
+
+    private final DatabaseClient db;
+
+    public OutboxEventRepositoryInternalImpl(R2dbcEntityTemplate template) {
+        this.db = template.getDatabaseClient();
+    }
+
+    @Override
+    public Flux<Tuple2<String, Long>> findBlockedAggregates(Collection<Long> ids, Long maxId) {
+        return db
+            .sql(
+                "SELECT DISTINCT aggregate_type, aggregate_id FROM outbox_event " +
+                "WHERE processed_date IS NULL AND id < :maxId AND id NOT IN (:ids)"
+            )
+            .bind("maxId", maxId)
+            .bind("ids", ids)
+            .map(row -> Tuples.of(row.get("aggregate_type", String.class), row.get("aggregate_id", Long.class)))
+            .all();
+    }
+}
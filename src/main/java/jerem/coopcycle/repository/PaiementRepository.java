@@ -14,7 +14,8 @@ import reactor.core.publisher.Mono;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface PaiementRepository extends ReactiveCrudRepository<Paiement, Long>, PaiementRepositoryInternal {
+public interface PaiementRepository
+    extends ReactiveCrudRepository<Paiement, Long>, PaiementRepositoryInternal, UpdateByIdRepository<Paiement> {
     Flux<Paiement> findAllBy(Pageable pageable);
 
     @Override
@@ -35,6 +36,8 @@ interface PaiementRepositoryInternal {
 
     Flux<Paiement> findAllBy(Pageable pageable);
 
+    Flux<Paiement> findAllBy(Pageable pageable, Keyset keyset);
+
     Flux<Paiement> findAll();
 
     Mono<Paiement> findById(Long id);
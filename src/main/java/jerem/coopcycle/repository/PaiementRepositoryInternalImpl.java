@@ -25,11 +25,13 @@ import org.springframework.data.relational.core.sql.Comparison;
 import org.springframework.data.relational.core.sql.Condition;
 import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.SQL;
 import org.springframework.data.relational.core.sql.Select;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoin;
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.repository.support.MappingRelationalEntityInformation;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
 import org.springframework.r2dbc.core.RowsFetchSpec;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -68,15 +70,23 @@ class PaiementRepositoryInternalImpl extends SimpleR2dbcRepository<Paiement, Lon
 
     @Override
     public Flux<Paiement> findAllBy(Pageable pageable) {
-        return createQuery(pageable, null).all();
+        return findAllBy(pageable, null);
     }
 
-    RowsFetchSpec<Paiement> createQuery(Pageable pageable, Condition whereClause) {
-        List<Expression> columns = PaiementSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
-        SelectFromAndJoin selectFrom = Select.builder().select(columns).from(entityTable);
+    @Override
+    public Flux<Paiement> findAllBy(Pageable pageable, Keyset keyset) {
+        return createQuery("findAllBy", pageable, keyset, null).map(this::process).all();
+    }
+
+    GenericExecuteSpec createQuery(String queryName, Pageable pageable, Keyset keyset, Condition whereClause) {
         // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
-        String select = entityManager.createSelect(selectFrom, Paiement.class, pageable, whereClause);
-        return db.sql(select).map(this::process);
+        String select = entityManager.createSelect(Paiement.class, queryName, pageable, keyset, this::createSelectFrom, whereClause);
+        return entityManager.bindPage(db.sql(select), Paiement.class, pageable, keyset);
+    }
+
+    private SelectFromAndJoin createSelectFrom() {
+        List<Expression> columns = PaiementSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
+        return Select.builder().select(columns).from(entityTable);
     }
 
     @Override
@@ -86,8 +96,8 @@ class PaiementRepositoryInternalImpl extends SimpleR2dbcRepository<Paiement, Lon
 
     @Override
     public Mono<Paiement> findById(Long id) {
-        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), Conditions.just(id.toString()));
-        return createQuery(null, whereClause).one();
+        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), SQL.bindMarker(":id"));
+        return createQuery("findById", null, null, whereClause).bind("id", id).map(this::process).one();
     }
 
     private Paiement process(Row row, RowMetadata metadata) {
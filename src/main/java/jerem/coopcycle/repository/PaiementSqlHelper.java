@@ -11,6 +11,7 @@ public class PaiementSqlHelper {
     public static List<Expression> getColumns(Table table, String columnPrefix) {
         List<Expression> columns = new ArrayList<>();
         columns.add(Column.aliased("id", table, columnPrefix + "_id"));
+        columns.add(Column.aliased("version", table, columnPrefix + "_version"));
         columns.add(Column.aliased("amount", table, columnPrefix + "_amount"));
         columns.add(Column.aliased("payment_type", table, columnPrefix + "_payment_type"));
 
@@ -1,5 +1,6 @@
 package jerem.coopcycle.repository;
 
+import java.util.Collection;
 import jerem.coopcycle.domain.Panier;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.r2dbc.repository.Query;
@@ -14,7 +15,7 @@ import reactor.core.publisher.Mono;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface PanierRepository extends ReactiveCrudRepository<Panier, Long>, PanierRepositoryInternal {
+public interface PanierRepository extends ReactiveCrudRepository<Panier, Long>, PanierRepositoryInternal, UpdateByIdRepository<Panier> {
     Flux<Panier> findAllBy(Pageable pageable);
 
     @Query("SELECT * FROM panier entity WHERE entity.restaurant_id = :id")
@@ -41,9 +42,13 @@ interface PanierRepositoryInternal {
 
     Flux<Panier> findAllBy(Pageable pageable);
 
+    Flux<Panier> findAllBy(Pageable pageable, Keyset keyset);
+
     Flux<Panier> findAll();
 
     Mono<Panier> findById(Long id);
+
+    Flux<Panier> findAllByRestaurantIdIn(Collection<Long> restaurantIds);
     // this is not supported at the moment because of https://github.com/jhipster/generator-jhipster/issues/18269
     // Flux<Panier> findAllBy(Pageable pageable, Criteria criteria);
 
@@ -5,6 +5,7 @@ import static org.springframework.data.relational.core.query.Criteria.where;
 import io.r2dbc.spi.Row;
 import io.r2dbc.spi.RowMetadata;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -25,11 +26,13 @@ import org.springframework.data.relational.core.sql.Comparison;
 import org.springframework.data.relational.core.sql.Condition;
 import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.SQL;
 import org.springframework.data.relational.core.sql.Select;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoinCondition;
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.repository.support.MappingRelationalEntityInformation;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
 import org.springframework.r2dbc.core.RowsFetchSpec;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -72,22 +75,30 @@ class PanierRepositoryInternalImpl extends SimpleR2dbcRepository<Panier, Long> i
 
     @Override
     public Flux<Panier> findAllBy(Pageable pageable) {
-        return createQuery(pageable, null).all();
+        return findAllBy(pageable, null);
     }
 
-    RowsFetchSpec<Panier> createQuery(Pageable pageable, Condition whereClause) {
+    @Override
+    public Flux<Panier> findAllBy(Pageable pageable, Keyset keyset) {
+        return createQuery("findAllBy", pageable, keyset, null).map(this::process).all();
+    }
+
+    GenericExecuteSpec createQuery(String queryName, Pageable pageable, Keyset keyset, Condition whereClause) {
+        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
+        String select = entityManager.createSelect(Panier.class, queryName, pageable, keyset, this::createSelectFrom, whereClause);
+        return entityManager.bindPage(db.sql(select), Panier.class, pageable, keyset);
+    }
+
+    private SelectFromAndJoinCondition createSelectFrom() {
         List<Expression> columns = PanierSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
         columns.addAll(RestaurantSqlHelper.getColumns(restaurantTable, "restaurant"));
-        SelectFromAndJoinCondition selectFrom = Select
+        return Select
             .builder()
             .select(columns)
             .from(entityTable)
             .leftOuterJoin(restaurantTable)
             .on(Column.create("restaurant_id", entityTable))
             .equals(Column.create("id", restaurantTable));
-        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
-        String select = entityManager.createSelect(selectFrom, Panier.class, pageable, whereClause);
-        return db.sql(select).map(this::process);
     }
 
     @Override
@@ -97,8 +108,17 @@ class PanierRepositoryInternalImpl extends SimpleR2dbcRepository<Panier, Long> i
 
     @Override
     public Mono<Panier> findById(Long id) {
-        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), Conditions.just(id.toString()));
-        return createQuery(null, whereClause).one();
+        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), SQL.bindMarker(":id"));
+        return createQuery("findById", null, null, whereClause).bind("id", id).map(this::process).one();
+    }
+
+    @Override
+    public Flux<Panier> findAllByRestaurantIdIn(Collection<Long> restaurantIds) {
+        Condition whereClause = Conditions.in(entityTable.column("restaurant_id"), SQL.bindMarker(":restaurantIds"));
+        return createQuery("findAllByRestaurantIdIn", null, null, whereClause)
+            .bind("restaurantIds", restaurantIds)
+            .map(this::process)
+            .all();
     }
 
     private Panier process(Row row, RowMetadata metadata) {
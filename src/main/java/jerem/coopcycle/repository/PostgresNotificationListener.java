@@ -0,0 +1,60 @@
+package jerem.coopcycle.repository;
+
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Listens to the notifications of Postgres with the API of the r2dbc-postgresql driver.
+ * <p>
+ * Each listener has its own connection, opened by a connection factory without pool: a listening connection is held as
+ * long as its subscription, so it would take a slot of the pool forever, and be closed by the maximum lifetime of the pool.
+ */
+public class PostgresNotificationListener {
+
+    private final ConnectionFactory connectionFactory;
+
+    /**
+     * @param connectionFactory the connection factory of the primary database, without pool.
+     */
+    public PostgresNotificationListener(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * Listens to a channel on a new connection, closed when the subscription is cancelled.
+     *
+     * @param channel the name of the channel, a plain identifier.
+     * @return the payloads of the notifications.
+     */
+    public Flux<String> listen(String channel) {
+        return Flux.usingWhen(
+            connectionFactory.create(),
+            connection -> {
+                if (!(connection instanceof PostgresqlConnection)) {
+                    return Flux.error(new IllegalStateException("The connection " + connection + " does not support the notifications"));
+                }
+                PostgresqlConnection postgresqlConnection = (PostgresqlConnection) connection;
+                return postgresqlConnection
+                    .createStatement("LISTEN " + channel)
+                    .execute()
+                    .flatMap(Result::getRowsUpdated)
+                    .thenMany(postgresqlConnection.getNotifications())
+                    // the notifications without payload are not sent by the application
+                    .filter(notification -> notification.getParameter() != null)
+                    .map(Notification::getParameter);
+            },
+            PostgresNotificationListener::close,
+            (connection, e) -> close(connection),
+            PostgresNotificationListener::close
+        );
+    }
+
+    private static Mono<Void> close(Connection connection) {
+        return Mono.from(connection.close());
+    }
+}
@@ -0,0 +1,65 @@
+package jerem.coopcycle.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import reactor.core.publisher.Flux;
+
+/**
+ * Batch loader for the {@code @Transient} one-to-many associations of the entities.
+ * <p>
+ * Instead of one query per parent entity, the ids of a whole page of parents are collected and their children are read with a single
+ * {@code WHERE parent_id IN (...)} query, then added back to their parent.
+ */
+public final class RelationshipLoader {
+
+    private RelationshipLoader() {}
+
+    /**
+     * Loads a one-to-many association of the given parents with a single query.
+     *
+     * @param parents the parent entities, typically a page.
+     * @param parentId gets the id of a parent.
+     * @param findChildren finds the children of all the given parent ids, typically a {@code findAllBy...IdIn} repository method.
+     * @param childParentId gets the id of the parent of a child.
+     * @param addChild adds a child to its parent.
+     * @param <P> the type of the parent entities.
+     * @param <C> the type of the child entities.
+     * @return the parents, in the same order, once their children are added.
+     */
+    public static <P, C> Flux<P> loadOneToMany(
+        Flux<P> parents,
+        Function<P, Long> parentId,
+        Function<Collection<Long>, Flux<C>> findChildren,
+        Function<C, Long> childParentId,
+        BiConsumer<P, C> addChild
+    ) {
+        return parents
+            .collectList()
+            .flatMapMany(page -> {
+                Map<Long, List<P>> parentsById = new LinkedHashMap<>();
+                for (P parent : page) {
+                    Long id = parentId.apply(parent);
+                    if (id != null) {
+                        parentsById.computeIfAbsent(id, key -> new ArrayList<>(1)).add(parent);
+                    }
+                }
+                if (parentsById.isEmpty()) {
+                    return Flux.fromIterable(page);
+                }
+                return findChildren
+                    .apply(new ArrayList<>(parentsById.keySet()))
+                    .doOnNext(child ->
+                        parentsById
+                            .getOrDefault(childParentId.apply(child), Collections.emptyList())
+                            .forEach(parent -> addChild.accept(parent, child))
+                    )
+                    .thenMany(Flux.fromIterable(page));
+            });
+    }
+}
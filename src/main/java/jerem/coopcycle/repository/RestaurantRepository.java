@@ -1,7 +1,10 @@
 package jerem.coopcycle.repository;
 
+import java.util.Collection;
+import java.util.Set;
 import jerem.coopcycle.domain.Restaurant;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
@@ -14,7 +17,8 @@ import reactor.core.publisher.Mono;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface RestaurantRepository extends ReactiveCrudRepository<Restaurant, Long>, RestaurantRepositoryInternal {
+public interface RestaurantRepository
+    extends ReactiveCrudRepository<Restaurant, Long>, RestaurantRepositoryInternal, UpdateByIdRepository<Restaurant> {
     Flux<Restaurant> findAllBy(Pageable pageable);
 
     @Query("SELECT * FROM restaurant entity WHERE entity.restaurateur_id = :id")
@@ -23,6 +27,15 @@ public interface RestaurantRepository extends ReactiveCrudRepository<Restaurant,
     @Query("SELECT * FROM restaurant entity WHERE entity.restaurateur_id IS NULL")
     Flux<Restaurant> findAllWhereRestaurateurIsNull();
 
+    /**
+     * Clears the coordinates of a restaurant, when its new address is not geocoded.
+     *
+     * @return the number of updated rows.
+     */
+    @Modifying
+    @Query("UPDATE restaurant SET latitude = NULL, longitude = NULL WHERE id = :id")
+    Mono<Integer> clearLocation(Long id);
+
     @Override
     <S extends Restaurant> Mono<S> save(S entity);
 
@@ -41,9 +54,23 @@ interface RestaurantRepositoryInternal {
 
     Flux<Restaurant> findAllBy(Pageable pageable);
 
+    Flux<Restaurant> findAllBy(Pageable pageable, Keyset keyset);
+
+    Flux<Restaurant> findAllBy(Pageable pageable, Keyset keyset, Set<String> fields);
+
     Flux<Restaurant> findAll();
 
     Mono<Restaurant> findById(Long id);
+
+    Flux<Restaurant> findAllByRestaurateurIdIn(Collection<Long> restaurateurIds);
+
+    Flux<Restaurant> findAllLocations();
+
+    Flux<Restaurant> findAllBySearch(String query, Pageable pageable);
+
+    Mono<Long> countAllBySearch(String query);
+
+    boolean isSearchSupported();
     // this is not supported at the moment because of https://github.com/jhipster/generator-jhipster/issues/18269
     // Flux<Restaurant> findAllBy(Pageable pageable, Criteria criteria);
 
@@ -5,12 +5,16 @@ import static org.springframework.data.relational.core.query.Criteria.where;
 import io.r2dbc.spi.Row;
 import io.r2dbc.spi.RowMetadata;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.BiFunction;
 import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.domain.Restaurateur;
 import jerem.coopcycle.repository.rowmapper.RestaurantRowMapper;
 import jerem.coopcycle.repository.rowmapper.RestaurateurRowMapper;
 import org.apache.commons.lang3.StringUtils;
@@ -18,6 +22,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.r2dbc.convert.R2dbcConverter;
 import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
 import org.springframework.data.r2dbc.repository.support.SimpleR2dbcRepository;
 import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.data.relational.core.sql.Column;
@@ -25,11 +31,14 @@ import org.springframework.data.relational.core.sql.Comparison;
 import org.springframework.data.relational.core.sql.Condition;
 import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.SQL;
 import org.springframework.data.relational.core.sql.Select;
+import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoin;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoinCondition;
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.repository.support.MappingRelationalEntityInformation;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
 import org.springframework.r2dbc.core.RowsFetchSpec;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -46,6 +55,7 @@ class RestaurantRepositoryInternalImpl extends SimpleR2dbcRepository<Restaurant,
 
     private final RestaurateurRowMapper restaurateurMapper;
     private final RestaurantRowMapper restaurantMapper;
+    private final boolean searchSupported;
 
     private static final Table entityTable = Table.aliased("restaurant", EntityManager.ENTITY_ALIAS);
     private static final Table restaurateurTable = Table.aliased("restaurateur", "restaurateur");
@@ -56,7 +66,8 @@ class RestaurantRepositoryInternalImpl extends SimpleR2dbcRepository<Restaurant,
         RestaurateurRowMapper restaurateurMapper,
         RestaurantRowMapper restaurantMapper,
         R2dbcEntityOperations entityOperations,
-        R2dbcConverter converter
+        R2dbcConverter converter,
+        R2dbcDialect dialect
     ) {
         super(
             new MappingRelationalEntityInformation(converter.getMappingContext().getRequiredPersistentEntity(Restaurant.class)),
@@ -68,26 +79,65 @@ class RestaurantRepositoryInternalImpl extends SimpleR2dbcRepository<Restaurant,
         this.entityManager = entityManager;
         this.restaurateurMapper = restaurateurMapper;
         this.restaurantMapper = restaurantMapper;
+        this.searchSupported = dialect instanceof PostgresDialect;
     }
 
     @Override
     public Flux<Restaurant> findAllBy(Pageable pageable) {
-        return createQuery(pageable, null).all();
+        return findAllBy(pageable, null);
     }
 
-    RowsFetchSpec<Restaurant> createQuery(Pageable pageable, Condition whereClause) {
+    @Override
+    public Flux<Restaurant> findAllBy(Pageable pageable, Keyset keyset) {
+        return createQuery("findAllBy", pageable, keyset, null).map(this::process).all();
+    }
+
+    @Override
+    public Flux<Restaurant> findAllBy(Pageable pageable, Keyset keyset, Set<String> fields) {
+        if (fields == null) {
+            return findAllBy(pageable, keyset);
+        }
+        // the keyset pagination reads the sort property of the last row
+        Set<String> properties = new TreeSet<>(fields);
+        if (keyset != null) {
+            properties.add(keyset.getProperty());
+        }
+        String select = entityManager.createSelect(
+            Restaurant.class,
+            "findAllBy" + properties,
+            pageable,
+            keyset,
+            () -> createSelectFrom(properties),
+            null
+        );
+        return entityManager.bindPage(db.sql(select), Restaurant.class, pageable, keyset).map(this::processWithoutJoins).all();
+    }
+
+    GenericExecuteSpec createQuery(String queryName, Pageable pageable, Keyset keyset, Condition whereClause) {
+        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
+        String select = entityManager.createSelect(Restaurant.class, queryName, pageable, keyset, this::createSelectFrom, whereClause);
+        return entityManager.bindPage(db.sql(select), Restaurant.class, pageable, keyset);
+    }
+
+    private SelectFromAndJoinCondition createSelectFrom() {
         List<Expression> columns = RestaurantSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
         columns.addAll(RestaurateurSqlHelper.getColumns(restaurateurTable, "restaurateur"));
-        SelectFromAndJoinCondition selectFrom = Select
+        return Select
             .builder()
             .select(columns)
             .from(entityTable)
             .leftOuterJoin(restaurateurTable)
             .on(Column.create("restaurateur_id", entityTable))
             .equals(Column.create("id", restaurateurTable));
-        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
-        String select = entityManager.createSelect(selectFrom, Restaurant.class, pageable, whereClause);
-        return db.sql(select).map(this::process);
+    }
+
+    /**
+     * Selects the given properties only, without joins: the DTOs only expose the id of the associated entities, which is read
+     * from the foreign key.
+     */
+    private SelectFromAndJoin createSelectFrom(Set<String> fields) {
+        List<Expression> columns = RestaurantSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS, fields);
+        return Select.builder().select(columns).from(entityTable);
     }
 
     @Override
@@ -97,8 +147,80 @@ class RestaurantRepositoryInternalImpl extends SimpleR2dbcRepository<Restaurant,
 
     @Override
     public Mono<Restaurant> findById(Long id) {
-        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), Conditions.just(id.toString()));
-        return createQuery(null, whereClause).one();
+        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), SQL.bindMarker(":id"));
+        return createQuery("findById", null, null, whereClause).bind("id", id).map(this::process).one();
+    }
+
+    @Override
+    public Flux<Restaurant> findAllByRestaurateurIdIn(Collection<Long> restaurateurIds) {
+        Condition whereClause = Conditions.in(entityTable.column("restaurateur_id"), SQL.bindMarker(":restaurateurIds"));
+        return createQuery("findAllByRestaurateurIdIn", null, null, whereClause)
+            .bind("restaurateurIds", restaurateurIds)
+            .map(this::process)
+            .all();
+    }
+
+    /**
+     * Reads the id, the name, the address and the coordinates of every restaurant, without joins. The restaurants whose
+     * address is not geocoded are read too: the whole table is read anyway, and filtering it would not use an index.
+     */
+    @Override
+    public Flux<Restaurant> findAllLocations() {
+        return db
+            .sql(
+                "SELECT e.id AS e_id, e.name AS e_name, e.address AS e_address, e.latitude AS e_latitude, e.longitude AS e_longitude " +
+                "FROM restaurant e"
+            )
+            .map((row, metadata) -> restaurantMapper.apply(row, "e"))
+            .all();
+    }
+
+    /**
+     * Searches the names and the menus of the restaurants with the full-text search of PostgreSQL, on the {@code search_vector}
+     * column and its GIN index. The restaurants are ranked by relevance, the names weighing more than the menus, then by id.
+     * The sort of the pageable is ignored.
+     *
+     * @param query the words to search, in the syntax of {@code websearch_to_tsquery}.
+     */
+    @Override
+    public Flux<Restaurant> findAllBySearch(String query, Pageable pageable) {
+        checkSearchSupported();
+        return db
+            .sql(
+                "SELECT e.id AS e_id, e.version AS e_version, e.name AS e_name, e.address AS e_address, e.menu AS e_menu, " +
+                "e.restaurateur_id AS e_restaurateur_id, e.latitude AS e_latitude, e.longitude AS e_longitude " +
+                "FROM restaurant e, websearch_to_tsquery('french', :query) q WHERE e.search_vector @@ q " +
+                "ORDER BY ts_rank(e.search_vector, q) DESC, e.id LIMIT :limit OFFSET :offset"
+            )
+            .bind("query", query)
+            .bind("limit", pageable.getPageSize())
+            .bind("offset", pageable.getOffset())
+            .map(this::processWithoutJoins)
+            .all();
+    }
+
+    @Override
+    public Mono<Long> countAllBySearch(String query) {
+        checkSearchSupported();
+        return db
+            .sql("SELECT COUNT(*) AS total FROM restaurant e WHERE e.search_vector @@ websearch_to_tsquery('french', :query)")
+            .bind("query", query)
+            .map(row -> row.get("total", Long.class))
+            .one();
+    }
+
+    /**
+     * @return whether the database has the {@code search_vector} column, which is only created on PostgreSQL.
+     */
+    @Override
+    public boolean isSearchSupported() {
+        return searchSupported;
+    }
+
+    private void checkSearchSupported() {
+        if (!searchSupported) {
+            throw new UnsupportedOperationException("The full-text search of the restaurants is only supported on PostgreSQL");
+        }
     }
 
     private Restaurant process(Row row, RowMetadata metadata) {
@@ -107,6 +229,14 @@ class RestaurantRepositoryInternalImpl extends SimpleR2dbcRepository<Restaurant,
         return entity;
     }
 
+    private Restaurant processWithoutJoins(Row row, RowMetadata metadata) {
+        Restaurant entity = restaurantMapper.apply(row, "e");
+        if (entity.getRestaurateurId() != null) {
+            entity.setRestaurateur(new Restaurateur().id(entity.getRestaurateurId()));
+        }
+        return entity;
+    }
+
     @Override
     public <S extends Restaurant> Mono<S> save(S entity) {
         return super.save(entity);
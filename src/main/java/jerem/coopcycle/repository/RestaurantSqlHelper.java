@@ -2,6 +2,7 @@ package jerem.coopcycle.repository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import org.springframework.data.relational.core.sql.Column;
 import org.springframework.data.relational.core.sql.Expression;
 import org.springframework.data.relational.core.sql.Table;
@@ -11,11 +12,37 @@ public class RestaurantSqlHelper {
     public static List<Expression> getColumns(Table table, String columnPrefix) {
         List<Expression> columns = new ArrayList<>();
         columns.add(Column.aliased("id", table, columnPrefix + "_id"));
+        columns.add(Column.aliased("version", table, columnPrefix + "_version"));
         columns.add(Column.aliased("name", table, columnPrefix + "_name"));
         columns.add(Column.aliased("address", table, columnPrefix + "_address"));
+        columns.add(Column.aliased("latitude", table, columnPrefix + "_latitude"));
+        columns.add(Column.aliased("longitude", table, columnPrefix + "_longitude"));
         columns.add(Column.aliased("menu", table, columnPrefix + "_menu"));
 
         columns.add(Column.aliased("restaurateur_id", table, columnPrefix + "_restaurateur_id"));
         return columns;
     }
+
+    /**
+     * Gets the columns of the given properties only, the id is always selected.
+     * @param fields the names of the properties to select, {@code restaurateur} selecting its foreign key.
+     */
+    public static List<Expression> getColumns(Table table, String columnPrefix, Set<String> fields) {
+        List<Expression> columns = new ArrayList<>();
+        columns.add(Column.aliased("id", table, columnPrefix + "_id"));
+        if (fields.contains("name")) {
+            columns.add(Column.aliased("name", table, columnPrefix + "_name"));
+        }
+        if (fields.contains("address")) {
+            columns.add(Column.aliased("address", table, columnPrefix + "_address"));
+        }
+        if (fields.contains("menu")) {
+            columns.add(Column.aliased("menu", table, columnPrefix + "_menu"));
+        }
+
+        if (fields.contains("restaurateur")) {
+            columns.add(Column.aliased("restaurateur_id", table, columnPrefix + "_restaurateur_id"));
+        }
+        return columns;
+    }
 }
@@ -0,0 +1,52 @@
+package jerem.coopcycle.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import jerem.coopcycle.domain.RestaurantStats;
+import jerem.coopcycle.domain.enumeration.StatsGranularity;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+/**
+ * Spring Data R2DBC repository for the RestaurantStats entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface RestaurantStatsRepository extends ReactiveCrudRepository<RestaurantStats, Long>, RestaurantStatsRepositoryInternal {
+    @Query(
+        "SELECT * FROM restaurant_stats entity WHERE entity.granularity = :granularity " +
+        "AND entity.bucket >= :from AND entity.bucket < :to AND entity.commande_count > 0 ORDER BY entity.bucket, entity.restaurant_id"
+    )
+    Flux<RestaurantStats> findAllByGranularityAndBucketBetween(StatsGranularity granularity, Instant from, Instant to);
+
+    @Query(
+        "SELECT * FROM restaurant_stats entity WHERE entity.restaurant_id = :restaurantId AND entity.granularity = :granularity " +
+        "AND entity.bucket >= :from AND entity.bucket < :to AND entity.commande_count > 0 ORDER BY entity.bucket"
+    )
+    Flux<RestaurantStats> findAllByRestaurantIdAndGranularityAndBucketBetween(
+        Long restaurantId,
+        StatsGranularity granularity,
+        Instant from,
+        Instant to
+    );
+}
+
+interface RestaurantStatsRepositoryInternal {
+    Flux<Tuple2<Long, RestaurantStats>> findContributionsByCommandeIdIn(Collection<Long> commandeIds);
+
+    Flux<RestaurantStats> findContributionsByPaiementId(Long paiementId);
+
+    Flux<Long> findAllRestaurantIds();
+
+    Mono<Void> lockRestaurants(Collection<Long> restaurantIds);
+
+    Mono<Integer> addToBucket(RestaurantStats delta);
+
+    Mono<Integer> rebuild(Long restaurantId);
+
+    Mono<Integer> deleteOrphans();
+}
@@ -0,0 +1,172 @@
+package jerem.coopcycle.repository;
+
+import io.r2dbc.spi.Row;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import jerem.coopcycle.domain.RestaurantStats;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.PaymentType;
+import jerem.coopcycle.domain.enumeration.StatsGranularity;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Spring Data R2DBC custom repository implementation for the RestaurantStats entity.
+ * <p>
+ * The writes of the commandes add their deltas to the buckets with a single upsert per bucket: {@code INSERT ... ON CONFLICT DO
+ * UPDATE} on PostgreSQL, backed by a unique index, and {@code MERGE} on the other databases. The rebuilds compute the
+ * statistics from the {@code commande_all}, {@code panier_all} and {@code paiement_all} views, so that the archival does not
+ * change them. The hours are read and bound as the {@link LocalDateTime} stored by the database, and truncated by the
+ * database when rebuilding, so that both ways compute the same buckets.
+ */
+class RestaurantStatsRepositoryInternalImpl implements RestaurantStatsRepositoryInternal {
+
+    private static final String SELECT_CONTRIBUTIONS =
+        "SELECT c.id, p.restaurant_id, c.date_time, c.status, pa.payment_type, pa.amount " +
+        "FROM commande c JOIN panier p ON p.id = c.panier_id LEFT JOIN paiement pa ON pa.id = c.paiement_id " +
+        "WHERE p.restaurant_id IS NOT NULL AND ";
+
+    private static final String UPSERT_BUCKET =
+        "INSERT INTO restaurant_stats (restaurant_id, granularity, bucket, status, payment_type, commande_count, revenue) " +
+        "VALUES (:restaurantId, :granularity, :bucket, :status, :paymentType, :count, :revenue) " +
+        "ON CONFLICT (restaurant_id, granularity, bucket, status, (COALESCE(payment_type, ''))) DO UPDATE SET " +
+        "commande_count = restaurant_stats.commande_count + EXCLUDED.commande_count, " +
+        "revenue = restaurant_stats.revenue + EXCLUDED.revenue";
+
+    private static final String MERGE_BUCKET =
+        "MERGE INTO restaurant_stats s USING (SELECT :restaurantId AS restaurant_id, :granularity AS granularity, " +
+        ":bucket AS bucket, :status AS status, CAST(:paymentType AS VARCHAR(255)) AS payment_type, :count AS commande_count, " +
+        ":revenue AS revenue) d ON s.restaurant_id = d.restaurant_id AND s.granularity = d.granularity " +
+        "AND s.bucket = d.bucket AND s.status = d.status " +
+        "AND (s.payment_type = d.payment_type OR s.payment_type IS NULL AND d.payment_type IS NULL) " +
+        "WHEN MATCHED THEN UPDATE SET commande_count = s.commande_count + d.commande_count, revenue = s.revenue + d.revenue " +
+        "WHEN NOT MATCHED THEN INSERT (restaurant_id, granularity, bucket, status, payment_type, commande_count, revenue) " +
+        "VALUES (d.restaurant_id, d.granularity, d.bucket, d.status, d.payment_type, d.commande_count, d.revenue)";
+
+    private static final String INSERT_HOURS =
+        "INSERT INTO restaurant_stats (restaurant_id, granularity, bucket, status, payment_type, commande_count, revenue) " +
+        "SELECT p.restaurant_id, 'HOUR', date_trunc('hour', c.date_time), c.status, pa.payment_type, " +
+        "COUNT(*), COALESCE(SUM(pa.amount), 0) " +
+        "FROM commande_all c JOIN panier_all p ON p.id = c.panier_id LEFT JOIN paiement_all pa ON pa.id = c.paiement_id " +
+        "WHERE p.restaurant_id = :restaurantId GROUP BY p.restaurant_id, date_trunc('hour', c.date_time), c.status, pa.payment_type";
+
+    private static final String INSERT_DAYS =
+        "INSERT INTO restaurant_stats (restaurant_id, granularity, bucket, status, payment_type, commande_count, revenue) " +
+        "SELECT restaurant_id, 'DAY', date_trunc('day', bucket), status, payment_type, SUM(commande_count), SUM(revenue) " +
+        "FROM restaurant_stats WHERE restaurant_id = :restaurantId AND granularity = 'HOUR' " +
+        "GROUP BY restaurant_id, date_trunc('day', bucket), status, payment_type";
+
+    private final DatabaseClient db;
+
+    private final String upsertBucket;
+
+    public RestaurantStatsRepositoryInternalImpl(R2dbcEntityTemplate template, R2dbcDialect dialect) {
+        this.db = template.getDatabaseClient();
+        this.upsertBucket = dialect instanceof PostgresDialect ? UPSERT_BUCKET : MERGE_BUCKET;
+    }
+
+    /**
+     * Finds the contributions of the commandes to the statistics of their hour: one commande, with the amount of its paiement.
+     *
+     * @return the id of each commande with a restaurant, with its contribution.
+     */
+    @Override
+    public Flux<Tuple2<Long, RestaurantStats>> findContributionsByCommandeIdIn(Collection<Long> commandeIds) {
+        return db
+            .sql(SELECT_CONTRIBUTIONS + "c.id IN (:commandeIds)")
+            .bind("commandeIds", commandeIds)
+            .map(row -> Tuples.of(row.get("id", Long.class), toContribution(row)))
+            .all();
+    }
+
+    @Override
+    public Flux<RestaurantStats> findContributionsByPaiementId(Long paiementId) {
+        return db
+            .sql(SELECT_CONTRIBUTIONS + "c.paiement_id = :paiementId")
+            .bind("paiementId", paiementId)
+            .map(RestaurantStatsRepositoryInternalImpl::toContribution)
+            .all();
+    }
+
+    private static RestaurantStats toContribution(Row row) {
+        String paymentType = row.get("payment_type", String.class);
+        Float amount = row.get("amount", Float.class);
+        return new RestaurantStats()
+            .restaurantId(row.get("restaurant_id", Long.class))
+            .granularity(StatsGranularity.HOUR)
+            .bucket(row.get("date_time", LocalDateTime.class).truncatedTo(ChronoUnit.HOURS).toInstant(ZoneOffset.UTC))
+            .status(CommandeStatus.valueOf(row.get("status", String.class)))
+            .paymentType(paymentType != null ? PaymentType.valueOf(paymentType) : null)
+            .commandeCount(1L)
+            .revenue(amount != null ? amount.doubleValue() : 0.0);
+    }
+
+    @Override
+    public Flux<Long> findAllRestaurantIds() {
+        return db.sql("SELECT id FROM restaurant ORDER BY id").map(row -> row.get("id", Long.class)).all();
+    }
+
+    /**
+     * Locks the restaurants until the end of the transaction, so that the statistics of a restaurant are not rebuilt by two
+     * transactions at once. The restaurants are locked in the order of their ids, to avoid deadlocks.
+     */
+    @Override
+    public Mono<Void> lockRestaurants(Collection<Long> restaurantIds) {
+        return db
+            .sql("SELECT id FROM restaurant WHERE id IN (:restaurantIds) ORDER BY id FOR UPDATE")
+            .bind("restaurantIds", restaurantIds)
+            .then();
+    }
+
+    /**
+     * Adds the counts of a delta to its bucket, creating the bucket if needed. The buckets left without commandes are kept
+     * until the next rebuild, and filtered out by the reads.
+     *
+     * @return the number of written rows.
+     */
+    @Override
+    public Mono<Integer> addToBucket(RestaurantStats delta) {
+        return bindBucket(db.sql(upsertBucket), delta)
+            .bind("count", delta.getCommandeCount())
+            .bind("revenue", delta.getRevenue())
+            .fetch()
+            .rowsUpdated();
+    }
+
+    private static GenericExecuteSpec bindBucket(GenericExecuteSpec spec, RestaurantStats delta) {
+        spec =
+            spec
+                .bind("restaurantId", delta.getRestaurantId())
+                .bind("granularity", delta.getGranularity().name())
+                .bind("bucket", LocalDateTime.ofInstant(delta.getBucket(), ZoneOffset.UTC))
+                .bind("status", delta.getStatus().name());
+        return delta.getPaymentType() != null
+            ? spec.bind("paymentType", delta.getPaymentType().name())
+            : spec.bindNull("paymentType", String.class);
+    }
+
+    @Override
+    public Mono<Integer> rebuild(Long restaurantId) {
+        return db
+            .sql("DELETE FROM restaurant_stats WHERE restaurant_id = :restaurantId")
+            .bind("restaurantId", restaurantId)
+            .fetch()
+            .rowsUpdated()
+            .then(db.sql(INSERT_HOURS).bind("restaurantId", restaurantId).fetch().rowsUpdated())
+            .flatMap(hours -> db.sql(INSERT_DAYS).bind("restaurantId", restaurantId).fetch().rowsUpdated().map(days -> hours + days));
+    }
+
+    @Override
+    public Mono<Integer> deleteOrphans() {
+        return db.sql("DELETE FROM restaurant_stats WHERE restaurant_id NOT IN (SELECT id FROM restaurant)").fetch().rowsUpdated();
+    }
+}
@@ -1,5 +1,6 @@
 package jerem.coopcycle.repository;
 
+import java.util.Collection;
 import jerem.coopcycle.domain.Restaurateur;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.r2dbc.repository.Query;
@@ -14,7 +15,8 @@ import reactor.core.publisher.Mono;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface RestaurateurRepository extends ReactiveCrudRepository<Restaurateur, Long>, RestaurateurRepositoryInternal {
+public interface RestaurateurRepository
+    extends ReactiveCrudRepository<Restaurateur, Long>, RestaurateurRepositoryInternal, UpdateByIdRepository<Restaurateur> {
     Flux<Restaurateur> findAllBy(Pageable pageable);
 
     @Query("SELECT * FROM restaurateur entity WHERE entity.commande_id = :id")
@@ -47,9 +49,13 @@ interface RestaurateurRepositoryInternal {
 
     Flux<Restaurateur> findAllBy(Pageable pageable);
 
+    Flux<Restaurateur> findAllBy(Pageable pageable, Keyset keyset);
+
     Flux<Restaurateur> findAll();
 
     Mono<Restaurateur> findById(Long id);
+
+    Flux<Restaurateur> findAllBySocietaireIdIn(Collection<Long> societaireIds);
     // this is not supported at the moment because of https://github.com/jhipster/generator-jhipster/issues/18269
     // Flux<Restaurateur> findAllBy(Pageable pageable, Criteria criteria);
 
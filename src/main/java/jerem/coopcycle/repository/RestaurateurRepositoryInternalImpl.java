@@ -5,6 +5,7 @@ import static org.springframework.data.relational.core.query.Criteria.where;
 import io.r2dbc.spi.Row;
 import io.r2dbc.spi.RowMetadata;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -26,11 +27,13 @@ import org.springframework.data.relational.core.sql.Comparison;
 import org.springframework.data.relational.core.sql.Condition;
 import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.SQL;
 import org.springframework.data.relational.core.sql.Select;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoinCondition;
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.repository.support.MappingRelationalEntityInformation;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
 import org.springframework.r2dbc.core.RowsFetchSpec;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -77,14 +80,25 @@ class RestaurateurRepositoryInternalImpl extends SimpleR2dbcRepository<Restaurat
 
     @Override
     public Flux<Restaurateur> findAllBy(Pageable pageable) {
-        return createQuery(pageable, null).all();
+        return findAllBy(pageable, null);
     }
 
-    RowsFetchSpec<Restaurateur> createQuery(Pageable pageable, Condition whereClause) {
+    @Override
+    public Flux<Restaurateur> findAllBy(Pageable pageable, Keyset keyset) {
+        return createQuery("findAllBy", pageable, keyset, null).map(this::process).all();
+    }
+
+    GenericExecuteSpec createQuery(String queryName, Pageable pageable, Keyset keyset, Condition whereClause) {
+        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
+        String select = entityManager.createSelect(Restaurateur.class, queryName, pageable, keyset, this::createSelectFrom, whereClause);
+        return entityManager.bindPage(db.sql(select), Restaurateur.class, pageable, keyset);
+    }
+
+    private SelectFromAndJoinCondition createSelectFrom() {
         List<Expression> columns = RestaurateurSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
         columns.addAll(CommandeSqlHelper.getColumns(commandeTable, "commande"));
         columns.addAll(SocietaireSqlHelper.getColumns(societaireTable, "societaire"));
-        SelectFromAndJoinCondition selectFrom = Select
+        return Select
             .builder()
             .select(columns)
             .from(entityTable)
@@ -94,9 +108,6 @@ class RestaurateurRepositoryInternalImpl extends SimpleR2dbcRepository<Restaurat
             .leftOuterJoin(societaireTable)
             .on(Column.create("societaire_id", entityTable))
             .equals(Column.create("id", societaireTable));
-        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
-        String select = entityManager.createSelect(selectFrom, Restaurateur.class, pageable, whereClause);
-        return db.sql(select).map(this::process);
     }
 
     @Override
@@ -106,8 +117,17 @@ class RestaurateurRepositoryInternalImpl extends SimpleR2dbcRepository<Restaurat
 
     @Override
     public Mono<Restaurateur> findById(Long id) {
-        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), Conditions.just(id.toString()));
-        return createQuery(null, whereClause).one();
+        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), SQL.bindMarker(":id"));
+        return createQuery("findById", null, null, whereClause).bind("id", id).map(this::process).one();
+    }
+
+    @Override
+    public Flux<Restaurateur> findAllBySocietaireIdIn(Collection<Long> societaireIds) {
+        Condition whereClause = Conditions.in(entityTable.column("societaire_id"), SQL.bindMarker(":societaireIds"));
+        return createQuery("findAllBySocietaireIdIn", null, null, whereClause)
+            .bind("societaireIds", societaireIds)
+            .map(this::process)
+            .all();
     }
 
     private Restaurateur process(Row row, RowMetadata metadata) {
@@ -14,7 +14,8 @@ import reactor.core.publisher.Mono;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface SocietaireRepository extends ReactiveCrudRepository<Societaire, Long>, SocietaireRepositoryInternal {
+public interface SocietaireRepository
+    extends ReactiveCrudRepository<Societaire, Long>, SocietaireRepositoryInternal, UpdateByIdRepository<Societaire> {
     Flux<Societaire> findAllBy(Pageable pageable);
 
     @Override
@@ -35,6 +36,8 @@ interface SocietaireRepositoryInternal {
 
     Flux<Societaire> findAllBy(Pageable pageable);
 
+    Flux<Societaire> findAllBy(Pageable pageable, Keyset keyset);
+
     Flux<Societaire> findAll();
 
     Mono<Societaire> findById(Long id);
@@ -0,0 +1,43 @@
+package jerem.coopcycle.repository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Repository fragment updating an entity with a single {@code UPDATE ... WHERE id = :id} statement, without reading it first.
+ * <p>
+ * The number of updated rows tells whether the entity exists, so callers do not need an {@code existsById} round trip.
+ * <p>
+ * The entities are versioned: every update increments the version, and sets the new version into the given entity. When the
+ * given entity has a version, the update only applies to the row at that version ({@code AND version = :version}), so that
+ * concurrent writers are detected without locking the row beforehand.
+ *
+ * @param <T> the type of the entity, with a {@link org.springframework.data.annotation.Version} property.
+ */
+interface UpdateByIdRepository<T> {
+    /**
+     * Writes all the columns of the entity, the null properties included.
+     * @param entity the entity to update, with its id, and the expected version or a null version to update any version.
+     * @return the number of updated rows, 0 if there is no row with the id of the entity.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the row is not at the expected version.
+     */
+    Mono<Integer> updateById(T entity);
+
+    /**
+     * Writes the columns of the non-null properties of the entity only, the other columns keep their value.
+     * @param entity the entity to update, with its id, and the expected version or a null version to update any version.
+     * @return the number of updated rows, 0 if there is no row with the id of the entity.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the row is not at the expected version.
+     */
+    Mono<Integer> updateNonNullById(T entity);
+
+    /**
+     * Writes the columns of the non-null properties of the entity only, as {@link #updateNonNullById(Object)}, and returns the
+     * updated row: on PostgreSQL with {@code RETURNING *}, in the same statement, and on the other databases by reading it
+     * back in the same transaction.
+     * @param entity the entity to update, with its id, and the expected version or a null version to update any version.
+     * @return the updated entity, with its columns only: its relations are not read, only their ids are set. An empty Mono if
+     * there is no row with the id of the entity.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the row is not at the expected version.
+     */
+    Mono<T> updateNonNullByIdReturning(T entity);
+}
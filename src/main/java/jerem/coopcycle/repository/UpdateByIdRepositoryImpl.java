@@ -0,0 +1,288 @@
+package jerem.coopcycle.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Implementation of the {@link UpdateByIdRepository} fragment, shared by the repositories of all the entities.
+ * <p>
+ * The statement is written by hand rather than with the {@link org.springframework.data.relational.core.query.Update} API,
+ * which can only assign bound values and not {@code version = version + 1}. The values are converted as for an insert.
+ * <p>
+ * The update is a single statement. With an expected version, the new version is the expected one plus one; on PostgreSQL,
+ * the same statement also counts the rows with the id, to tell a missing row from a concurrent write. Without expected
+ * version, PostgreSQL returns the new version with {@code RETURNING}, and the other databases read it back, as they do to
+ * tell a missing row from a concurrent write. A partial update returning the entity gets the whole row with
+ * {@code RETURNING *} on PostgreSQL, mapped by the converter of the template, and reads it back elsewhere.
+ *
+ * @param <T> the type of the entity.
+ */
+class UpdateByIdRepositoryImpl<T> implements UpdateByIdRepository<T> {
+
+    private final R2dbcEntityTemplate r2dbcEntityTemplate;
+
+    private final boolean returning;
+
+    public UpdateByIdRepositoryImpl(R2dbcEntityTemplate r2dbcEntityTemplate, R2dbcDialect dialect) {
+        this.r2dbcEntityTemplate = r2dbcEntityTemplate;
+        this.returning = dialect instanceof PostgresDialect;
+    }
+
+    @Override
+    public Mono<Integer> updateById(T entity) {
+        return update(entity, true);
+    }
+
+    @Override
+    public Mono<Integer> updateNonNullById(T entity) {
+        return update(entity, false);
+    }
+
+    @Override
+    public Mono<T> updateNonNullByIdReturning(T entity) {
+        Update update = prepare(entity, false);
+        if (!returning) {
+            return execute(update).filter(updated -> updated > 0).flatMap(updated -> readBack(update));
+        }
+        return update
+            .spec(update.sql + " RETURNING *")
+            .map((row, metadata) -> r2dbcEntityTemplate.getConverter().read(update.type, row, metadata))
+            .one()
+            .doOnNext(updated -> update.accessor.setProperty(update.versionProperty, update.versionOf(updated)))
+            .switchIfEmpty(Mono.defer(() -> update.expectedVersion != null ? missingOrConflict(update) : Mono.empty()));
+    }
+
+    /**
+     * Counts the rows with the id after an update with an expected version which returned no row.
+     *
+     * @return an empty Mono if the row is missing.
+     */
+    private Mono<T> missingOrConflict(Update update) {
+        return count(update.table, update.idColumn, update.id).flatMap(counts -> notUpdated(update, counts)).then(Mono.empty());
+    }
+
+    private Mono<Integer> update(T entity, boolean withNulls) {
+        return execute(prepare(entity, withNulls));
+    }
+
+    private Update prepare(T entity, boolean withNulls) {
+        Assert.notNull(entity, "entity is null");
+        return new Update(entity, withNulls);
+    }
+
+    private Mono<Integer> execute(Update update) {
+        String sql;
+        if (!returning) {
+            sql = update.sql;
+        } else if (update.expectedVersion == null) {
+            sql = update.sql + " RETURNING " + update.versionColumn;
+        } else {
+            // tells a missing row from a row at another version in the same statement
+            sql =
+                "WITH updated AS (" +
+                update.sql +
+                " RETURNING 1) SELECT (SELECT COUNT(*) FROM updated) AS updated, " +
+                "(SELECT COUNT(*) FROM " +
+                update.table +
+                " WHERE " +
+                update.idColumn +
+                " = :id) AS total";
+        }
+        GenericExecuteSpec spec = update.spec(sql);
+
+        if (update.expectedVersion != null) {
+            long newVersion = ((Number) update.expectedVersion).longValue() + 1;
+            Mono<Tuple2<Long, Long>> counts = returning
+                ? spec.map(row -> Tuples.of(row.get("updated", Long.class), row.get("total", Long.class))).one()
+                : spec
+                    .fetch()
+                    .rowsUpdated()
+                    .flatMap(updated -> updated > 0 ? Mono.just(Tuples.of(1L, 1L)) : count(update.table, update.idColumn, update.id));
+            return counts.flatMap(updatedAndTotal -> {
+                if (updatedAndTotal.getT1() > 0) {
+                    update.setVersion(newVersion);
+                    return Mono.just(updatedAndTotal.getT1().intValue());
+                }
+                return notUpdated(update, updatedAndTotal);
+            });
+        }
+        if (returning) {
+            return spec
+                .map(row -> row.get(update.versionColumn, Long.class))
+                .all()
+                .doOnNext(update::setVersion)
+                .count()
+                .map(Long::intValue);
+        }
+        return spec
+            .fetch()
+            .rowsUpdated()
+            .flatMap(updated ->
+                updated > 0
+                    ? readVersion(update.table, update.idColumn, update.versionColumn, update.id)
+                        .doOnNext(update::setVersion)
+                        .thenReturn(updated)
+                    : Mono.just(updated)
+            );
+    }
+
+    /**
+     * Tells a missing row from a row at another version, after an update with an expected version which updated none.
+     *
+     * @return no updated row if the row is missing.
+     */
+    private Mono<Integer> notUpdated(Update update, Tuple2<Long, Long> updatedAndTotal) {
+        return updatedAndTotal.getT2() > 0
+            ? Mono.error(
+                new OptimisticLockingFailureException(
+                    String.format("%s with id %s is not at version %s anymore", update.table, update.id, update.expectedVersion)
+                )
+            )
+            : Mono.just(0);
+    }
+
+    /**
+     * Reads an updated row, on the databases without {@code RETURNING}: the update locked the row until the end of the
+     * transaction.
+     */
+    private Mono<T> readBack(Update update) {
+        return r2dbcEntityTemplate
+            .select(update.type)
+            .matching(Query.query(Criteria.where(update.idProperty.getName()).is(update.id)))
+            .one();
+    }
+
+    /**
+     * Counts the rows with the id, after an update which updated none of them.
+     *
+     * @return no updated row, and the number of rows with the id.
+     */
+    private Mono<Tuple2<Long, Long>> count(String table, String idColumn, Object id) {
+        return r2dbcEntityTemplate
+            .getDatabaseClient()
+            .sql("SELECT COUNT(*) AS total FROM " + table + " WHERE " + idColumn + " = :id")
+            .bind("id", id)
+            .map(row -> Tuples.of(0L, row.get("total", Long.class)))
+            .one();
+    }
+
+    /**
+     * Reads the version written by an update without expected version, on the databases without {@code RETURNING}: the update
+     * locked the row until the end of the transaction.
+     */
+    private Mono<Long> readVersion(String table, String idColumn, String versionColumn, Object id) {
+        return r2dbcEntityTemplate
+            .getDatabaseClient()
+            .sql("SELECT " + versionColumn + " FROM " + table + " WHERE " + idColumn + " = :id")
+            .bind("id", id)
+            .map(row -> row.get(versionColumn, Long.class))
+            .one();
+    }
+
+    /**
+     * An update of an entity: its statement without {@code RETURNING}, and the values to bind.
+     */
+    private final class Update {
+
+        private final Class<T> type;
+
+        private final RelationalPersistentEntity<?> persistentEntity;
+
+        private final PersistentPropertyAccessor<T> accessor;
+
+        private final RelationalPersistentProperty idProperty;
+
+        private final RelationalPersistentProperty versionProperty;
+
+        private final Object id;
+
+        private final Object expectedVersion;
+
+        private final String table;
+
+        private final String idColumn;
+
+        private final String versionColumn;
+
+        private final Map<String, Parameter> values = new LinkedHashMap<>();
+
+        private final String sql;
+
+        @SuppressWarnings("unchecked")
+        private Update(T entity, boolean withNulls) {
+            type = (Class<T>) entity.getClass();
+            persistentEntity = r2dbcEntityTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+            accessor = persistentEntity.getPropertyAccessor(entity);
+            idProperty = persistentEntity.getRequiredIdProperty();
+            versionProperty = persistentEntity.getVersionProperty();
+            Assert.notNull(versionProperty, "entity has no version");
+            id = accessor.getProperty(idProperty);
+            Assert.notNull(id, "id is null");
+            expectedVersion = accessor.getProperty(versionProperty);
+
+            table = persistentEntity.getTableName().getReference();
+            idColumn = idProperty.getColumnName().getReference();
+            versionColumn = versionProperty.getColumnName().getReference();
+            StringJoiner assignments = new StringJoiner(", ");
+            r2dbcEntityTemplate
+                .getDataAccessStrategy()
+                .getOutboundRow(entity)
+                .forEach((column, value) -> {
+                    String name = column.getReference();
+                    if (!name.equals(idColumn) && !name.equals(versionColumn) && (withNulls || !value.isEmpty())) {
+                        String parameter = "value" + values.size();
+                        assignments.add(name + " = :" + parameter);
+                        values.put(parameter, value);
+                    }
+                });
+            // a write without any value still changes the version, so that it honours the expected version too
+            assignments.add(versionColumn + " = " + versionColumn + " + 1");
+
+            String where = " WHERE " + idColumn + " = :id" + (expectedVersion != null ? " AND " + versionColumn + " = :version" : "");
+            sql = "UPDATE " + table + " SET " + assignments + where;
+        }
+
+        private GenericExecuteSpec spec(String statement) {
+            GenericExecuteSpec spec = r2dbcEntityTemplate.getDatabaseClient().sql(statement);
+            for (Map.Entry<String, Parameter> value : values.entrySet()) {
+                Parameter parameter = value.getValue();
+                spec =
+                    parameter.isEmpty()
+                        ? spec.bindNull(value.getKey(), parameter.getType())
+                        : spec.bind(value.getKey(), parameter.getValue());
+            }
+            spec = spec.bind("id", id);
+            if (expectedVersion != null) {
+                spec = spec.bind("version", expectedVersion);
+            }
+            return spec;
+        }
+
+        private void setVersion(Long version) {
+            accessor.setProperty(
+                versionProperty,
+                r2dbcEntityTemplate.getConverter().getConversionService().convert(version, versionProperty.getType())
+            );
+        }
+
+        private Object versionOf(T updated) {
+            return persistentEntity.getPropertyAccessor(updated).getProperty(versionProperty);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package jerem.coopcycle.repository.routing;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ConnectionFactory} sending the read-only transactions to read replicas, and everything else to the primary database.
+ * <p>
+ * The routing is driven by the Reactor context of the subscriber creating the connection:
+ * <ul>
+ *     <li>{@link #READ_ONLY_CONTEXT_KEY} is set by {@link ReplicaRoutingTransactionManager} when it begins a transaction;</li>
+ *     <li>{@link #PIN_PRIMARY_CONTEXT_KEY} pins the reads to the primary, for a client which has to read its own writes.</li>
+ * </ul>
+ * The replicas are used in turn. When a lag query is configured, it is run periodically on every replica, and a replica whose lag
+ * exceeds the tolerance - or which cannot be reached - is skipped until it catches up; the primary is used when no replica is left.
+ */
+public class ReplicaRoutingConnectionFactory extends AbstractRoutingConnectionFactory implements DisposableBean {
+
+    public static final String READ_ONLY_CONTEXT_KEY = ReplicaRoutingConnectionFactory.class.getName() + ".READ_ONLY";
+    public static final String PIN_PRIMARY_CONTEXT_KEY = ReplicaRoutingConnectionFactory.class.getName() + ".PIN_PRIMARY";
+
+    static final String PRIMARY_KEY = "primary";
+    static final String REPLICA_KEY_PREFIX = "replica-";
+
+    private final Logger log = LoggerFactory.getLogger(ReplicaRoutingConnectionFactory.class);
+
+    private final ConnectionFactory primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Duration lagTolerance;
+    private final Duration lagCheckInterval;
+    private final String lagQuery;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private Disposable lagChecks;
+
+    /**
+     * @param primary the connection factory of the primary database.
+     * @param replicas the connection factories of the read replicas.
+     * @param lagTolerance the maximum lag of a replica still used for reads.
+     * @param lagCheckInterval the delay between two lag checks.
+     * @param lagQuery the query returning the lag of a replica in milliseconds, or {@code null} to never check it.
+     */
+    public ReplicaRoutingConnectionFactory(
+        ConnectionFactory primary,
+        List<ConnectionFactory> replicas,
+        Duration lagTolerance,
+        Duration lagCheckInterval,
+        String lagQuery
+    ) {
+        this.primary = primary;
+        this.lagTolerance = lagTolerance;
+        this.lagCheckInterval = lagCheckInterval;
+        this.lagQuery = StringUtils.hasText(lagQuery) ? lagQuery : null;
+        Map<String, ConnectionFactory> targets = new HashMap<>();
+        targets.put(PRIMARY_KEY, primary);
+        for (ConnectionFactory connectionFactory : replicas) {
+            Replica replica = new Replica(REPLICA_KEY_PREFIX + this.replicas.size(), connectionFactory);
+            // without lag query, the replicas are trusted to stay within the tolerance
+            replica.lag = this.lagQuery == null ? Duration.ZERO : null;
+            this.replicas.add(replica);
+            targets.put(replica.key, connectionFactory);
+        }
+        setTargetConnectionFactories(targets);
+        setDefaultTargetConnectionFactory(primary);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (lagQuery != null && !replicas.isEmpty()) {
+            lagChecks = Flux.interval(Duration.ZERO, lagCheckInterval).onBackpressureDrop().concatMap(tick -> checkLags()).subscribe();
+        }
+    }
+
+    /**
+     * Stops the lag checks, and destroys the connection factories which are {@link DisposableBean}s.
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (lagChecks != null) {
+            lagChecks.dispose();
+        }
+        for (ConnectionFactory connectionFactory : getConnectionFactories()) {
+            if (connectionFactory instanceof DisposableBean) {
+                ((DisposableBean) connectionFactory).destroy();
+            }
+        }
+    }
+
+    /**
+     * Gets the connection factories the connections are routed to.
+     * @return the connection factory of the primary, then the ones of the replicas.
+     */
+    public List<ConnectionFactory> getConnectionFactories() {
+        List<ConnectionFactory> connectionFactories = new ArrayList<>();
+        connectionFactories.add(primary);
+        for (Replica replica : replicas) {
+            connectionFactories.add(replica.connectionFactory);
+        }
+        return connectionFactories;
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(context -> {
+            boolean readOnly = context.getOrDefault(READ_ONLY_CONTEXT_KEY, Boolean.FALSE);
+            boolean pinned = context.getOrDefault(PIN_PRIMARY_CONTEXT_KEY, Boolean.FALSE);
+            return Mono.just(readOnly && !pinned ? selectReplica() : PRIMARY_KEY);
+        });
+    }
+
+    private String selectReplica() {
+        int size = replicas.size();
+        int start = size == 0 ? 0 : Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            Duration lag = replica.lag;
+            if (lag != null && lag.compareTo(lagTolerance) <= 0) {
+                return replica.key;
+            }
+        }
+        return PRIMARY_KEY;
+    }
+
+    /**
+     * Runs the lag query on every replica, and records their lag.
+     * @return a {@link Mono} completing once every replica is checked.
+     */
+    public Mono<Void> checkLags() {
+        if (lagQuery == null) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(replicas).flatMap(this::checkLag).then();
+    }
+
+    private Mono<Void> checkLag(Replica replica) {
+        return Mono
+            .usingWhen(
+                Mono.from(replica.connectionFactory.create()),
+                connection ->
+                    Flux
+                        .from(connection.createStatement(lagQuery).execute())
+                        .concatMap(result -> result.map((row, metadata) -> Optional.ofNullable(row.get(0))))
+                        .next(),
+                Connection::close
+            )
+            .timeout(lagCheckInterval)
+            .map(value -> value.map(millis -> Duration.ofMillis(((Number) millis).longValue())).orElse(Duration.ZERO))
+            .doOnNext(lag -> {
+                log.debug("Lag of the read replica {}: {}", replica.key, lag);
+                replica.lag = lag;
+            })
+            .onErrorResume(e -> {
+                log.warn(
+                    "Cannot check the lag of the read replica {}, it is not used until the next check: {}",
+                    replica.key,
+                    e.getMessage()
+                );
+                replica.lag = null;
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    /**
+     * Gets the lag of each replica, as of the last check.
+     * @return the lag of each replica by routing key, {@code null} when it is unknown.
+     */
+    public Map<String, Duration> getReplicaLags() {
+        Map<String, Duration> lags = new HashMap<>();
+        for (Replica replica : replicas) {
+            lags.put(replica.key, replica.lag);
+        }
+        return Collections.unmodifiableMap(lags);
+    }
+
+    private static final class Replica {
+
+        private final String key;
+        private final ConnectionFactory connectionFactory;
+        private volatile Duration lag;
+
+        private Replica(String key, ConnectionFactory connectionFactory) {
+            this.key = key;
+            this.connectionFactory = connectionFactory;
+        }
+    }
+}
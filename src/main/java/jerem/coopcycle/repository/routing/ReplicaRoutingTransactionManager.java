@@ -0,0 +1,31 @@
+package jerem.coopcycle.repository.routing;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link R2dbcTransactionManager} telling a {@link ReplicaRoutingConnectionFactory} whether the transaction it begins is read-only.
+ * <p>
+ * The read-only flag of the transaction synchronization is only set once the connection is bound, so it is passed to the
+ * connection factory through the Reactor context of the connection creation instead.
+ */
+public class ReplicaRoutingTransactionManager extends R2dbcTransactionManager {
+
+    public ReplicaRoutingTransactionManager(ConnectionFactory connectionFactory) {
+        super(connectionFactory);
+    }
+
+    @Override
+    protected Mono<Void> doBegin(
+        TransactionSynchronizationManager synchronizationManager,
+        Object transaction,
+        TransactionDefinition definition
+    ) {
+        return super
+            .doBegin(synchronizationManager, transaction, definition)
+            .contextWrite(context -> context.put(ReplicaRoutingConnectionFactory.READ_ONLY_CONTEXT_KEY, definition.isReadOnly()));
+    }
+}
@@ -1,36 +0,0 @@
-package jerem.coopcycle.repository.rowmapper;
-
-import io.r2dbc.spi.Row;
-import java.util.function.BiFunction;
-import jerem.coopcycle.domain.Client;
-import org.springframework.stereotype.Service;
-
-/**
- * Converter between {@link Row} to {@link Client}, with proper type conversions.
- */
-@Service
-public class ClientRowMapper implements BiFunction<Row, String, Client> {
-
-    private final ColumnConverter converter;
-
-    public ClientRowMapper(ColumnConverter converter) {
-        this.converter = converter;
-    }
-
-    /**
-     * Take a {@link Row} and a column prefix, and extract all the fields.
-     * @return the {@link Client} stored in the database.
-     */
-    @Override
-    public Client apply(Row row, String prefix) {
-        Client entity = new Client();
-        entity.setId(converter.fromRow(row, prefix + "_id", Long.class));
-        entity.setFirstName(converter.fromRow(row, prefix + "_first_name", String.class));
-        entity.setLastName(converter.fromRow(row, prefix + "_last_name", String.class));
-        entity.setEmail(converter.fromRow(row, prefix + "_email", String.class));
-        entity.setPhone(converter.fromRow(row, prefix + "_phone", String.class));
-        entity.setAddress(converter.fromRow(row, prefix + "_address", String.class));
-        entity.setCommandeId(converter.fromRow(row, prefix + "_commande_id", Long.class));
-        return entity;
-    }
-}
@@ -1,6 +1,9 @@
 package jerem.coopcycle.repository.rowmapper;
 
+import io.r2dbc.spi.ColumnMetadata;
 import io.r2dbc.spi.Row;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.data.r2dbc.convert.R2dbcConverter;
 import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
@@ -10,13 +13,26 @@ import org.springframework.util.ClassUtils;
 
 /**
  * This service provides helper function dealing with the low level {@link Row} and Spring's {@link R2dbcCustomConversions}, so type conversions can be applied.
+ * <p>
+ * How a column is read is decided once per (driver Java type, target class) pair, from the {@link io.r2dbc.spi.RowMetadata} of the
+ * first row, and then reused for every following row.
  */
 @Component
 public class ColumnConverter {
 
+    /**
+     * Marks the pairs for which the driver itself converts to the target class.
+     */
+    private static final ColumnConversion DRIVER = value -> value;
+
     private final ConversionService conversionService;
     private final R2dbcCustomConversions conversions;
 
+    /**
+     * Conversion plans, by target class and then by driver Java type.
+     */
+    private final Map<Class<?>, Map<Class<?>, ColumnConversion>> conversionPlans = new ConcurrentHashMap<>();
+
     public ColumnConverter(R2dbcCustomConversions conversions, R2dbcConverter r2dbcConverter) {
         this.conversionService = r2dbcConverter.getConversionService();
         this.conversions = conversions;
@@ -54,13 +70,130 @@ public class ColumnConverter {
      * @param <T> the parameter for the intended type.
      * @return the value which can be constructed from the input.
      */
+    @SuppressWarnings("unchecked")
     public <T> T fromRow(Row row, String columnName, Class<T> target) {
+        Class<?> driverType = getDriverType(row, columnName);
+        if (driverType == null) {
+            return fromRowUnplanned(row, columnName, target);
+        }
+        Map<Class<?>, ColumnConversion> targetConversions = getConversions(target);
+        ColumnConversion conversion = targetConversions.get(driverType);
+        if (conversion == null) {
+            try {
+                // try, directly the driver
+                T value = row.get(columnName, target);
+                planDriverConversion(targetConversions, driverType, value);
+                return value;
+            } catch (Exception e) {
+                conversion = planConversion(targetConversions, driverType, target);
+            }
+        }
+        return conversion == DRIVER ? row.get(columnName, target) : (T) conversion.convert(row.get(columnName));
+    }
+
+    /**
+     * Convert a value from the {@link Row} to a type, reading the column by its position in the result.
+     * @param row which contains the column values.
+     * @param index the position of the column which to convert, or {@code -1} if it is not part of the result.
+     * @param target class.
+     * @param <T> the parameter for the intended type.
+     * @return the value which can be constructed from the input, {@code null} if the column is not part of the result.
+     * @see ColumnPositions
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T fromRow(Row row, int index, Class<T> target) {
+        if (index < 0) {
+            return null;
+        }
+        Class<?> driverType = getDriverType(row.getMetadata().getColumnMetadata(index));
+        if (driverType == null) {
+            return fromRowUnplanned(row, index, target);
+        }
+        Map<Class<?>, ColumnConversion> targetConversions = getConversions(target);
+        ColumnConversion conversion = targetConversions.get(driverType);
+        if (conversion == null) {
+            try {
+                // try, directly the driver
+                T value = row.get(index, target);
+                planDriverConversion(targetConversions, driverType, value);
+                return value;
+            } catch (Exception e) {
+                conversion = planConversion(targetConversions, driverType, target);
+            }
+        }
+        return conversion == DRIVER ? row.get(index, target) : (T) conversion.convert(row.get(index));
+    }
+
+    @Nullable
+    private Class<?> getDriverType(Row row, String columnName) {
+        try {
+            return getDriverType(row.getMetadata().getColumnMetadata(columnName));
+        } catch (RuntimeException e) {
+            // unknown column, let the driver report it
+            return null;
+        }
+    }
+
+    @Nullable
+    private Class<?> getDriverType(@Nullable ColumnMetadata metadata) {
+        return metadata == null ? null : metadata.getJavaType();
+    }
+
+    private Map<Class<?>, ColumnConversion> getConversions(Class<?> target) {
+        return conversionPlans.computeIfAbsent(target, t -> new ConcurrentHashMap<>());
+    }
+
+    private void planDriverConversion(Map<Class<?>, ColumnConversion> targetConversions, Class<?> driverType, @Nullable Object value) {
+        // a null value does not tell whether the driver can convert the column: only plan on an actual value
+        if (value != null) {
+            targetConversions.putIfAbsent(driverType, DRIVER);
+        }
+    }
+
+    private ColumnConversion planConversion(Map<Class<?>, ColumnConversion> targetConversions, Class<?> driverType, Class<?> target) {
+        ColumnConversion conversion = createConversion(driverType, target);
+        targetConversions.putIfAbsent(driverType, conversion);
+        return conversion;
+    }
+
+    private <T> T fromRowUnplanned(Row row, String columnName, Class<T> target) {
         try {
-            // try, directly the driver
             return row.get(columnName, target);
         } catch (Exception e) {
             Object obj = row.get(columnName);
             return convert(obj, target);
         }
     }
+
+    private <T> T fromRowUnplanned(Row row, int index, Class<T> target) {
+        try {
+            return row.get(index, target);
+        } catch (Exception e) {
+            Object obj = row.get(index);
+            return convert(obj, target);
+        }
+    }
+
+    /**
+     * Resolves, once, the same conversion as {@link #convert(Object, Class)} for values of the given driver type.
+     */
+    @SuppressWarnings("unchecked")
+    private ColumnConversion createConversion(Class<?> driverType, Class<?> target) {
+        if (ClassUtils.isAssignable(target, driverType)) {
+            return value -> value;
+        }
+        if (!conversions.hasCustomReadTarget(driverType, target) && Enum.class.isAssignableFrom(target)) {
+            Class<Enum> enumType = (Class<Enum>) target;
+            return value -> value == null ? null : Enum.valueOf(enumType, value.toString());
+        }
+        return value -> value == null ? null : conversionService.convert(value, target);
+    }
+
+    /**
+     * Converts the value read from the driver to the target class of a column.
+     */
+    @FunctionalInterface
+    private interface ColumnConversion {
+        Object convert(@Nullable Object value);
+    }
 }
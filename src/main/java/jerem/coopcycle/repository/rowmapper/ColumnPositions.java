@@ -0,0 +1,138 @@
+package jerem.coopcycle.repository.rowmapper;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Positions, in a result, of the columns of an entity selected with a given column prefix (see the {@code *SqlHelper} classes).
+ * <p>
+ * The positions are computed once per prefix and result layout, the list of the column names of the {@link RowMetadata}, so that
+ * the queries selecting an entity with the same prefix but different columns each keep their own positions. The last positions of
+ * each prefix are kept with their metadata: the drivers share the metadata across the rows of a result, so the row mappers then
+ * read every row by index without looking up the layout.
+ */
+public final class ColumnPositions {
+
+    /**
+     * Position of a column which is not part of the result.
+     */
+    public static final int ABSENT = -1;
+
+    private final String[] columns;
+
+    private final Map<String, String[]> names = new ConcurrentHashMap<>();
+
+    private final Map<Layout, int[]> positions = new ConcurrentHashMap<>();
+
+    private final Map<String, Resolution> lastResolutions = new ConcurrentHashMap<>();
+
+    /**
+     * @param columns the column aliases of the entity, without their prefix, in the order used by the row mapper.
+     */
+    public ColumnPositions(String... columns) {
+        this.columns = columns.clone();
+    }
+
+    /**
+     * Gets the positions of the prefixed columns in the result of the given row.
+     * @param row a row of the result.
+     * @param prefix the prefix of the column aliases.
+     * @return the position of each column, in the order given to the constructor, {@link #ABSENT} for the columns not selected.
+     */
+    public int[] resolve(Row row, String prefix) {
+        RowMetadata metadata = row.getMetadata();
+        Resolution resolution = lastResolutions.get(prefix);
+        if (resolution != null && resolution.metadata == metadata) {
+            return resolution.positions;
+        }
+        List<String> columnNames = columnNames(metadata);
+        int[] resolved = positions.computeIfAbsent(
+            new Layout(prefix, columnNames),
+            layout -> locate(columnNames, names.computeIfAbsent(prefix, this::prefixed))
+        );
+        lastResolutions.put(prefix, new Resolution(metadata, resolved));
+        return resolved;
+    }
+
+    private String[] prefixed(String prefix) {
+        String[] prefixedNames = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            prefixedNames[i] = prefix + "_" + columns[i];
+        }
+        return prefixedNames;
+    }
+
+    private static List<String> columnNames(RowMetadata metadata) {
+        List<? extends ColumnMetadata> columnMetadatas = metadata.getColumnMetadatas();
+        String[] columnNames = new String[columnMetadatas.size()];
+        for (int index = 0; index < columnNames.length; index++) {
+            columnNames[index] = columnMetadatas.get(index).getName();
+        }
+        return Arrays.asList(columnNames);
+    }
+
+    private static int[] locate(List<String> columnNames, String[] prefixedNames) {
+        int[] located = new int[prefixedNames.length];
+        for (int i = 0; i < prefixedNames.length; i++) {
+            located[i] = ABSENT;
+            for (int index = 0; index < columnNames.size(); index++) {
+                // databases may change the case of unquoted aliases
+                if (prefixedNames[i].equalsIgnoreCase(columnNames.get(index))) {
+                    located[i] = index;
+                    break;
+                }
+            }
+        }
+        return located;
+    }
+
+    /**
+     * A prefix and the column names of a result.
+     */
+    private static final class Layout {
+
+        private final String prefix;
+        private final List<String> columnNames;
+
+        private Layout(String prefix, List<String> columnNames) {
+            this.prefix = prefix;
+            this.columnNames = columnNames;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Layout)) {
+                return false;
+            }
+            Layout other = (Layout) o;
+            return prefix.equals(other.prefix) && columnNames.equals(other.columnNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * prefix.hashCode() + columnNames.hashCode();
+        }
+    }
+
+    /**
+     * The positions last resolved for a prefix, with the metadata of their result.
+     */
+    private static final class Resolution {
+
+        private final RowMetadata metadata;
+        private final int[] positions;
+
+        private Resolution(RowMetadata metadata, int[] positions) {
+            this.metadata = metadata;
+            this.positions = positions;
+        }
+    }
+}
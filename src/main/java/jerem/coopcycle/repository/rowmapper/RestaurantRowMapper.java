@@ -1,34 +0,0 @@
-package jerem.coopcycle.repository.rowmapper;
-
-import io.r2dbc.spi.Row;
-import java.util.function.BiFunction;
-import jerem.coopcycle.domain.Restaurant;
-import org.springframework.stereotype.Service;
-
-/**
- * Converter between {@link Row} to {@link Restaurant}, with proper type conversions.
- */
-@Service
-public class RestaurantRowMapper implements BiFunction<Row, String, Restaurant> {
-
-    private final ColumnConverter converter;
-
-    public RestaurantRowMapper(ColumnConverter converter) {
-        this.converter = converter;
-    }
-
-    /**
-     * Take a {@link Row} and a column prefix, and extract all the fields.
-     * @return the {@link Restaurant} stored in the database.
-     */
-    @Override
-    public Restaurant apply(Row row, String prefix) {
-        Restaurant entity = new Restaurant();
-        entity.setId(converter.fromRow(row, prefix + "_id", Long.class));
-        entity.setName(converter.fromRow(row, prefix + "_name", String.class));
-        entity.setAddress(converter.fromRow(row, prefix + "_address", String.class));
-        entity.setMenu(converter.fromRow(row, prefix + "_menu", String.class));
-        entity.setRestaurateurId(converter.fromRow(row, prefix + "_restaurateur_id", Long.class));
-        return entity;
-    }
-}
@@ -0,0 +1,57 @@
+package jerem.coopcycle.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A job started by a {@link org.springframework.scheduling.annotation.Scheduled} method, which runs on the bounded elastic
+ * scheduler of Reactor instead of blocking a thread of the scheduling pool.
+ * <p>
+ * The scheduling pool only starts the jobs, so a long job such as the nightly archival never delays the jobs running every
+ * second. A run is skipped while the previous one is not done, as the scheduling pool does for the blocking jobs.
+ */
+public class BackgroundJob {
+
+    private final Logger log = LoggerFactory.getLogger(BackgroundJob.class);
+
+    private final String name;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * @param name the name of the job, for the logs.
+     */
+    public BackgroundJob(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Starts a run of the job, and returns without waiting for it.
+     *
+     * @param job the run, subscribed on the bounded elastic scheduler.
+     * @return whether the run started, false if the previous run is not done.
+     */
+    public boolean start(Supplier<Mono<?>> job) {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("The {} job is still running, skipping this run", name);
+            return false;
+        }
+        Mono
+            .defer(job)
+            .subscribeOn(Schedulers.boundedElastic())
+            .doFinally(signal -> running.set(false))
+            .subscribe(result -> log.debug("The {} job is done: {}", name, result), e -> log.error("The {} job failed", name, e));
+        return true;
+    }
+
+    /**
+     * @return whether a run of the job is not done.
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+}
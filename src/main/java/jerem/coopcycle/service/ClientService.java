@@ -1,8 +1,12 @@
 package jerem.coopcycle.service;
 
 import jerem.coopcycle.domain.Client;
+import jerem.coopcycle.domain.Commande;
 import jerem.coopcycle.repository.ClientRepository;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.service.count.TotalCountService;
 import jerem.coopcycle.service.dto.ClientDTO;
+import jerem.coopcycle.service.geo.Geocoder;
 import jerem.coopcycle.service.mapper.ClientMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +18,8 @@ import reactor.core.publisher.Mono;
 
 /**
  * Service Implementation for managing {@link Client}.
+ * <p>
+ * The writes geocode the addresses of the clients.
  */
 @Service
 @Transactional
@@ -25,9 +31,20 @@ public class ClientService {
 
     private final ClientMapper clientMapper;
 
-    public ClientService(ClientRepository clientRepository, ClientMapper clientMapper) {
+    private final TotalCountService totalCountService;
+
+    private final Geocoder geocoder;
+
+    public ClientService(
+        ClientRepository clientRepository,
+        ClientMapper clientMapper,
+        TotalCountService totalCountService,
+        Geocoder geocoder
+    ) {
         this.clientRepository = clientRepository;
         this.clientMapper = clientMapper;
+        this.totalCountService = totalCountService;
+        this.geocoder = geocoder;
     }
 
     /**
@@ -38,40 +55,67 @@ public class ClientService {
      */
     public Mono<ClientDTO> save(ClientDTO clientDTO) {
         log.debug("Request to save Client : {}", clientDTO);
-        return clientRepository.save(clientMapper.toEntity(clientDTO)).map(clientMapper::toDto);
+        return locate(clientMapper.toEntity(clientDTO).version(null))
+            .flatMap(clientRepository::save)
+            .flatMap(saved -> totalCountService.invalidateAfterCommit(Client.class).thenReturn(saved))
+            .map(clientMapper::toDto);
     }
 
     /**
      * Update a client.
      *
      * @param clientDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, or an empty Mono if the entity does not exist.
      */
     public Mono<ClientDTO> update(ClientDTO clientDTO) {
         log.debug("Request to update Client : {}", clientDTO);
-        return clientRepository.save(clientMapper.toEntity(clientDTO)).map(clientMapper::toDto);
+        Client client = clientMapper.toEntity(clientDTO);
+        return locate(client)
+            .flatMap(clientRepository::updateById)
+            .filter(updated -> updated > 0)
+            .map(updated -> clientMapper.toDto(client));
     }
 
     /**
-     * Partially update a client.
+     * Partially update a client: only the non-null properties are written, and the updated row is returned by the same
+     * statement on PostgreSQL.
      *
      * @param clientDTO the entity to update partially.
-     * @return the persisted entity.
+     * @return the updated entity, or an empty Mono if the entity does not exist.
      */
     public Mono<ClientDTO> partialUpdate(ClientDTO clientDTO) {
         log.debug("Request to partially update Client : {}", clientDTO);
-
-        return clientRepository
-            .findById(clientDTO.getId())
-            .map(existingClient -> {
-                clientMapper.partialUpdate(existingClient, clientDTO);
-
-                return existingClient;
+        Client client = clientMapper.toEntity(clientDTO);
+        return locate(client)
+            .flatMap(clientRepository::updateNonNullByIdReturning)
+            .flatMap(updated -> {
+                // the commande is not read, only its id
+                if (updated.getCommandeId() != null) {
+                    updated.setCommande(new Commande().id(updated.getCommandeId()));
+                }
+                // the null coordinates of an address which is not geocoded are not written by the update
+                return client.getAddress() != null && client.getLatitude() == null
+                    ? clientRepository.clearLocation(client.getId()).thenReturn(updated.latitude(null).longitude(null))
+                    : Mono.just(updated);
             })
-            .flatMap(clientRepository::save)
             .map(clientMapper::toDto);
     }
 
+    /**
+     * Sets the coordinates of the address of a client, or clears them if the address is not geocoded: the coordinates sent by
+     * the client are ignored.
+     */
+    private Mono<Client> locate(Client client) {
+        client.latitude(null).longitude(null);
+        if (client.getAddress() == null) {
+            return Mono.just(client);
+        }
+        return geocoder
+            .geocode(client.getAddress())
+            .map(point -> client.latitude(point.getLatitude()).longitude(point.getLongitude()))
+            .defaultIfEmpty(client);
+    }
+
     /**
      * Get all the clients.
      *
@@ -85,12 +129,26 @@ public class ClientService {
     }
 
     /**
-     * Returns the number of clients available.
+     * Get a page of clients after the given keyset position.
+     *
+     * @param pageable the pagination information, only the page size is used.
+     * @param keyset the position of the last client already returned.
+     * @return the list of entities.
+     */
+    @Transactional(readOnly = true)
+    public Flux<ClientDTO> findAll(Pageable pageable, Keyset keyset) {
+        log.debug("Request to get a keyset page of Clients : {}", keyset);
+        return clientRepository.findAllBy(pageable, keyset).map(clientMapper::toDto);
+    }
+
+    /**
+     * Returns the number of clients available, computed with the {@link jerem.coopcycle.service.count.TotalCountStrategy}
+     * configured for the entity.
      * @return the number of entities in the database.
      *
      */
     public Mono<Long> countAll() {
-        return clientRepository.count();
+        return totalCountService.count(Client.class, clientRepository::count);
     }
 
     /**
@@ -113,6 +171,6 @@ public class ClientService {
      */
     public Mono<Void> delete(Long id) {
         log.debug("Request to delete Client : {}", id);
-        return clientRepository.deleteById(id);
+        return clientRepository.deleteById(id).then(totalCountService.invalidateAfterCommit(Client.class));
     }
 }
@@ -0,0 +1,104 @@
+package jerem.coopcycle.service;
+
+import java.time.Instant;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Paiement;
+import jerem.coopcycle.domain.Panier;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.repository.CommandeRepository;
+import jerem.coopcycle.service.count.TotalCountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service keeping the {@code commande} table small: it creates the partitions of the coming months, and moves the delivered
+ * commandes which are older than the retention into the archive tables.
+ */
+@Service
+public class CommandeArchiveService {
+
+    private final Logger log = LoggerFactory.getLogger(CommandeArchiveService.class);
+
+    private final CommandeRepository commandeRepository;
+
+    private final TotalCountService totalCountService;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ApplicationProperties.Archive properties;
+
+    private final BackgroundJob archiveJob = new BackgroundJob("commande archival");
+
+    public CommandeArchiveService(
+        CommandeRepository commandeRepository,
+        TotalCountService totalCountService,
+        ReactiveTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.commandeRepository = commandeRepository;
+        this.totalCountService = totalCountService;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.properties = applicationProperties.getArchive();
+    }
+
+    /**
+     * Creates the commande partitions, then archives the delivered commandes.
+     * <p>
+     * This is scheduled with {@code application.archive.cron}, everyday at 02:30 (am) by default, and runs off the scheduling
+     * threads.
+     */
+    @Scheduled(cron = "${application.archive.cron:0 30 2 * * ?}")
+    public void archive() {
+        archiveJob.start(() -> createPartitions().then(archiveDeliveredCommandes(Instant.now().minus(properties.getRetention()))));
+    }
+
+    /**
+     * Creates the missing partitions of commande up to {@code application.archive.partitions-ahead} months ahead.
+     *
+     * @return the number of partitions created, always 0 on the databases which do not partition commande.
+     */
+    public Mono<Integer> createPartitions() {
+        return commandeRepository
+            .createPartitions(properties.getPartitionsAhead())
+            .doOnNext(created -> {
+                if (created > 0) {
+                    log.info("Created {} partitions of Commande", created);
+                }
+            });
+    }
+
+    /**
+     * Moves the delivered commandes older than the given date, with their panier and paiement, into the archive tables.
+     * <p>
+     * The commandes are moved by chunks of {@code application.archive.chunk-size}, each in its own transaction: the archival
+     * does not lock the whole table, and when it is interrupted, the next run resumes with the commandes which are left.
+     *
+     * @param before the date before which the delivered commandes are archived.
+     * @return the number of archived commandes.
+     */
+    public Mono<Integer> archiveDeliveredCommandes(Instant before) {
+        log.debug("Request to archive the delivered Commandes before {}", before);
+        return Mono
+            .defer(() ->
+                transactionalOperator.transactional(commandeRepository.archive(CommandeStatus.LIVREE, before, properties.getChunkSize()))
+            )
+            .repeat()
+            .takeWhile(archived -> archived > 0)
+            .reduce(0, Integer::sum)
+            .doOnNext(archived -> {
+                if (archived > 0) {
+                    // the paniers and paiements of the commandes are archived with them
+                    totalCountService.invalidate(Commande.class);
+                    totalCountService.invalidate(Panier.class);
+                    totalCountService.invalidate(Paiement.class);
+                    log.info("Archived {} delivered Commandes", archived);
+                }
+            });
+    }
+}
@@ -1,19 +1,39 @@
 package jerem.coopcycle.service;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Paiement;
+import jerem.coopcycle.domain.Panier;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.OutboxEventType;
 import jerem.coopcycle.repository.CommandeRepository;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.service.count.TotalCountService;
 import jerem.coopcycle.service.dto.CommandeDTO;
+import jerem.coopcycle.service.dto.CommandeStatusChangeDTO;
+import jerem.coopcycle.service.dto.CommandeStatusTransitionResultDTO;
+import jerem.coopcycle.service.dto.CommandeStatusTransitionResultDTO.Outcome;
 import jerem.coopcycle.service.mapper.CommandeMapper;
+import jerem.coopcycle.service.outbox.OutboxService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 /**
  * Service Implementation for managing {@link Commande}.
+ * <p>
+ * Each change of a commande writes an event to the outbox in its transaction, see {@link OutboxService}. The changes of its
+ * status are also sent to the streams of its restaurant, see {@link CommandeStatusStreamService}.
  */
 @Service
 @Transactional
@@ -21,13 +41,34 @@ public class CommandeService {
 
     private final Logger log = LoggerFactory.getLogger(CommandeService.class);
 
+    private static final String ENTITY_NAME = "commande";
+
     private final CommandeRepository commandeRepository;
 
     private final CommandeMapper commandeMapper;
 
-    public CommandeService(CommandeRepository commandeRepository, CommandeMapper commandeMapper) {
+    private final TotalCountService totalCountService;
+
+    private final RestaurantStatsService restaurantStatsService;
+
+    private final OutboxService outboxService;
+
+    private final CommandeStatusStreamService commandeStatusStreamService;
+
+    public CommandeService(
+        CommandeRepository commandeRepository,
+        CommandeMapper commandeMapper,
+        TotalCountService totalCountService,
+        RestaurantStatsService restaurantStatsService,
+        OutboxService outboxService,
+        CommandeStatusStreamService commandeStatusStreamService
+    ) {
         this.commandeRepository = commandeRepository;
         this.commandeMapper = commandeMapper;
+        this.totalCountService = totalCountService;
+        this.restaurantStatsService = restaurantStatsService;
+        this.outboxService = outboxService;
+        this.commandeStatusStreamService = commandeStatusStreamService;
     }
 
     /**
@@ -38,81 +79,319 @@ public class CommandeService {
      */
     public Mono<CommandeDTO> save(CommandeDTO commandeDTO) {
         log.debug("Request to save Commande : {}", commandeDTO);
-        return commandeRepository.save(commandeMapper.toEntity(commandeDTO)).map(commandeMapper::toDto);
+        return commandeRepository
+            .save(commandeMapper.toEntity(commandeDTO).version(null))
+            .flatMap(saved -> totalCountService.invalidateAfterCommit(Commande.class).thenReturn(saved))
+            .flatMap(saved -> restaurantStatsService.addCommandes(List.of(saved.getId())).thenReturn(saved))
+            .map(commandeMapper::toDto)
+            .flatMap(result -> outboxService.publish(ENTITY_NAME, result.getId(), OutboxEventType.CREATED, result).thenReturn(result))
+            .flatMap(result -> publishStatus(result).thenReturn(result));
     }
 
     /**
      * Update a commande.
+     * <p>
+     * A new status must follow the current one, as with {@link #updateStatus(Long, CommandeStatus, CommandeStatus)}: the
+     * current status is then read and locked before the update.
      *
      * @param commandeDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, or an empty Mono if the entity does not exist. Fails with an
+     * {@link IllegalArgumentException} if the status does not follow the current one.
      */
     public Mono<CommandeDTO> update(CommandeDTO commandeDTO) {
         log.debug("Request to update Commande : {}", commandeDTO);
-        return commandeRepository.save(commandeMapper.toEntity(commandeDTO)).map(commandeMapper::toDto);
+        Commande commande = commandeMapper.toEntity(commandeDTO);
+        return checkStatusChange(commande)
+            .then(restaurantStatsService.refreshCommandes(List.of(commande.getId()), commandeRepository.updateById(commande)))
+            .filter(updated -> updated > 0)
+            .map(updated -> commandeMapper.toDto(commande))
+            .flatMap(result -> outboxService.publish(ENTITY_NAME, result.getId(), OutboxEventType.UPDATED, result).thenReturn(result))
+            .flatMap(result -> publishStatus(result).thenReturn(result));
     }
 
     /**
-     * Partially update a commande.
+     * Partially update a commande: only the non-null properties are written, and the updated row is returned by the same
+     * statement on PostgreSQL. A new status must follow the current one, as with {@link #update(CommandeDTO)}.
      *
      * @param commandeDTO the entity to update partially.
-     * @return the persisted entity.
+     * @return the updated entity, or an empty Mono if the entity does not exist. Fails with an
+     * {@link IllegalArgumentException} if the status does not follow the current one.
      */
     public Mono<CommandeDTO> partialUpdate(CommandeDTO commandeDTO) {
         log.debug("Request to partially update Commande : {}", commandeDTO);
+        Commande commande = commandeMapper.toEntity(commandeDTO);
+        return checkStatusChange(commande)
+            .then(
+                restaurantStatsService.refreshCommandes(List.of(commande.getId()), commandeRepository.updateNonNullByIdReturning(commande))
+            )
+            .map(updated -> commandeMapper.toDto(withRelationIds(updated)))
+            .flatMap(result -> outboxService.publish(ENTITY_NAME, result.getId(), OutboxEventType.UPDATED, result).thenReturn(result))
+            // the status is only streamed when it is written
+            .flatMap(result -> (commande.getStatus() != null ? publishStatus(result) : Mono.<Void>empty()).thenReturn(result));
+    }
+
+    /**
+     * Sets the relations of a commande read without joins, from their ids, for its DTO.
+     */
+    private static Commande withRelationIds(Commande commande) {
+        if (commande.getPanierId() != null) {
+            commande.setPanier(new Panier().id(commande.getPanierId()));
+        }
+        if (commande.getPaiementId() != null) {
+            commande.setPaiement(new Paiement().id(commande.getPaiementId()));
+        }
+        return commande;
+    }
 
+    /**
+     * Rejects a status which neither is the current status of the commande nor follows it. The status is locked until the end
+     * of the transaction, so that a concurrent transition cannot be overwritten.
+     */
+    private Mono<Void> checkStatusChange(Commande commande) {
+        CommandeStatus to = commande.getStatus();
+        if (to == null) {
+            return Mono.empty();
+        }
         return commandeRepository
-            .findById(commandeDTO.getId())
-            .map(existingCommande -> {
-                commandeMapper.partialUpdate(existingCommande, commandeDTO);
+            .findStatusByIdInForUpdate(List.of(commande.getId()))
+            .next()
+            .flatMap(current ->
+                current.getStatus() == null || current.getStatus() == to || current.getStatus().canTransitionTo(to)
+                    ? Mono.<Void>empty()
+                    : Mono.error(new IllegalArgumentException("A commande cannot go from " + current.getStatus() + " to " + to))
+            );
+    }
 
-                return existingCommande;
-            })
-            .flatMap(commandeRepository::save)
-            .map(commandeMapper::toDto);
+    /**
+     * Move a commande from a status to the next one, with a single conditional update.
+     * <p>
+     * The transition is a single conditional update: it is atomic, and the status check and the write cannot be interleaved
+     * with a concurrent transition. It is followed, in the same transaction, by the side effects of a status change: the
+     * commande is read once to move its contribution to the statistics of its restaurant, which also gives the restaurant of
+     * its stream, and the {@code STATUS_CHANGED} event is written to the outbox. The stream is sent once the transaction
+     * commits. A failed transition reads the status of the commande, to tell a missing commande from a concurrent one.
+     *
+     * @param id the id of the entity.
+     * @param from the status the commande is expected to have.
+     * @param to the new status.
+     * @return the new status, or an empty Mono if the commande does not exist. Fails with an {@link IllegalArgumentException} if
+     * {@code to} does not follow {@code from}, and with an {@link OptimisticLockingFailureException} if the commande is not
+     * {@code from} anymore.
+     */
+    public Mono<CommandeStatus> updateStatus(Long id, CommandeStatus from, CommandeStatus to) {
+        log.debug("Request to update the status of Commande : {}, {} -> {}", id, from, to);
+        if (!from.canTransitionTo(to)) {
+            return Mono.error(new IllegalArgumentException("A commande cannot go from " + from + " to " + to));
+        }
+        return commandeRepository
+            .updateStatus(id, from, to)
+            .flatMap(updated -> {
+                if (updated > 0) {
+                    return restaurantStatsService
+                        .changeStatus(List.of(id), from)
+                        .flatMap(restaurantIds ->
+                            publishStatusChanged(new CommandeStatusTransitionResultDTO(id, Outcome.UPDATED, to))
+                                .then(
+                                    commandeStatusStreamService.publish(List.of(new CommandeStatusChangeDTO(id, from, to)), restaurantIds)
+                                )
+                        )
+                        .thenReturn(to);
+                }
+                // only read on failure, to tell a missing commande from a concurrent transition
+                return commandeRepository
+                    .findStatusById(id)
+                    .flatMap(current ->
+                        Mono.error(new OptimisticLockingFailureException("Commande " + id + " is " + current + ", not " + from))
+                    );
+            });
+    }
+
+    /**
+     * Move many commandes from a status to the next one, with a single set-based update.
+     * <p>
+     * The statuses of the commandes are read and locked first, to report the outcome of each id, then the commandes which have
+     * the expected status are all updated at once.
+     *
+     * @param ids the ids of the entities.
+     * @param from the status the commandes are expected to have.
+     * @param to the new status.
+     * @return the outcome for each distinct id, in the given order. Fails with an {@link IllegalArgumentException} if {@code to}
+     * does not follow {@code from}.
+     */
+    public Flux<CommandeStatusTransitionResultDTO> updateStatus(Collection<Long> ids, CommandeStatus from, CommandeStatus to) {
+        log.debug("Request to update the status of Commandes : {}, {} -> {}", ids, from, to);
+        if (!from.canTransitionTo(to)) {
+            return Flux.error(new IllegalArgumentException("A commande cannot go from " + from + " to " + to));
+        }
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        return commandeRepository
+            .findStatusByIdInForUpdate(distinctIds)
+            .collectMap(Commande::getId, Commande::getStatus)
+            .flatMapMany(statuses -> {
+                List<CommandeStatusTransitionResultDTO> results = distinctIds
+                    .stream()
+                    .map(id -> toTransitionResult(id, statuses.get(id), from, to))
+                    .collect(Collectors.toList());
+                List<Long> updatedIds = results
+                    .stream()
+                    .filter(result -> result.getOutcome() == Outcome.UPDATED)
+                    .map(CommandeStatusTransitionResultDTO::getId)
+                    .collect(Collectors.toList());
+                if (updatedIds.isEmpty()) {
+                    return Flux.fromIterable(results);
+                }
+                return commandeRepository
+                    .updateStatus(distinctIds, from, to)
+                    .then(restaurantStatsService.changeStatus(updatedIds, from))
+                    .flatMap(restaurantIds ->
+                        Flux
+                            .fromIterable(results)
+                            .filter(result -> result.getOutcome() == Outcome.UPDATED)
+                            .concatMap(this::publishStatusChanged)
+                            .then(
+                                commandeStatusStreamService.publish(
+                                    updatedIds.stream().map(id -> new CommandeStatusChangeDTO(id, from, to)).collect(Collectors.toList()),
+                                    restaurantIds
+                                )
+                            )
+                    )
+                    .thenMany(Flux.fromIterable(results));
+            });
+    }
+
+    /**
+     * Assign a livreur to a commande, if it is still ready and without livreur.
+     * <p>
+     * The assignment is a single conditional update, so that two dispatchers never assign the same commande. It is published
+     * as an update of the commande to the outbox, and sent to the stream of its restaurant once the transaction commits.
+     *
+     * @param id the id of the commande.
+     * @param livreurId the id of the livreur.
+     * @return whether the livreur was assigned, false if the commande was assigned meanwhile or is not ready anymore.
+     */
+    public Mono<Boolean> assignLivreur(Long id, Long livreurId) {
+        log.debug("Request to assign the livreur {} to Commande : {}", livreurId, id);
+        return commandeRepository
+            .assignLivreur(id, livreurId)
+            .flatMap(updated -> {
+                if (updated == 0) {
+                    return Mono.just(false);
+                }
+                CommandeStatusChangeDTO assignment = new CommandeStatusChangeDTO(id, CommandeStatus.PRETE, CommandeStatus.PRETE);
+                assignment.setLivreurId(livreurId);
+                return commandeRepository
+                    .findById(id)
+                    .map(commandeMapper::toDto)
+                    .flatMap(result -> outboxService.publish(ENTITY_NAME, id, OutboxEventType.UPDATED, result))
+                    .then(commandeStatusStreamService.publish(List.of(assignment)))
+                    .thenReturn(true);
+            });
+    }
+
+    private Mono<Void> publishStatusChanged(CommandeStatusTransitionResultDTO result) {
+        return outboxService.publish(ENTITY_NAME, result.getId(), OutboxEventType.STATUS_CHANGED, result);
+    }
+
+    /**
+     * Publishes the status of a created or updated commande, whose previous status is not read.
+     */
+    private Mono<Void> publishStatus(CommandeDTO commandeDTO) {
+        if (commandeDTO.getStatus() == null) {
+            return Mono.empty();
+        }
+        CommandeStatusChangeDTO statusChange = new CommandeStatusChangeDTO(commandeDTO.getId(), null, commandeDTO.getStatus());
+        return commandeStatusStreamService.publish(List.of(statusChange));
+    }
+
+    private static CommandeStatusTransitionResultDTO toTransitionResult(
+        Long id,
+        CommandeStatus current,
+        CommandeStatus from,
+        CommandeStatus to
+    ) {
+        if (current == null) {
+            return new CommandeStatusTransitionResultDTO(id, Outcome.NOT_FOUND, null);
+        }
+        if (current != from) {
+            return new CommandeStatusTransitionResultDTO(id, Outcome.CONFLICT, current);
+        }
+        return new CommandeStatusTransitionResultDTO(id, Outcome.UPDATED, to);
     }
 
     /**
      * Get all the commandes.
      *
      * @param pageable the pagination information.
+     * @param fields the properties to read, or {@code null} to read them all.
+     * @param includeArchive whether the archived commandes are read too.
      * @return the list of entities.
      */
     @Transactional(readOnly = true)
-    public Flux<CommandeDTO> findAll(Pageable pageable) {
+    public Flux<CommandeDTO> findAll(Pageable pageable, Set<String> fields, boolean includeArchive) {
         log.debug("Request to get all Commandes");
-        return commandeRepository.findAllBy(pageable).map(commandeMapper::toDto);
+        return commandeRepository.findAllBy(pageable, null, fields, includeArchive).map(commandeMapper::toDto);
+    }
+
+    /**
+     * Get a page of commandes after the given keyset position.
+     *
+     * @param pageable the pagination information, only the page size is used.
+     * @param keyset the position of the last commande already returned.
+     * @param fields the properties to read, or {@code null} to read them all.
+     * @param includeArchive whether the archived commandes are read too.
+     * @return the list of entities.
+     */
+    @Transactional(readOnly = true)
+    public Flux<CommandeDTO> findAll(Pageable pageable, Keyset keyset, Set<String> fields, boolean includeArchive) {
+        log.debug("Request to get a keyset page of Commandes : {}", keyset);
+        return commandeRepository.findAllBy(pageable, keyset, fields, includeArchive).map(commandeMapper::toDto);
     }
 
     /**
-     * Returns the number of commandes available.
+     * Returns the number of commandes available, computed with the {@link jerem.coopcycle.service.count.TotalCountStrategy}
+     * configured for the entity. The archived commandes are always counted exactly.
+     * @param includeArchive whether the archived commandes are counted too.
      * @return the number of entities in the database.
      *
      */
-    public Mono<Long> countAll() {
-        return commandeRepository.count();
+    public Mono<Long> countAll(boolean includeArchive) {
+        if (includeArchive) {
+            return commandeRepository.countWithArchive();
+        }
+        return totalCountService.count(Commande.class, commandeRepository::count);
     }
 
     /**
      * Get one commande by id.
      *
      * @param id the id of the entity.
+     * @param includeArchive whether the commande is looked up in the archive too.
      * @return the entity.
      */
     @Transactional(readOnly = true)
-    public Mono<CommandeDTO> findOne(Long id) {
+    public Mono<CommandeDTO> findOne(Long id, boolean includeArchive) {
         log.debug("Request to get Commande : {}", id);
-        return commandeRepository.findById(id).map(commandeMapper::toDto);
+        return commandeRepository.findById(id, includeArchive).map(commandeMapper::toDto);
     }
 
     /**
-     * Delete the commande by id.
+     * Delete the commande by id. The deletion is sent to the stream of its restaurant, with a {@code null} status.
      *
      * @param id the id of the entity.
      * @return a Mono to signal the deletion
      */
     public Mono<Void> delete(Long id) {
         log.debug("Request to delete Commande : {}", id);
-        return commandeRepository.deleteById(id);
+        // the restaurant of the stream is read before the commande is gone
+        return commandeRepository
+            .findRestaurantIdByIdIn(List.of(id))
+            .collectMap(Tuple2::getT1, Tuple2::getT2)
+            .flatMap(restaurantIds ->
+                restaurantStatsService
+                    .refreshCommandes(List.of(id), commandeRepository.deleteById(id))
+                    .then(totalCountService.invalidateAfterCommit(Commande.class))
+                    .then(outboxService.publish(ENTITY_NAME, id, OutboxEventType.DELETED, null))
+                    .then(commandeStatusStreamService.publish(List.of(new CommandeStatusChangeDTO(id, null, null)), restaurantIds))
+            );
     }
 }
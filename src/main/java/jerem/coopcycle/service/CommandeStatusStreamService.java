@@ -0,0 +1,202 @@
+package jerem.coopcycle.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.repository.CommandeRepository;
+import jerem.coopcycle.repository.NotificationChannel;
+import jerem.coopcycle.service.dto.CommandeStatusChangeDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.function.Tuple2;
+import reactor.util.retry.Retry;
+
+/**
+ * Service streaming the status changes of the commandes to the clients following a restaurant, instead of polling them.
+ * <p>
+ * The changes are only sent once their transaction committed. With Postgres, they are sent as notifications on the
+ * {@value #CHANNEL} channel, and each instance listens to it on a dedicated connection, so that the clients of every instance
+ * get them. Otherwise, or when {@code application.commande-stream.listen-notify} is disabled, they are broadcast in memory to
+ * the clients of the instance which wrote them.
+ * <p>
+ * Each client has its own buffer of {@code application.commande-stream.buffer-size} changes: when it does not read them fast
+ * enough, the oldest ones are dropped, so a slow client never holds back the others nor pins memory. The changes sent while a
+ * client is disconnected are not replayed, it reads the commandes again when it reconnects.
+ */
+@Service
+public class CommandeStatusStreamService implements DisposableBean {
+
+    static final String CHANNEL = "commande_status";
+
+    private final Logger log = LoggerFactory.getLogger(CommandeStatusStreamService.class);
+
+    private final CommandeRepository commandeRepository;
+
+    private final NotificationChannel notificationChannel;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationProperties.CommandeStream properties;
+
+    private final boolean listenNotify;
+
+    private final Sinks.Many<CommandeStatusChangeDTO> changes = Sinks.many().multicast().directBestEffort();
+
+    private Disposable listener;
+
+    public CommandeStatusStreamService(
+        CommandeRepository commandeRepository,
+        NotificationChannel notificationChannel,
+        ObjectMapper objectMapper,
+        ApplicationProperties applicationProperties
+    ) {
+        this.commandeRepository = commandeRepository;
+        this.notificationChannel = notificationChannel;
+        this.objectMapper = objectMapper;
+        this.properties = applicationProperties.getCommandeStream();
+        this.listenNotify = properties.isListenNotify() && notificationChannel.isSupported();
+    }
+
+    /**
+     * Listens to the changes written by every instance, with Postgres.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void startListening() {
+        if (!listenNotify || listener != null) {
+            return;
+        }
+        log.debug("Listening to the {} notifications", CHANNEL);
+        listener =
+            notificationChannel
+                .listen(CHANNEL)
+                .concatMap(payload ->
+                    Mono
+                        .fromCallable(() -> objectMapper.readValue(payload, CommandeStatusChangeDTO.class))
+                        .onErrorResume(e -> {
+                            log.warn("Ignoring the invalid {} notification {}: {}", CHANNEL, payload, e.getMessage());
+                            return Mono.empty();
+                        })
+                )
+                .retryWhen(
+                    Retry
+                        .backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .transientErrors(true)
+                        .doBeforeRetry(signal ->
+                            log.warn("Listening to the {} notifications again: {}", CHANNEL, signal.failure().getMessage())
+                        )
+                )
+                .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                .subscribe(this::emit);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (listener != null) {
+            listener.dispose();
+        }
+    }
+
+    /**
+     * Sends the status changes of commandes to the streams of their restaurants, once the current transaction commits. The
+     * changes of the commandes without restaurant are not sent.
+     *
+     * @param statusChanges the changes, without their restaurant.
+     * @return a Mono to signal that the changes are sent, or will be at the commit.
+     */
+    public Mono<Void> publish(List<CommandeStatusChangeDTO> statusChanges) {
+        if (statusChanges.isEmpty()) {
+            return Mono.empty();
+        }
+        return commandeRepository
+            .findRestaurantIdByIdIn(statusChanges.stream().map(CommandeStatusChangeDTO::getCommandeId).collect(Collectors.toSet()))
+            .collectMap(Tuple2::getT1, Tuple2::getT2)
+            .flatMap(restaurantIds -> publish(statusChanges, restaurantIds));
+    }
+
+    /**
+     * Sends the status changes of commandes to the streams of their restaurants, once the current transaction commits, when
+     * the restaurants of the commandes are already known. The changes of the commandes without restaurant are not sent.
+     *
+     * @param statusChanges the changes, without their restaurant.
+     * @param restaurantIds the id of the restaurant of each commande.
+     * @return a Mono to signal that the changes are sent, or will be at the commit.
+     */
+    public Mono<Void> publish(List<CommandeStatusChangeDTO> statusChanges, Map<Long, Long> restaurantIds) {
+        Map<Long, CommandeStatusChangeDTO> byCommandeId = new LinkedHashMap<>();
+        statusChanges.forEach(change -> byCommandeId.put(change.getCommandeId(), change));
+        List<CommandeStatusChangeDTO> sent = new ArrayList<>();
+        for (CommandeStatusChangeDTO change : byCommandeId.values()) {
+            Long restaurantId = restaurantIds.get(change.getCommandeId());
+            if (restaurantId != null) {
+                change.setRestaurantId(restaurantId);
+                sent.add(change);
+            }
+        }
+        return send(sent);
+    }
+
+    private Mono<Void> send(List<CommandeStatusChangeDTO> statusChanges) {
+        if (statusChanges.isEmpty()) {
+            return Mono.empty();
+        }
+        if (listenNotify) {
+            // the notifications are delivered when the transaction commits, and dropped if it rolls back
+            return Flux
+                .fromIterable(statusChanges)
+                .concatMap(change ->
+                    Mono
+                        .fromCallable(() -> objectMapper.writeValueAsString(change))
+                        .flatMap(payload -> notificationChannel.notify(CHANNEL, payload))
+                )
+                .then();
+        }
+        return TransactionHooks.afterCommit(() -> statusChanges.forEach(this::emit));
+    }
+
+    private synchronized void emit(CommandeStatusChangeDTO change) {
+        // the sink rejects the concurrent emissions, hence the synchronization
+        changes.tryEmitNext(change);
+    }
+
+    /**
+     * Streams the status changes of the commandes of a restaurant, until the subscription is cancelled.
+     *
+     * @param restaurantId the id of the restaurant.
+     * @return the status changes, the oldest ones dropped when the subscriber is late by more than the buffer size.
+     */
+    public Flux<CommandeStatusChangeDTO> stream(Long restaurantId) {
+        return buffered(changes.asFlux().filter(change -> restaurantId.equals(change.getRestaurantId())));
+    }
+
+    /**
+     * Streams the status changes of the commandes of every restaurant, until the subscription is cancelled.
+     *
+     * @return the status changes, the oldest ones dropped when the subscriber is late by more than the buffer size.
+     */
+    public Flux<CommandeStatusChangeDTO> stream() {
+        return buffered(changes.asFlux());
+    }
+
+    private Flux<CommandeStatusChangeDTO> buffered(Flux<CommandeStatusChangeDTO> statusChanges) {
+        return statusChanges.onBackpressureBuffer(
+                properties.getBufferSize(),
+                dropped -> log.debug("Dropping the status change {} for a slow subscriber", dropped),
+                BufferOverflowStrategy.DROP_OLDEST
+            );
+    }
+}
@@ -0,0 +1,137 @@
+package jerem.coopcycle.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Base of the in-memory indexes of values by id, written by the services and reloaded from the database.
+ * <p>
+ * The subclasses keep their structures in the hooks {@link #add}, {@link #delete} and {@link #clear}, which run under a write
+ * lock, and run their queries with {@link #read}, under a read lock, so that the queries run in parallel.
+ * <p>
+ * A reload reads the database without lock before swapping its snapshot in: the writes made in the meantime are recorded
+ * from {@link #beginRefresh()}, and applied again over the snapshot by {@link #replaceValues}, so that a snapshot read before
+ * a write does not undo it.
+ *
+ * @param <V> the type of the indexed values.
+ */
+public abstract class ConcurrentIndex<V> {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The writes made during the refreshes in progress, by id, a {@code null} value for a removal.
+     */
+    private final Map<Long, V> refreshWrites = new HashMap<>();
+
+    private int refreshes;
+
+    /**
+     * Adds a value to the structures of the index, its id not being indexed.
+     */
+    protected abstract void add(long id, V value);
+
+    /**
+     * Removes a value from the structures of the index, if its id is indexed.
+     */
+    protected abstract void delete(long id);
+
+    /**
+     * Removes all the values from the structures of the index.
+     */
+    protected abstract void clear();
+
+    /**
+     * Adds a value, or replaces it if its id is already indexed.
+     */
+    protected final void putValue(long id, V value) {
+        write(() -> {
+            delete(id);
+            add(id, value);
+            record(id, value);
+        });
+    }
+
+    /**
+     * Removes a value, if its id is indexed.
+     */
+    protected final void removeValue(long id) {
+        write(() -> {
+            delete(id);
+            record(id, null);
+        });
+    }
+
+    /**
+     * Replaces all the values at once, the queries seeing either the previous values or the new ones.
+     * <p>
+     * If a refresh is in progress, the values are its snapshot: the writes made since its {@link #beginRefresh()} are applied
+     * again over them, and the refresh ends.
+     */
+    protected final void replaceValues(Map<Long, V> values) {
+        write(() -> {
+            clear();
+            values.forEach(this::add);
+            refreshWrites.forEach((id, value) -> {
+                delete(id);
+                if (value != null) {
+                    add(id, value);
+                }
+            });
+            endRefresh();
+        });
+    }
+
+    /**
+     * Starts recording the writes, before reading the snapshot of a refresh.
+     * <p>
+     * The refresh must end by replacing the values, or by {@link #cancelRefresh()} if its snapshot cannot be read.
+     */
+    public final void beginRefresh() {
+        write(() -> refreshes++);
+    }
+
+    /**
+     * Ends a refresh without replacing the values.
+     */
+    public final void cancelRefresh() {
+        write(this::endRefresh);
+    }
+
+    /**
+     * Runs a query under the read lock.
+     */
+    protected final <R> R read(Supplier<R> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable write) {
+        lock.writeLock().lock();
+        try {
+            write.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void record(long id, V value) {
+        if (refreshes > 0) {
+            refreshWrites.put(id, value);
+        }
+    }
+
+    private void endRefresh() {
+        // the writes are kept for the other refreshes in progress, their snapshots being possibly older
+        if (refreshes > 0 && --refreshes == 0) {
+            refreshWrites.clear();
+        }
+    }
+}
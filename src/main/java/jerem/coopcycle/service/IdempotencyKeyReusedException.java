@@ -0,0 +1,10 @@
+package jerem.coopcycle.service;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyKeyReusedException(String key) {
+        super("The idempotency key " + key + " was already used for another request");
+    }
+}
@@ -0,0 +1,225 @@
+package jerem.coopcycle.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.config.Constants;
+import jerem.coopcycle.domain.IdempotencyKey;
+import jerem.coopcycle.repository.IdempotencyKeyRepository;
+import jerem.coopcycle.security.SecurityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service running the creations sent with an {@code Idempotency-Key} header at most once per key, so that the retries of a
+ * client replay the response of its first request instead of creating duplicates.
+ * <p>
+ * The keys are scoped by entity and by user. The first request of a key inserts it in the {@code idempotency_key} table
+ * before running, and stores its response with the creation, in the same transaction. The retries read the stored
+ * response without touching the entity tables, the recent ones from a bounded in-memory cache. A retry arriving while the
+ * first request is in flight waits for its response: on the same instance it shares the result of the first request, on
+ * another instance it polls the table. A retry with another request than the first one fails with an
+ * {@link IdempotencyKeyReusedException}.
+ * <p>
+ * A failed request deletes its key, so that it can be retried. The key of a request whose instance stopped can be taken
+ * over once its lease expired.
+ */
+@Service
+public class IdempotencyService {
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ApplicationProperties.Idempotency properties;
+
+    /**
+     * The completed keys, with their response, the least recently used first.
+     */
+    private final Map<String, IdempotencyKey> completed;
+
+    /**
+     * The keys in flight on this instance, shared by their concurrent requests.
+     */
+    private final Map<String, Mono<IdempotencyKey>> inFlight = new ConcurrentHashMap<>();
+
+    private final BackgroundJob cleanupJob = new BackgroundJob("idempotency keys cleanup");
+
+    public IdempotencyService(
+        IdempotencyKeyRepository idempotencyKeyRepository,
+        ObjectMapper objectMapper,
+        ReactiveTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.properties = applicationProperties.getIdempotency();
+        int cacheSize = properties.getCacheSize();
+        this.completed =
+            Collections.synchronizedMap(
+                new LinkedHashMap<String, IdempotencyKey>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, IdempotencyKey> eldest) {
+                        return size() > cacheSize;
+                    }
+                }
+            );
+    }
+
+    /**
+     * Runs a creation at most once per key.
+     *
+     * @param scope the name of the created entity.
+     * @param key the {@code Idempotency-Key} of the request, null to run the creation unconditionally.
+     * @param request the body of the request, which the retries must repeat.
+     * @param responseType the type of the response, to read the stored response.
+     * @param action the creation.
+     * @param <T> the type of the response.
+     * @return the response of the creation, or the response of the first request with the same key.
+     * @throws IdempotencyKeyReusedException if the key was used for another request.
+     */
+    public <T> Mono<T> execute(String scope, String key, Object request, Class<T> responseType, Supplier<Mono<T>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        return Mono
+            .fromCallable(() -> hash(request))
+            .zipWith(SecurityUtils.getCurrentUserLogin().defaultIfEmpty(Constants.SYSTEM))
+            .flatMap(hashAndLogin -> {
+                String requestHash = hashAndLogin.getT1();
+                String login = hashAndLogin.getT2();
+                String cacheKey = scope + ':' + login + ':' + key;
+                IdempotencyKey cached = completed.get(cacheKey);
+                Mono<IdempotencyKey> completion;
+                if (cached != null && cached.getCreatedDate().isAfter(Instant.now().minus(properties.getRetention()))) {
+                    log.debug("Replaying the response of the idempotency key {} of {}", key, login);
+                    completion = Mono.just(cached);
+                } else {
+                    completion =
+                        inFlight.computeIfAbsent(
+                            cacheKey,
+                            k ->
+                                acquireOrWait(scope, login, key, requestHash, () -> action.get().flatMap(this::write))
+                                    .doOnNext(idempotencyKey -> {
+                                        if (idempotencyKey.getResponse() != null) {
+                                            completed.put(k, idempotencyKey);
+                                        }
+                                    })
+                                    .doFinally(signal -> inFlight.remove(k))
+                                    .cache()
+                        );
+                }
+                return completion.flatMap(idempotencyKey -> {
+                    if (!idempotencyKey.getRequestHash().equals(requestHash)) {
+                        return Mono.error(new IdempotencyKeyReusedException(key));
+                    }
+                    return Mono.fromCallable(() -> objectMapper.readValue(idempotencyKey.getResponse(), responseType));
+                });
+            });
+    }
+
+    /**
+     * Gets the completed key, or runs the action if the key is free, or waits for the request holding it.
+     */
+    private Mono<IdempotencyKey> acquireOrWait(String scope, String login, String key, String requestHash, Supplier<Mono<String>> action) {
+        return idempotencyKeyRepository
+            .findOneByScopeAndLoginAndKey(scope, login, key)
+            .flatMap(idempotencyKey -> {
+                if (idempotencyKey.getResponse() != null || !idempotencyKey.getRequestHash().equals(requestHash)) {
+                    return Mono.just(idempotencyKey);
+                }
+                Instant now = now();
+                Instant expiredBefore = now.minus(properties.getLease());
+                if (idempotencyKey.getCreatedDate().isBefore(expiredBefore)) {
+                    log.debug("Taking over the expired idempotency key {} of {}", key, login);
+                    return idempotencyKeyRepository
+                        .takeOver(idempotencyKey.getId(), now, expiredBefore)
+                        .flatMap(updated ->
+                            updated > 0
+                                ? run(idempotencyKey.createdDate(now), action)
+                                : acquireOrWait(scope, login, key, requestHash, action)
+                        );
+                }
+                return Mono
+                    .delay(properties.getPollInterval())
+                    .then(Mono.defer(() -> acquireOrWait(scope, login, key, requestHash, action)));
+            })
+            .switchIfEmpty(
+                Mono.defer(() ->
+                    idempotencyKeyRepository
+                        .save(new IdempotencyKey().scope(scope).login(login).key(key).requestHash(requestHash).createdDate(now()))
+                        .flatMap(idempotencyKey -> run(idempotencyKey, action))
+                        // another instance inserted the key meanwhile
+                        .onErrorResume(DataIntegrityViolationException.class, e -> acquireOrWait(scope, login, key, requestHash, action))
+                )
+            );
+    }
+
+    /**
+     * Runs the action, and stores its response with the key in the same transaction.
+     */
+    private Mono<IdempotencyKey> run(IdempotencyKey idempotencyKey, Supplier<Mono<String>> action) {
+        return transactionalOperator
+            .transactional(
+                action
+                    .get()
+                    .flatMap(response -> idempotencyKeyRepository.complete(idempotencyKey.getId(), response).thenReturn(response))
+            )
+            .map(idempotencyKey::response)
+            .onErrorResume(e -> idempotencyKeyRepository.release(idempotencyKey.getId()).then(Mono.error(e)));
+    }
+
+    private Mono<String> write(Object response) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(response));
+    }
+
+    private String hash(Object request) throws JsonProcessingException, NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    private static Instant now() {
+        // the precision of the created_date column
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    /**
+     * Deletes the keys older than the retention, whose requests are not replayed anymore.
+     * <p>
+     * This is scheduled with {@code application.idempotency.cleanup-cron}, every hour by default, and the keys of the database
+     * are deleted off the scheduling threads.
+     */
+    @Scheduled(cron = "${application.idempotency.cleanup-cron:0 0 * * * ?}")
+    public void removeExpiredKeys() {
+        Instant before = Instant.now().minus(properties.getRetention());
+        synchronized (completed) {
+            completed.values().removeIf(idempotencyKey -> idempotencyKey.getCreatedDate().isBefore(before));
+        }
+        cleanupJob.start(() ->
+            idempotencyKeyRepository
+                .deleteByCreatedDateBefore(before)
+                .doOnNext(deleted -> log.debug("Deleted {} expired idempotency keys", deleted))
+        );
+    }
+}
@@ -1,9 +1,13 @@
 package jerem.coopcycle.service;
 
 import jerem.coopcycle.domain.Paiement;
+import jerem.coopcycle.domain.enumeration.OutboxEventType;
+import jerem.coopcycle.repository.Keyset;
 import jerem.coopcycle.repository.PaiementRepository;
+import jerem.coopcycle.service.count.TotalCountService;
 import jerem.coopcycle.service.dto.PaiementDTO;
 import jerem.coopcycle.service.mapper.PaiementMapper;
+import jerem.coopcycle.service.outbox.OutboxService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Pageable;
@@ -14,6 +18,8 @@ import reactor.core.publisher.Mono;
 
 /**
  * Service Implementation for managing {@link Paiement}.
+ * <p>
+ * Each change of a paiement writes an event to the outbox in its transaction, see {@link OutboxService}.
  */
 @Service
 @Transactional
@@ -21,13 +27,30 @@ public class PaiementService {
 
     private final Logger log = LoggerFactory.getLogger(PaiementService.class);
 
+    private static final String ENTITY_NAME = "paiement";
+
     private final PaiementRepository paiementRepository;
 
     private final PaiementMapper paiementMapper;
 
-    public PaiementService(PaiementRepository paiementRepository, PaiementMapper paiementMapper) {
+    private final TotalCountService totalCountService;
+
+    private final RestaurantStatsService restaurantStatsService;
+
+    private final OutboxService outboxService;
+
+    public PaiementService(
+        PaiementRepository paiementRepository,
+        PaiementMapper paiementMapper,
+        TotalCountService totalCountService,
+        RestaurantStatsService restaurantStatsService,
+        OutboxService outboxService
+    ) {
         this.paiementRepository = paiementRepository;
         this.paiementMapper = paiementMapper;
+        this.totalCountService = totalCountService;
+        this.restaurantStatsService = restaurantStatsService;
+        this.outboxService = outboxService;
     }
 
     /**
@@ -38,38 +61,43 @@ public class PaiementService {
      */
     public Mono<PaiementDTO> save(PaiementDTO paiementDTO) {
         log.debug("Request to save Paiement : {}", paiementDTO);
-        return paiementRepository.save(paiementMapper.toEntity(paiementDTO)).map(paiementMapper::toDto);
+        return paiementRepository
+            .save(paiementMapper.toEntity(paiementDTO).version(null))
+            .flatMap(saved -> totalCountService.invalidateAfterCommit(Paiement.class).thenReturn(saved))
+            .map(paiementMapper::toDto)
+            .flatMap(result -> outboxService.publish(ENTITY_NAME, result.getId(), OutboxEventType.CREATED, result).thenReturn(result));
     }
 
     /**
      * Update a paiement.
      *
      * @param paiementDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, or an empty Mono if the entity does not exist.
      */
     public Mono<PaiementDTO> update(PaiementDTO paiementDTO) {
         log.debug("Request to update Paiement : {}", paiementDTO);
-        return paiementRepository.save(paiementMapper.toEntity(paiementDTO)).map(paiementMapper::toDto);
+        Paiement paiement = paiementMapper.toEntity(paiementDTO);
+        return restaurantStatsService
+            .refreshPaiement(paiement.getId(), paiementRepository.updateById(paiement))
+            .filter(updated -> updated > 0)
+            .map(updated -> paiementMapper.toDto(paiement))
+            .flatMap(result -> outboxService.publish(ENTITY_NAME, result.getId(), OutboxEventType.UPDATED, result).thenReturn(result));
     }
 
     /**
-     * Partially update a paiement.
+     * Partially update a paiement: only the non-null properties are written, and the updated row is returned by the same
+     * statement on PostgreSQL.
      *
      * @param paiementDTO the entity to update partially.
-     * @return the persisted entity.
+     * @return the updated entity, or an empty Mono if the entity does not exist.
      */
     public Mono<PaiementDTO> partialUpdate(PaiementDTO paiementDTO) {
         log.debug("Request to partially update Paiement : {}", paiementDTO);
-
-        return paiementRepository
-            .findById(paiementDTO.getId())
-            .map(existingPaiement -> {
-                paiementMapper.partialUpdate(existingPaiement, paiementDTO);
-
-                return existingPaiement;
-            })
-            .flatMap(paiementRepository::save)
-            .map(paiementMapper::toDto);
+        Paiement paiement = paiementMapper.toEntity(paiementDTO);
+        return restaurantStatsService
+            .refreshPaiement(paiement.getId(), paiementRepository.updateNonNullByIdReturning(paiement))
+            .map(paiementMapper::toDto)
+            .flatMap(result -> outboxService.publish(ENTITY_NAME, result.getId(), OutboxEventType.UPDATED, result).thenReturn(result));
     }
 
     /**
@@ -85,12 +113,26 @@ public class PaiementService {
     }
 
     /**
-     * Returns the number of paiements available.
+     * Get a page of paiements after the given keyset position.
+     *
+     * @param pageable the pagination information, only the page size is used.
+     * @param keyset the position of the last paiement already returned.
+     * @return the list of entities.
+     */
+    @Transactional(readOnly = true)
+    public Flux<PaiementDTO> findAll(Pageable pageable, Keyset keyset) {
+        log.debug("Request to get a keyset page of Paiements : {}", keyset);
+        return paiementRepository.findAllBy(pageable, keyset).map(paiementMapper::toDto);
+    }
+
+    /**
+     * Returns the number of paiements available, computed with the {@link jerem.coopcycle.service.count.TotalCountStrategy}
+     * configured for the entity.
      * @return the number of entities in the database.
      *
      */
     public Mono<Long> countAll() {
-        return paiementRepository.count();
+        return totalCountService.count(Paiement.class, paiementRepository::count);
     }
 
     /**
@@ -113,6 +155,9 @@ public class PaiementService {
      */
     public Mono<Void> delete(Long id) {
         log.debug("Request to delete Paiement : {}", id);
-        return paiementRepository.deleteById(id);
+        return paiementRepository
+            .deleteById(id)
+            .then(totalCountService.invalidateAfterCommit(Paiement.class))
+            .then(outboxService.publish(ENTITY_NAME, id, OutboxEventType.DELETED, null));
     }
 }
@@ -1,7 +1,10 @@
 package jerem.coopcycle.service;
 
 import jerem.coopcycle.domain.Panier;
+import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.repository.Keyset;
 import jerem.coopcycle.repository.PanierRepository;
+import jerem.coopcycle.service.count.TotalCountService;
 import jerem.coopcycle.service.dto.PanierDTO;
 import jerem.coopcycle.service.mapper.PanierMapper;
 import org.slf4j.Logger;
@@ -25,9 +28,12 @@ public class PanierService {
 
     private final PanierMapper panierMapper;
 
-    public PanierService(PanierRepository panierRepository, PanierMapper panierMapper) {
+    private final TotalCountService totalCountService;
+
+    public PanierService(PanierRepository panierRepository, PanierMapper panierMapper, TotalCountService totalCountService) {
         this.panierRepository = panierRepository;
         this.panierMapper = panierMapper;
+        this.totalCountService = totalCountService;
     }
 
     /**
@@ -38,38 +44,43 @@ public class PanierService {
      */
     public Mono<PanierDTO> save(PanierDTO panierDTO) {
         log.debug("Request to save Panier : {}", panierDTO);
-        return panierRepository.save(panierMapper.toEntity(panierDTO)).map(panierMapper::toDto);
+        return panierRepository
+            .save(panierMapper.toEntity(panierDTO).version(null))
+            .flatMap(saved -> totalCountService.invalidateAfterCommit(Panier.class).thenReturn(saved))
+            .map(panierMapper::toDto);
     }
 
     /**
      * Update a panier.
      *
      * @param panierDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, or an empty Mono if the entity does not exist.
      */
     public Mono<PanierDTO> update(PanierDTO panierDTO) {
         log.debug("Request to update Panier : {}", panierDTO);
-        return panierRepository.save(panierMapper.toEntity(panierDTO)).map(panierMapper::toDto);
+        Panier panier = panierMapper.toEntity(panierDTO);
+        return panierRepository.updateById(panier).filter(updated -> updated > 0).map(updated -> panierMapper.toDto(panier));
     }
 
     /**
-     * Partially update a panier.
+     * Partially update a panier: only the non-null properties are written, and the updated row is returned by the same
+     * statement on PostgreSQL.
      *
      * @param panierDTO the entity to update partially.
-     * @return the persisted entity.
+     * @return the updated entity, or an empty Mono if the entity does not exist.
      */
     public Mono<PanierDTO> partialUpdate(PanierDTO panierDTO) {
         log.debug("Request to partially update Panier : {}", panierDTO);
-
+        Panier panier = panierMapper.toEntity(panierDTO);
         return panierRepository
-            .findById(panierDTO.getId())
-            .map(existingPanier -> {
-                panierMapper.partialUpdate(existingPanier, panierDTO);
-
-                return existingPanier;
-            })
-            .flatMap(panierRepository::save)
-            .map(panierMapper::toDto);
+            .updateNonNullByIdReturning(panier)
+            .map(updated -> {
+                // the restaurant is not read, only its id
+                if (updated.getRestaurantId() != null) {
+                    updated.setRestaurant(new Restaurant().id(updated.getRestaurantId()));
+                }
+                return panierMapper.toDto(updated);
+            });
     }
 
     /**
@@ -85,12 +96,26 @@ public class PanierService {
     }
 
     /**
-     * Returns the number of paniers available.
+     * Get a page of paniers after the given keyset position.
+     *
+     * @param pageable the pagination information, only the page size is used.
+     * @param keyset the position of the last panier already returned.
+     * @return the list of entities.
+     */
+    @Transactional(readOnly = true)
+    public Flux<PanierDTO> findAll(Pageable pageable, Keyset keyset) {
+        log.debug("Request to get a keyset page of Paniers : {}", keyset);
+        return panierRepository.findAllBy(pageable, keyset).map(panierMapper::toDto);
+    }
+
+    /**
+     * Returns the number of paniers available, computed with the {@link jerem.coopcycle.service.count.TotalCountStrategy}
+     * configured for the entity.
      * @return the number of entities in the database.
      *
      */
     public Mono<Long> countAll() {
-        return panierRepository.count();
+        return totalCountService.count(Panier.class, panierRepository::count);
     }
 
     /**
@@ -113,6 +138,6 @@ public class PanierService {
      */
     public Mono<Void> delete(Long id) {
         log.debug("Request to delete Panier : {}", id);
-        return panierRepository.deleteById(id);
+        return panierRepository.deleteById(id).then(totalCountService.invalidateAfterCommit(Panier.class));
     }
 }
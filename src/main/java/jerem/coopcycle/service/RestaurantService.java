@@ -1,9 +1,24 @@
 package jerem.coopcycle.service;
 
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jerem.coopcycle.domain.Panier;
 import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.domain.Restaurateur;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.repository.PanierRepository;
+import jerem.coopcycle.repository.RelationshipLoader;
 import jerem.coopcycle.repository.RestaurantRepository;
+import jerem.coopcycle.service.count.TotalCountService;
+import jerem.coopcycle.service.dto.PanierDTO;
 import jerem.coopcycle.service.dto.RestaurantDTO;
+import jerem.coopcycle.service.geo.Geocoder;
+import jerem.coopcycle.service.geo.RestaurantLocationIndex;
+import jerem.coopcycle.service.mapper.PanierMapper;
 import jerem.coopcycle.service.mapper.RestaurantMapper;
+import jerem.coopcycle.service.search.RestaurantSearchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Pageable;
@@ -14,20 +29,55 @@ import reactor.core.publisher.Mono;
 
 /**
  * Service Implementation for managing {@link Restaurant}.
+ * <p>
+ * The writes geocode the addresses of the restaurants, and keep the {@link RestaurantLocationIndex} and the index of the
+ * {@link RestaurantSearchService} up to date once their transaction commits.
  */
 @Service
 @Transactional
 public class RestaurantService {
 
+    /**
+     * Name of the {@code paniers} association, which can be loaded with the restaurants.
+     */
+    public static final String EXPAND_PANIERS = "paniers";
+
     private final Logger log = LoggerFactory.getLogger(RestaurantService.class);
 
     private final RestaurantRepository restaurantRepository;
 
     private final RestaurantMapper restaurantMapper;
 
-    public RestaurantService(RestaurantRepository restaurantRepository, RestaurantMapper restaurantMapper) {
+    private final TotalCountService totalCountService;
+
+    private final PanierRepository panierRepository;
+
+    private final PanierMapper panierMapper;
+
+    private final Geocoder geocoder;
+
+    private final RestaurantLocationIndex restaurantLocationIndex;
+
+    private final RestaurantSearchService restaurantSearchService;
+
+    public RestaurantService(
+        RestaurantRepository restaurantRepository,
+        RestaurantMapper restaurantMapper,
+        TotalCountService totalCountService,
+        PanierRepository panierRepository,
+        PanierMapper panierMapper,
+        Geocoder geocoder,
+        RestaurantLocationIndex restaurantLocationIndex,
+        RestaurantSearchService restaurantSearchService
+    ) {
         this.restaurantRepository = restaurantRepository;
         this.restaurantMapper = restaurantMapper;
+        this.totalCountService = totalCountService;
+        this.panierRepository = panierRepository;
+        this.panierMapper = panierMapper;
+        this.geocoder = geocoder;
+        this.restaurantLocationIndex = restaurantLocationIndex;
+        this.restaurantSearchService = restaurantSearchService;
     }
 
     /**
@@ -38,59 +88,149 @@ public class RestaurantService {
      */
     public Mono<RestaurantDTO> save(RestaurantDTO restaurantDTO) {
         log.debug("Request to save Restaurant : {}", restaurantDTO);
-        return restaurantRepository.save(restaurantMapper.toEntity(restaurantDTO)).map(restaurantMapper::toDto);
+        return locate(restaurantMapper.toEntity(restaurantDTO).version(null))
+            .flatMap(restaurantRepository::save)
+            .flatMap(saved -> totalCountService.invalidateAfterCommit(Restaurant.class).thenReturn(saved))
+            .flatMap(saved -> index(saved).thenReturn(saved))
+            .map(restaurantMapper::toDto);
     }
 
     /**
      * Update a restaurant.
      *
      * @param restaurantDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, or an empty Mono if the entity does not exist.
      */
     public Mono<RestaurantDTO> update(RestaurantDTO restaurantDTO) {
         log.debug("Request to update Restaurant : {}", restaurantDTO);
-        return restaurantRepository.save(restaurantMapper.toEntity(restaurantDTO)).map(restaurantMapper::toDto);
+        Restaurant restaurant = restaurantMapper.toEntity(restaurantDTO);
+        return locate(restaurant)
+            .flatMap(restaurantRepository::updateById)
+            .filter(updated -> updated > 0)
+            .flatMap(updated -> index(restaurant).thenReturn(updated))
+            .map(updated -> restaurantMapper.toDto(restaurant));
     }
 
     /**
-     * Partially update a restaurant.
+     * Partially update a restaurant: only the non-null properties are written, and the updated row is returned by the same
+     * statement on PostgreSQL.
+     * <p>
+     * When the name, the address or the menu is written, the updated restaurant is refreshed in the indexes.
      *
      * @param restaurantDTO the entity to update partially.
-     * @return the persisted entity.
+     * @return the updated entity, or an empty Mono if the entity does not exist.
      */
     public Mono<RestaurantDTO> partialUpdate(RestaurantDTO restaurantDTO) {
         log.debug("Request to partially update Restaurant : {}", restaurantDTO);
-
-        return restaurantRepository
-            .findById(restaurantDTO.getId())
-            .map(existingRestaurant -> {
-                restaurantMapper.partialUpdate(existingRestaurant, restaurantDTO);
-
-                return existingRestaurant;
+        Restaurant restaurant = restaurantMapper.toEntity(restaurantDTO);
+        return locate(restaurant)
+            .flatMap(restaurantRepository::updateNonNullByIdReturning)
+            .flatMap(updated -> {
+                // the restaurateur is not read, only its id
+                if (updated.getRestaurateurId() != null) {
+                    updated.setRestaurateur(new Restaurateur().id(updated.getRestaurateurId()));
+                }
+                // the null coordinates of an address which is not geocoded are not written by the update
+                return restaurant.getAddress() != null && restaurant.getLatitude() == null
+                    ? restaurantRepository.clearLocation(restaurant.getId()).thenReturn(updated.latitude(null).longitude(null))
+                    : Mono.just(updated);
             })
-            .flatMap(restaurantRepository::save)
+            .flatMap(updated ->
+                restaurant.getName() != null || restaurant.getAddress() != null || restaurant.getMenu() != null
+                    ? index(updated).thenReturn(updated)
+                    : Mono.just(updated)
+            )
             .map(restaurantMapper::toDto);
     }
 
+    /**
+     * Refreshes a restaurant in the indexes once the transaction commits, so that a rollback leaves them unchanged.
+     */
+    private Mono<Void> index(Restaurant restaurant) {
+        return TransactionHooks.afterCommit(() -> {
+            restaurantLocationIndex.put(restaurant);
+            restaurantSearchService.put(restaurant);
+        });
+    }
+
+    /**
+     * Sets the coordinates of the address of a restaurant, or clears them if the address is not geocoded: the coordinates sent
+     * by the client are ignored.
+     */
+    private Mono<Restaurant> locate(Restaurant restaurant) {
+        restaurant.latitude(null).longitude(null);
+        if (restaurant.getAddress() == null) {
+            return Mono.just(restaurant);
+        }
+        return geocoder
+            .geocode(restaurant.getAddress())
+            .map(point -> restaurant.latitude(point.getLatitude()).longitude(point.getLongitude()))
+            .defaultIfEmpty(restaurant);
+    }
+
     /**
      * Get all the restaurants.
      *
      * @param pageable the pagination information.
+     * @param expand the associations to load with the entities, see {@link #EXPAND_PANIERS}.
+     * @param fields the properties to read, or {@code null} to read them all.
      * @return the list of entities.
      */
     @Transactional(readOnly = true)
-    public Flux<RestaurantDTO> findAll(Pageable pageable) {
+    public Flux<RestaurantDTO> findAll(Pageable pageable, Set<String> expand, Set<String> fields) {
         log.debug("Request to get all Restaurants");
-        return restaurantRepository.findAllBy(pageable).map(restaurantMapper::toDto);
+        return toDtos(restaurantRepository.findAllBy(pageable, null, fields), expand);
     }
 
     /**
-     * Returns the number of restaurants available.
+     * Get a page of restaurants after the given keyset position.
+     *
+     * @param pageable the pagination information, only the page size is used.
+     * @param keyset the position of the last restaurant already returned.
+     * @param expand the associations to load with the entities, see {@link #EXPAND_PANIERS}.
+     * @param fields the properties to read, or {@code null} to read them all.
+     * @return the list of entities.
+     */
+    @Transactional(readOnly = true)
+    public Flux<RestaurantDTO> findAll(Pageable pageable, Keyset keyset, Set<String> expand, Set<String> fields) {
+        log.debug("Request to get a keyset page of Restaurants : {}", keyset);
+        return toDtos(restaurantRepository.findAllBy(pageable, keyset, fields), expand);
+    }
+
+    private Flux<RestaurantDTO> toDtos(Flux<Restaurant> restaurants, Set<String> expand) {
+        if (!expand.contains(EXPAND_PANIERS)) {
+            return restaurants.map(restaurantMapper::toDto);
+        }
+        return RelationshipLoader
+            .loadOneToMany(
+                restaurants,
+                Restaurant::getId,
+                panierRepository::findAllByRestaurantIdIn,
+                Panier::getRestaurantId,
+                Restaurant::addPanier
+            )
+            .map(restaurant -> {
+                RestaurantDTO restaurantDTO = restaurantMapper.toDto(restaurant);
+                restaurantDTO.setPaniers(
+                    restaurant
+                        .getPaniers()
+                        .stream()
+                        .map(panierMapper::toDto)
+                        .sorted(Comparator.comparing(PanierDTO::getId))
+                        .collect(Collectors.toCollection(LinkedHashSet::new))
+                );
+                return restaurantDTO;
+            });
+    }
+
+    /**
+     * Returns the number of restaurants available, computed with the {@link jerem.coopcycle.service.count.TotalCountStrategy}
+     * configured for the entity.
      * @return the number of entities in the database.
      *
      */
     public Mono<Long> countAll() {
-        return restaurantRepository.count();
+        return totalCountService.count(Restaurant.class, restaurantRepository::count);
     }
 
     /**
@@ -113,6 +253,14 @@ public class RestaurantService {
      */
     public Mono<Void> delete(Long id) {
         log.debug("Request to delete Restaurant : {}", id);
-        return restaurantRepository.deleteById(id);
+        return restaurantRepository
+            .deleteById(id)
+            .then(totalCountService.invalidateAfterCommit(Restaurant.class))
+            .then(
+                TransactionHooks.afterCommit(() -> {
+                    restaurantLocationIndex.remove(id);
+                    restaurantSearchService.remove(id);
+                })
+            );
     }
 }
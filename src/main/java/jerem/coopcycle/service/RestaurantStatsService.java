@@ -0,0 +1,327 @@
+package jerem.coopcycle.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import jerem.coopcycle.domain.RestaurantStats;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.PaymentType;
+import jerem.coopcycle.domain.enumeration.StatsGranularity;
+import jerem.coopcycle.repository.RestaurantStatsRepository;
+import jerem.coopcycle.service.dto.RestaurantStatsDTO;
+import jerem.coopcycle.service.mapper.RestaurantStatsMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+/**
+ * Service maintaining the statistics of the restaurants: the number of commandes and their revenue per hour and per day, by
+ * status and payment type.
+ * <p>
+ * The writes of the commandes and the paiements add their deltas to the hours and the days they touch, in the same
+ * transaction: the contributions of the written commandes are read before and after the write, and only the difference is
+ * upserted, without locking the restaurant. The reconciliation job rebuilds the statistics of every restaurant, which
+ * repairs the drift of the sums and catches the changes made elsewhere, such as a panier moved to another restaurant.
+ */
+@Service
+public class RestaurantStatsService {
+
+    private final Logger log = LoggerFactory.getLogger(RestaurantStatsService.class);
+
+    private final RestaurantStatsRepository restaurantStatsRepository;
+
+    private final RestaurantStatsMapper restaurantStatsMapper;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final BackgroundJob reconciliationJob = new BackgroundJob("restaurant stats reconciliation");
+
+    public RestaurantStatsService(
+        RestaurantStatsRepository restaurantStatsRepository,
+        RestaurantStatsMapper restaurantStatsMapper,
+        ReactiveTransactionManager transactionManager
+    ) {
+        this.restaurantStatsRepository = restaurantStatsRepository;
+        this.restaurantStatsMapper = restaurantStatsMapper;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+    }
+
+    /**
+     * Runs a write of commandes, and adds to the statistics the difference between the contributions of the commandes before
+     * the write and after it.
+     *
+     * @param commandeIds the ids of the written commandes.
+     * @param write the write.
+     * @param <T> the type of the result of the write.
+     * @return the result of the write.
+     */
+    public <T> Mono<T> refreshCommandes(Collection<Long> commandeIds, Mono<T> write) {
+        return findContributions(commandeIds)
+            .flatMap(before ->
+                write
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(result -> findContributions(commandeIds).flatMap(after -> apply(before, after)).then(Mono.justOrEmpty(result)))
+            );
+    }
+
+    /**
+     * Adds the contributions of new commandes to the statistics.
+     *
+     * @param commandeIds the ids of the created commandes.
+     * @return a Mono to signal the refresh.
+     */
+    public Mono<Void> addCommandes(Collection<Long> commandeIds) {
+        return findContributions(commandeIds).flatMap(after -> apply(List.of(), after));
+    }
+
+    /**
+     * Moves the contributions of commandes from a status to the one they have now, after a transition which changed nothing
+     * else: the commandes are read once, after the transition.
+     *
+     * @param commandeIds the ids of the commandes which went from the status.
+     * @param from the status the commandes had before the transition.
+     * @return the id of the restaurant of each commande, for the commandes with a restaurant.
+     */
+    public Mono<Map<Long, Long>> changeStatus(Collection<Long> commandeIds, CommandeStatus from) {
+        if (commandeIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return restaurantStatsRepository
+            .findContributionsByCommandeIdIn(commandeIds)
+            .collectList()
+            .flatMap(contributions -> {
+                Map<Long, Long> restaurantIds = new HashMap<>();
+                List<RestaurantStats> before = new ArrayList<>();
+                List<RestaurantStats> after = new ArrayList<>();
+                for (Tuple2<Long, RestaurantStats> contribution : contributions) {
+                    restaurantIds.put(contribution.getT1(), contribution.getT2().getRestaurantId());
+                    before.add(withStatus(contribution.getT2(), from));
+                    after.add(contribution.getT2());
+                }
+                return apply(before, after).thenReturn(restaurantIds);
+            });
+    }
+
+    /**
+     * Runs a write of a paiement, and adds to the statistics the difference between the contributions of the commandes it pays
+     * before the write and after it.
+     *
+     * @param paiementId the id of the written paiement.
+     * @param write the write.
+     * @param <T> the type of the result of the write.
+     * @return the result of the write.
+     */
+    public <T> Mono<T> refreshPaiement(Long paiementId, Mono<T> write) {
+        return restaurantStatsRepository
+            .findContributionsByPaiementId(paiementId)
+            .collectList()
+            .flatMap(before ->
+                write
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(result ->
+                        restaurantStatsRepository
+                            .findContributionsByPaiementId(paiementId)
+                            .collectList()
+                            .flatMap(after -> apply(before, after))
+                            .then(Mono.justOrEmpty(result))
+                    )
+            );
+    }
+
+    private Mono<List<RestaurantStats>> findContributions(Collection<Long> commandeIds) {
+        if (commandeIds.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return restaurantStatsRepository.findContributionsByCommandeIdIn(commandeIds).map(Tuple2::getT2).collectList();
+    }
+
+    /**
+     * Adds the contributions which appeared and subtracts the ones which disappeared, in the hours and the days. The buckets
+     * are written in a fixed order, so that concurrent writes of the same buckets cannot deadlock.
+     */
+    private Mono<Void> apply(List<RestaurantStats> before, List<RestaurantStats> after) {
+        List<RestaurantStats> removed = new ArrayList<>(before);
+        List<RestaurantStats> added = new ArrayList<>();
+        for (RestaurantStats contribution : after) {
+            // the commandes whose statistics did not change cancel out
+            if (!removeSame(removed, contribution)) {
+                added.add(contribution);
+            }
+        }
+        if (removed.isEmpty() && added.isEmpty()) {
+            return Mono.empty();
+        }
+        Map<Bucket, RestaurantStats> deltas = new TreeMap<>();
+        removed.forEach(contribution -> addDeltas(deltas, contribution, -1));
+        added.forEach(contribution -> addDeltas(deltas, contribution, 1));
+        log.debug("Request to add deltas to the RestaurantStats : {}", deltas.values());
+        return Flux
+            .fromIterable(deltas.values())
+            .filter(delta -> delta.getCommandeCount() != 0 || delta.getRevenue() != 0)
+            .concatMap(restaurantStatsRepository::addToBucket)
+            .then();
+    }
+
+    private static boolean removeSame(List<RestaurantStats> contributions, RestaurantStats contribution) {
+        for (int i = 0; i < contributions.size(); i++) {
+            RestaurantStats other = contributions.get(i);
+            if (new Bucket(other).equals(new Bucket(contribution)) && Objects.equals(other.getRevenue(), contribution.getRevenue())) {
+                contributions.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static RestaurantStats withStatus(RestaurantStats contribution, CommandeStatus status) {
+        return new RestaurantStats()
+            .restaurantId(contribution.getRestaurantId())
+            .granularity(contribution.getGranularity())
+            .bucket(contribution.getBucket())
+            .status(status)
+            .paymentType(contribution.getPaymentType())
+            .commandeCount(contribution.getCommandeCount())
+            .revenue(contribution.getRevenue());
+    }
+
+    private static void addDeltas(Map<Bucket, RestaurantStats> deltas, RestaurantStats contribution, int sign) {
+        for (StatsGranularity granularity : StatsGranularity.values()) {
+            RestaurantStats delta = new RestaurantStats()
+                .restaurantId(contribution.getRestaurantId())
+                .granularity(granularity)
+                .bucket(contribution.getBucket().truncatedTo(granularity == StatsGranularity.DAY ? ChronoUnit.DAYS : ChronoUnit.HOURS))
+                .status(contribution.getStatus())
+                .paymentType(contribution.getPaymentType())
+                .commandeCount(sign * contribution.getCommandeCount())
+                .revenue(sign * contribution.getRevenue());
+            deltas.merge(
+                new Bucket(delta),
+                delta,
+                (sum, other) ->
+                    sum.commandeCount(sum.getCommandeCount() + other.getCommandeCount()).revenue(sum.getRevenue() + other.getRevenue())
+            );
+        }
+    }
+
+    /**
+     * Rebuilds the statistics of every restaurant from the commandes, to repair any drift of the incremental refreshes.
+     * <p>
+     * This is scheduled with {@code application.analytics.reconciliation-cron}, everyday at 03:00 (am) by default, and runs
+     * off the scheduling threads.
+     */
+    @Scheduled(cron = "${application.analytics.reconciliation-cron:0 0 3 * * ?}")
+    public void reconcile() {
+        reconciliationJob.start(this::rebuild);
+    }
+
+    /**
+     * Rebuilds the statistics of every restaurant, each restaurant in its own transaction, so that the commandes of only one
+     * restaurant wait for the rebuild at a time.
+     *
+     * @return the number of statistics rows written.
+     */
+    public Mono<Integer> rebuild() {
+        log.debug("Request to rebuild the RestaurantStats");
+        return restaurantStatsRepository
+            .findAllRestaurantIds()
+            // read all the ids first, not to keep the cursor open during the rebuilds
+            .collectList()
+            .flatMapMany(Flux::fromIterable)
+            .concatMap(restaurantId ->
+                transactionalOperator.transactional(
+                    restaurantStatsRepository
+                        .lockRestaurants(Set.of(restaurantId))
+                        .then(restaurantStatsRepository.rebuild(restaurantId))
+                )
+            )
+            .reduce(0, Integer::sum)
+            .flatMap(written -> restaurantStatsRepository.deleteOrphans().thenReturn(written))
+            .doOnNext(written -> log.info("Rebuilt the RestaurantStats, {} rows", written));
+    }
+
+    /**
+     * Get the statistics of the restaurants in the given time range.
+     *
+     * @param granularity the length of the time buckets.
+     * @param from the start of the first bucket, inclusive.
+     * @param to the end of the range, exclusive.
+     * @param restaurantId the id of the restaurant, or {@code null} for all the restaurants.
+     * @return the statistics, by bucket.
+     */
+    @Transactional(readOnly = true)
+    public Flux<RestaurantStatsDTO> findAll(StatsGranularity granularity, Instant from, Instant to, Long restaurantId) {
+        log.debug("Request to get the RestaurantStats by {} from {} to {} of : {}", granularity, from, to, restaurantId);
+        if (restaurantId == null) {
+            return restaurantStatsRepository.findAllByGranularityAndBucketBetween(granularity, from, to).map(restaurantStatsMapper::toDto);
+        }
+        return restaurantStatsRepository
+            .findAllByRestaurantIdAndGranularityAndBucketBetween(restaurantId, granularity, from, to)
+            .map(restaurantStatsMapper::toDto);
+    }
+
+    /**
+     * The key of a statistics row, ordered by restaurant then bucket.
+     */
+    private static final class Bucket implements Comparable<Bucket> {
+
+        private static final Comparator<Bucket> ORDER = Comparator
+            .comparing((Bucket bucket) -> bucket.restaurantId)
+            .thenComparing(bucket -> bucket.granularity)
+            .thenComparing(bucket -> bucket.bucket)
+            .thenComparing(bucket -> bucket.status)
+            .thenComparing(bucket -> bucket.paymentType, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        private final Long restaurantId;
+        private final StatsGranularity granularity;
+        private final Instant bucket;
+        private final CommandeStatus status;
+        private final PaymentType paymentType;
+
+        private Bucket(RestaurantStats stats) {
+            this.restaurantId = stats.getRestaurantId();
+            this.granularity = stats.getGranularity();
+            this.bucket = stats.getBucket();
+            this.status = stats.getStatus();
+            this.paymentType = stats.getPaymentType();
+        }
+
+        @Override
+        public int compareTo(Bucket other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Bucket)) {
+                return false;
+            }
+            return compareTo((Bucket) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(restaurantId, granularity, bucket, status, paymentType);
+        }
+    }
+}
@@ -1,8 +1,21 @@
 package jerem.coopcycle.service;
 
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Restaurant;
 import jerem.coopcycle.domain.Restaurateur;
+import jerem.coopcycle.domain.Societaire;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.repository.RelationshipLoader;
+import jerem.coopcycle.repository.RestaurantRepository;
 import jerem.coopcycle.repository.RestaurateurRepository;
+import jerem.coopcycle.service.count.TotalCountService;
+import jerem.coopcycle.service.dto.RestaurantDTO;
 import jerem.coopcycle.service.dto.RestaurateurDTO;
+import jerem.coopcycle.service.mapper.RestaurantMapper;
 import jerem.coopcycle.service.mapper.RestaurateurMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,15 +32,35 @@ import reactor.core.publisher.Mono;
 @Transactional
 public class RestaurateurService {
 
+    /**
+     * Name of the {@code restaurants} association, which can be loaded with the restaurateurs.
+     */
+    public static final String EXPAND_RESTAURANTS = "restaurants";
+
     private final Logger log = LoggerFactory.getLogger(RestaurateurService.class);
 
     private final RestaurateurRepository restaurateurRepository;
 
     private final RestaurateurMapper restaurateurMapper;
 
-    public RestaurateurService(RestaurateurRepository restaurateurRepository, RestaurateurMapper restaurateurMapper) {
+    private final TotalCountService totalCountService;
+
+    private final RestaurantRepository restaurantRepository;
+
+    private final RestaurantMapper restaurantMapper;
+
+    public RestaurateurService(
+        RestaurateurRepository restaurateurRepository,
+        RestaurateurMapper restaurateurMapper,
+        TotalCountService totalCountService,
+        RestaurantRepository restaurantRepository,
+        RestaurantMapper restaurantMapper
+    ) {
         this.restaurateurRepository = restaurateurRepository;
         this.restaurateurMapper = restaurateurMapper;
+        this.totalCountService = totalCountService;
+        this.restaurantRepository = restaurantRepository;
+        this.restaurantMapper = restaurantMapper;
     }
 
     /**
@@ -38,59 +71,113 @@ public class RestaurateurService {
      */
     public Mono<RestaurateurDTO> save(RestaurateurDTO restaurateurDTO) {
         log.debug("Request to save Restaurateur : {}", restaurateurDTO);
-        return restaurateurRepository.save(restaurateurMapper.toEntity(restaurateurDTO)).map(restaurateurMapper::toDto);
+        return restaurateurRepository
+            .save(restaurateurMapper.toEntity(restaurateurDTO).version(null))
+            .flatMap(saved -> totalCountService.invalidateAfterCommit(Restaurateur.class).thenReturn(saved))
+            .map(restaurateurMapper::toDto);
     }
 
     /**
      * Update a restaurateur.
      *
      * @param restaurateurDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, or an empty Mono if the entity does not exist.
      */
     public Mono<RestaurateurDTO> update(RestaurateurDTO restaurateurDTO) {
         log.debug("Request to update Restaurateur : {}", restaurateurDTO);
-        return restaurateurRepository.save(restaurateurMapper.toEntity(restaurateurDTO)).map(restaurateurMapper::toDto);
+        Restaurateur restaurateur = restaurateurMapper.toEntity(restaurateurDTO);
+        return restaurateurRepository
+            .updateById(restaurateur)
+            .filter(updated -> updated > 0)
+            .flatMap(updated -> restaurateurRepository.findById(restaurateur.getId()))
+            .map(restaurateurMapper::toDto);
     }
 
     /**
-     * Partially update a restaurateur.
+     * Partially update a restaurateur: only the non-null properties are written, and the updated row is returned by the same
+     * statement on PostgreSQL.
      *
      * @param restaurateurDTO the entity to update partially.
-     * @return the persisted entity.
+     * @return the updated entity, or an empty Mono if the entity does not exist.
      */
     public Mono<RestaurateurDTO> partialUpdate(RestaurateurDTO restaurateurDTO) {
         log.debug("Request to partially update Restaurateur : {}", restaurateurDTO);
-
+        Restaurateur restaurateur = restaurateurMapper.toEntity(restaurateurDTO);
         return restaurateurRepository
-            .findById(restaurateurDTO.getId())
-            .map(existingRestaurateur -> {
-                restaurateurMapper.partialUpdate(existingRestaurateur, restaurateurDTO);
-
-                return existingRestaurateur;
-            })
-            .flatMap(restaurateurRepository::save)
-            .map(restaurateurMapper::toDto);
+            .updateNonNullByIdReturning(restaurateur)
+            .map(updated -> {
+                // the commande and the societaire are not read, only their ids
+                if (updated.getCommandeId() != null) {
+                    updated.setCommande(new Commande().id(updated.getCommandeId()));
+                }
+                if (updated.getSocietaireId() != null) {
+                    updated.setSocietaire(new Societaire().id(updated.getSocietaireId()));
+                }
+                return restaurateurMapper.toDto(updated);
+            });
     }
 
     /**
      * Get all the restaurateurs.
      *
      * @param pageable the pagination information.
+     * @param expand the associations to load with the entities, see {@link #EXPAND_RESTAURANTS}.
      * @return the list of entities.
      */
     @Transactional(readOnly = true)
-    public Flux<RestaurateurDTO> findAll(Pageable pageable) {
+    public Flux<RestaurateurDTO> findAll(Pageable pageable, Set<String> expand) {
         log.debug("Request to get all Restaurateurs");
-        return restaurateurRepository.findAllBy(pageable).map(restaurateurMapper::toDto);
+        return toDtos(restaurateurRepository.findAllBy(pageable), expand);
+    }
+
+    /**
+     * Get a page of restaurateurs after the given keyset position.
+     *
+     * @param pageable the pagination information, only the page size is used.
+     * @param keyset the position of the last restaurateur already returned.
+     * @param expand the associations to load with the entities, see {@link #EXPAND_RESTAURANTS}.
+     * @return the list of entities.
+     */
+    @Transactional(readOnly = true)
+    public Flux<RestaurateurDTO> findAll(Pageable pageable, Keyset keyset, Set<String> expand) {
+        log.debug("Request to get a keyset page of Restaurateurs : {}", keyset);
+        return toDtos(restaurateurRepository.findAllBy(pageable, keyset), expand);
+    }
+
+    private Flux<RestaurateurDTO> toDtos(Flux<Restaurateur> restaurateurs, Set<String> expand) {
+        if (!expand.contains(EXPAND_RESTAURANTS)) {
+            return restaurateurs.map(restaurateurMapper::toDto);
+        }
+        return RelationshipLoader
+            .loadOneToMany(
+                restaurateurs,
+                Restaurateur::getId,
+                restaurantRepository::findAllByRestaurateurIdIn,
+                Restaurant::getRestaurateurId,
+                Restaurateur::addRestaurant
+            )
+            .map(restaurateur -> {
+                RestaurateurDTO restaurateurDTO = restaurateurMapper.toDto(restaurateur);
+                restaurateurDTO.setRestaurants(
+                    restaurateur
+                        .getRestaurants()
+                        .stream()
+                        .map(restaurantMapper::toDto)
+                        .sorted(Comparator.comparing(RestaurantDTO::getId))
+                        .collect(Collectors.toCollection(LinkedHashSet::new))
+                );
+                return restaurateurDTO;
+            });
     }
 
     /**
-     * Returns the number of restaurateurs available.
+     * Returns the number of restaurateurs available, computed with the {@link jerem.coopcycle.service.count.TotalCountStrategy}
+     * configured for the entity.
      * @return the number of entities in the database.
      *
      */
     public Mono<Long> countAll() {
-        return restaurateurRepository.count();
+        return totalCountService.count(Restaurateur.class, restaurateurRepository::count);
     }
 
     /**
@@ -113,6 +200,6 @@ public class RestaurateurService {
      */
     public Mono<Void> delete(Long id) {
         log.debug("Request to delete Restaurateur : {}", id);
-        return restaurateurRepository.deleteById(id);
+        return restaurateurRepository.deleteById(id).then(totalCountService.invalidateAfterCommit(Restaurateur.class));
     }
 }
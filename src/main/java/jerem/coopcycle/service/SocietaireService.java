@@ -1,8 +1,19 @@
 package jerem.coopcycle.service;
 
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jerem.coopcycle.domain.Restaurateur;
 import jerem.coopcycle.domain.Societaire;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.repository.RelationshipLoader;
+import jerem.coopcycle.repository.RestaurateurRepository;
 import jerem.coopcycle.repository.SocietaireRepository;
+import jerem.coopcycle.service.count.TotalCountService;
+import jerem.coopcycle.service.dto.RestaurateurDTO;
 import jerem.coopcycle.service.dto.SocietaireDTO;
+import jerem.coopcycle.service.mapper.RestaurateurMapper;
 import jerem.coopcycle.service.mapper.SocietaireMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,15 +30,35 @@ import reactor.core.publisher.Mono;
 @Transactional
 public class SocietaireService {
 
+    /**
+     * Name of the {@code restaurateurs} association, which can be loaded with the societaires.
+     */
+    public static final String EXPAND_RESTAURATEURS = "restaurateurs";
+
     private final Logger log = LoggerFactory.getLogger(SocietaireService.class);
 
     private final SocietaireRepository societaireRepository;
 
     private final SocietaireMapper societaireMapper;
 
-    public SocietaireService(SocietaireRepository societaireRepository, SocietaireMapper societaireMapper) {
+    private final TotalCountService totalCountService;
+
+    private final RestaurateurRepository restaurateurRepository;
+
+    private final RestaurateurMapper restaurateurMapper;
+
+    public SocietaireService(
+        SocietaireRepository societaireRepository,
+        SocietaireMapper societaireMapper,
+        TotalCountService totalCountService,
+        RestaurateurRepository restaurateurRepository,
+        RestaurateurMapper restaurateurMapper
+    ) {
         this.societaireRepository = societaireRepository;
         this.societaireMapper = societaireMapper;
+        this.totalCountService = totalCountService;
+        this.restaurateurRepository = restaurateurRepository;
+        this.restaurateurMapper = restaurateurMapper;
     }
 
     /**
@@ -38,59 +69,102 @@ public class SocietaireService {
      */
     public Mono<SocietaireDTO> save(SocietaireDTO societaireDTO) {
         log.debug("Request to save Societaire : {}", societaireDTO);
-        return societaireRepository.save(societaireMapper.toEntity(societaireDTO)).map(societaireMapper::toDto);
+        return societaireRepository
+            .save(societaireMapper.toEntity(societaireDTO).version(null))
+            .flatMap(saved -> totalCountService.invalidateAfterCommit(Societaire.class).thenReturn(saved))
+            .map(societaireMapper::toDto);
     }
 
     /**
      * Update a societaire.
      *
      * @param societaireDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, or an empty Mono if the entity does not exist.
      */
     public Mono<SocietaireDTO> update(SocietaireDTO societaireDTO) {
         log.debug("Request to update Societaire : {}", societaireDTO);
-        return societaireRepository.save(societaireMapper.toEntity(societaireDTO)).map(societaireMapper::toDto);
+        Societaire societaire = societaireMapper.toEntity(societaireDTO);
+        return societaireRepository
+            .updateById(societaire)
+            .filter(updated -> updated > 0)
+            .flatMap(updated -> societaireRepository.findById(societaire.getId()))
+            .map(societaireMapper::toDto);
     }
 
     /**
-     * Partially update a societaire.
+     * Partially update a societaire: only the non-null properties are written, and the updated row is returned by the same
+     * statement on PostgreSQL.
      *
      * @param societaireDTO the entity to update partially.
-     * @return the persisted entity.
+     * @return the updated entity, or an empty Mono if the entity does not exist.
      */
     public Mono<SocietaireDTO> partialUpdate(SocietaireDTO societaireDTO) {
         log.debug("Request to partially update Societaire : {}", societaireDTO);
-
-        return societaireRepository
-            .findById(societaireDTO.getId())
-            .map(existingSocietaire -> {
-                societaireMapper.partialUpdate(existingSocietaire, societaireDTO);
-
-                return existingSocietaire;
-            })
-            .flatMap(societaireRepository::save)
-            .map(societaireMapper::toDto);
+        Societaire societaire = societaireMapper.toEntity(societaireDTO);
+        return societaireRepository.updateNonNullByIdReturning(societaire).map(societaireMapper::toDto);
     }
 
     /**
      * Get all the societaires.
      *
      * @param pageable the pagination information.
+     * @param expand the associations to load with the entities, see {@link #EXPAND_RESTAURATEURS}.
      * @return the list of entities.
      */
     @Transactional(readOnly = true)
-    public Flux<SocietaireDTO> findAll(Pageable pageable) {
+    public Flux<SocietaireDTO> findAll(Pageable pageable, Set<String> expand) {
         log.debug("Request to get all Societaires");
-        return societaireRepository.findAllBy(pageable).map(societaireMapper::toDto);
+        return toDtos(societaireRepository.findAllBy(pageable), expand);
+    }
+
+    /**
+     * Get a page of societaires after the given keyset position.
+     *
+     * @param pageable the pagination information, only the page size is used.
+     * @param keyset the position of the last societaire already returned.
+     * @param expand the associations to load with the entities, see {@link #EXPAND_RESTAURATEURS}.
+     * @return the list of entities.
+     */
+    @Transactional(readOnly = true)
+    public Flux<SocietaireDTO> findAll(Pageable pageable, Keyset keyset, Set<String> expand) {
+        log.debug("Request to get a keyset page of Societaires : {}", keyset);
+        return toDtos(societaireRepository.findAllBy(pageable, keyset), expand);
+    }
+
+    private Flux<SocietaireDTO> toDtos(Flux<Societaire> societaires, Set<String> expand) {
+        if (!expand.contains(EXPAND_RESTAURATEURS)) {
+            return societaires.map(societaireMapper::toDto);
+        }
+        return RelationshipLoader
+            .loadOneToMany(
+                societaires,
+                Societaire::getId,
+                restaurateurRepository::findAllBySocietaireIdIn,
+                Restaurateur::getSocietaireId,
+                Societaire::addRestaurateur
+            )
+            .map(societaire -> {
+                SocietaireDTO societaireDTO = societaireMapper.toDto(societaire);
+                societaireDTO.setRestaurateurs(
+                    societaire
+                        .getRestaurateurs()
+                        .stream()
+                        .map(restaurateurMapper::toDto)
+                        .sorted(Comparator.comparing(RestaurateurDTO::getId))
+                        .collect(Collectors.toCollection(LinkedHashSet::new))
+                );
+                return societaireDTO;
+            });
     }
 
     /**
-     * Returns the number of societaires available.
+     * Returns the number of societaires available, computed with the {@link jerem.coopcycle.service.count.TotalCountStrategy}
+     * configured for the entity.
      * @return the number of entities in the database.
      *
      */
     public Mono<Long> countAll() {
-        return societaireRepository.count();
+        return totalCountService.count(Societaire.class, societaireRepository::count);
     }
 
     /**
@@ -113,6 +187,6 @@ public class SocietaireService {
      */
     public Mono<Void> delete(Long id) {
         log.debug("Request to delete Societaire : {}", id);
-        return societaireRepository.deleteById(id);
+        return societaireRepository.deleteById(id).then(totalCountService.invalidateAfterCommit(Societaire.class));
     }
 }
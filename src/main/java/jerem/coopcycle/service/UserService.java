@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.stream.Collectors;
 import jerem.coopcycle.config.Constants;
 import jerem.coopcycle.domain.Authority;
 import jerem.coopcycle.domain.User;
@@ -198,14 +199,13 @@ public class UserService {
                 user.setLangKey(userDTO.getLangKey());
                 Set<Authority> managedAuthorities = user.getAuthorities();
                 managedAuthorities.clear();
-                return userRepository
-                    .deleteUserAuthorities(user.getId())
-                    .thenMany(Flux.fromIterable(userDTO.getAuthorities()))
+                return Flux
+                    .fromIterable(userDTO.getAuthorities())
                     .flatMap(authorityRepository::findById)
                     .map(managedAuthorities::add)
                     .then(Mono.just(user));
             })
-            .flatMap(this::saveUser)
+            .flatMap(user -> saveUser(user, true))
             .doOnNext(user -> log.debug("Changed Information for User: {}", user))
             .map(AdminUserDTO::new);
     }
@@ -250,6 +250,17 @@ public class UserService {
 
     @Transactional
     public Mono<User> saveUser(User user) {
+        return saveUser(user, false);
+    }
+
+    /**
+     * Saves the user and its authorities.
+     *
+     * @param user the user to save.
+     * @param replaceAuthorities whether the authorities of the user replace the stored ones, or are only added to them.
+     * @return the saved user.
+     */
+    private Mono<User> saveUser(User user, boolean replaceAuthorities) {
         return SecurityUtils
             .getCurrentUserLogin()
             .switchIfEmpty(Mono.just(Constants.SYSTEM))
@@ -262,12 +273,13 @@ public class UserService {
                 // once https://github.com/spring-projects/spring-data-r2dbc/issues/215 is done
                 return userRepository
                     .save(user)
-                    .flatMap(savedUser ->
-                        Flux
-                            .fromIterable(user.getAuthorities())
-                            .flatMap(authority -> userRepository.saveUserAuthority(savedUser.getId(), authority.getName()))
-                            .then(Mono.just(savedUser))
-                    );
+                    .flatMap(savedUser -> {
+                        Set<String> authorities = user.getAuthorities().stream().map(Authority::getName).collect(Collectors.toSet());
+                        Mono<Void> savedAuthorities = replaceAuthorities
+                            ? userRepository.updateUserAuthorities(savedUser.getId(), authorities)
+                            : userRepository.saveUserAuthorities(savedUser.getId(), authorities);
+                        return savedAuthorities.thenReturn(savedUser);
+                    });
             });
     }
 
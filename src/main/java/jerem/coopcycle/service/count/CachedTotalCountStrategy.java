@@ -0,0 +1,45 @@
+package jerem.coopcycle.service.count;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import jerem.coopcycle.config.ApplicationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the exact count of each entity type for {@code application.pagination.total-count.cache-ttl}.
+ * <p>
+ * The cached value is dropped once the transactions creating or deleting entities commit. A count running concurrently with
+ * the commit can still cache the previous value, so the value may be stale for at most the TTL.
+ */
+@Component
+public class CachedTotalCountStrategy implements TotalCountStrategy {
+
+    private final Duration ttl;
+
+    private final Map<Class<?>, Mono<Long>> counts = new ConcurrentHashMap<>();
+
+    public CachedTotalCountStrategy(ApplicationProperties applicationProperties) {
+        this.ttl = applicationProperties.getPagination().getTotalCount().getCacheTtl();
+    }
+
+    @Override
+    public TotalCountMode getMode() {
+        return TotalCountMode.CACHED;
+    }
+
+    @Override
+    public Mono<Long> count(Class<?> entityType, Supplier<Mono<Long>> exactCount) {
+        return counts.computeIfAbsent(
+            entityType,
+            type -> exactCount.get().cache(count -> ttl, error -> Duration.ZERO, () -> Duration.ZERO)
+        );
+    }
+
+    @Override
+    public void invalidate(Class<?> entityType) {
+        counts.remove(entityType);
+    }
+}
@@ -0,0 +1,30 @@
+package jerem.coopcycle.service.count;
+
+import java.util.function.Supplier;
+import jerem.coopcycle.repository.EntityManager;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads the number of entities from the database planner statistics, which are refreshed by {@code ANALYZE} and autovacuum.
+ * Falls back to an exact count when the database has no statistics for the table.
+ */
+@Component
+public class EstimatedTotalCountStrategy implements TotalCountStrategy {
+
+    private final EntityManager entityManager;
+
+    public EstimatedTotalCountStrategy(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public TotalCountMode getMode() {
+        return TotalCountMode.ESTIMATED;
+    }
+
+    @Override
+    public Mono<Long> count(Class<?> entityType, Supplier<Mono<Long>> exactCount) {
+        return entityManager.estimateCount(entityType).switchIfEmpty(Mono.defer(exactCount));
+    }
+}
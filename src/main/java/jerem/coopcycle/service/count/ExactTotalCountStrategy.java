@@ -0,0 +1,22 @@
+package jerem.coopcycle.service.count;
+
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Counts the entities with a {@code SELECT COUNT(*)} on every call.
+ */
+@Component
+public class ExactTotalCountStrategy implements TotalCountStrategy {
+
+    @Override
+    public TotalCountMode getMode() {
+        return TotalCountMode.EXACT;
+    }
+
+    @Override
+    public Mono<Long> count(Class<?> entityType, Supplier<Mono<Long>> exactCount) {
+        return exactCount.get();
+    }
+}
@@ -0,0 +1,21 @@
+package jerem.coopcycle.service.count;
+
+/**
+ * The ways the total number of entities, returned in the {@code X-Total-Count} header, can be computed.
+ */
+public enum TotalCountMode {
+    /**
+     * A {@code SELECT COUNT(*)} over the whole table on every request.
+     */
+    EXACT,
+
+    /**
+     * An exact count, kept for a configurable time and dropped whenever an entity is created or deleted.
+     */
+    CACHED,
+
+    /**
+     * The row estimation of the database planner statistics, falling back to an exact count where none is available.
+     */
+    ESTIMATED,
+}
@@ -0,0 +1,73 @@
+package jerem.coopcycle.service.count;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.service.TransactionHooks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service computing the total number of entities of paginated lists, with the {@link TotalCountStrategy} configured for each entity
+ * in {@code application.pagination.total-count}.
+ */
+@Service
+public class TotalCountService {
+
+    private final Logger log = LoggerFactory.getLogger(TotalCountService.class);
+
+    private final ApplicationProperties.TotalCount properties;
+
+    private final Map<TotalCountMode, TotalCountStrategy> strategies = new EnumMap<>(TotalCountMode.class);
+
+    public TotalCountService(ApplicationProperties applicationProperties, List<TotalCountStrategy> strategies) {
+        this.properties = applicationProperties.getPagination().getTotalCount();
+        strategies.forEach(strategy -> this.strategies.put(strategy.getMode(), strategy));
+    }
+
+    /**
+     * Returns the number of entities of the given type, with the strategy configured for it.
+     *
+     * @param entityType the entity type which holds the table name.
+     * @param exactCount supplies a {@code SELECT COUNT(*)} of the entities.
+     * @return the number of entities.
+     */
+    public Mono<Long> count(Class<?> entityType, Supplier<Mono<Long>> exactCount) {
+        TotalCountMode mode = getMode(entityType);
+        TotalCountStrategy strategy = strategies.get(mode);
+        if (strategy == null) {
+            log.warn("No total count strategy for mode {}, counting {} exactly", mode, entityType.getSimpleName());
+            return exactCount.get();
+        }
+        return strategy.count(entityType, exactCount);
+    }
+
+    /**
+     * Notifies every strategy that entities of the given type were created or deleted.
+     *
+     * @param entityType the entity type which holds the table name.
+     */
+    public void invalidate(Class<?> entityType) {
+        strategies.values().forEach(strategy -> strategy.invalidate(entityType));
+    }
+
+    /**
+     * Notifies every strategy that entities of the given type were created or deleted, once the current transaction commits:
+     * a count running before the commit would cache the previous value again, and a rollback changes nothing.
+     *
+     * @param entityType the entity type which holds the table name.
+     * @return a Mono completing once the invalidation is registered.
+     */
+    public Mono<Void> invalidateAfterCommit(Class<?> entityType) {
+        return TransactionHooks.afterCommit(() -> invalidate(entityType));
+    }
+
+    private TotalCountMode getMode(Class<?> entityType) {
+        return properties.getEntities().getOrDefault(StringUtils.uncapitalize(entityType.getSimpleName()), properties.getDefaultMode());
+    }
+}
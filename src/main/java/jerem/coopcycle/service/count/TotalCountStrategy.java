@@ -0,0 +1,30 @@
+package jerem.coopcycle.service.count;
+
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * A way of computing the total number of entities of a paginated list.
+ */
+public interface TotalCountStrategy {
+    /**
+     * @return the mode this strategy implements.
+     */
+    TotalCountMode getMode();
+
+    /**
+     * Returns the number of entities of the given type.
+     *
+     * @param entityType the entity type which holds the table name.
+     * @param exactCount supplies a {@code SELECT COUNT(*)} of the entities.
+     * @return the number of entities.
+     */
+    Mono<Long> count(Class<?> entityType, Supplier<Mono<Long>> exactCount);
+
+    /**
+     * Notifies the strategy that entities of the given type were created or deleted.
+     *
+     * @param entityType the entity type which holds the table name.
+     */
+    default void invalidate(Class<?> entityType) {}
+}
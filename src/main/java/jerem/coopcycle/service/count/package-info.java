@@ -0,0 +1,4 @@
+/**
+ * Strategies computing the total number of entities of paginated lists.
+ */
+package jerem.coopcycle.service.count;
@@ -0,0 +1,48 @@
+package jerem.coopcycle.service.dispatch;
+
+import java.time.Instant;
+
+/**
+ * A livreur available for a commande.
+ */
+public final class AvailableLivreur {
+
+    private final Long id;
+
+    private final Long restaurantId;
+
+    private final Instant availableSince;
+
+    /**
+     * @param id the id of the livreur.
+     * @param restaurantId the id of the restaurant where the livreur waits, {@code null} if it waits elsewhere.
+     * @param availableSince when the livreur became available, the livreurs waiting the longest are dispatched first.
+     */
+    public AvailableLivreur(Long id, Long restaurantId, Instant availableSince) {
+        this.id = id;
+        this.restaurantId = restaurantId;
+        this.availableSince = availableSince;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getRestaurantId() {
+        return restaurantId;
+    }
+
+    public Instant getAvailableSince() {
+        return availableSince;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "AvailableLivreur{" +
+            "id=" + getId() +
+            ", restaurantId=" + getRestaurantId() +
+            ", availableSince='" + getAvailableSince() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,33 @@
+package jerem.coopcycle.service.dispatch;
+
+/**
+ * The assignment of a livreur to a commande, chosen by the {@link DispatchMatcher}.
+ */
+public final class DispatchAssignment {
+
+    private final PendingCommande commande;
+
+    private final AvailableLivreur livreur;
+
+    public DispatchAssignment(PendingCommande commande, AvailableLivreur livreur) {
+        this.commande = commande;
+        this.livreur = livreur;
+    }
+
+    public PendingCommande getCommande() {
+        return commande;
+    }
+
+    public AvailableLivreur getLivreur() {
+        return livreur;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "DispatchAssignment{" +
+            "commande=" + getCommande() +
+            ", livreur=" + getLivreur() +
+            "}";
+    }
+}
@@ -0,0 +1,94 @@
+package jerem.coopcycle.service.dispatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the pending commandes with the available livreurs, in memory.
+ * <p>
+ * The commandes are served by age, the oldest first, each by the livreur waiting the longest. With the restaurant affinity,
+ * a commande is first offered to the livreurs waiting at its restaurant, if any is left. A matching sorts both sides once
+ * and then visits each commande and each livreur at most once, so it stays in O(n log n) for thousands of commandes.
+ */
+public final class DispatchMatcher {
+
+    private static final Comparator<PendingCommande> BY_AGE = Comparator
+        .comparing(PendingCommande::getDateTime)
+        .thenComparing(PendingCommande::getId);
+
+    private static final Comparator<AvailableLivreur> BY_WAIT = Comparator
+        .comparing(AvailableLivreur::getAvailableSince)
+        .thenComparing(AvailableLivreur::getId);
+
+    private final boolean restaurantAffinity;
+
+    /**
+     * @param restaurantAffinity whether the commandes are offered to the livreurs waiting at their restaurant first.
+     */
+    public DispatchMatcher(boolean restaurantAffinity) {
+        this.restaurantAffinity = restaurantAffinity;
+    }
+
+    /**
+     * Assigns a livreur to as many commandes as possible, the oldest ones first.
+     *
+     * @param commandes the pending commandes.
+     * @param livreurs the available livreurs.
+     * @return the assignments, by age of their commande. Each commande and each livreur has one assignment at most.
+     */
+    public List<DispatchAssignment> match(Collection<PendingCommande> commandes, Collection<AvailableLivreur> livreurs) {
+        if (commandes.isEmpty() || livreurs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        PendingCommande[] byAge = commandes.toArray(new PendingCommande[0]);
+        Arrays.sort(byAge, BY_AGE);
+        AvailableLivreur[] byWait = livreurs.toArray(new AvailableLivreur[0]);
+        Arrays.sort(byWait, BY_WAIT);
+
+        boolean[] assigned = new boolean[byWait.length];
+        // the livreurs waiting at each restaurant, by their position in byWait, the longest waiting first
+        Map<Long, ArrayDeque<Integer>> waitingByRestaurant = new HashMap<>();
+        if (restaurantAffinity) {
+            for (int i = 0; i < byWait.length; i++) {
+                if (byWait[i].getRestaurantId() != null) {
+                    waitingByRestaurant.computeIfAbsent(byWait[i].getRestaurantId(), restaurantId -> new ArrayDeque<>()).add(i);
+                }
+            }
+        }
+
+        List<DispatchAssignment> assignments = new ArrayList<>(Math.min(byAge.length, byWait.length));
+        // every livreur before this position is assigned
+        int nextWaiting = 0;
+        for (PendingCommande commande : byAge) {
+            int livreur = -1;
+            ArrayDeque<Integer> waitingAtRestaurant = commande.getRestaurantId() != null
+                ? waitingByRestaurant.get(commande.getRestaurantId())
+                : null;
+            while (livreur < 0 && waitingAtRestaurant != null && !waitingAtRestaurant.isEmpty()) {
+                int candidate = waitingAtRestaurant.poll();
+                if (!assigned[candidate]) {
+                    livreur = candidate;
+                }
+            }
+            if (livreur < 0) {
+                while (nextWaiting < byWait.length && assigned[nextWaiting]) {
+                    nextWaiting++;
+                }
+                if (nextWaiting == byWait.length) {
+                    break;
+                }
+                livreur = nextWaiting;
+            }
+            assigned[livreur] = true;
+            assignments.add(new DispatchAssignment(commande, byWait[livreur]));
+        }
+        return assignments;
+    }
+}
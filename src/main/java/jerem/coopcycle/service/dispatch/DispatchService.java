@@ -0,0 +1,371 @@
+package jerem.coopcycle.service.dispatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.SocietaireType;
+import jerem.coopcycle.repository.CommandeRepository;
+import jerem.coopcycle.repository.SocietaireRepository;
+import jerem.coopcycle.service.BackgroundJob;
+import jerem.coopcycle.service.CommandeService;
+import jerem.coopcycle.service.CommandeStatusStreamService;
+import jerem.coopcycle.service.dto.CommandeStatusChangeDTO;
+import jerem.coopcycle.service.dto.LivreurAvailabilityDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Dispatches the ready commandes to the available livreurs.
+ * <p>
+ * The engine keeps the ready commandes without livreur and the available livreurs in memory, and matches them with the
+ * {@link DispatchMatcher} at each cycle, without reading the database. The commandes follow the status changes of the
+ * {@link CommandeStatusStreamService}, and are read again from the database by {@code application.dispatch.reload-cron} to
+ * catch up with the changes missed by a slow subscription. The livreurs report their availability themselves, and are
+ * available again once their commande is delivered, deleted or not ready anymore.
+ * <p>
+ * An assignment is only written if the commande is still ready and without livreur, so that the engines of several instances
+ * never assign a commande twice: the loser of a conflict gets its livreur back, in its place in the queue. The availability of
+ * the livreurs is only kept by the instance which received it.
+ * <p>
+ * The engine publishes the duration of the matchings ({@value #MATCHING_METER_NAME}), the number of assignments by outcome
+ * ({@value #ASSIGNMENTS_METER_NAME}), and the numbers of pending commandes ({@value #PENDING_METER_NAME}) and available
+ * livreurs ({@value #AVAILABLE_METER_NAME}).
+ */
+@Service
+public class DispatchService implements DisposableBean {
+
+    public static final String MATCHING_METER_NAME = "dispatch.matching";
+    public static final String MATCHING_METER_DESCRIPTION = "Time to match the pending commandes with the available livreurs.";
+    public static final String ASSIGNMENTS_METER_NAME = "dispatch.assignments";
+    public static final String ASSIGNMENTS_METER_DESCRIPTION = "Number of livreurs assigned to commandes.";
+    public static final String PENDING_METER_NAME = "dispatch.commandes.pending";
+    public static final String PENDING_METER_DESCRIPTION = "Number of ready commandes waiting for a livreur.";
+    public static final String AVAILABLE_METER_NAME = "dispatch.livreurs.available";
+    public static final String AVAILABLE_METER_DESCRIPTION = "Number of livreurs waiting for a commande.";
+    public static final String OUTCOME_DIMENSION = "outcome";
+    public static final String ASSIGNED_OUTCOME = "assigned";
+    public static final String CONFLICT_OUTCOME = "conflict";
+    public static final String FAILED_OUTCOME = "failed";
+
+    private final Logger log = LoggerFactory.getLogger(DispatchService.class);
+
+    private final CommandeRepository commandeRepository;
+
+    private final CommandeService commandeService;
+
+    private final SocietaireRepository societaireRepository;
+
+    private final CommandeStatusStreamService commandeStatusStreamService;
+
+    private final MeterRegistry registry;
+
+    private final ApplicationProperties.Dispatch properties;
+
+    private final DispatchMatcher matcher;
+
+    private final Timer matchingTimer;
+
+    private final Map<Long, PendingCommande> pending = new HashMap<>();
+
+    private final Map<Long, AvailableLivreur> available = new HashMap<>();
+
+    /**
+     * The livreurs of the commandes assigned by this engine, or being assigned, and still ready, by commande id. These livreurs
+     * are not available until their commande is released.
+     */
+    private final Map<Long, Long> livreurByCommande = new HashMap<>();
+
+    private final BackgroundJob reloadJob = new BackgroundJob("dispatch reload");
+
+    private final BackgroundJob dispatchJob = new BackgroundJob("dispatch cycle");
+
+    private Disposable statusChanges;
+
+    public DispatchService(
+        CommandeRepository commandeRepository,
+        CommandeService commandeService,
+        SocietaireRepository societaireRepository,
+        CommandeStatusStreamService commandeStatusStreamService,
+        MeterRegistry registry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.commandeRepository = commandeRepository;
+        this.commandeService = commandeService;
+        this.societaireRepository = societaireRepository;
+        this.commandeStatusStreamService = commandeStatusStreamService;
+        this.registry = registry;
+        this.properties = applicationProperties.getDispatch();
+        this.matcher = new DispatchMatcher(properties.isRestaurantAffinity());
+        this.matchingTimer = Timer.builder(MATCHING_METER_NAME).description(MATCHING_METER_DESCRIPTION).register(registry);
+        Gauge.builder(PENDING_METER_NAME, this, DispatchService::countPending).description(PENDING_METER_DESCRIPTION).register(registry);
+        Gauge
+            .builder(AVAILABLE_METER_NAME, this, DispatchService::countAvailable)
+            .description(AVAILABLE_METER_DESCRIPTION)
+            .register(registry);
+    }
+
+    /**
+     * Follows the status changes of the commandes, and reads the ready ones.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (statusChanges != null) {
+            return;
+        }
+        statusChanges =
+            commandeStatusStreamService
+                .stream()
+                .concatMap(change ->
+                    onStatusChange(change)
+                        .onErrorResume(e -> {
+                            log.warn("Cannot follow the status change {}, the next reload catches up: {}", change, e.getMessage());
+                            return Mono.empty();
+                        })
+                )
+                .subscribe();
+        reload().subscribe(null, e -> log.warn("Cannot read the commandes to dispatch: {}", e.getMessage()));
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (statusChanges != null) {
+            statusChanges.dispose();
+        }
+    }
+
+    private Mono<Void> onStatusChange(CommandeStatusChangeDTO change) {
+        Long commandeId = change.getCommandeId();
+        if (change.getStatus() == CommandeStatus.PRETE && change.getLivreurId() == null) {
+            return commandeRepository.findAllToDispatchByIdIn(List.of(commandeId)).doOnNext(this::addPending).then();
+        }
+        synchronized (this) {
+            pending.remove(commandeId);
+            // a commande delivered, deleted or not ready anymore gives its livreur back, an assigned one keeps it
+            if (change.getStatus() != CommandeStatus.PRETE) {
+                release(commandeId);
+            }
+        }
+        return Mono.empty();
+    }
+
+    /**
+     * Makes the livreur of a commande available again.
+     */
+    private synchronized void release(Long commandeId) {
+        Long livreurId = livreurByCommande.remove(commandeId);
+        if (livreurId != null) {
+            // the livreur is not at a restaurant anymore
+            available.putIfAbsent(livreurId, new AvailableLivreur(livreurId, null, Instant.now()));
+        }
+    }
+
+    private synchronized void addPending(Commande commande) {
+        pending.put(commande.getId(), toPendingCommande(commande));
+    }
+
+    private static PendingCommande toPendingCommande(Commande commande) {
+        Long restaurantId = commande.getPanier() != null ? commande.getPanier().getRestaurantId() : null;
+        return new PendingCommande(commande.getId(), restaurantId, commande.getDateTime());
+    }
+
+    /**
+     * Reads again the ready commandes without livreur.
+     * <p>
+     * This is scheduled with {@code application.dispatch.reload-cron}, every minute by default, and runs off the scheduling
+     * threads.
+     */
+    @Scheduled(cron = "${application.dispatch.reload-cron:0 * * * * ?}")
+    public void scheduledReload() {
+        reloadJob.start(this::reload);
+    }
+
+    /**
+     * Replaces the pending commandes by the ready commandes without livreur of the database, and gives back the livreurs of
+     * the commandes assigned by this engine which are not ready anymore, or were deleted, when their change was missed.
+     *
+     * @return the number of pending commandes.
+     */
+    public Mono<Integer> reload() {
+        return commandeRepository
+            .findAllToDispatch()
+            .collectMap(Commande::getId, DispatchService::toPendingCommande)
+            .map(this::replacePending)
+            .flatMap(count -> releaseMissed().thenReturn(count));
+    }
+
+    private Mono<Void> releaseMissed() {
+        Set<Long> assigned;
+        synchronized (this) {
+            assigned = Set.copyOf(livreurByCommande.keySet());
+        }
+        if (assigned.isEmpty()) {
+            return Mono.empty();
+        }
+        return commandeRepository
+            .findAllById(assigned)
+            .filter(commande -> commande.getStatus() == CommandeStatus.PRETE)
+            .map(Commande::getId)
+            .collect(Collectors.toSet())
+            .doOnNext(ready -> assigned.stream().filter(commandeId -> !ready.contains(commandeId)).forEach(this::release))
+            .then();
+    }
+
+    private synchronized int replacePending(Map<Long, PendingCommande> commandes) {
+        pending.clear();
+        pending.putAll(commandes);
+        return pending.size();
+    }
+
+    /**
+     * Runs a dispatch cycle.
+     * <p>
+     * This is scheduled with {@code application.dispatch.cycle-cron}, every second by default, and runs off the scheduling
+     * threads: a cycle still writing its assignments skips the next one.
+     */
+    @Scheduled(cron = "${application.dispatch.cycle-cron:* * * * * ?}")
+    public void scheduledDispatch() {
+        dispatchJob.start(() -> dispatch().doOnNext(assigned -> log.debug("Assigned {} commandes", assigned)));
+    }
+
+    /**
+     * Matches the pending commandes with the available livreurs, and writes the assignments.
+     *
+     * @return the number of commandes assigned.
+     */
+    public Mono<Long> dispatch() {
+        return Flux
+            .defer(() -> Flux.fromIterable(takeAssignments()))
+            .flatMap(this::assign, properties.getConcurrency())
+            .filter(Boolean::booleanValue)
+            .count();
+    }
+
+    /**
+     * Matches the pending commandes with the available livreurs, and removes the matched ones until their assignment is written.
+     */
+    private synchronized List<DispatchAssignment> takeAssignments() {
+        List<DispatchAssignment> assignments = matchingTimer.record(() -> matcher.match(pending.values(), available.values()));
+        for (DispatchAssignment assignment : assignments) {
+            pending.remove(assignment.getCommande().getId());
+            available.remove(assignment.getLivreur().getId());
+            livreurByCommande.put(assignment.getCommande().getId(), assignment.getLivreur().getId());
+        }
+        return assignments;
+    }
+
+    private Mono<Boolean> assign(DispatchAssignment assignment) {
+        Long commandeId = assignment.getCommande().getId();
+        Long livreurId = assignment.getLivreur().getId();
+        return commandeService
+            .assignLivreur(commandeId, livreurId)
+            .map(assigned -> {
+                if (!assigned) {
+                    // the commande was assigned by another instance, or is not ready anymore
+                    giveBack(assignment);
+                }
+                count(assigned ? ASSIGNED_OUTCOME : CONFLICT_OUTCOME);
+                return assigned;
+            })
+            .onErrorResume(e -> {
+                log.warn("Cannot assign the livreur {} to the commande {}, matching them again: {}", livreurId, commandeId, e.getMessage());
+                synchronized (this) {
+                    pending.putIfAbsent(commandeId, assignment.getCommande());
+                    giveBack(assignment);
+                }
+                count(FAILED_OUTCOME);
+                return Mono.just(false);
+            });
+    }
+
+    /**
+     * Makes the livreur of an assignment which was not written available again, unless its commande was released meanwhile.
+     */
+    private synchronized void giveBack(DispatchAssignment assignment) {
+        Long livreurId = assignment.getLivreur().getId();
+        if (livreurByCommande.remove(assignment.getCommande().getId(), livreurId)) {
+            available.putIfAbsent(livreurId, assignment.getLivreur());
+        }
+    }
+
+    private void count(String outcome) {
+        Counter
+            .builder(ASSIGNMENTS_METER_NAME)
+            .description(ASSIGNMENTS_METER_DESCRIPTION)
+            .tag(OUTCOME_DIMENSION, outcome)
+            .register(registry)
+            .increment();
+    }
+
+    /**
+     * Updates the availability of a livreur. A livreur already available keeps its place in the queue, and a livreur assigned
+     * to a commande still ready stays unavailable: it is available again once the commande is delivered.
+     *
+     * @param livreurId the id of the livreur.
+     * @param availability whether the livreur is available, and the restaurant where it waits.
+     * @return the availability, or an empty Mono if the societaire is not found.
+     * @throws IllegalArgumentException (in the Mono) if the societaire is not a livreur.
+     */
+    public Mono<LivreurAvailabilityDTO> updateAvailability(Long livreurId, LivreurAvailabilityDTO availability) {
+        log.debug("Request to update the availability of the livreur {} : {}", livreurId, availability);
+        return societaireRepository
+            .findById(livreurId)
+            .flatMap(societaire -> {
+                if (societaire.getType() != SocietaireType.LIVREUR) {
+                    return Mono.error(new IllegalArgumentException("The societaire " + livreurId + " is not a livreur"));
+                }
+                synchronized (this) {
+                    if (Boolean.TRUE.equals(availability.getAvailable()) && livreurByCommande.containsValue(livreurId)) {
+                        log.debug("The livreur {} is assigned to a commande still ready, it stays unavailable", livreurId);
+                    } else if (Boolean.TRUE.equals(availability.getAvailable())) {
+                        AvailableLivreur previous = available.get(livreurId);
+                        Instant availableSince = previous != null ? previous.getAvailableSince() : Instant.now();
+                        available.put(livreurId, new AvailableLivreur(livreurId, availability.getRestaurantId(), availableSince));
+                    } else {
+                        available.remove(livreurId);
+                    }
+                }
+                return Mono.just(availability);
+            });
+    }
+
+    /**
+     * @return the ids of the pending commandes.
+     */
+    public synchronized Collection<Long> getPendingCommandeIds() {
+        return List.copyOf(pending.keySet());
+    }
+
+    /**
+     * @return the ids of the available livreurs.
+     */
+    public synchronized Collection<Long> getAvailableLivreurIds() {
+        return List.copyOf(available.keySet());
+    }
+
+    private synchronized double countPending() {
+        return pending.size();
+    }
+
+    private synchronized double countAvailable() {
+        return available.size();
+    }
+}
@@ -0,0 +1,48 @@
+package jerem.coopcycle.service.dispatch;
+
+import java.time.Instant;
+
+/**
+ * A ready commande waiting for a livreur.
+ */
+public final class PendingCommande {
+
+    private final Long id;
+
+    private final Long restaurantId;
+
+    private final Instant dateTime;
+
+    /**
+     * @param id the id of the commande.
+     * @param restaurantId the id of the restaurant preparing it, {@code null} if its panier has no restaurant.
+     * @param dateTime the date of the commande, the oldest commandes are dispatched first.
+     */
+    public PendingCommande(Long id, Long restaurantId, Instant dateTime) {
+        this.id = id;
+        this.restaurantId = restaurantId;
+        this.dateTime = dateTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getRestaurantId() {
+        return restaurantId;
+    }
+
+    public Instant getDateTime() {
+        return dateTime;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "PendingCommande{" +
+            "id=" + getId() +
+            ", restaurantId=" + getRestaurantId() +
+            ", dateTime='" + getDateTime() + "'" +
+            "}";
+    }
+}
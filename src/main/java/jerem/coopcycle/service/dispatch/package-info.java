@@ -0,0 +1,4 @@
+/**
+ * Dispatch of the ready commandes to the available livreurs.
+ */
+package jerem.coopcycle.service.dispatch;
@@ -12,6 +12,8 @@ public class ClientDTO implements Serializable {
 
     private Long id;
 
+    private Long version;
+
     @NotNull(message = "must not be null")
     @Size(min = 2, max = 50)
     private String firstName;
@@ -32,6 +34,10 @@ public class ClientDTO implements Serializable {
     @Size(min = 5, max = 100)
     private String address;
 
+    private Double latitude;
+
+    private Double longitude;
+
     private CommandeDTO commande;
 
     public Long getId() {
@@ -42,6 +48,14 @@ public class ClientDTO implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -82,6 +96,30 @@ public class ClientDTO implements Serializable {
         this.address = address;
     }
 
+    /**
+     * @return the latitude of the address in degrees, {@code null} if it is not geocoded. It is ignored by the writes, which
+     * geocode the address.
+     */
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * @return the longitude of the address in degrees, {@code null} if it is not geocoded. It is ignored by the writes, which
+     * geocode the address.
+     */
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
     public CommandeDTO getCommande() {
         return commande;
     }
@@ -116,11 +154,14 @@ public class ClientDTO implements Serializable {
     public String toString() {
         return "ClientDTO{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", firstName='" + getFirstName() + "'" +
             ", lastName='" + getLastName() + "'" +
             ", email='" + getEmail() + "'" +
             ", phone='" + getPhone() + "'" +
             ", address='" + getAddress() + "'" +
+            ", latitude=" + getLatitude() +
+            ", longitude=" + getLongitude() +
             ", commande=" + getCommande() +
             "}";
     }
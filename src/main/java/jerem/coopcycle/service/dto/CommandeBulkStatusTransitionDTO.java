@@ -0,0 +1,47 @@
+package jerem.coopcycle.service.dto;
+
+import java.util.List;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+
+/**
+ * A DTO representing the same status transition of many commandes.
+ */
+public class CommandeBulkStatusTransitionDTO extends CommandeStatusTransitionDTO {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int MAX_IDS = 500;
+
+    @NotNull
+    @Size(min = 1, max = MAX_IDS)
+    private List<@NotNull Long> ids;
+
+    public CommandeBulkStatusTransitionDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public CommandeBulkStatusTransitionDTO(List<Long> ids, CommandeStatus from, CommandeStatus to) {
+        super(from, to);
+        this.ids = ids;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CommandeBulkStatusTransitionDTO{" +
+            "ids=" + getIds() +
+            ", from='" + getFrom() + "'" +
+            ", to='" + getTo() + "'" +
+            "}";
+    }
+}
@@ -14,6 +14,8 @@ public class CommandeDTO implements Serializable {
 
     private Long id;
 
+    private Long version;
+
     @NotNull(message = "must not be null")
     private Instant dateTime;
 
@@ -24,6 +26,8 @@ public class CommandeDTO implements Serializable {
 
     private PaiementDTO paiement;
 
+    private Long livreurId;
+
     public Long getId() {
         return id;
     }
@@ -32,6 +36,14 @@ public class CommandeDTO implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Instant getDateTime() {
         return dateTime;
     }
@@ -64,6 +76,17 @@ public class CommandeDTO implements Serializable {
         this.paiement = paiement;
     }
 
+    /**
+     * @return the id of the livreur assigned by the dispatch, {@code null} until then. It is ignored by the writes.
+     */
+    public Long getLivreurId() {
+        return livreurId;
+    }
+
+    public void setLivreurId(Long livreurId) {
+        this.livreurId = livreurId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -90,10 +113,12 @@ public class CommandeDTO implements Serializable {
     public String toString() {
         return "CommandeDTO{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", dateTime='" + getDateTime() + "'" +
             ", status='" + getStatus() + "'" +
             ", panier=" + getPanier() +
             ", paiement=" + getPaiement() +
+            ", livreurId=" + getLivreurId() +
             "}";
     }
 }
@@ -0,0 +1,95 @@
+package jerem.coopcycle.service.dto;
+
+import java.io.Serializable;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+
+/**
+ * A DTO representing a change of the status of a commande, sent to the streams of its restaurant. The assignment of a livreur
+ * and the deletion of a commande are sent too.
+ */
+public class CommandeStatusChangeDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long commandeId;
+
+    private Long restaurantId;
+
+    private CommandeStatus previousStatus;
+
+    private CommandeStatus status;
+
+    private Long livreurId;
+
+    public CommandeStatusChangeDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public CommandeStatusChangeDTO(Long commandeId, CommandeStatus previousStatus, CommandeStatus status) {
+        this.commandeId = commandeId;
+        this.previousStatus = previousStatus;
+        this.status = status;
+    }
+
+    public Long getCommandeId() {
+        return commandeId;
+    }
+
+    public void setCommandeId(Long commandeId) {
+        this.commandeId = commandeId;
+    }
+
+    public Long getRestaurantId() {
+        return restaurantId;
+    }
+
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    /**
+     * @return the status of the commande before the change, {@code null} if the commande was created or deleted, or if its
+     * status was overwritten by an update.
+     */
+    public CommandeStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public void setPreviousStatus(CommandeStatus previousStatus) {
+        this.previousStatus = previousStatus;
+    }
+
+    /**
+     * @return the status of the commande after the change, {@code null} if the commande was deleted.
+     */
+    public CommandeStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(CommandeStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the livreur assigned to the commande by the change, {@code null} if the change is not an assignment.
+     */
+    public Long getLivreurId() {
+        return livreurId;
+    }
+
+    public void setLivreurId(Long livreurId) {
+        this.livreurId = livreurId;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CommandeStatusChangeDTO{" +
+            "commandeId=" + getCommandeId() +
+            ", restaurantId=" + getRestaurantId() +
+            ", previousStatus='" + getPreviousStatus() + "'" +
+            ", status='" + getStatus() + "'" +
+            ", livreurId=" + getLivreurId() +
+            "}";
+    }
+}
@@ -0,0 +1,53 @@
+package jerem.coopcycle.service.dto;
+
+import java.io.Serializable;
+import javax.validation.constraints.NotNull;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+
+/**
+ * A DTO representing a status transition of a commande - the status expected by the client and the new status.
+ */
+public class CommandeStatusTransitionDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @NotNull
+    private CommandeStatus from;
+
+    @NotNull
+    private CommandeStatus to;
+
+    public CommandeStatusTransitionDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public CommandeStatusTransitionDTO(CommandeStatus from, CommandeStatus to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public CommandeStatus getFrom() {
+        return from;
+    }
+
+    public void setFrom(CommandeStatus from) {
+        this.from = from;
+    }
+
+    public CommandeStatus getTo() {
+        return to;
+    }
+
+    public void setTo(CommandeStatus to) {
+        this.to = to;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CommandeStatusTransitionDTO{" +
+            "from='" + getFrom() + "'" +
+            ", to='" + getTo() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,80 @@
+package jerem.coopcycle.service.dto;
+
+import java.io.Serializable;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+
+/**
+ * A DTO representing the outcome of a status transition for one commande.
+ */
+public class CommandeStatusTransitionResultDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Outcome {
+        /**
+         * The commande had the expected status and was moved to the new one.
+         */
+        UPDATED,
+        /**
+         * The commande did not have the expected status, it is left as is.
+         */
+        CONFLICT,
+        /**
+         * There is no commande with this id.
+         */
+        NOT_FOUND,
+    }
+
+    private Long id;
+
+    private Outcome outcome;
+
+    private CommandeStatus status;
+
+    public CommandeStatusTransitionResultDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public CommandeStatusTransitionResultDTO(Long id, Outcome outcome, CommandeStatus status) {
+        this.id = id;
+        this.outcome = outcome;
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(Outcome outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * @return the status of the commande after the transition, {@code null} if it is not found.
+     */
+    public CommandeStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(CommandeStatus status) {
+        this.status = status;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CommandeStatusTransitionResultDTO{" +
+            "id=" + getId() +
+            ", outcome='" + getOutcome() + "'" +
+            ", status='" + getStatus() + "'" +
+            "}";
+    }
+}
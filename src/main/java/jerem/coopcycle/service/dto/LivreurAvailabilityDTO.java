@@ -0,0 +1,52 @@
+package jerem.coopcycle.service.dto;
+
+import java.io.Serializable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A DTO representing the availability of a livreur for the dispatch - whether it can take a commande, and the restaurant
+ * where it waits, if any.
+ */
+public class LivreurAvailabilityDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @NotNull
+    private Boolean available;
+
+    private Long restaurantId;
+
+    public LivreurAvailabilityDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public LivreurAvailabilityDTO(Boolean available, Long restaurantId) {
+        this.available = available;
+        this.restaurantId = restaurantId;
+    }
+
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(Boolean available) {
+        this.available = available;
+    }
+
+    public Long getRestaurantId() {
+        return restaurantId;
+    }
+
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "LivreurAvailabilityDTO{" +
+            "available='" + getAvailable() + "'" +
+            ", restaurantId=" + getRestaurantId() +
+            "}";
+    }
+}
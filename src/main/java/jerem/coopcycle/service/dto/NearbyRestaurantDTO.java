@@ -0,0 +1,87 @@
+package jerem.coopcycle.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO representing a restaurant found near a point, with its distance.
+ */
+public class NearbyRestaurantDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String name;
+
+    private String address;
+
+    private Double latitude;
+
+    private Double longitude;
+
+    private Double distance;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * @return the distance to the point of the search, in meters.
+     */
+    public Double getDistance() {
+        return distance;
+    }
+
+    public void setDistance(Double distance) {
+        this.distance = distance;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "NearbyRestaurantDTO{" +
+            "id=" + getId() +
+            ", name='" + getName() + "'" +
+            ", address='" + getAddress() + "'" +
+            ", latitude=" + getLatitude() +
+            ", longitude=" + getLongitude() +
+            ", distance=" + getDistance() +
+            "}";
+    }
+}
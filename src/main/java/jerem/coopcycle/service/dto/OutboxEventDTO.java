@@ -0,0 +1,129 @@
+package jerem.coopcycle.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import jerem.coopcycle.domain.enumeration.OutboxEventType;
+
+/**
+ * A DTO for the {@link jerem.coopcycle.domain.OutboxEvent} entity: the change of an entity, as delivered to the subscribers
+ * of the outbox.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class OutboxEventDTO implements Serializable {
+
+    private Long id;
+
+    private String aggregateType;
+
+    private Long aggregateId;
+
+    private OutboxEventType eventType;
+
+    private String payload;
+
+    private Instant createdDate;
+
+    private Instant processedDate;
+
+    private Integer attempts;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getAggregateType() {
+        return aggregateType;
+    }
+
+    public void setAggregateType(String aggregateType) {
+        this.aggregateType = aggregateType;
+    }
+
+    public Long getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(Long aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public OutboxEventType getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(OutboxEventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Instant getProcessedDate() {
+        return processedDate;
+    }
+
+    public void setProcessedDate(Instant processedDate) {
+        this.processedDate = processedDate;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OutboxEventDTO)) {
+            return false;
+        }
+
+        OutboxEventDTO outboxEventDTO = (OutboxEventDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, outboxEventDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "OutboxEventDTO{" +
+            "id=" + getId() +
+            ", aggregateType='" + getAggregateType() + "'" +
+            ", aggregateId=" + getAggregateId() +
+            ", eventType='" + getEventType() + "'" +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", processedDate='" + getProcessedDate() + "'" +
+            ", attempts=" + getAttempts() +
+            "}";
+    }
+}
@@ -13,6 +13,8 @@ public class PaiementDTO implements Serializable {
 
     private Long id;
 
+    private Long version;
+
     @NotNull(message = "must not be null")
     @DecimalMin(value = "0")
     private Float amount;
@@ -28,6 +30,14 @@ public class PaiementDTO implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Float getAmount() {
         return amount;
     }
@@ -70,6 +80,7 @@ public class PaiementDTO implements Serializable {
     public String toString() {
         return "PaiementDTO{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", amount=" + getAmount() +
             ", paymentType='" + getPaymentType() + "'" +
             "}";
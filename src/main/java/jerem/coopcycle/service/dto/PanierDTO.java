@@ -13,6 +13,8 @@ public class PanierDTO implements Serializable {
     @NotNull(message = "must not be null")
     private Long id;
 
+    private Long version;
+
     @Size(min = 5, max = 500)
     private String description;
 
@@ -30,6 +32,14 @@ public class PanierDTO implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -80,6 +90,7 @@ public class PanierDTO implements Serializable {
     public String toString() {
         return "PanierDTO{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", description='" + getDescription() + "'" +
             ", price=" + getPrice() +
             ", restaurant=" + getRestaurant() +
@@ -1,7 +1,9 @@
 package jerem.coopcycle.service.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.io.Serializable;
 import java.util.Objects;
+import java.util.Set;
 import javax.validation.constraints.*;
 
 /**
@@ -12,6 +14,8 @@ public class RestaurantDTO implements Serializable {
 
     private Long id;
 
+    private Long version;
+
     @NotNull(message = "must not be null")
     @Size(min = 2, max = 100)
     private String name;
@@ -20,11 +24,18 @@ public class RestaurantDTO implements Serializable {
     @Size(min = 5, max = 100)
     private String address;
 
+    private Double latitude;
+
+    private Double longitude;
+
     @Size(max = 500)
     private String menu;
 
     private RestaurateurDTO restaurateur;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Set<PanierDTO> paniers;
+
     public Long getId() {
         return id;
     }
@@ -33,6 +44,14 @@ public class RestaurantDTO implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -49,6 +68,30 @@ public class RestaurantDTO implements Serializable {
         this.address = address;
     }
 
+    /**
+     * @return the latitude of the address in degrees, {@code null} if it is not geocoded. It is ignored by the writes, which
+     * geocode the address.
+     */
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * @return the longitude of the address in degrees, {@code null} if it is not geocoded. It is ignored by the writes, which
+     * geocode the address.
+     */
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
     public String getMenu() {
         return menu;
     }
@@ -65,6 +108,14 @@ public class RestaurantDTO implements Serializable {
         this.restaurateur = restaurateur;
     }
 
+    public Set<PanierDTO> getPaniers() {
+        return paniers;
+    }
+
+    public void setPaniers(Set<PanierDTO> paniers) {
+        this.paniers = paniers;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -91,8 +142,11 @@ public class RestaurantDTO implements Serializable {
     public String toString() {
         return "RestaurantDTO{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", name='" + getName() + "'" +
             ", address='" + getAddress() + "'" +
+            ", latitude=" + getLatitude() +
+            ", longitude=" + getLongitude() +
             ", menu='" + getMenu() + "'" +
             ", restaurateur=" + getRestaurateur() +
             "}";
@@ -0,0 +1,132 @@
+package jerem.coopcycle.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.PaymentType;
+import jerem.coopcycle.domain.enumeration.StatsGranularity;
+
+/**
+ * A DTO for the {@link jerem.coopcycle.domain.RestaurantStats} entity: the commandes of a restaurant in a time bucket, with
+ * the given status and payment type, {@code null} for the commandes without paiement.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class RestaurantStatsDTO implements Serializable {
+
+    private Long id;
+
+    private Long restaurantId;
+
+    private StatsGranularity granularity;
+
+    private Instant bucket;
+
+    private CommandeStatus status;
+
+    private PaymentType paymentType;
+
+    private Long commandeCount;
+
+    private Double revenue;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getRestaurantId() {
+        return restaurantId;
+    }
+
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public StatsGranularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(StatsGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public Instant getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(Instant bucket) {
+        this.bucket = bucket;
+    }
+
+    public CommandeStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(CommandeStatus status) {
+        this.status = status;
+    }
+
+    public PaymentType getPaymentType() {
+        return paymentType;
+    }
+
+    public void setPaymentType(PaymentType paymentType) {
+        this.paymentType = paymentType;
+    }
+
+    public Long getCommandeCount() {
+        return commandeCount;
+    }
+
+    public void setCommandeCount(Long commandeCount) {
+        this.commandeCount = commandeCount;
+    }
+
+    public Double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(Double revenue) {
+        this.revenue = revenue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RestaurantStatsDTO)) {
+            return false;
+        }
+
+        RestaurantStatsDTO restaurantStatsDTO = (RestaurantStatsDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, restaurantStatsDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "RestaurantStatsDTO{" +
+            "id=" + getId() +
+            ", restaurantId=" + getRestaurantId() +
+            ", granularity='" + getGranularity() + "'" +
+            ", bucket='" + getBucket() + "'" +
+            ", status='" + getStatus() + "'" +
+            ", paymentType='" + getPaymentType() + "'" +
+            ", commandeCount=" + getCommandeCount() +
+            ", revenue=" + getRevenue() +
+            "}";
+    }
+}
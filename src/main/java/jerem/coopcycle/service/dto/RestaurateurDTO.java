@@ -1,7 +1,9 @@
 package jerem.coopcycle.service.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.io.Serializable;
 import java.util.Objects;
+import java.util.Set;
 import javax.validation.constraints.*;
 
 /**
@@ -12,6 +14,8 @@ public class RestaurateurDTO implements Serializable {
 
     private Long id;
 
+    private Long version;
+
     @NotNull(message = "must not be null")
     @Size(min = 2, max = 50)
     private String firstName;
@@ -24,6 +28,9 @@ public class RestaurateurDTO implements Serializable {
 
     private SocietaireDTO societaire;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Set<RestaurantDTO> restaurants;
+
     public Long getId() {
         return id;
     }
@@ -32,6 +39,14 @@ public class RestaurateurDTO implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -64,6 +79,14 @@ public class RestaurateurDTO implements Serializable {
         this.societaire = societaire;
     }
 
+    public Set<RestaurantDTO> getRestaurants() {
+        return restaurants;
+    }
+
+    public void setRestaurants(Set<RestaurantDTO> restaurants) {
+        this.restaurants = restaurants;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -90,6 +113,7 @@ public class RestaurateurDTO implements Serializable {
     public String toString() {
         return "RestaurateurDTO{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", firstName='" + getFirstName() + "'" +
             ", lastName='" + getLastName() + "'" +
             ", commande=" + getCommande() +
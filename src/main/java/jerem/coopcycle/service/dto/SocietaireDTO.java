@@ -1,7 +1,9 @@
 package jerem.coopcycle.service.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.io.Serializable;
 import java.util.Objects;
+import java.util.Set;
 import javax.validation.constraints.*;
 import jerem.coopcycle.domain.enumeration.SocietaireType;
 
@@ -13,6 +15,8 @@ public class SocietaireDTO implements Serializable {
 
     private Long id;
 
+    private Long version;
+
     @NotNull(message = "must not be null")
     @Size(min = 2, max = 50)
     private String firstName;
@@ -24,6 +28,9 @@ public class SocietaireDTO implements Serializable {
     @NotNull(message = "must not be null")
     private SocietaireType type;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Set<RestaurateurDTO> restaurateurs;
+
     public Long getId() {
         return id;
     }
@@ -32,6 +39,14 @@ public class SocietaireDTO implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -56,6 +71,14 @@ public class SocietaireDTO implements Serializable {
         this.type = type;
     }
 
+    public Set<RestaurateurDTO> getRestaurateurs() {
+        return restaurateurs;
+    }
+
+    public void setRestaurateurs(Set<RestaurateurDTO> restaurateurs) {
+        this.restaurateurs = restaurateurs;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -82,6 +105,7 @@ public class SocietaireDTO implements Serializable {
     public String toString() {
         return "SocietaireDTO{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", firstName='" + getFirstName() + "'" +
             ", lastName='" + getLastName() + "'" +
             ", type='" + getType() + "'" +
@@ -0,0 +1,109 @@
+package jerem.coopcycle.service.geo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import jerem.coopcycle.config.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Geocodes the addresses with a local gazetteer, without calling any service.
+ * <p>
+ * The gazetteer is the CSV file set by {@code application.geolocation.gazetteer}, with a {@code place;latitude;longitude}
+ * line per place, a place being a full address, a street or a city. An address gets the coordinates of the place equal to it,
+ * else of the longest place it contains, the case, the accents and the punctuation being ignored. Without gazetteer, no
+ * address is geocoded.
+ */
+@Service
+public class GazetteerGeocoder implements Geocoder {
+
+    private static final String SEPARATOR = ";";
+
+    private final Logger log = LoggerFactory.getLogger(GazetteerGeocoder.class);
+
+    private final Map<String, GeoPoint> places = new HashMap<>();
+
+    /**
+     * The places, the longest first, so that the most precise place contained in an address is found first.
+     */
+    private final List<String> placesByLength = new ArrayList<>();
+
+    public GazetteerGeocoder(ApplicationProperties applicationProperties, ResourceLoader resourceLoader) {
+        String location = applicationProperties.getGeolocation().getGazetteer();
+        if (location == null || location.isBlank()) {
+            log.info("No gazetteer, the addresses are not geocoded");
+            return;
+        }
+        load(resourceLoader.getResource(location));
+        placesByLength.addAll(places.keySet());
+        placesByLength.sort(Comparator.comparing(String::length).reversed().thenComparing(Comparator.naturalOrder()));
+        log.info("Loaded {} places from the gazetteer {}", places.size(), location);
+    }
+
+    private void load(Resource gazetteer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(gazetteer.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank() || line.startsWith("#") || number == 1 && line.startsWith("place" + SEPARATOR)) {
+                    continue;
+                }
+                String[] columns = line.split(SEPARATOR);
+                if (columns.length != 3) {
+                    throw new IllegalStateException("Invalid line " + number + " of the gazetteer " + gazetteer + ": " + line);
+                }
+                GeoPoint point = new GeoPoint(Double.parseDouble(columns[1].trim()), Double.parseDouble(columns[2].trim()));
+                places.put(normalize(columns[0]), point);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the gazetteer " + gazetteer, e);
+        }
+    }
+
+    @Override
+    public Mono<GeoPoint> geocode(String address) {
+        if (address == null || places.isEmpty()) {
+            return Mono.empty();
+        }
+        String normalized = normalize(address);
+        GeoPoint point = places.get(normalized);
+        if (point == null) {
+            // the places are matched on whole words
+            String words = " " + normalized + " ";
+            for (String place : placesByLength) {
+                if (words.contains(" " + place + " ")) {
+                    point = places.get(place);
+                    break;
+                }
+            }
+        }
+        return Mono.justOrEmpty(point);
+    }
+
+    /**
+     * @return the text in lower case, without accents, with its words separated by single spaces.
+     */
+    static String normalize(String text) {
+        return Normalizer
+            .normalize(text, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT)
+            .replaceAll("[^\\p{Alnum}]+", " ")
+            .trim();
+    }
+}
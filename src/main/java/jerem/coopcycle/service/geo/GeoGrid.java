@@ -0,0 +1,231 @@
+package jerem.coopcycle.service.geo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import jerem.coopcycle.service.ConcurrentIndex;
+
+/**
+ * An in-memory spatial index of values by their location, on a grid of cells of a fixed size in degrees.
+ * <p>
+ * A value is stored in the cell of its point, and a query only reads the cells overlapping the bounding box of its radius, so
+ * its cost depends on the density of the values around its center rather than on their total number. The cells should be
+ * about the size of the usual radius. The nearby searches of the requests read the cells together, under the read lock of
+ * the {@link ConcurrentIndex}.
+ *
+ * @param <T> the type of the values.
+ */
+public final class GeoGrid<T> extends ConcurrentIndex<GeoGrid.Entry<T>> {
+
+    private static final Comparator<Neighbour<?>> BY_DISTANCE = Comparator
+        .<Neighbour<?>>comparingDouble(Neighbour::getDistance)
+        .thenComparingLong(Neighbour::getId);
+
+    private final double cellSize;
+
+    private final long columns;
+
+    private final Map<Long, Entry<T>> entries = new HashMap<>();
+
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+
+    /**
+     * @param cellSize the size of the cells, in degrees.
+     */
+    public GeoGrid(double cellSize) {
+        if (!(cellSize > 0 && cellSize <= 90)) {
+            throw new IllegalArgumentException("The size of the cells " + cellSize + " is not between 0 and 90 degrees");
+        }
+        this.cellSize = cellSize;
+        this.columns = (long) Math.ceil(360 / cellSize);
+    }
+
+    /**
+     * Adds a value, or moves it if its id is already indexed.
+     */
+    public void put(long id, GeoPoint point, T value) {
+        putValue(id, new Entry<>(id, point, value));
+    }
+
+    /**
+     * Removes a value, if its id is indexed.
+     */
+    public void remove(long id) {
+        removeValue(id);
+    }
+
+    /**
+     * Replaces all the values by the entries of a snapshot, and ends the refresh in progress, if any.
+     */
+    public void replaceAll(Collection<Entry<T>> newEntries) {
+        Map<Long, Entry<T>> values = new HashMap<>();
+        newEntries.forEach(entry -> values.put(entry.id, entry));
+        replaceValues(values);
+    }
+
+    /**
+     * @return the number of values.
+     */
+    public int size() {
+        return read(entries::size);
+    }
+
+    @Override
+    protected void add(long id, Entry<T> entry) {
+        entries.put(id, entry);
+        long cell = cell(row(entry.point.getLatitude()), column(entry.point.getLongitude()));
+        cells.computeIfAbsent(cell, key -> new ArrayList<>()).add(entry);
+    }
+
+    @Override
+    protected void delete(long id) {
+        Entry<T> entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        long cell = cell(row(entry.point.getLatitude()), column(entry.point.getLongitude()));
+        List<Entry<T>> cellEntries = cells.get(cell);
+        cellEntries.remove(entry);
+        if (cellEntries.isEmpty()) {
+            cells.remove(cell);
+        }
+    }
+
+    @Override
+    protected void clear() {
+        entries.clear();
+        cells.clear();
+    }
+
+    private long row(double latitude) {
+        return (long) Math.floor((latitude + 90) / cellSize);
+    }
+
+    private long column(double longitude) {
+        // the longitudes beyond the antimeridian wrap around
+        return Math.floorMod((long) Math.floor((longitude + 180) / cellSize), columns);
+    }
+
+    private long cell(long row, long column) {
+        return row * columns + column;
+    }
+
+    /**
+     * Finds the values nearest to a point.
+     *
+     * @param center the point.
+     * @param radius the maximum distance of the values, in meters.
+     * @param limit the maximum number of values.
+     * @return the values within the radius, the nearest first, at most {@code limit}.
+     */
+    public List<Neighbour<T>> nearest(GeoPoint center, double radius, int limit) {
+        if (limit <= 0 || radius < 0) {
+            return List.of();
+        }
+        // the farthest values first, to drop them when a nearer one is found
+        PriorityQueue<Neighbour<T>> nearest = new PriorityQueue<>(limit + 1, BY_DISTANCE.reversed());
+        read(() -> {
+            double latitudeSpan = radius / GeoPoint.METERS_PER_DEGREE;
+            double minLatitude = Math.max(-90, center.getLatitude() - latitudeSpan);
+            double maxLatitude = Math.min(90, center.getLatitude() + latitudeSpan);
+            // the longitudes are the widest at the latitude of the bounding box nearest to a pole
+            double cosine = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+            double longitudeSpan = cosine > 0 ? latitudeSpan / cosine : 360;
+            long firstRow = row(minLatitude);
+            long lastRow = row(maxLatitude);
+            long width = longitudeSpan >= 180 ? columns : Math.min(columns, (long) Math.floor(2 * longitudeSpan / cellSize) + 2);
+            long firstColumn = width == columns ? 0 : column(center.getLongitude() - longitudeSpan);
+            if ((lastRow - firstRow + 1) * width > entries.size()) {
+                // the values are sparser than the cells of the box
+                entries.values().forEach(entry -> offer(nearest, entry, center, radius, limit));
+            } else {
+                for (long row = firstRow; row <= lastRow; row++) {
+                    for (long i = 0; i < width; i++) {
+                        List<Entry<T>> cellEntries = cells.get(cell(row, (firstColumn + i) % columns));
+                        if (cellEntries != null) {
+                            cellEntries.forEach(entry -> offer(nearest, entry, center, radius, limit));
+                        }
+                    }
+                }
+            }
+            return nearest;
+        });
+        List<Neighbour<T>> result = new ArrayList<>(nearest);
+        result.sort(BY_DISTANCE);
+        return result;
+    }
+
+    private void offer(PriorityQueue<Neighbour<T>> nearest, Entry<T> entry, GeoPoint center, double radius, int limit) {
+        double distance = center.distanceTo(entry.point);
+        if (distance > radius) {
+            return;
+        }
+        Neighbour<T> neighbour = new Neighbour<>(entry, distance);
+        if (nearest.size() < limit) {
+            nearest.add(neighbour);
+        } else if (BY_DISTANCE.compare(neighbour, nearest.peek()) < 0) {
+            nearest.poll();
+            nearest.add(neighbour);
+        }
+    }
+
+    /**
+     * A value with its location.
+     *
+     * @param <T> the type of the value.
+     */
+    public static final class Entry<T> {
+
+        private final long id;
+
+        private final GeoPoint point;
+
+        private final T value;
+
+        public Entry(long id, GeoPoint point, T value) {
+            this.id = id;
+            this.point = point;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A value found near a point, with its distance.
+     *
+     * @param <T> the type of the value.
+     */
+    public static final class Neighbour<T> {
+
+        private final Entry<T> entry;
+
+        private final double distance;
+
+        private Neighbour(Entry<T> entry, double distance) {
+            this.entry = entry;
+            this.distance = distance;
+        }
+
+        public long getId() {
+            return entry.id;
+        }
+
+        public GeoPoint getPoint() {
+            return entry.point;
+        }
+
+        public T getValue() {
+            return entry.value;
+        }
+
+        /**
+         * @return the distance to the point, in meters.
+         */
+        public double getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package jerem.coopcycle.service.geo;
+
+/**
+ * A point on the Earth, in degrees (WGS 84).
+ */
+public final class GeoPoint {
+
+    /**
+     * The mean radius of the Earth, in meters.
+     */
+    public static final double EARTH_RADIUS = 6_371_008.8;
+
+    /**
+     * The length of a degree of latitude, in meters.
+     */
+    public static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS / 180;
+
+    private final double latitude;
+
+    private final double longitude;
+
+    /**
+     * @param latitude the latitude, between -90 and 90.
+     * @param longitude the longitude, between -180 and 180.
+     * @throws IllegalArgumentException if a coordinate is out of its range.
+     */
+    public GeoPoint(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90)) {
+            throw new IllegalArgumentException("The latitude " + latitude + " is not between -90 and 90");
+        }
+        if (!(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("The longitude " + longitude + " is not between -180 and 180");
+        }
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return the great-circle distance to the other point, in meters, with the haversine formula.
+     */
+    public double distanceTo(GeoPoint other) {
+        double deltaLatitude = Math.toRadians(other.latitude - latitude);
+        double deltaLongitude = Math.toRadians(other.longitude - longitude);
+        double a =
+            Math.pow(Math.sin(deltaLatitude / 2), 2) +
+            Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(other.latitude)) * Math.pow(Math.sin(deltaLongitude / 2), 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GeoPoint)) {
+            return false;
+        }
+        GeoPoint other = (GeoPoint) o;
+        return Double.compare(latitude, other.latitude) == 0 && Double.compare(longitude, other.longitude) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(latitude) + Double.hashCode(longitude);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "GeoPoint{" +
+            "latitude=" + getLatitude() +
+            ", longitude=" + getLongitude() +
+            "}";
+    }
+}
@@ -0,0 +1,17 @@
+package jerem.coopcycle.service.geo;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Finds the coordinates of a postal address.
+ * <p>
+ * The {@link GazetteerGeocoder} is used by default: another implementation, calling a geocoding service for instance, replaces
+ * it when it is declared as a {@link org.springframework.context.annotation.Primary} bean.
+ */
+public interface Geocoder {
+    /**
+     * @param address the free-text address.
+     * @return the coordinates of the address, or an empty Mono if it is unknown.
+     */
+    Mono<GeoPoint> geocode(String address);
+}
@@ -0,0 +1,149 @@
+package jerem.coopcycle.service.geo;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.repository.RestaurantRepository;
+import jerem.coopcycle.service.BackgroundJob;
+import jerem.coopcycle.service.dto.NearbyRestaurantDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * In-memory spatial index of the geocoded restaurants, answering the nearby searches without reading the database.
+ * <p>
+ * The index is loaded when the application starts, kept up to date by the writes of the
+ * {@link jerem.coopcycle.service.RestaurantService}, and reloaded by {@code application.geolocation.refresh-cron}, to get the
+ * writes of the other instances.
+ */
+@Service
+public class RestaurantLocationIndex {
+
+    private final Logger log = LoggerFactory.getLogger(RestaurantLocationIndex.class);
+
+    private final RestaurantRepository restaurantRepository;
+
+    private final ApplicationProperties.Geolocation properties;
+
+    private final GeoGrid<Restaurant> grid;
+
+    private final BackgroundJob refreshJob = new BackgroundJob("restaurant locations refresh");
+
+    public RestaurantLocationIndex(RestaurantRepository restaurantRepository, ApplicationProperties applicationProperties) {
+        this.restaurantRepository = restaurantRepository;
+        this.properties = applicationProperties.getGeolocation();
+        this.grid = new GeoGrid<>(properties.getCellSize());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refresh().subscribe(null, e -> log.warn("Cannot load the locations of the restaurants: {}", e.getMessage()));
+    }
+
+    /**
+     * Reloads the index.
+     * <p>
+     * This is scheduled with {@code application.geolocation.refresh-cron}, every 5 minutes by default, and runs off the
+     * scheduling threads.
+     */
+    @Scheduled(cron = "${application.geolocation.refresh-cron:0 */5 * * * ?}")
+    public void scheduledRefresh() {
+        refreshJob.start(() -> refresh().doOnNext(size -> log.debug("Indexed the locations of {} restaurants", size)));
+    }
+
+    /**
+     * Replaces the index by the geocoded restaurants of the database.
+     * <p>
+     * The restaurants put or removed while the database is read are put or removed again after the replacement, the read
+     * possibly missing them.
+     *
+     * @return the number of indexed restaurants.
+     */
+    public Mono<Integer> refresh() {
+        return Mono.defer(() -> {
+            grid.beginRefresh();
+            return restaurantRepository
+                .findAllLocations()
+                .filter(restaurant -> restaurant.getLatitude() != null && restaurant.getLongitude() != null)
+                .map(restaurant ->
+                    new GeoGrid.Entry<>(restaurant.getId(), new GeoPoint(restaurant.getLatitude(), restaurant.getLongitude()), restaurant)
+                )
+                .collectList()
+                .map(entries -> {
+                    grid.replaceAll(entries);
+                    return entries.size();
+                })
+                .doOnError(e -> grid.cancelRefresh())
+                .doOnCancel(grid::cancelRefresh);
+        });
+    }
+
+    /**
+     * Indexes a restaurant at its location, or removes it if it is not geocoded.
+     *
+     * @param restaurant the restaurant, with its id, name, address and coordinates.
+     */
+    public void put(Restaurant restaurant) {
+        if (restaurant.getLatitude() == null || restaurant.getLongitude() == null) {
+            grid.remove(restaurant.getId());
+            return;
+        }
+        // a copy of the indexed properties, the entity being mutable
+        Restaurant location = new Restaurant()
+            .id(restaurant.getId())
+            .name(restaurant.getName())
+            .address(restaurant.getAddress())
+            .latitude(restaurant.getLatitude())
+            .longitude(restaurant.getLongitude());
+        grid.put(location.getId(), new GeoPoint(location.getLatitude(), location.getLongitude()), location);
+    }
+
+    /**
+     * Removes a restaurant from the index.
+     */
+    public void remove(Long id) {
+        grid.remove(id);
+    }
+
+    /**
+     * Finds the restaurants nearest to a point.
+     *
+     * @param latitude the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @param radius the maximum distance of the restaurants, in meters, up to {@code application.geolocation.max-radius}.
+     * @param limit the maximum number of restaurants, up to {@code application.geolocation.max-results}.
+     * @return the restaurants within the radius, the nearest first.
+     * @throws IllegalArgumentException if a coordinate, the radius or the limit is out of its range.
+     */
+    public List<NearbyRestaurantDTO> findNearest(double latitude, double longitude, double radius, int limit) {
+        if (!(radius > 0 && radius <= properties.getMaxRadius())) {
+            throw new IllegalArgumentException("The radius " + radius + " is not between 0 and " + properties.getMaxRadius() + " meters");
+        }
+        if (limit < 1 || limit > properties.getMaxResults()) {
+            throw new IllegalArgumentException(
+                "The number of restaurants " + limit + " is not between 1 and " + properties.getMaxResults()
+            );
+        }
+        return grid
+            .nearest(new GeoPoint(latitude, longitude), radius, limit)
+            .stream()
+            .map(neighbour -> {
+                Restaurant restaurant = neighbour.getValue();
+                NearbyRestaurantDTO nearbyRestaurant = new NearbyRestaurantDTO();
+                nearbyRestaurant.setId(restaurant.getId());
+                nearbyRestaurant.setName(restaurant.getName());
+                nearbyRestaurant.setAddress(restaurant.getAddress());
+                nearbyRestaurant.setLatitude(restaurant.getLatitude());
+                nearbyRestaurant.setLongitude(restaurant.getLongitude());
+                nearbyRestaurant.setDistance(neighbour.getDistance());
+                return nearbyRestaurant;
+            })
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Geocoding of the addresses, and spatial index of the restaurants.
+ */
+package jerem.coopcycle.service.geo;
@@ -0,0 +1,11 @@
+package jerem.coopcycle.service.mapper;
+
+import jerem.coopcycle.domain.OutboxEvent;
+import jerem.coopcycle.service.dto.OutboxEventDTO;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link OutboxEvent} and its DTO {@link OutboxEventDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface OutboxEventMapper extends EntityMapper<OutboxEventDTO, OutboxEvent> {}
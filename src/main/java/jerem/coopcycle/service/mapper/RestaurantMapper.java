@@ -12,8 +12,12 @@ import org.mapstruct.*;
 @Mapper(componentModel = "spring")
 public interface RestaurantMapper extends EntityMapper<RestaurantDTO, Restaurant> {
     @Mapping(target = "restaurateur", source = "restaurateur", qualifiedByName = "restaurateurId")
+    @Mapping(target = "paniers", ignore = true)
     RestaurantDTO toDto(Restaurant s);
 
+    @Mapping(target = "paniers", ignore = true)
+    Restaurant toEntity(RestaurantDTO restaurantDTO);
+
     @Named("restaurateurId")
     @BeanMapping(ignoreByDefault = true)
     @Mapping(target = "id", source = "id")
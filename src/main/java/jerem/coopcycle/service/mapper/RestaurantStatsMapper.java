@@ -0,0 +1,11 @@
+package jerem.coopcycle.service.mapper;
+
+import jerem.coopcycle.domain.RestaurantStats;
+import jerem.coopcycle.service.dto.RestaurantStatsDTO;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link RestaurantStats} and its DTO {@link RestaurantStatsDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface RestaurantStatsMapper extends EntityMapper<RestaurantStatsDTO, RestaurantStats> {}
@@ -15,8 +15,12 @@ import org.mapstruct.*;
 public interface RestaurateurMapper extends EntityMapper<RestaurateurDTO, Restaurateur> {
     @Mapping(target = "commande", source = "commande", qualifiedByName = "commandeId")
     @Mapping(target = "societaire", source = "societaire", qualifiedByName = "societaireId")
+    @Mapping(target = "restaurants", ignore = true)
     RestaurateurDTO toDto(Restaurateur s);
 
+    @Mapping(target = "restaurants", ignore = true)
+    Restaurateur toEntity(RestaurateurDTO restaurateurDTO);
+
     @Named("commandeId")
     @BeanMapping(ignoreByDefault = true)
     @Mapping(target = "id", source = "id")
@@ -8,4 +8,10 @@ import org.mapstruct.*;
  * Mapper for the entity {@link Societaire} and its DTO {@link SocietaireDTO}.
  */
 @Mapper(componentModel = "spring")
-public interface SocietaireMapper extends EntityMapper<SocietaireDTO, Societaire> {}
+public interface SocietaireMapper extends EntityMapper<SocietaireDTO, Societaire> {
+    @Mapping(target = "restaurateurs", ignore = true)
+    SocietaireDTO toDto(Societaire s);
+
+    @Mapping(target = "restaurateurs", ignore = true)
+    Societaire toEntity(SocietaireDTO societaireDTO);
+}
@@ -0,0 +1,21 @@
+package jerem.coopcycle.service.outbox;
+
+import jerem.coopcycle.service.dto.OutboxEventDTO;
+import reactor.core.publisher.Mono;
+
+/**
+ * A subscriber of the outbox, such as the dispatch or the notifications: the Spring beans implementing it receive the events
+ * of the commandes and the paiements from the {@link OutboxRelay}.
+ * <p>
+ * The events of an entity are delivered one at a time, in the order of their changes. An event is delivered again when a
+ * subscriber fails, so the subscribers must ignore the events they already handled, by their id.
+ */
+public interface OutboxEventSubscriber {
+    /**
+     * Handles an event. The relay holds the lock on the event meanwhile, so this should be quick.
+     *
+     * @param event the event, with the JSON of the changed entity as payload.
+     * @return a Mono completing when the event is handled, or failing to get it delivered again.
+     */
+    Mono<Void> onEvent(OutboxEventDTO event);
+}
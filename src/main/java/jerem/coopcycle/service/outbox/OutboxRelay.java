@@ -0,0 +1,206 @@
+package jerem.coopcycle.service.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.domain.OutboxEvent;
+import jerem.coopcycle.repository.OutboxEventRepository;
+import jerem.coopcycle.service.BackgroundJob;
+import jerem.coopcycle.service.dto.OutboxEventDTO;
+import jerem.coopcycle.service.mapper.OutboxEventMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Relays the events of the outbox to the {@link OutboxEventSubscriber}s.
+ * <p>
+ * Each batch of pending events is locked, delivered and marked processed in one transaction, in the order of the ids. The
+ * events locked by the relay of another instance are skipped, and so are the later events of their entities, so that the
+ * events of an entity are delivered in order even with several relays. An event whose delivery failed is delivered again by
+ * the next run, before the later events of its entity, until it is dropped after {@code application.outbox.max-attempts}.
+ * <p>
+ * The relay publishes the number of relayed events by entity and outcome ({@value #EVENTS_METER_NAME}), the delay between the
+ * writes of the events and their delivery ({@value #LAG_METER_NAME}), and the number of pending events after the last run
+ * ({@value #PENDING_METER_NAME}).
+ */
+@Service
+public class OutboxRelay {
+
+    public static final String EVENTS_METER_NAME = "outbox.events";
+    public static final String EVENTS_METER_DESCRIPTION = "Number of events relayed from the outbox.";
+    public static final String LAG_METER_NAME = "outbox.events.lag";
+    public static final String LAG_METER_DESCRIPTION = "Time between the write of an event and its delivery.";
+    public static final String PENDING_METER_NAME = "outbox.events.pending";
+    public static final String PENDING_METER_DESCRIPTION = "Number of events waiting to be relayed.";
+    public static final String AGGREGATE_DIMENSION = "aggregate";
+    public static final String OUTCOME_DIMENSION = "outcome";
+    public static final String DELIVERED_OUTCOME = "delivered";
+    public static final String RETRIED_OUTCOME = "retried";
+    public static final String DROPPED_OUTCOME = "dropped";
+
+    private final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final OutboxEventMapper outboxEventMapper;
+
+    private final ObjectProvider<OutboxEventSubscriber> subscribers;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ApplicationProperties.Outbox properties;
+
+    private final BackgroundJob relayJob = new BackgroundJob("outbox relay");
+
+    private final BackgroundJob cleanupJob = new BackgroundJob("outbox cleanup");
+
+    private final MeterRegistry registry;
+
+    private final AtomicLong pending = new AtomicLong();
+
+    public OutboxRelay(
+        OutboxEventRepository outboxEventRepository,
+        OutboxEventMapper outboxEventMapper,
+        ObjectProvider<OutboxEventSubscriber> subscribers,
+        ReactiveTransactionManager transactionManager,
+        MeterRegistry registry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxEventMapper = outboxEventMapper;
+        this.subscribers = subscribers;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.registry = registry;
+        this.properties = applicationProperties.getOutbox();
+        Gauge.builder(PENDING_METER_NAME, pending, AtomicLong::get).description(PENDING_METER_DESCRIPTION).register(registry);
+    }
+
+    /**
+     * Relays the pending events.
+     * <p>
+     * This is scheduled with {@code application.outbox.relay-cron}, every second by default, and runs off the scheduling
+     * threads.
+     */
+    @Scheduled(cron = "${application.outbox.relay-cron:* * * * * ?}")
+    public void scheduledRelay() {
+        relayJob.start(this::relay);
+    }
+
+    /**
+     * Relays the pending events, batch after batch, until a batch is not full.
+     *
+     * @return the number of events processed, delivered or dropped.
+     */
+    public Mono<Long> relay() {
+        return relayBatch()
+            .expand(processed -> processed < properties.getBatchSize() ? Mono.empty() : relayBatch())
+            .reduce(0L, (total, processed) -> total + processed)
+            .flatMap(total -> outboxEventRepository.countPending().doOnNext(pending::set).thenReturn(total));
+    }
+
+    private Mono<Integer> relayBatch() {
+        return transactionalOperator.transactional(
+            outboxEventRepository
+                .lockPending((long) properties.getBatchSize())
+                .collectList()
+                .flatMap(events -> {
+                    if (events.isEmpty()) {
+                        return Mono.just(0);
+                    }
+                    List<Long> ids = events.stream().map(OutboxEvent::getId).collect(Collectors.toList());
+                    return outboxEventRepository
+                        .findBlockedAggregates(ids, ids.get(ids.size() - 1))
+                        .map(aggregate -> aggregate.getT1() + ':' + aggregate.getT2())
+                        .collect(Collectors.toCollection(HashSet::new))
+                        .flatMapMany(blocked -> Flux.fromIterable(events).concatMap(event -> deliver(event, blocked)))
+                        .collectList()
+                        .flatMap(processedIds ->
+                            processedIds.isEmpty()
+                                ? Mono.just(0)
+                                : outboxEventRepository.markProcessed(processedIds, Instant.now()).thenReturn(processedIds.size())
+                        );
+                })
+        );
+    }
+
+    /**
+     * Delivers an event to every subscriber, unless an earlier event of its entity is still pending.
+     *
+     * @return the id of the event if it is processed, delivered or dropped, or an empty Mono if it is to be delivered again.
+     */
+    private Mono<Long> deliver(OutboxEvent event, Set<String> blocked) {
+        String aggregate = event.getAggregateType() + ':' + event.getAggregateId();
+        if (blocked.contains(aggregate)) {
+            return Mono.empty();
+        }
+        OutboxEventDTO eventDTO = outboxEventMapper.toDto(event);
+        return Flux
+            .fromStream(subscribers::orderedStream)
+            .concatMap(subscriber -> subscriber.onEvent(eventDTO))
+            .then(
+                Mono.fromCallable(() -> {
+                    count(event, DELIVERED_OUTCOME);
+                    Timer
+                        .builder(LAG_METER_NAME)
+                        .description(LAG_METER_DESCRIPTION)
+                        .tag(AGGREGATE_DIMENSION, event.getAggregateType())
+                        .register(registry)
+                        .record(Duration.between(event.getCreatedDate(), Instant.now()));
+                    return event.getId();
+                })
+            )
+            .onErrorResume(e -> {
+                if (event.getAttempts() + 1 >= properties.getMaxAttempts()) {
+                    log.error("Dropping the outbox event {} after {} attempts", event, properties.getMaxAttempts(), e);
+                    count(event, DROPPED_OUTCOME);
+                    return Mono.just(event.getId());
+                }
+                log.warn("Cannot deliver the outbox event {}, it will be delivered again: {}", event, e.getMessage());
+                count(event, RETRIED_OUTCOME);
+                // the later events of the entity wait for this one
+                blocked.add(aggregate);
+                return outboxEventRepository.incrementAttempts(event.getId()).then(Mono.empty());
+            });
+    }
+
+    private void count(OutboxEvent event, String outcome) {
+        Counter
+            .builder(EVENTS_METER_NAME)
+            .description(EVENTS_METER_DESCRIPTION)
+            .tag(AGGREGATE_DIMENSION, event.getAggregateType())
+            .tag(OUTCOME_DIMENSION, outcome)
+            .register(registry)
+            .increment();
+    }
+
+    /**
+     * Deletes the events processed before the retention.
+     * <p>
+     * This is scheduled with {@code application.outbox.cleanup-cron}, every hour by default, and runs off the scheduling
+     * threads.
+     */
+    @Scheduled(cron = "${application.outbox.cleanup-cron:0 15 * * * ?}")
+    public void removeProcessedEvents() {
+        cleanupJob.start(() ->
+            outboxEventRepository
+                .deleteByProcessedDateBefore(Instant.now().minus(properties.getRetention()))
+                .doOnNext(deleted -> log.debug("Deleted {} processed outbox events", deleted))
+        );
+    }
+}
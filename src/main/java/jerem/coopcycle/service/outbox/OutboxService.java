@@ -0,0 +1,58 @@
+package jerem.coopcycle.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import jerem.coopcycle.domain.OutboxEvent;
+import jerem.coopcycle.domain.enumeration.OutboxEventType;
+import jerem.coopcycle.repository.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service writing the events of the transactional outbox.
+ * <p>
+ * The events are written in the transaction of the caller, after the change they tell about: they are relayed only if the
+ * change is committed, and the events of an entity get ids in the order of its changes, as the write of the entity locks it
+ * until the commit.
+ */
+@Service
+public class OutboxService {
+
+    private final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes an event, in the current transaction.
+     *
+     * @param aggregateType the name of the changed entity.
+     * @param aggregateId the id of the changed entity.
+     * @param eventType the change.
+     * @param payload the changed entity, written as JSON, or null.
+     * @return a Mono to signal the write.
+     */
+    public Mono<Void> publish(String aggregateType, Long aggregateId, OutboxEventType eventType, Object payload) {
+        log.debug("Request to publish a {} event of {} : {}", eventType, aggregateType, aggregateId);
+        return Mono
+            .fromCallable(() ->
+                new OutboxEvent()
+                    .aggregateType(aggregateType)
+                    .aggregateId(aggregateId)
+                    .eventType(eventType)
+                    .payload(payload != null ? objectMapper.writeValueAsString(payload) : null)
+                    .createdDate(Instant.now())
+                    .attempts(0)
+            )
+            .flatMap(outboxEventRepository::save)
+            .then();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Transactional outbox of the changes of the entities, relayed to the in-process subscribers.
+ */
+package jerem.coopcycle.service.outbox;
@@ -0,0 +1,193 @@
+package jerem.coopcycle.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jerem.coopcycle.service.ConcurrentIndex;
+
+/**
+ * An in-memory inverted index of documents made of weighted texts, ranking the documents containing all the words of a query.
+ * <p>
+ * Each word of a document is listed with its weight, the sum of the weights of the texts in which it occurs, once per
+ * occurrence. A query only reads the documents of its rarest word, and ranks them by the sum of the weights of its words, then
+ * by id. The words are compared in lower case and without accents. The texts are split and weighed before taking the write
+ * lock of the {@link ConcurrentIndex}, so that the searches only wait for the update of the postings.
+ */
+public final class InvertedIndex extends ConcurrentIndex<Map<String, Double>> {
+
+    private static final Comparator<Map.Entry<Long, Double>> BY_RANK = Map.Entry
+        .<Long, Double>comparingByValue()
+        .reversed()
+        .thenComparing(Map.Entry.comparingByKey());
+
+    /**
+     * The weights of the words in the documents, by word then by document id.
+     */
+    private final Map<String, Map<Long, Double>> postings = new HashMap<>();
+
+    /**
+     * The words of the documents, by document id, to remove them from the postings.
+     */
+    private final Map<Long, Set<String>> words = new HashMap<>();
+
+    /**
+     * Adds a document, or replaces it if its id is already indexed.
+     *
+     * @param fields the texts of the document, the {@code null} texts being ignored.
+     */
+    public void put(long id, Field... fields) {
+        putValue(id, weigh(fields));
+    }
+
+    /**
+     * Removes a document, if its id is indexed.
+     */
+    public void remove(long id) {
+        removeValue(id);
+    }
+
+    /**
+     * Replaces all the documents by a snapshot, and ends the refresh in progress, if any.
+     *
+     * @param documents the texts of the documents, by id.
+     */
+    public void replaceAll(Map<Long, Field[]> documents) {
+        Map<Long, Map<String, Double>> weights = new HashMap<>();
+        documents.forEach((id, fields) -> weights.put(id, weigh(fields)));
+        replaceValues(weights);
+    }
+
+    /**
+     * @return the number of documents.
+     */
+    public int size() {
+        return read(words::size);
+    }
+
+    private static Map<String, Double> weigh(Field... fields) {
+        Map<String, Double> weights = new HashMap<>();
+        for (Field field : fields) {
+            for (String word : tokenize(field.text)) {
+                weights.merge(word, field.weight, Double::sum);
+            }
+        }
+        return weights;
+    }
+
+    @Override
+    protected void add(long id, Map<String, Double> weights) {
+        words.put(id, weights.keySet());
+        weights.forEach((word, weight) -> postings.computeIfAbsent(word, key -> new HashMap<>()).put(id, weight));
+    }
+
+    @Override
+    protected void delete(long id) {
+        Set<String> documentWords = words.remove(id);
+        if (documentWords == null) {
+            return;
+        }
+        for (String word : documentWords) {
+            Map<Long, Double> documents = postings.get(word);
+            documents.remove(id);
+            if (documents.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+    }
+
+    @Override
+    protected void clear() {
+        postings.clear();
+        words.clear();
+    }
+
+    /**
+     * Finds the documents containing all the words of a query.
+     *
+     * @param query the words to search.
+     * @return the ids of the documents, the most relevant first.
+     * @throws IllegalArgumentException if the query has no words.
+     */
+    public List<Long> search(String query) {
+        Set<String> queryWords = new LinkedHashSet<>(tokenize(query));
+        if (queryWords.isEmpty()) {
+            throw new IllegalArgumentException("The query '" + query + "' has no words to search");
+        }
+        List<Map.Entry<Long, Double>> ranks = read(() -> {
+            List<Map.Entry<Long, Double>> documentRanks = new ArrayList<>();
+            List<Map<Long, Double>> documents = new ArrayList<>();
+            for (String word : queryWords) {
+                Map<Long, Double> wordDocuments = postings.get(word);
+                if (wordDocuments == null) {
+                    return documentRanks;
+                }
+                documents.add(wordDocuments);
+            }
+            // the rarest word first, the other words only being looked up in its documents
+            documents.sort(Comparator.comparingInt(Map::size));
+            for (Map.Entry<Long, Double> document : documents.get(0).entrySet()) {
+                Double rank = rank(document.getKey(), document.getValue(), documents.subList(1, documents.size()));
+                if (rank != null) {
+                    documentRanks.add(Map.entry(document.getKey(), rank));
+                }
+            }
+            return documentRanks;
+        });
+        ranks.sort(BY_RANK);
+        return ranks.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the sum of the weights of a document in the postings of the other words, or {@code null} if a word is missing.
+     */
+    private static Double rank(Long id, double weight, List<Map<Long, Double>> otherDocuments) {
+        double rank = weight;
+        for (Map<Long, Double> documents : otherDocuments) {
+            Double otherWeight = documents.get(id);
+            if (otherWeight == null) {
+                return null;
+            }
+            rank += otherWeight;
+        }
+        return rank;
+    }
+
+    /**
+     * @return the words of the text, in lower case and without accents.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String normalized = Normalizer
+            .normalize(text, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT)
+            .replaceAll("[^\\p{Alnum}]+", " ")
+            .trim();
+        return normalized.isEmpty() ? List.of() : Arrays.asList(normalized.split(" "));
+    }
+
+    /**
+     * A text of a document, with its weight.
+     */
+    public static final class Field {
+
+        private final String text;
+
+        private final double weight;
+
+        public Field(String text, double weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package jerem.coopcycle.service.search;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.repository.RestaurantRepository;
+import jerem.coopcycle.service.dto.RestaurantDTO;
+import jerem.coopcycle.service.mapper.RestaurantMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Searches the restaurants by the words of their names and menus.
+ * <p>
+ * On PostgreSQL, the search runs in the database on the {@code search_vector} column, maintained by PostgreSQL from the name
+ * and the menu and indexed with GIN. The words are stemmed with the French dictionary, so that a query finds the plurals
+ * too. On the other databases, the search runs in an {@link InvertedIndex} loaded from the restaurants when the application
+ * starts, and kept up to date by the writes of the {@link jerem.coopcycle.service.RestaurantService}: the words are then
+ * matched as they are, without stemming but without accents. In both cases a restaurant must contain all the words of the
+ * query, and a word of its name weighs more than a word of its menu.
+ */
+@Service
+public class RestaurantSearchService {
+
+    /**
+     * The weight of a word of the name, as the weight {@code A} of {@code ts_rank}.
+     */
+    static final double NAME_WEIGHT = 1.0;
+
+    /**
+     * The weight of a word of the menu, as the weight {@code B} of {@code ts_rank}.
+     */
+    static final double MENU_WEIGHT = 0.4;
+
+    private final Logger log = LoggerFactory.getLogger(RestaurantSearchService.class);
+
+    private final RestaurantRepository restaurantRepository;
+
+    private final RestaurantMapper restaurantMapper;
+
+    private final InvertedIndex index = new InvertedIndex();
+
+    public RestaurantSearchService(RestaurantRepository restaurantRepository, RestaurantMapper restaurantMapper) {
+        this.restaurantRepository = restaurantRepository;
+        this.restaurantMapper = restaurantMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (restaurantRepository.isSearchSupported()) {
+            return;
+        }
+        refresh().subscribe(null, e -> log.warn("Cannot index the restaurants for the search: {}", e.getMessage()));
+    }
+
+    /**
+     * Replaces the in-memory index by the restaurants of the database, if the database does not search itself.
+     * <p>
+     * The restaurants put or removed while the database is read are put or removed again after the replacement, the read
+     * possibly missing them.
+     *
+     * @return the number of indexed restaurants.
+     */
+    public Mono<Integer> refresh() {
+        if (restaurantRepository.isSearchSupported()) {
+            return Mono.just(0);
+        }
+        return Mono.defer(() -> {
+            index.beginRefresh();
+            return restaurantRepository
+                .findAll()
+                .collectMap(Restaurant::getId, RestaurantSearchService::fields)
+                .map(documents -> {
+                    index.replaceAll(documents);
+                    return documents.size();
+                })
+                .doOnError(e -> index.cancelRefresh())
+                .doOnCancel(index::cancelRefresh);
+        });
+    }
+
+    private static InvertedIndex.Field[] fields(Restaurant restaurant) {
+        return new InvertedIndex.Field[] {
+            new InvertedIndex.Field(restaurant.getName(), NAME_WEIGHT),
+            new InvertedIndex.Field(restaurant.getMenu(), MENU_WEIGHT),
+        };
+    }
+
+    /**
+     * Indexes the name and the menu of a restaurant.
+     *
+     * @param restaurant the restaurant, with its id, name and menu.
+     */
+    public void put(Restaurant restaurant) {
+        if (!restaurantRepository.isSearchSupported()) {
+            index.put(restaurant.getId(), fields(restaurant));
+        }
+    }
+
+    /**
+     * Removes a restaurant from the index.
+     */
+    public void remove(Long id) {
+        if (!restaurantRepository.isSearchSupported()) {
+            index.remove(id);
+        }
+    }
+
+    /**
+     * Searches the restaurants.
+     *
+     * @param query the words to search.
+     * @param pageable the pagination information, the sort being ignored.
+     * @return the restaurants containing all the words, the most relevant first.
+     * @throws IllegalArgumentException (in the Flux) if the query has no words.
+     */
+    public Flux<RestaurantDTO> search(String query, Pageable pageable) {
+        log.debug("Request to search Restaurants : {}", query);
+        if (restaurantRepository.isSearchSupported()) {
+            return checkQuery(query).thenMany(restaurantRepository.findAllBySearch(query, pageable)).map(restaurantMapper::toDto);
+        }
+        return Mono
+            .fromCallable(() -> index.search(query))
+            .flatMapMany(ids -> {
+                List<Long> page = ids
+                    .stream()
+                    .skip(pageable.getOffset())
+                    .limit(pageable.getPageSize())
+                    .collect(Collectors.toList());
+                // the restaurants are read by id, in the order of their rank
+                return restaurantRepository
+                    .findAllById(page)
+                    .collectMap(Restaurant::getId, Function.identity())
+                    .flatMapIterable(restaurants ->
+                        page.stream().map(restaurants::get).filter(Objects::nonNull).collect(Collectors.toList())
+                    );
+            })
+            .map(restaurantMapper::toDto);
+    }
+
+    /**
+     * Counts the restaurants found by a search.
+     *
+     * @param query the words to search.
+     * @return the number of restaurants containing all the words.
+     * @throws IllegalArgumentException (in the Mono) if the query has no words.
+     */
+    public Mono<Long> count(String query) {
+        if (restaurantRepository.isSearchSupported()) {
+            return checkQuery(query).then(restaurantRepository.countAllBySearch(query));
+        }
+        return Mono.fromCallable(() -> (long) index.search(query).size());
+    }
+
+    /**
+     * Rejects the queries without words as the in-memory index does, rather than finding no restaurant.
+     */
+    private static Mono<Void> checkQuery(String query) {
+        return Mono.defer(() ->
+            InvertedIndex.tokenize(query).isEmpty()
+                ? Mono.error(new IllegalArgumentException("The query '" + query + "' has no words to search"))
+                : Mono.empty()
+        );
+    }
+}
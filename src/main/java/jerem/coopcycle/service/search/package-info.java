@@ -0,0 +1,4 @@
+/**
+ * Full-text search of the restaurants by their names and menus.
+ */
+package jerem.coopcycle.service.search;
@@ -0,0 +1,73 @@
+package jerem.coopcycle.web.filter;
+
+import java.time.Clock;
+import java.time.Duration;
+import jerem.coopcycle.repository.routing.ReplicaRoutingConnectionFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Lets a client read its own writes when the reads are served by lagging replicas.
+ * <p>
+ * A successful write answers with a {@value #READ_YOUR_WRITES_HEADER} token, the time of the write. A request sending that token
+ * back is pinned to the primary database until the replicas are guaranteed to have caught up, that is for the replica lag tolerance.
+ */
+public class ReadYourWritesWebFilter implements WebFilter {
+
+    public static final String READ_YOUR_WRITES_HEADER = "X-Read-Your-Writes";
+
+    private final Duration lagTolerance;
+
+    private final Clock clock;
+
+    public ReadYourWritesWebFilter(Duration lagTolerance) {
+        this(lagTolerance, Clock.systemUTC());
+    }
+
+    ReadYourWritesWebFilter(Duration lagTolerance, Clock clock) {
+        this.lagTolerance = lagTolerance;
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        HttpMethod method = exchange.getRequest().getMethod();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.beforeCommit(() -> {
+                HttpStatus status = response.getStatusCode();
+                if (status == null || status.is2xxSuccessful()) {
+                    response.getHeaders().set(READ_YOUR_WRITES_HEADER, String.valueOf(clock.millis()));
+                }
+                return Mono.empty();
+            });
+            return chain.filter(exchange);
+        }
+        if (isPinned(exchange.getRequest().getHeaders().getFirst(READ_YOUR_WRITES_HEADER))) {
+            return chain
+                .filter(exchange)
+                .contextWrite(context -> context.put(ReplicaRoutingConnectionFactory.PIN_PRIMARY_CONTEXT_KEY, true));
+        }
+        return chain.filter(exchange);
+    }
+
+    private boolean isPinned(String token) {
+        if (token == null) {
+            return false;
+        }
+        long writtenAt;
+        try {
+            writtenAt = Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        // a token from the future is not trusted, it would pin the client to the primary forever
+        long elapsed = clock.millis() - writtenAt;
+        return elapsed >= 0 && elapsed < lagTolerance.toMillis();
+    }
+}
@@ -0,0 +1,72 @@
+package jerem.coopcycle.web.rest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import jerem.coopcycle.domain.enumeration.StatsGranularity;
+import jerem.coopcycle.security.AuthoritiesConstants;
+import jerem.coopcycle.service.RestaurantStatsService;
+import jerem.coopcycle.service.dto.RestaurantStatsDTO;
+import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * REST controller reading the pre-aggregated statistics of the restaurants, instead of summing the commandes and the paiements.
+ */
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsResource {
+
+    private final Logger log = LoggerFactory.getLogger(AnalyticsResource.class);
+
+    private static final String ENTITY_NAME = "restaurantStats";
+
+    /**
+     * The maximum number of buckets of a request, for example 31 days of hours, or 3 years of days.
+     */
+    static final int MAX_BUCKETS = 1200;
+
+    private final RestaurantStatsService restaurantStatsService;
+
+    public AnalyticsResource(RestaurantStatsService restaurantStatsService) {
+        this.restaurantStatsService = restaurantStatsService;
+    }
+
+    /**
+     * {@code GET  /analytics/restaurant-stats} : get the number of commandes and the revenue of the restaurants, per hour or per
+     * day, by status and payment type.
+     *
+     * @param granularity the length of the buckets, a day by default.
+     * @param from the start of the range, inclusive.
+     * @param to the end of the range, exclusive.
+     * @param restaurantId the id of the restaurant, all the restaurants by default.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the statistics in body, by bucket, or with status
+     * {@code 400 (Bad Request)} if the range is empty or spans more than {@link #MAX_BUCKETS} buckets.
+     */
+    @GetMapping("/restaurant-stats")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public Mono<ResponseEntity<List<RestaurantStatsDTO>>> getRestaurantStats(
+        @RequestParam(defaultValue = "DAY") StatsGranularity granularity,
+        @RequestParam Instant from,
+        @RequestParam Instant to,
+        @RequestParam(required = false) Long restaurantId
+    ) {
+        log.debug("REST request to get the RestaurantStats by {} from {} to {} of : {}", granularity, from, to, restaurantId);
+        if (!from.isBefore(to)) {
+            throw new BadRequestAlertException("The range is empty", ENTITY_NAME, "rangeempty");
+        }
+        Duration bucket = granularity == StatsGranularity.HOUR ? Duration.ofHours(1) : Duration.ofDays(1);
+        if (Duration.between(from, to).compareTo(bucket.multipliedBy(MAX_BUCKETS)) > 0) {
+            throw new BadRequestAlertException("The range spans more than " + MAX_BUCKETS + " buckets", ENTITY_NAME, "rangetoolarge");
+        }
+        return restaurantStatsService
+            .findAll(granularity, from, to, restaurantId)
+            .collectList()
+            .map(stats -> ResponseEntity.ok().body(stats));
+    }
+}
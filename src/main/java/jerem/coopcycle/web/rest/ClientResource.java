@@ -8,13 +8,17 @@ import java.util.Objects;
 import java.util.Optional;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
-import jerem.coopcycle.repository.ClientRepository;
+import jerem.coopcycle.repository.Keyset;
 import jerem.coopcycle.service.ClientService;
 import jerem.coopcycle.service.dto.ClientDTO;
 import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import jerem.coopcycle.web.rest.util.ETagUtil;
+import jerem.coopcycle.web.rest.util.KeysetPaginationUtil;
+import jerem.coopcycle.web.rest.util.UncountedPaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -30,7 +34,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
-import tech.jhipster.web.util.reactive.ResponseUtil;
 
 /**
  * REST controller for managing {@link jerem.coopcycle.domain.Client}.
@@ -48,11 +51,8 @@ public class ClientResource {
 
     private final ClientService clientService;
 
-    private final ClientRepository clientRepository;
-
-    public ClientResource(ClientService clientService, ClientRepository clientRepository) {
+    public ClientResource(ClientService clientService) {
         this.clientService = clientService;
-        this.clientRepository = clientRepository;
     }
 
     /**
@@ -86,15 +86,19 @@ public class ClientResource {
      * {@code PUT  /clients/:id} : Updates an existing client.
      *
      * @param id the id of the clientDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the clientDTO, if any.
      * @param clientDTO the clientDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated clientDTO,
      * or with status {@code 400 (Bad Request)} if the clientDTO is not valid,
+     * or with status {@code 404 (Not Found)} if the clientDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the clientDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the clientDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/clients/{id}")
     public Mono<ResponseEntity<ClientDTO>> updateClient(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody ClientDTO clientDTO
     ) throws URISyntaxException {
         log.debug("REST request to update Client : {}, {}", id, clientDTO);
@@ -104,40 +108,38 @@ public class ClientResource {
         if (!Objects.equals(id, clientDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(clientDTO::setVersion);
 
-        return clientRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                return clientService
-                    .update(clientDTO)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(result ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
-                            .body(result)
-                    );
-            });
+        return clientService
+            .update(clientDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(result.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+                    .body(result)
+            );
     }
 
     /**
      * {@code PATCH  /clients/:id} : Partial updates given fields of an existing client, field will ignore if it is null
      *
      * @param id the id of the clientDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the clientDTO, if any.
      * @param clientDTO the clientDTO to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated clientDTO,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated fields of the clientDTO,
      * or with status {@code 400 (Bad Request)} if the clientDTO is not valid,
      * or with status {@code 404 (Not Found)} if the clientDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the clientDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the clientDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/clients/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public Mono<ResponseEntity<ClientDTO>> partialUpdateClient(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @NotNull @RequestBody ClientDTO clientDTO
     ) throws URISyntaxException {
         log.debug("REST request to partial update Client partially : {}, {}", id, clientDTO);
@@ -147,40 +149,58 @@ public class ClientResource {
         if (!Objects.equals(id, clientDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(clientDTO::setVersion);
 
-        return clientRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                Mono<ClientDTO> result = clientService.partialUpdate(clientDTO);
-
-                return result
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(res ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
-                            .body(res)
-                    );
-            });
+        return clientService
+            .partialUpdate(clientDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(res ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(res.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
+                    .body(res)
+            );
     }
 
     /**
      * {@code GET  /clients} : get all the clients.
      *
      * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
      * @param request a {@link ServerHttpRequest} request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of clients in body.
      */
     @GetMapping("/clients")
     public Mono<ResponseEntity<List<ClientDTO>>> getAllClients(
         @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
         ServerHttpRequest request
     ) {
         log.debug("REST request to get a page of Clients");
+        if (cursor != null) {
+            return getAllClientsByCursor(pageable, cursor, request);
+        }
+        if (skipTotalCount) {
+            return clientService
+                .findAll(pageable)
+                .collectList()
+                .map(clients ->
+                    ResponseEntity
+                        .ok()
+                        .headers(
+                            UncountedPaginationUtil.generateUncountedPaginationHttpHeaders(
+                                UriComponentsBuilder.fromHttpRequest(request),
+                                pageable,
+                                clients.size()
+                            )
+                        )
+                        .body(clients)
+                );
+        }
         return clientService
             .countAll()
             .zipWith(clientService.findAll(pageable).collectList())
@@ -197,6 +217,27 @@ public class ClientResource {
             );
     }
 
+    private Mono<ResponseEntity<List<ClientDTO>>> getAllClientsByCursor(Pageable pageable, String cursor, ServerHttpRequest request) {
+        Keyset keyset = KeysetPaginationUtil.parseCursor(cursor, pageable.getSort(), ENTITY_NAME);
+        return clientService
+            .findAll(pageable, keyset)
+            .collectList()
+            .map(clients ->
+                ResponseEntity
+                    .ok()
+                    .headers(
+                        KeysetPaginationUtil.generateKeysetHttpHeaders(
+                            UriComponentsBuilder.fromHttpRequest(request),
+                            keyset,
+                            clients,
+                            pageable.getPageSize()
+                        )
+                    )
+                    .body(clients)
+            )
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid"));
+    }
+
     /**
      * {@code GET  /clients/:id} : get the "id" client.
      *
@@ -207,7 +248,7 @@ public class ClientResource {
     public Mono<ResponseEntity<ClientDTO>> getClient(@PathVariable Long id) {
         log.debug("REST request to get Client : {}", id);
         Mono<ClientDTO> clientDTO = clientService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(clientDTO);
+        return ETagUtil.wrapOrNotFound(clientDTO, ClientDTO::getVersion);
     }
 
     /**
@@ -4,17 +4,29 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
-import jerem.coopcycle.repository.CommandeRepository;
+import jerem.coopcycle.repository.Keyset;
 import jerem.coopcycle.service.CommandeService;
+import jerem.coopcycle.service.IdempotencyService;
+import jerem.coopcycle.service.dto.CommandeBulkStatusTransitionDTO;
 import jerem.coopcycle.service.dto.CommandeDTO;
+import jerem.coopcycle.service.dto.CommandeStatusTransitionDTO;
+import jerem.coopcycle.service.dto.CommandeStatusTransitionResultDTO;
 import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import jerem.coopcycle.web.rest.util.ETagUtil;
+import jerem.coopcycle.web.rest.util.FieldsetUtil;
+import jerem.coopcycle.web.rest.util.IdempotencyUtil;
+import jerem.coopcycle.web.rest.util.KeysetPaginationUtil;
+import jerem.coopcycle.web.rest.util.UncountedPaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -30,7 +42,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
-import tech.jhipster.web.util.reactive.ResponseUtil;
 
 /**
  * REST controller for managing {@link jerem.coopcycle.domain.Commande}.
@@ -43,33 +54,44 @@ public class CommandeResource {
 
     private static final String ENTITY_NAME = "commande";
 
+    private static final String ARCHIVE_PARAMETER = "archive";
+
+    private static final Set<String> SELECTABLE_FIELDS = Set.of("dateTime", "status", "panier", "paiement");
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final CommandeService commandeService;
 
-    private final CommandeRepository commandeRepository;
+    private final IdempotencyService idempotencyService;
 
-    public CommandeResource(CommandeService commandeService, CommandeRepository commandeRepository) {
+    public CommandeResource(CommandeService commandeService, IdempotencyService idempotencyService) {
         this.commandeService = commandeService;
-        this.commandeRepository = commandeRepository;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
      * {@code POST  /commandes} : Create a new commande.
      *
+     * @param idempotencyKey the {@code Idempotency-Key} header, if any: a retry with the same key and the same commandeDTO gets the
+     * response of the first request, without creating another commande.
      * @param commandeDTO the commandeDTO to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new commandeDTO, or with status {@code 400 (Bad Request)} if the commande has already an ID.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new commandeDTO, or with status {@code 400 (Bad Request)} if the commande has already an ID,
+     * or with status {@code 422 (Unprocessable Entity)} if the idempotency key was used for another commandeDTO.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/commandes")
-    public Mono<ResponseEntity<CommandeDTO>> createCommande(@Valid @RequestBody CommandeDTO commandeDTO) throws URISyntaxException {
+    public Mono<ResponseEntity<CommandeDTO>> createCommande(
+        @RequestHeader(value = IdempotencyUtil.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+        @Valid @RequestBody CommandeDTO commandeDTO
+    ) throws URISyntaxException {
         log.debug("REST request to save Commande : {}", commandeDTO);
         if (commandeDTO.getId() != null) {
             throw new BadRequestAlertException("A new commande cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        return commandeService
-            .save(commandeDTO)
+        String key = IdempotencyUtil.parseIdempotencyKey(idempotencyKey, ENTITY_NAME);
+        return idempotencyService
+            .execute(ENTITY_NAME, key, commandeDTO, CommandeDTO.class, () -> commandeService.save(commandeDTO))
             .map(result -> {
                 try {
                     return ResponseEntity
@@ -86,15 +108,19 @@ public class CommandeResource {
      * {@code PUT  /commandes/:id} : Updates an existing commande.
      *
      * @param id the id of the commandeDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the commandeDTO, if any.
      * @param commandeDTO the commandeDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated commandeDTO,
-     * or with status {@code 400 (Bad Request)} if the commandeDTO is not valid,
+     * or with status {@code 400 (Bad Request)} if the commandeDTO is not valid, or if its status does not follow the current one,
+     * or with status {@code 404 (Not Found)} if the commandeDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the commandeDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the commandeDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/commandes/{id}")
     public Mono<ResponseEntity<CommandeDTO>> updateCommande(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody CommandeDTO commandeDTO
     ) throws URISyntaxException {
         log.debug("REST request to update Commande : {}, {}", id, commandeDTO);
@@ -104,40 +130,42 @@ public class CommandeResource {
         if (!Objects.equals(id, commandeDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(commandeDTO::setVersion);
 
-        return commandeRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                return commandeService
-                    .update(commandeDTO)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(result ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
-                            .body(result)
-                    );
-            });
+        return commandeService
+            .update(commandeDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .onErrorMap(
+                IllegalArgumentException.class,
+                e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "statustransitioninvalid")
+            )
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(result.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+                    .body(result)
+            );
     }
 
     /**
      * {@code PATCH  /commandes/:id} : Partial updates given fields of an existing commande, field will ignore if it is null
      *
      * @param id the id of the commandeDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the commandeDTO, if any.
      * @param commandeDTO the commandeDTO to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated commandeDTO,
-     * or with status {@code 400 (Bad Request)} if the commandeDTO is not valid,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated fields of the commandeDTO,
+     * or with status {@code 400 (Bad Request)} if the commandeDTO is not valid, or if its status does not follow the current one,
      * or with status {@code 404 (Not Found)} if the commandeDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the commandeDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the commandeDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/commandes/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public Mono<ResponseEntity<CommandeDTO>> partialUpdateCommande(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @NotNull @RequestBody CommandeDTO commandeDTO
     ) throws URISyntaxException {
         log.debug("REST request to partial update Commande partially : {}, {}", id, commandeDTO);
@@ -147,43 +175,163 @@ public class CommandeResource {
         if (!Objects.equals(id, commandeDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(commandeDTO::setVersion);
 
-        return commandeRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
+        return commandeService
+            .partialUpdate(commandeDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .onErrorMap(
+                IllegalArgumentException.class,
+                e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "statustransitioninvalid")
+            )
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(res ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(res.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
+                    .body(res)
+            );
+    }
 
-                Mono<CommandeDTO> result = commandeService.partialUpdate(commandeDTO);
+    /**
+     * {@code PUT  /commandes/:id/status} : Moves an existing commande to its next status, if it still has the expected one.
+     *
+     * @param id the id of the commande to update.
+     * @param transition the expected and the new status.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the applied transition,
+     * or with status {@code 400 (Bad Request)} if the new status does not follow the expected one,
+     * or with status {@code 404 (Not Found)} if the commande is not found,
+     * or with status {@code 409 (Conflict)} if the commande does not have the expected status anymore.
+     */
+    @PutMapping("/commandes/{id}/status")
+    public Mono<ResponseEntity<CommandeStatusTransitionDTO>> updateCommandeStatus(
+        @PathVariable("id") final Long id,
+        @Valid @RequestBody CommandeStatusTransitionDTO transition
+    ) {
+        log.debug("REST request to update the status of Commande : {}, {}", id, transition);
+        return commandeService
+            .updateStatus(id, transition.getFrom(), transition.getTo())
+            .onErrorMap(
+                IllegalArgumentException.class,
+                e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "statustransitioninvalid")
+            )
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(status ->
+                ResponseEntity
+                    .ok()
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, id.toString()))
+                    .body(transition)
+            );
+    }
 
-                return result
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(res ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
-                            .body(res)
-                    );
-            });
+    /**
+     * {@code PUT  /commandes/status} : Moves many existing commandes to their next status, for those which still have the expected one.
+     *
+     * @param transition the ids of the commandes, the expected and the new status.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the outcome for each id,
+     * or with status {@code 400 (Bad Request)} if the new status does not follow the expected one.
+     */
+    @PutMapping("/commandes/status")
+    public Mono<ResponseEntity<List<CommandeStatusTransitionResultDTO>>> updateCommandeStatuses(
+        @Valid @RequestBody CommandeBulkStatusTransitionDTO transition
+    ) {
+        log.debug("REST request to update the status of Commandes : {}", transition);
+        return commandeService
+            .updateStatus(transition.getIds(), transition.getFrom(), transition.getTo())
+            .collectList()
+            .onErrorMap(
+                IllegalArgumentException.class,
+                e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "statustransitioninvalid")
+            )
+            .map(results ->
+                ResponseEntity
+                    .ok()
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, String.valueOf(results.size())))
+                    .body(results)
+            );
     }
 
     /**
      * {@code GET  /commandes} : get all the commandes.
      *
      * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
+     * @param includeArchive whether the archived commandes are listed too.
      * @param request a {@link ServerHttpRequest} request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of commandes in body.
      */
     @GetMapping("/commandes")
     public Mono<ResponseEntity<List<CommandeDTO>>> getAllCommandes(
         @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
+        @RequestParam(value = ARCHIVE_PARAMETER, defaultValue = "false") boolean includeArchive,
         ServerHttpRequest request
     ) {
         log.debug("REST request to get a page of Commandes");
+        return getAllCommandes(pageable, cursor, skipTotalCount, null, includeArchive, request);
+    }
+
+    /**
+     * {@code GET  /commandes?fields=} : get all the commandes, with the requested properties only.
+     *
+     * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
+     * @param fields the properties to return with the id, the other columns are not read.
+     * @param includeArchive whether the archived commandes are listed too.
+     * @param request a {@link ServerHttpRequest} request.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of commandes in body,
+     * or with status {@code 400 (Bad Request)} if a property cannot be selected.
+     */
+    @GetMapping(value = "/commandes", params = FieldsetUtil.FIELDS_PARAMETER)
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getAllCommandeFields(
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
+        @RequestParam(FieldsetUtil.FIELDS_PARAMETER) List<String> fields,
+        @RequestParam(value = ARCHIVE_PARAMETER, defaultValue = "false") boolean includeArchive,
+        ServerHttpRequest request
+    ) {
+        log.debug("REST request to get a page of Commandes with fields : {}", fields);
+        Set<String> properties = FieldsetUtil.parseFields(fields, SELECTABLE_FIELDS, ENTITY_NAME);
+        return getAllCommandes(pageable, cursor, skipTotalCount, properties, includeArchive, request)
+            .map(response -> FieldsetUtil.narrow(response, properties));
+    }
+
+    private Mono<ResponseEntity<List<CommandeDTO>>> getAllCommandes(
+        Pageable pageable,
+        String cursor,
+        boolean skipTotalCount,
+        Set<String> fields,
+        boolean includeArchive,
+        ServerHttpRequest request
+    ) {
+        if (cursor != null) {
+            return getAllCommandesByCursor(pageable, cursor, fields, includeArchive, request);
+        }
+        if (skipTotalCount) {
+            return commandeService
+                .findAll(pageable, fields, includeArchive)
+                .collectList()
+                .map(commandes ->
+                    ResponseEntity
+                        .ok()
+                        .headers(
+                            UncountedPaginationUtil.generateUncountedPaginationHttpHeaders(
+                                UriComponentsBuilder.fromHttpRequest(request),
+                                pageable,
+                                commandes.size()
+                            )
+                        )
+                        .body(commandes)
+                );
+        }
         return commandeService
-            .countAll()
-            .zipWith(commandeService.findAll(pageable).collectList())
+            .countAll(includeArchive)
+            .zipWith(commandeService.findAll(pageable, fields, includeArchive).collectList())
             .map(countWithEntities ->
                 ResponseEntity
                     .ok()
@@ -197,17 +345,48 @@ public class CommandeResource {
             );
     }
 
+    private Mono<ResponseEntity<List<CommandeDTO>>> getAllCommandesByCursor(
+        Pageable pageable,
+        String cursor,
+        Set<String> fields,
+        boolean includeArchive,
+        ServerHttpRequest request
+    ) {
+        Keyset keyset = KeysetPaginationUtil.parseCursor(cursor, pageable.getSort(), ENTITY_NAME);
+        return commandeService
+            .findAll(pageable, keyset, fields, includeArchive)
+            .collectList()
+            .map(commandes ->
+                ResponseEntity
+                    .ok()
+                    .headers(
+                        KeysetPaginationUtil.generateKeysetHttpHeaders(
+                            UriComponentsBuilder.fromHttpRequest(request),
+                            keyset,
+                            commandes,
+                            pageable.getPageSize()
+                        )
+                    )
+                    .body(commandes)
+            )
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid"));
+    }
+
     /**
      * {@code GET  /commandes/:id} : get the "id" commande.
      *
      * @param id the id of the commandeDTO to retrieve.
+     * @param includeArchive whether the commande is looked up in the archive too.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the commandeDTO, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/commandes/{id}")
-    public Mono<ResponseEntity<CommandeDTO>> getCommande(@PathVariable Long id) {
+    public Mono<ResponseEntity<CommandeDTO>> getCommande(
+        @PathVariable Long id,
+        @RequestParam(value = ARCHIVE_PARAMETER, defaultValue = "false") boolean includeArchive
+    ) {
         log.debug("REST request to get Commande : {}", id);
-        Mono<CommandeDTO> commandeDTO = commandeService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(commandeDTO);
+        Mono<CommandeDTO> commandeDTO = commandeService.findOne(id, includeArchive);
+        return ETagUtil.wrapOrNotFound(commandeDTO, CommandeDTO::getVersion);
     }
 
     /**
@@ -8,13 +8,19 @@ import java.util.Objects;
 import java.util.Optional;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
-import jerem.coopcycle.repository.PaiementRepository;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.service.IdempotencyService;
 import jerem.coopcycle.service.PaiementService;
 import jerem.coopcycle.service.dto.PaiementDTO;
 import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import jerem.coopcycle.web.rest.util.ETagUtil;
+import jerem.coopcycle.web.rest.util.IdempotencyUtil;
+import jerem.coopcycle.web.rest.util.KeysetPaginationUtil;
+import jerem.coopcycle.web.rest.util.UncountedPaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -30,7 +36,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
-import tech.jhipster.web.util.reactive.ResponseUtil;
 
 /**
  * REST controller for managing {@link jerem.coopcycle.domain.Paiement}.
@@ -48,28 +53,35 @@ public class PaiementResource {
 
     private final PaiementService paiementService;
 
-    private final PaiementRepository paiementRepository;
+    private final IdempotencyService idempotencyService;
 
-    public PaiementResource(PaiementService paiementService, PaiementRepository paiementRepository) {
+    public PaiementResource(PaiementService paiementService, IdempotencyService idempotencyService) {
         this.paiementService = paiementService;
-        this.paiementRepository = paiementRepository;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
      * {@code POST  /paiements} : Create a new paiement.
      *
+     * @param idempotencyKey the {@code Idempotency-Key} header, if any: a retry with the same key and the same paiementDTO gets the
+     * response of the first request, without creating another paiement.
      * @param paiementDTO the paiementDTO to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new paiementDTO, or with status {@code 400 (Bad Request)} if the paiement has already an ID.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new paiementDTO, or with status {@code 400 (Bad Request)} if the paiement has already an ID,
+     * or with status {@code 422 (Unprocessable Entity)} if the idempotency key was used for another paiementDTO.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/paiements")
-    public Mono<ResponseEntity<PaiementDTO>> createPaiement(@Valid @RequestBody PaiementDTO paiementDTO) throws URISyntaxException {
+    public Mono<ResponseEntity<PaiementDTO>> createPaiement(
+        @RequestHeader(value = IdempotencyUtil.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+        @Valid @RequestBody PaiementDTO paiementDTO
+    ) throws URISyntaxException {
         log.debug("REST request to save Paiement : {}", paiementDTO);
         if (paiementDTO.getId() != null) {
             throw new BadRequestAlertException("A new paiement cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        return paiementService
-            .save(paiementDTO)
+        String key = IdempotencyUtil.parseIdempotencyKey(idempotencyKey, ENTITY_NAME);
+        return idempotencyService
+            .execute(ENTITY_NAME, key, paiementDTO, PaiementDTO.class, () -> paiementService.save(paiementDTO))
             .map(result -> {
                 try {
                     return ResponseEntity
@@ -86,15 +98,19 @@ public class PaiementResource {
      * {@code PUT  /paiements/:id} : Updates an existing paiement.
      *
      * @param id the id of the paiementDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the paiementDTO, if any.
      * @param paiementDTO the paiementDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated paiementDTO,
      * or with status {@code 400 (Bad Request)} if the paiementDTO is not valid,
+     * or with status {@code 404 (Not Found)} if the paiementDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the paiementDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the paiementDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/paiements/{id}")
     public Mono<ResponseEntity<PaiementDTO>> updatePaiement(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody PaiementDTO paiementDTO
     ) throws URISyntaxException {
         log.debug("REST request to update Paiement : {}, {}", id, paiementDTO);
@@ -104,40 +120,38 @@ public class PaiementResource {
         if (!Objects.equals(id, paiementDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(paiementDTO::setVersion);
 
-        return paiementRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                return paiementService
-                    .update(paiementDTO)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(result ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
-                            .body(result)
-                    );
-            });
+        return paiementService
+            .update(paiementDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(result.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+                    .body(result)
+            );
     }
 
     /**
      * {@code PATCH  /paiements/:id} : Partial updates given fields of an existing paiement, field will ignore if it is null
      *
      * @param id the id of the paiementDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the paiementDTO, if any.
      * @param paiementDTO the paiementDTO to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated paiementDTO,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated fields of the paiementDTO,
      * or with status {@code 400 (Bad Request)} if the paiementDTO is not valid,
      * or with status {@code 404 (Not Found)} if the paiementDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the paiementDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the paiementDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/paiements/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public Mono<ResponseEntity<PaiementDTO>> partialUpdatePaiement(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @NotNull @RequestBody PaiementDTO paiementDTO
     ) throws URISyntaxException {
         log.debug("REST request to partial update Paiement partially : {}, {}", id, paiementDTO);
@@ -147,40 +161,58 @@ public class PaiementResource {
         if (!Objects.equals(id, paiementDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(paiementDTO::setVersion);
 
-        return paiementRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                Mono<PaiementDTO> result = paiementService.partialUpdate(paiementDTO);
-
-                return result
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(res ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
-                            .body(res)
-                    );
-            });
+        return paiementService
+            .partialUpdate(paiementDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(res ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(res.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
+                    .body(res)
+            );
     }
 
     /**
      * {@code GET  /paiements} : get all the paiements.
      *
      * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
      * @param request a {@link ServerHttpRequest} request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of paiements in body.
      */
     @GetMapping("/paiements")
     public Mono<ResponseEntity<List<PaiementDTO>>> getAllPaiements(
         @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
         ServerHttpRequest request
     ) {
         log.debug("REST request to get a page of Paiements");
+        if (cursor != null) {
+            return getAllPaiementsByCursor(pageable, cursor, request);
+        }
+        if (skipTotalCount) {
+            return paiementService
+                .findAll(pageable)
+                .collectList()
+                .map(paiements ->
+                    ResponseEntity
+                        .ok()
+                        .headers(
+                            UncountedPaginationUtil.generateUncountedPaginationHttpHeaders(
+                                UriComponentsBuilder.fromHttpRequest(request),
+                                pageable,
+                                paiements.size()
+                            )
+                        )
+                        .body(paiements)
+                );
+        }
         return paiementService
             .countAll()
             .zipWith(paiementService.findAll(pageable).collectList())
@@ -197,6 +229,27 @@ public class PaiementResource {
             );
     }
 
+    private Mono<ResponseEntity<List<PaiementDTO>>> getAllPaiementsByCursor(Pageable pageable, String cursor, ServerHttpRequest request) {
+        Keyset keyset = KeysetPaginationUtil.parseCursor(cursor, pageable.getSort(), ENTITY_NAME);
+        return paiementService
+            .findAll(pageable, keyset)
+            .collectList()
+            .map(paiements ->
+                ResponseEntity
+                    .ok()
+                    .headers(
+                        KeysetPaginationUtil.generateKeysetHttpHeaders(
+                            UriComponentsBuilder.fromHttpRequest(request),
+                            keyset,
+                            paiements,
+                            pageable.getPageSize()
+                        )
+                    )
+                    .body(paiements)
+            )
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid"));
+    }
+
     /**
      * {@code GET  /paiements/:id} : get the "id" paiement.
      *
@@ -207,7 +260,7 @@ public class PaiementResource {
     public Mono<ResponseEntity<PaiementDTO>> getPaiement(@PathVariable Long id) {
         log.debug("REST request to get Paiement : {}", id);
         Mono<PaiementDTO> paiementDTO = paiementService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(paiementDTO);
+        return ETagUtil.wrapOrNotFound(paiementDTO, PaiementDTO::getVersion);
     }
 
     /**
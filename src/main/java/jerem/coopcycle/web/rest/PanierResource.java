@@ -8,13 +8,17 @@ import java.util.Objects;
 import java.util.Optional;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
-import jerem.coopcycle.repository.PanierRepository;
+import jerem.coopcycle.repository.Keyset;
 import jerem.coopcycle.service.PanierService;
 import jerem.coopcycle.service.dto.PanierDTO;
 import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import jerem.coopcycle.web.rest.util.ETagUtil;
+import jerem.coopcycle.web.rest.util.KeysetPaginationUtil;
+import jerem.coopcycle.web.rest.util.UncountedPaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -30,7 +34,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
-import tech.jhipster.web.util.reactive.ResponseUtil;
 
 /**
  * REST controller for managing {@link jerem.coopcycle.domain.Panier}.
@@ -48,11 +51,8 @@ public class PanierResource {
 
     private final PanierService panierService;
 
-    private final PanierRepository panierRepository;
-
-    public PanierResource(PanierService panierService, PanierRepository panierRepository) {
+    public PanierResource(PanierService panierService) {
         this.panierService = panierService;
-        this.panierRepository = panierRepository;
     }
 
     /**
@@ -86,15 +86,19 @@ public class PanierResource {
      * {@code PUT  /paniers/:id} : Updates an existing panier.
      *
      * @param id the id of the panierDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the panierDTO, if any.
      * @param panierDTO the panierDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated panierDTO,
      * or with status {@code 400 (Bad Request)} if the panierDTO is not valid,
+     * or with status {@code 404 (Not Found)} if the panierDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the panierDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the panierDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/paniers/{id}")
     public Mono<ResponseEntity<PanierDTO>> updatePanier(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody PanierDTO panierDTO
     ) throws URISyntaxException {
         log.debug("REST request to update Panier : {}, {}", id, panierDTO);
@@ -104,40 +108,38 @@ public class PanierResource {
         if (!Objects.equals(id, panierDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(panierDTO::setVersion);
 
-        return panierRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                return panierService
-                    .update(panierDTO)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(result ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
-                            .body(result)
-                    );
-            });
+        return panierService
+            .update(panierDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(result.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+                    .body(result)
+            );
     }
 
     /**
      * {@code PATCH  /paniers/:id} : Partial updates given fields of an existing panier, field will ignore if it is null
      *
      * @param id the id of the panierDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the panierDTO, if any.
      * @param panierDTO the panierDTO to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated panierDTO,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated fields of the panierDTO,
      * or with status {@code 400 (Bad Request)} if the panierDTO is not valid,
      * or with status {@code 404 (Not Found)} if the panierDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the panierDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the panierDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/paniers/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public Mono<ResponseEntity<PanierDTO>> partialUpdatePanier(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @NotNull @RequestBody PanierDTO panierDTO
     ) throws URISyntaxException {
         log.debug("REST request to partial update Panier partially : {}, {}", id, panierDTO);
@@ -147,40 +149,58 @@ public class PanierResource {
         if (!Objects.equals(id, panierDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(panierDTO::setVersion);
 
-        return panierRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                Mono<PanierDTO> result = panierService.partialUpdate(panierDTO);
-
-                return result
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(res ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
-                            .body(res)
-                    );
-            });
+        return panierService
+            .partialUpdate(panierDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(res ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(res.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
+                    .body(res)
+            );
     }
 
     /**
      * {@code GET  /paniers} : get all the paniers.
      *
      * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
      * @param request a {@link ServerHttpRequest} request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of paniers in body.
      */
     @GetMapping("/paniers")
     public Mono<ResponseEntity<List<PanierDTO>>> getAllPaniers(
         @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
         ServerHttpRequest request
     ) {
         log.debug("REST request to get a page of Paniers");
+        if (cursor != null) {
+            return getAllPaniersByCursor(pageable, cursor, request);
+        }
+        if (skipTotalCount) {
+            return panierService
+                .findAll(pageable)
+                .collectList()
+                .map(paniers ->
+                    ResponseEntity
+                        .ok()
+                        .headers(
+                            UncountedPaginationUtil.generateUncountedPaginationHttpHeaders(
+                                UriComponentsBuilder.fromHttpRequest(request),
+                                pageable,
+                                paniers.size()
+                            )
+                        )
+                        .body(paniers)
+                );
+        }
         return panierService
             .countAll()
             .zipWith(panierService.findAll(pageable).collectList())
@@ -197,6 +217,27 @@ public class PanierResource {
             );
     }
 
+    private Mono<ResponseEntity<List<PanierDTO>>> getAllPaniersByCursor(Pageable pageable, String cursor, ServerHttpRequest request) {
+        Keyset keyset = KeysetPaginationUtil.parseCursor(cursor, pageable.getSort(), ENTITY_NAME);
+        return panierService
+            .findAll(pageable, keyset)
+            .collectList()
+            .map(paniers ->
+                ResponseEntity
+                    .ok()
+                    .headers(
+                        KeysetPaginationUtil.generateKeysetHttpHeaders(
+                            UriComponentsBuilder.fromHttpRequest(request),
+                            keyset,
+                            paniers,
+                            pageable.getPageSize()
+                        )
+                    )
+                    .body(paniers)
+            )
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid"));
+    }
+
     /**
      * {@code GET  /paniers/:id} : get the "id" panier.
      *
@@ -207,7 +248,7 @@ public class PanierResource {
     public Mono<ResponseEntity<PanierDTO>> getPanier(@PathVariable Long id) {
         log.debug("REST request to get Panier : {}", id);
         Mono<PanierDTO> panierDTO = panierService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(panierDTO);
+        return ETagUtil.wrapOrNotFound(panierDTO, PanierDTO::getVersion);
     }
 
     /**
@@ -2,19 +2,34 @@ package jerem.coopcycle.web.rest;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
-import jerem.coopcycle.repository.RestaurantRepository;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.service.CommandeStatusStreamService;
 import jerem.coopcycle.service.RestaurantService;
+import jerem.coopcycle.service.dto.CommandeStatusChangeDTO;
+import jerem.coopcycle.service.dto.NearbyRestaurantDTO;
 import jerem.coopcycle.service.dto.RestaurantDTO;
+import jerem.coopcycle.service.geo.RestaurantLocationIndex;
+import jerem.coopcycle.service.search.RestaurantSearchService;
 import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import jerem.coopcycle.web.rest.util.ETagUtil;
+import jerem.coopcycle.web.rest.util.ExpandUtil;
+import jerem.coopcycle.web.rest.util.FieldsetUtil;
+import jerem.coopcycle.web.rest.util.KeysetPaginationUtil;
+import jerem.coopcycle.web.rest.util.UncountedPaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -22,6 +37,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
@@ -30,7 +46,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
-import tech.jhipster.web.util.reactive.ResponseUtil;
 
 /**
  * REST controller for managing {@link jerem.coopcycle.domain.Restaurant}.
@@ -43,16 +58,38 @@ public class RestaurantResource {
 
     private static final String ENTITY_NAME = "restaurant";
 
+    private static final Set<String> EXPANDABLE_ASSOCIATIONS = Set.of(RestaurantService.EXPAND_PANIERS);
+
+    static final String STATUS_EVENT = "status";
+
+    private static final String HEARTBEAT_COMMENT = "heartbeat";
+
+    private static final Set<String> SELECTABLE_FIELDS = Set.of("name", "address", "menu", "restaurateur");
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
+    @Value("${application.commande-stream.heartbeat-interval:15s}")
+    private Duration heartbeatInterval;
+
     private final RestaurantService restaurantService;
 
-    private final RestaurantRepository restaurantRepository;
+    private final CommandeStatusStreamService commandeStatusStreamService;
+
+    private final RestaurantLocationIndex restaurantLocationIndex;
 
-    public RestaurantResource(RestaurantService restaurantService, RestaurantRepository restaurantRepository) {
+    private final RestaurantSearchService restaurantSearchService;
+
+    public RestaurantResource(
+        RestaurantService restaurantService,
+        CommandeStatusStreamService commandeStatusStreamService,
+        RestaurantLocationIndex restaurantLocationIndex,
+        RestaurantSearchService restaurantSearchService
+    ) {
         this.restaurantService = restaurantService;
-        this.restaurantRepository = restaurantRepository;
+        this.commandeStatusStreamService = commandeStatusStreamService;
+        this.restaurantLocationIndex = restaurantLocationIndex;
+        this.restaurantSearchService = restaurantSearchService;
     }
 
     /**
@@ -86,15 +123,19 @@ public class RestaurantResource {
      * {@code PUT  /restaurants/:id} : Updates an existing restaurant.
      *
      * @param id the id of the restaurantDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the restaurantDTO, if any.
      * @param restaurantDTO the restaurantDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated restaurantDTO,
      * or with status {@code 400 (Bad Request)} if the restaurantDTO is not valid,
+     * or with status {@code 404 (Not Found)} if the restaurantDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the restaurantDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the restaurantDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/restaurants/{id}")
     public Mono<ResponseEntity<RestaurantDTO>> updateRestaurant(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody RestaurantDTO restaurantDTO
     ) throws URISyntaxException {
         log.debug("REST request to update Restaurant : {}, {}", id, restaurantDTO);
@@ -104,40 +145,38 @@ public class RestaurantResource {
         if (!Objects.equals(id, restaurantDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(restaurantDTO::setVersion);
 
-        return restaurantRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                return restaurantService
-                    .update(restaurantDTO)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(result ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
-                            .body(result)
-                    );
-            });
+        return restaurantService
+            .update(restaurantDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(result.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+                    .body(result)
+            );
     }
 
     /**
      * {@code PATCH  /restaurants/:id} : Partial updates given fields of an existing restaurant, field will ignore if it is null
      *
      * @param id the id of the restaurantDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the restaurantDTO, if any.
      * @param restaurantDTO the restaurantDTO to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated restaurantDTO,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated fields of the restaurantDTO,
      * or with status {@code 400 (Bad Request)} if the restaurantDTO is not valid,
      * or with status {@code 404 (Not Found)} if the restaurantDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the restaurantDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the restaurantDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/restaurants/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public Mono<ResponseEntity<RestaurantDTO>> partialUpdateRestaurant(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @NotNull @RequestBody RestaurantDTO restaurantDTO
     ) throws URISyntaxException {
         log.debug("REST request to partial update Restaurant partially : {}, {}", id, restaurantDTO);
@@ -147,43 +186,189 @@ public class RestaurantResource {
         if (!Objects.equals(id, restaurantDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(restaurantDTO::setVersion);
 
-        return restaurantRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                Mono<RestaurantDTO> result = restaurantService.partialUpdate(restaurantDTO);
-
-                return result
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(res ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
-                            .body(res)
-                    );
-            });
+        return restaurantService
+            .partialUpdate(restaurantDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(res ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(res.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
+                    .body(res)
+            );
     }
 
     /**
      * {@code GET  /restaurants} : get all the restaurants.
      *
      * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
+     * @param expand the associations to load with each restaurant, only {@code paniers} is supported.
      * @param request a {@link ServerHttpRequest} request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of restaurants in body.
      */
     @GetMapping("/restaurants")
     public Mono<ResponseEntity<List<RestaurantDTO>>> getAllRestaurants(
         @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
+        @RequestParam(value = ExpandUtil.EXPAND_PARAMETER, required = false) List<String> expand,
         ServerHttpRequest request
     ) {
         log.debug("REST request to get a page of Restaurants");
+        Set<String> associations = ExpandUtil.parseExpand(expand, EXPANDABLE_ASSOCIATIONS, ENTITY_NAME);
+        return getAllRestaurants(pageable, cursor, skipTotalCount, associations, null, request);
+    }
+
+    /**
+     * {@code GET  /restaurants?fields=} : get all the restaurants, with the requested properties only.
+     *
+     * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
+     * @param expand the associations to load with each restaurant, only {@code paniers} is supported.
+     * @param fields the properties to return with the id, the other columns are not read.
+     * @param request a {@link ServerHttpRequest} request.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of restaurants in body,
+     * or with status {@code 400 (Bad Request)} if a property cannot be selected.
+     */
+    @GetMapping(value = "/restaurants", params = FieldsetUtil.FIELDS_PARAMETER)
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getAllRestaurantFields(
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
+        @RequestParam(value = ExpandUtil.EXPAND_PARAMETER, required = false) List<String> expand,
+        @RequestParam(FieldsetUtil.FIELDS_PARAMETER) List<String> fields,
+        ServerHttpRequest request
+    ) {
+        log.debug("REST request to get a page of Restaurants with fields : {}", fields);
+        Set<String> associations = ExpandUtil.parseExpand(expand, EXPANDABLE_ASSOCIATIONS, ENTITY_NAME);
+        Set<String> properties = FieldsetUtil.parseFields(fields, SELECTABLE_FIELDS, ENTITY_NAME);
+        Set<String> sent = new LinkedHashSet<>(properties);
+        sent.addAll(associations);
+        return getAllRestaurants(pageable, cursor, skipTotalCount, associations, properties, request)
+            .map(response -> FieldsetUtil.narrow(response, sent));
+    }
+
+    private Mono<ResponseEntity<List<RestaurantDTO>>> getAllRestaurants(
+        Pageable pageable,
+        String cursor,
+        boolean skipTotalCount,
+        Set<String> associations,
+        Set<String> fields,
+        ServerHttpRequest request
+    ) {
+        if (cursor != null) {
+            return getAllRestaurantsByCursor(pageable, cursor, associations, fields, request);
+        }
+        if (skipTotalCount) {
+            return restaurantService
+                .findAll(pageable, associations, fields)
+                .collectList()
+                .map(restaurants ->
+                    ResponseEntity
+                        .ok()
+                        .headers(
+                            UncountedPaginationUtil.generateUncountedPaginationHttpHeaders(
+                                UriComponentsBuilder.fromHttpRequest(request),
+                                pageable,
+                                restaurants.size()
+                            )
+                        )
+                        .body(restaurants)
+                );
+        }
         return restaurantService
             .countAll()
-            .zipWith(restaurantService.findAll(pageable).collectList())
+            .zipWith(restaurantService.findAll(pageable, associations, fields).collectList())
+            .map(countWithEntities ->
+                ResponseEntity
+                    .ok()
+                    .headers(
+                        PaginationUtil.generatePaginationHttpHeaders(
+                            UriComponentsBuilder.fromHttpRequest(request),
+                            new PageImpl<>(countWithEntities.getT2(), pageable, countWithEntities.getT1())
+                        )
+                    )
+                    .body(countWithEntities.getT2())
+            );
+    }
+
+    private Mono<ResponseEntity<List<RestaurantDTO>>> getAllRestaurantsByCursor(
+        Pageable pageable,
+        String cursor,
+        Set<String> associations,
+        Set<String> fields,
+        ServerHttpRequest request
+    ) {
+        Keyset keyset = KeysetPaginationUtil.parseCursor(cursor, pageable.getSort(), ENTITY_NAME);
+        return restaurantService
+            .findAll(pageable, keyset, associations, fields)
+            .collectList()
+            .map(restaurants ->
+                ResponseEntity
+                    .ok()
+                    .headers(
+                        KeysetPaginationUtil.generateKeysetHttpHeaders(
+                            UriComponentsBuilder.fromHttpRequest(request),
+                            keyset,
+                            restaurants,
+                            pageable.getPageSize()
+                        )
+                    )
+                    .body(restaurants)
+            )
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid"));
+    }
+
+    /**
+     * {@code GET  /restaurants/nearby} : get the restaurants nearest to a point, from the in-memory index of their locations.
+     *
+     * @param lat the latitude of the point, in degrees.
+     * @param lon the longitude of the point, in degrees.
+     * @param radius the maximum distance of the restaurants, in meters.
+     * @param size the maximum number of restaurants.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of restaurants in body, the nearest first,
+     * or with status {@code 400 (Bad Request)} if a coordinate, the radius or the size is out of its range.
+     */
+    @GetMapping("/restaurants/nearby")
+    public Mono<ResponseEntity<List<NearbyRestaurantDTO>>> getNearbyRestaurants(
+        @RequestParam double lat,
+        @RequestParam double lon,
+        @RequestParam(defaultValue = "5000") double radius,
+        @RequestParam(defaultValue = "10") int size
+    ) {
+        log.debug("REST request to get the Restaurants near : {}, {} within {} m", lat, lon, radius);
+        return Mono
+            .fromCallable(() -> restaurantLocationIndex.findNearest(lat, lon, radius, size))
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "locationinvalid"))
+            .map(restaurants -> ResponseEntity.ok().body(restaurants));
+    }
+
+    /**
+     * {@code GET  /restaurants/search?q=} : search the restaurants by the words of their names and menus.
+     *
+     * @param q the words to search, a restaurant must contain all of them.
+     * @param pageable the pagination information, the restaurants being sorted by relevance.
+     * @param request a {@link ServerHttpRequest} request.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of restaurants in body, the most relevant first,
+     * or with status {@code 400 (Bad Request)} if the query has no words.
+     */
+    @GetMapping("/restaurants/search")
+    public Mono<ResponseEntity<List<RestaurantDTO>>> searchRestaurants(
+        @RequestParam String q,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        ServerHttpRequest request
+    ) {
+        log.debug("REST request to search a page of Restaurants : {}", q);
+        return restaurantSearchService
+            .count(q)
+            .zipWith(restaurantSearchService.search(q, pageable).collectList())
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "queryinvalid"))
             .map(countWithEntities ->
                 ResponseEntity
                     .ok()
@@ -207,7 +392,39 @@ public class RestaurantResource {
     public Mono<ResponseEntity<RestaurantDTO>> getRestaurant(@PathVariable Long id) {
         log.debug("REST request to get Restaurant : {}", id);
         Mono<RestaurantDTO> restaurantDTO = restaurantService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(restaurantDTO);
+        return ETagUtil.wrapOrNotFound(restaurantDTO, RestaurantDTO::getVersion);
+    }
+
+    /**
+     * {@code GET  /restaurants/:id/commandes/stream} : stream the status changes of the commandes of the "id" restaurant, as
+     * Server-Sent Events, instead of polling the commandes.
+     * <p>
+     * Each change is a {@code status} event, with the id of the commande as event id. A comment is sent when the stream opens,
+     * then periodically, so that the proxies keep it open. The changes made while the client is disconnected are not replayed,
+     * it reads the commandes again when it reconnects.
+     *
+     * @param id the id of the restaurant.
+     * @return the stream of the status changes, or the status {@code 404 (Not Found)}.
+     */
+    @GetMapping(value = "/restaurants/{id}/commandes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<CommandeStatusChangeDTO>> streamCommandeStatusChanges(@PathVariable Long id) {
+        log.debug("REST request to stream the status changes of the Commandes of Restaurant : {}", id);
+        return restaurantService
+            .findOne(id)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .flatMapMany(restaurantDTO ->
+                // the changes are subscribed first, so that none is missed once the first comment is received
+                Flux.merge(
+                    commandeStatusStreamService
+                        .stream(id)
+                        .map(change ->
+                            ServerSentEvent.builder(change).id(String.valueOf(change.getCommandeId())).event(STATUS_EVENT).build()
+                        ),
+                    Flux
+                        .interval(Duration.ZERO, heartbeatInterval)
+                        .map(tick -> ServerSentEvent.<CommandeStatusChangeDTO>builder().comment(HEARTBEAT_COMMENT).build())
+                )
+            );
     }
 
     /**
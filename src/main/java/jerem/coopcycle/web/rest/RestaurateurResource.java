@@ -6,15 +6,21 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
-import jerem.coopcycle.repository.RestaurateurRepository;
+import jerem.coopcycle.repository.Keyset;
 import jerem.coopcycle.service.RestaurateurService;
 import jerem.coopcycle.service.dto.RestaurateurDTO;
 import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import jerem.coopcycle.web.rest.util.ETagUtil;
+import jerem.coopcycle.web.rest.util.ExpandUtil;
+import jerem.coopcycle.web.rest.util.KeysetPaginationUtil;
+import jerem.coopcycle.web.rest.util.UncountedPaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -30,7 +36,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
-import tech.jhipster.web.util.reactive.ResponseUtil;
 
 /**
  * REST controller for managing {@link jerem.coopcycle.domain.Restaurateur}.
@@ -43,16 +48,15 @@ public class RestaurateurResource {
 
     private static final String ENTITY_NAME = "restaurateur";
 
+    private static final Set<String> EXPANDABLE_ASSOCIATIONS = Set.of(RestaurateurService.EXPAND_RESTAURANTS);
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final RestaurateurService restaurateurService;
 
-    private final RestaurateurRepository restaurateurRepository;
-
-    public RestaurateurResource(RestaurateurService restaurateurService, RestaurateurRepository restaurateurRepository) {
+    public RestaurateurResource(RestaurateurService restaurateurService) {
         this.restaurateurService = restaurateurService;
-        this.restaurateurRepository = restaurateurRepository;
     }
 
     /**
@@ -87,15 +91,19 @@ public class RestaurateurResource {
      * {@code PUT  /restaurateurs/:id} : Updates an existing restaurateur.
      *
      * @param id the id of the restaurateurDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the restaurateurDTO, if any.
      * @param restaurateurDTO the restaurateurDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated restaurateurDTO,
      * or with status {@code 400 (Bad Request)} if the restaurateurDTO is not valid,
+     * or with status {@code 404 (Not Found)} if the restaurateurDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the restaurateurDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the restaurateurDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/restaurateurs/{id}")
     public Mono<ResponseEntity<RestaurateurDTO>> updateRestaurateur(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody RestaurateurDTO restaurateurDTO
     ) throws URISyntaxException {
         log.debug("REST request to update Restaurateur : {}, {}", id, restaurateurDTO);
@@ -105,40 +113,38 @@ public class RestaurateurResource {
         if (!Objects.equals(id, restaurateurDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(restaurateurDTO::setVersion);
 
-        return restaurateurRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                return restaurateurService
-                    .update(restaurateurDTO)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(result ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
-                            .body(result)
-                    );
-            });
+        return restaurateurService
+            .update(restaurateurDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(result.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+                    .body(result)
+            );
     }
 
     /**
      * {@code PATCH  /restaurateurs/:id} : Partial updates given fields of an existing restaurateur, field will ignore if it is null
      *
      * @param id the id of the restaurateurDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the restaurateurDTO, if any.
      * @param restaurateurDTO the restaurateurDTO to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated restaurateurDTO,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated fields of the restaurateurDTO,
      * or with status {@code 400 (Bad Request)} if the restaurateurDTO is not valid,
      * or with status {@code 404 (Not Found)} if the restaurateurDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the restaurateurDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the restaurateurDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/restaurateurs/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public Mono<ResponseEntity<RestaurateurDTO>> partialUpdateRestaurateur(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @NotNull @RequestBody RestaurateurDTO restaurateurDTO
     ) throws URISyntaxException {
         log.debug("REST request to partial update Restaurateur partially : {}, {}", id, restaurateurDTO);
@@ -148,43 +154,64 @@ public class RestaurateurResource {
         if (!Objects.equals(id, restaurateurDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(restaurateurDTO::setVersion);
 
-        return restaurateurRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                Mono<RestaurateurDTO> result = restaurateurService.partialUpdate(restaurateurDTO);
-
-                return result
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(res ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
-                            .body(res)
-                    );
-            });
+        return restaurateurService
+            .partialUpdate(restaurateurDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(res ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(res.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
+                    .body(res)
+            );
     }
 
     /**
      * {@code GET  /restaurateurs} : get all the restaurateurs.
      *
      * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
+     * @param expand the associations to load with each restaurateur, only {@code restaurants} is supported.
      * @param request a {@link ServerHttpRequest} request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of restaurateurs in body.
      */
     @GetMapping("/restaurateurs")
     public Mono<ResponseEntity<List<RestaurateurDTO>>> getAllRestaurateurs(
         @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
+        @RequestParam(value = ExpandUtil.EXPAND_PARAMETER, required = false) List<String> expand,
         ServerHttpRequest request
     ) {
         log.debug("REST request to get a page of Restaurateurs");
+        Set<String> associations = ExpandUtil.parseExpand(expand, EXPANDABLE_ASSOCIATIONS, ENTITY_NAME);
+        if (cursor != null) {
+            return getAllRestaurateursByCursor(pageable, cursor, associations, request);
+        }
+        if (skipTotalCount) {
+            return restaurateurService
+                .findAll(pageable, associations)
+                .collectList()
+                .map(restaurateurs ->
+                    ResponseEntity
+                        .ok()
+                        .headers(
+                            UncountedPaginationUtil.generateUncountedPaginationHttpHeaders(
+                                UriComponentsBuilder.fromHttpRequest(request),
+                                pageable,
+                                restaurateurs.size()
+                            )
+                        )
+                        .body(restaurateurs)
+                );
+        }
         return restaurateurService
             .countAll()
-            .zipWith(restaurateurService.findAll(pageable).collectList())
+            .zipWith(restaurateurService.findAll(pageable, associations).collectList())
             .map(countWithEntities ->
                 ResponseEntity
                     .ok()
@@ -198,6 +225,32 @@ public class RestaurateurResource {
             );
     }
 
+    private Mono<ResponseEntity<List<RestaurateurDTO>>> getAllRestaurateursByCursor(
+        Pageable pageable,
+        String cursor,
+        Set<String> associations,
+        ServerHttpRequest request
+    ) {
+        Keyset keyset = KeysetPaginationUtil.parseCursor(cursor, pageable.getSort(), ENTITY_NAME);
+        return restaurateurService
+            .findAll(pageable, keyset, associations)
+            .collectList()
+            .map(restaurateurs ->
+                ResponseEntity
+                    .ok()
+                    .headers(
+                        KeysetPaginationUtil.generateKeysetHttpHeaders(
+                            UriComponentsBuilder.fromHttpRequest(request),
+                            keyset,
+                            restaurateurs,
+                            pageable.getPageSize()
+                        )
+                    )
+                    .body(restaurateurs)
+            )
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid"));
+    }
+
     /**
      * {@code GET  /restaurateurs/:id} : get the "id" restaurateur.
      *
@@ -208,7 +261,7 @@ public class RestaurateurResource {
     public Mono<ResponseEntity<RestaurateurDTO>> getRestaurateur(@PathVariable Long id) {
         log.debug("REST request to get Restaurateur : {}", id);
         Mono<RestaurateurDTO> restaurateurDTO = restaurateurService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(restaurateurDTO);
+        return ETagUtil.wrapOrNotFound(restaurateurDTO, RestaurateurDTO::getVersion);
     }
 
     /**
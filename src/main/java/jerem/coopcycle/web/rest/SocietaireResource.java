@@ -6,15 +6,23 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
-import jerem.coopcycle.repository.SocietaireRepository;
+import jerem.coopcycle.repository.Keyset;
 import jerem.coopcycle.service.SocietaireService;
+import jerem.coopcycle.service.dispatch.DispatchService;
+import jerem.coopcycle.service.dto.LivreurAvailabilityDTO;
 import jerem.coopcycle.service.dto.SocietaireDTO;
 import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import jerem.coopcycle.web.rest.util.ETagUtil;
+import jerem.coopcycle.web.rest.util.ExpandUtil;
+import jerem.coopcycle.web.rest.util.KeysetPaginationUtil;
+import jerem.coopcycle.web.rest.util.UncountedPaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -30,7 +38,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
-import tech.jhipster.web.util.reactive.ResponseUtil;
 
 /**
  * REST controller for managing {@link jerem.coopcycle.domain.Societaire}.
@@ -43,16 +50,18 @@ public class SocietaireResource {
 
     private static final String ENTITY_NAME = "societaire";
 
+    private static final Set<String> EXPANDABLE_ASSOCIATIONS = Set.of(SocietaireService.EXPAND_RESTAURATEURS);
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final SocietaireService societaireService;
 
-    private final SocietaireRepository societaireRepository;
+    private final DispatchService dispatchService;
 
-    public SocietaireResource(SocietaireService societaireService, SocietaireRepository societaireRepository) {
+    public SocietaireResource(SocietaireService societaireService, DispatchService dispatchService) {
         this.societaireService = societaireService;
-        this.societaireRepository = societaireRepository;
+        this.dispatchService = dispatchService;
     }
 
     /**
@@ -86,15 +95,19 @@ public class SocietaireResource {
      * {@code PUT  /societaires/:id} : Updates an existing societaire.
      *
      * @param id the id of the societaireDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the societaireDTO, if any.
      * @param societaireDTO the societaireDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated societaireDTO,
      * or with status {@code 400 (Bad Request)} if the societaireDTO is not valid,
+     * or with status {@code 404 (Not Found)} if the societaireDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the societaireDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the societaireDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/societaires/{id}")
     public Mono<ResponseEntity<SocietaireDTO>> updateSocietaire(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody SocietaireDTO societaireDTO
     ) throws URISyntaxException {
         log.debug("REST request to update Societaire : {}, {}", id, societaireDTO);
@@ -104,40 +117,38 @@ public class SocietaireResource {
         if (!Objects.equals(id, societaireDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(societaireDTO::setVersion);
 
-        return societaireRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                return societaireService
-                    .update(societaireDTO)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(result ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
-                            .body(result)
-                    );
-            });
+        return societaireService
+            .update(societaireDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(result.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+                    .body(result)
+            );
     }
 
     /**
      * {@code PATCH  /societaires/:id} : Partial updates given fields of an existing societaire, field will ignore if it is null
      *
      * @param id the id of the societaireDTO to save.
+     * @param ifMatch the {@code If-Match} header, the entity tag of the expected version of the societaireDTO, if any.
      * @param societaireDTO the societaireDTO to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated societaireDTO,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated fields of the societaireDTO,
      * or with status {@code 400 (Bad Request)} if the societaireDTO is not valid,
      * or with status {@code 404 (Not Found)} if the societaireDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the societaireDTO is not at the expected version anymore,
      * or with status {@code 500 (Internal Server Error)} if the societaireDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/societaires/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public Mono<ResponseEntity<SocietaireDTO>> partialUpdateSocietaire(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @NotNull @RequestBody SocietaireDTO societaireDTO
     ) throws URISyntaxException {
         log.debug("REST request to partial update Societaire partially : {}, {}", id, societaireDTO);
@@ -147,43 +158,64 @@ public class SocietaireResource {
         if (!Objects.equals(id, societaireDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        ETagUtil.parseIfMatch(ifMatch, ENTITY_NAME).ifPresent(societaireDTO::setVersion);
 
-        return societaireRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                Mono<SocietaireDTO> result = societaireService.partialUpdate(societaireDTO);
-
-                return result
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(res ->
-                        ResponseEntity
-                            .ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
-                            .body(res)
-                    );
-            });
+        return societaireService
+            .partialUpdate(societaireDTO)
+            .onErrorMap(OptimisticLockingFailureException.class, ETagUtil::preconditionFailed)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(res ->
+                ResponseEntity
+                    .ok()
+                    .eTag(ETagUtil.toETag(res.getVersion()))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
+                    .body(res)
+            );
     }
 
     /**
      * {@code GET  /societaires} : get all the societaires.
      *
      * @param pageable the pagination information.
+     * @param cursor the keyset pagination cursor, empty to start a keyset pagination, or null to page with an offset.
+     * @param skipTotalCount whether the client opted out of the total count, in which case {@code X-Total-Count} is not sent.
+     * @param expand the associations to load with each societaire, only {@code restaurateurs} is supported.
      * @param request a {@link ServerHttpRequest} request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of societaires in body.
      */
     @GetMapping("/societaires")
     public Mono<ResponseEntity<List<SocietaireDTO>>> getAllSocietaires(
         @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, defaultValue = "false") boolean skipTotalCount,
+        @RequestParam(value = ExpandUtil.EXPAND_PARAMETER, required = false) List<String> expand,
         ServerHttpRequest request
     ) {
         log.debug("REST request to get a page of Societaires");
+        Set<String> associations = ExpandUtil.parseExpand(expand, EXPANDABLE_ASSOCIATIONS, ENTITY_NAME);
+        if (cursor != null) {
+            return getAllSocietairesByCursor(pageable, cursor, associations, request);
+        }
+        if (skipTotalCount) {
+            return societaireService
+                .findAll(pageable, associations)
+                .collectList()
+                .map(societaires ->
+                    ResponseEntity
+                        .ok()
+                        .headers(
+                            UncountedPaginationUtil.generateUncountedPaginationHttpHeaders(
+                                UriComponentsBuilder.fromHttpRequest(request),
+                                pageable,
+                                societaires.size()
+                            )
+                        )
+                        .body(societaires)
+                );
+        }
         return societaireService
             .countAll()
-            .zipWith(societaireService.findAll(pageable).collectList())
+            .zipWith(societaireService.findAll(pageable, associations).collectList())
             .map(countWithEntities ->
                 ResponseEntity
                     .ok()
@@ -197,6 +229,32 @@ public class SocietaireResource {
             );
     }
 
+    private Mono<ResponseEntity<List<SocietaireDTO>>> getAllSocietairesByCursor(
+        Pageable pageable,
+        String cursor,
+        Set<String> associations,
+        ServerHttpRequest request
+    ) {
+        Keyset keyset = KeysetPaginationUtil.parseCursor(cursor, pageable.getSort(), ENTITY_NAME);
+        return societaireService
+            .findAll(pageable, keyset, associations)
+            .collectList()
+            .map(societaires ->
+                ResponseEntity
+                    .ok()
+                    .headers(
+                        KeysetPaginationUtil.generateKeysetHttpHeaders(
+                            UriComponentsBuilder.fromHttpRequest(request),
+                            keyset,
+                            societaires,
+                            pageable.getPageSize()
+                        )
+                    )
+                    .body(societaires)
+            )
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid"));
+    }
+
     /**
      * {@code GET  /societaires/:id} : get the "id" societaire.
      *
@@ -207,7 +265,29 @@ public class SocietaireResource {
     public Mono<ResponseEntity<SocietaireDTO>> getSocietaire(@PathVariable Long id) {
         log.debug("REST request to get Societaire : {}", id);
         Mono<SocietaireDTO> societaireDTO = societaireService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(societaireDTO);
+        return ETagUtil.wrapOrNotFound(societaireDTO, SocietaireDTO::getVersion);
+    }
+
+    /**
+     * {@code PUT  /societaires/:id/availability} : Reports whether a livreur can take a commande, and the restaurant where it waits.
+     *
+     * @param id the id of the livreur.
+     * @param availability the availability of the livreur.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the availability,
+     * or with status {@code 400 (Bad Request)} if the societaire is not a livreur,
+     * or with status {@code 404 (Not Found)} if the societaire is not found.
+     */
+    @PutMapping("/societaires/{id}/availability")
+    public Mono<ResponseEntity<LivreurAvailabilityDTO>> updateLivreurAvailability(
+        @PathVariable("id") final Long id,
+        @Valid @RequestBody LivreurAvailabilityDTO availability
+    ) {
+        log.debug("REST request to update the availability of Societaire : {}, {}", id, availability);
+        return dispatchService
+            .updateAvailability(id, availability)
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "notalivreur"))
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result -> ResponseEntity.ok().body(result));
     }
 
     /**
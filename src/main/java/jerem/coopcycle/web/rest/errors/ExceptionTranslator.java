@@ -164,6 +164,20 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
         return create(ex, problem, request);
     }
 
+    @ExceptionHandler
+    public Mono<ResponseEntity<Problem>> handleIdempotencyKeyReusedException(
+        jerem.coopcycle.service.IdempotencyKeyReusedException ex,
+        ServerWebExchange request
+    ) {
+        Problem problem = Problem
+            .builder()
+            .withStatus(Status.UNPROCESSABLE_ENTITY)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, ErrorConstants.ERR_IDEMPOTENCY_KEY_REUSED)
+            .build();
+        return create(ex, problem, request);
+    }
+
     @Override
     public ProblemBuilder prepare(final Throwable throwable, final StatusType status, final URI type) {
         Collection<String> activeProfiles = Arrays.asList(env.getActiveProfiles());
@@ -0,0 +1,98 @@
+package jerem.coopcycle.web.rest.util;
+
+import java.util.Optional;
+import java.util.function.Function;
+import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Utility class for handling the entity tags of the versioned entities, following
+ * <a href="https://www.rfc-editor.org/rfc/rfc7232">RFC 7232 (Conditional Requests)</a>.
+ * <p>
+ * The entity tag of an entity is its version, as a strong tag: {@code "3"}. A write carrying an {@code If-Match} header only
+ * applies to the version it names, and answers {@code 412 (Precondition Failed)} when the entity was changed meanwhile.
+ */
+public final class ETagUtil {
+
+    private static final String ANY = "*";
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private ETagUtil() {}
+
+    /**
+     * Formats the version of an entity as a strong entity tag.
+     *
+     * @param version the version of the entity.
+     * @return the entity tag.
+     */
+    public static String toETag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Reads the version expected by an {@code If-Match} request header.
+     *
+     * @param ifMatch the {@code If-Match} request header, null when it is absent.
+     * @param entityName the name of the written entity, for the error message.
+     * @return the expected version, or an empty Optional when the header is absent or matches any version ({@code *}).
+     * @throws ResponseStatusException with status {@code 412 (Precondition Failed)} if the header holds a weak entity tag or
+     * an entity tag which is not a version, as they cannot match the current version.
+     * @throws BadRequestAlertException if the header holds several versions.
+     */
+    public static Optional<Long> parseIfMatch(String ifMatch, String entityName) {
+        if (ifMatch == null || ifMatch.isBlank() || ANY.equals(ifMatch.trim())) {
+            return Optional.empty();
+        }
+        Long version = null;
+        for (String tag : ifMatch.split(",")) {
+            Long tagVersion = parseVersion(tag.trim());
+            if (version != null && !version.equals(tagVersion)) {
+                throw new BadRequestAlertException("Only one entity tag is supported in If-Match", entityName, "ifmatchinvalid");
+            }
+            version = tagVersion;
+        }
+        return Optional.of(version);
+    }
+
+    private static Long parseVersion(String tag) {
+        // If-Match uses the strong comparison, a weak tag never matches
+        if (tag.startsWith(WEAK_PREFIX) || tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Invalid entity tag " + tag);
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Invalid entity tag " + tag);
+        }
+    }
+
+    /**
+     * Translates the failure of a write at an expected version, which another write changed meanwhile.
+     *
+     * @param e the failure of the write.
+     * @return the exception answering {@code 412 (Precondition Failed)}.
+     */
+    public static ResponseStatusException preconditionFailed(OptimisticLockingFailureException e) {
+        return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage(), e);
+    }
+
+    /**
+     * Wrap the optional versioned entity into a {@link ResponseEntity} with its {@code ETag} header, or into a
+     * {@link ResponseStatusException} with status {@code 404 (Not Found)} if it is empty.
+     *
+     * @param maybeResponse the response to return if present.
+     * @param version the function reading the version of the response.
+     * @param <X> the type of the response.
+     * @return the response, with the {@code ETag} header.
+     */
+    public static <X> Mono<ResponseEntity<X>> wrapOrNotFound(Mono<X> maybeResponse, Function<X, Long> version) {
+        return maybeResponse
+            .map(response -> ResponseEntity.ok().eTag(toETag(version.apply(response))).body(response))
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+}
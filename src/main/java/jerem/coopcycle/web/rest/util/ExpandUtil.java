@@ -0,0 +1,38 @@
+package jerem.coopcycle.web.rest.util;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+
+/**
+ * Utility class for handling the {@code expand} request parameter, which lists the associations to load with the returned entities.
+ */
+public final class ExpandUtil {
+
+    public static final String EXPAND_PARAMETER = "expand";
+
+    private ExpandUtil() {}
+
+    /**
+     * Reads the {@code expand} request parameter.
+     *
+     * @param expand the expand request parameter, a comma separated list of association names, or {@code null}.
+     * @param expandable the names of the associations which can be expanded.
+     * @param entityName the name of the requested entity, for the error message.
+     * @return the associations to expand.
+     * @throws BadRequestAlertException if an association cannot be expanded.
+     */
+    public static Set<String> parseExpand(Collection<String> expand, Set<String> expandable, String entityName) {
+        Set<String> associations = new LinkedHashSet<>();
+        if (expand != null) {
+            for (String association : expand) {
+                if (!expandable.contains(association)) {
+                    throw new BadRequestAlertException("Cannot expand " + association, entityName, "expandinvalid");
+                }
+                associations.add(association);
+            }
+        }
+        return associations;
+    }
+}
@@ -0,0 +1,67 @@
+package jerem.coopcycle.web.rest.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Utility class for handling sparse fieldsets: the {@code fields} request parameter lists the properties to return, so that only
+ * their columns are read from the database and only they are sent to the client.
+ */
+public final class FieldsetUtil {
+
+    public static final String FIELDS_PARAMETER = "fields";
+
+    private FieldsetUtil() {}
+
+    /**
+     * Reads the {@code fields} request parameter.
+     *
+     * @param fields the fields request parameter, a comma separated list of property names.
+     * @param selectable the names of the properties which can be selected.
+     * @param entityName the name of the requested entity, for the error message.
+     * @return the properties to return, the id is always returned.
+     * @throws BadRequestAlertException if a property cannot be selected.
+     */
+    public static Set<String> parseFields(Collection<String> fields, Set<String> selectable, String entityName) {
+        Set<String> properties = new LinkedHashSet<>();
+        properties.add(Keyset.ID_PROPERTY);
+        for (String field : fields) {
+            if (!selectable.contains(field)) {
+                throw new BadRequestAlertException("Cannot select " + field, entityName, "fieldsinvalid");
+            }
+            properties.add(field);
+        }
+        return properties;
+    }
+
+    /**
+     * Narrows the body of a list response to the given properties.
+     *
+     * @param response the response, its headers are kept as is.
+     * @param properties the properties to send, in order.
+     * @param <T> the type of the listed DTOs.
+     * @return the response with a list of property maps in body.
+     */
+    public static <T> ResponseEntity<List<Map<String, Object>>> narrow(ResponseEntity<List<T>> response, Collection<String> properties) {
+        List<Map<String, Object>> body = new ArrayList<>(response.getBody().size());
+        for (T dto : response.getBody()) {
+            BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(dto);
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String property : properties) {
+                values.put(property, wrapper.getPropertyValue(property));
+            }
+            body.add(values);
+        }
+        return ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders()).body(body);
+    }
+}
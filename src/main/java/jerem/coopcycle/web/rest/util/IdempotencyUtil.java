@@ -0,0 +1,42 @@
+package jerem.coopcycle.web.rest.util;
+
+import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+
+/**
+ * Utility class for handling the {@code Idempotency-Key} request header, which a client sends with a creation so that its
+ * retries replay the response of the first request instead of creating duplicates.
+ */
+public final class IdempotencyUtil {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * The maximum length of a key, the length of the {@code idempotency_key} column.
+     */
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private IdempotencyUtil() {}
+
+    /**
+     * Reads an {@code Idempotency-Key} request header.
+     *
+     * @param idempotencyKey the {@code Idempotency-Key} request header, null when it is absent.
+     * @param entityName the name of the created entity, for the error message.
+     * @return the key, or null when the header is absent.
+     * @throws BadRequestAlertException if the key is blank or longer than {@link #MAX_KEY_LENGTH} characters.
+     */
+    public static String parseIdempotencyKey(String idempotencyKey, String entityName) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        String key = idempotencyKey.trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestAlertException(
+                "The idempotency key must have 1 to " + MAX_KEY_LENGTH + " characters",
+                entityName,
+                "idempotencykeyinvalid"
+            );
+        }
+        return key;
+    }
+}
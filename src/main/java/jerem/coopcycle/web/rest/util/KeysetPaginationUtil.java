@@ -0,0 +1,70 @@
+package jerem.coopcycle.web.rest.util;
+
+import java.util.List;
+import jerem.coopcycle.repository.Keyset;
+import jerem.coopcycle.web.rest.errors.BadRequestAlertException;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Utility class for handling keyset (cursor) pagination.
+ * <p>
+ * Pagination uses the same principles as the GitHub API,
+ * and follow <a href="http://tools.ietf.org/html/rfc5988">RFC 5988 (Link header)</a>: the next page is announced with a
+ * {@code rel="next"} link carrying an opaque {@code cursor} parameter.
+ */
+public final class KeysetPaginationUtil {
+
+    public static final String CURSOR_PARAMETER = "cursor";
+
+    private static final String HEADER_LINK_FORMAT = "<%s>; rel=\"%s\"";
+
+    private KeysetPaginationUtil() {}
+
+    /**
+     * Reads the {@code cursor} request parameter; an empty cursor starts a keyset pagination with the requested sort.
+     *
+     * @param cursor the cursor request parameter.
+     * @param sort the requested sort, used for the first page only.
+     * @param entityName the name of the paged entity, for the error message.
+     * @return the keyset position to seek to.
+     * @throws BadRequestAlertException if the cursor is malformed.
+     */
+    public static Keyset parseCursor(String cursor, Sort sort, String entityName) {
+        try {
+            return cursor.isEmpty() ? Keyset.first(sort) : Keyset.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid cursor", entityName, "cursorinvalid");
+        }
+    }
+
+    /**
+     * Generate the pagination headers for a keyset page: a {@code Link} header pointing to the next page, if there might be one.
+     *
+     * @param uriBuilder the uri builder of the current request.
+     * @param keyset the position the current page was read from.
+     * @param content the content of the current page, its elements must expose the sort property and the id.
+     * @param pageSize the requested page size.
+     * @param <T> the type of the page content.
+     * @return http headers
+     */
+    public static <T> HttpHeaders generateKeysetHttpHeaders(UriComponentsBuilder uriBuilder, Keyset keyset, List<T> content, int pageSize) {
+        HttpHeaders headers = new HttpHeaders();
+        if (content.isEmpty() || content.size() < pageSize) {
+            return headers;
+        }
+        BeanWrapper last = PropertyAccessorFactory.forBeanPropertyAccess(content.get(content.size() - 1));
+        Keyset next = keyset.after(last.getPropertyValue(keyset.getProperty()), (Long) last.getPropertyValue(Keyset.ID_PROPERTY));
+        String link = uriBuilder
+            .replaceQueryParam(CURSOR_PARAMETER, next.encode())
+            .replaceQueryParam("page")
+            .replaceQueryParam("sort")
+            .replaceQueryParam("size", pageSize)
+            .toUriString();
+        headers.add(HttpHeaders.LINK, String.format(HEADER_LINK_FORMAT, link, "next"));
+        return headers;
+    }
+}
@@ -0,0 +1,58 @@
+package jerem.coopcycle.web.rest.util;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Utility class for handling offset pagination when the client opted out of the total count, with the
+ * {@value #SKIP_TOTAL_COUNT_HEADER} request header.
+ * <p>
+ * Without a total there is no {@code X-Total-Count} header nor {@code last} link, and the {@code next} link is only announced
+ * when the current page is full.
+ */
+public final class UncountedPaginationUtil {
+
+    public static final String SKIP_TOTAL_COUNT_HEADER = "X-Skip-Total-Count";
+
+    private static final String HEADER_LINK_FORMAT = "<%s>; rel=\"%s\"";
+
+    private UncountedPaginationUtil() {}
+
+    /**
+     * Generate pagination headers for a page whose total number of elements is unknown.
+     *
+     * @param uriBuilder the uri builder of the current request.
+     * @param pageable the pagination information of the current request.
+     * @param contentSize the number of elements of the current page.
+     * @return http headers
+     */
+    public static HttpHeaders generateUncountedPaginationHttpHeaders(UriComponentsBuilder uriBuilder, Pageable pageable, int contentSize) {
+        HttpHeaders headers = new HttpHeaders();
+        int pageNumber = pageable.getPageNumber();
+        int pageSize = pageable.getPageSize();
+        StringBuilder link = new StringBuilder();
+        if (contentSize >= pageSize) {
+            link.append(prepareLink(uriBuilder, pageNumber + 1, pageSize, "next")).append(",");
+        }
+        if (pageNumber > 0) {
+            link.append(prepareLink(uriBuilder, pageNumber - 1, pageSize, "prev")).append(",");
+        }
+        link.append(prepareLink(uriBuilder, 0, pageSize, "first"));
+        headers.add(HttpHeaders.LINK, link.toString());
+        return headers;
+    }
+
+    private static String prepareLink(UriComponentsBuilder uriBuilder, int pageNumber, int pageSize, String relType) {
+        return String.format(HEADER_LINK_FORMAT, preparePageUri(uriBuilder, pageNumber, pageSize), relType);
+    }
+
+    private static String preparePageUri(UriComponentsBuilder uriBuilder, int pageNumber, int pageSize) {
+        return uriBuilder
+            .replaceQueryParam("page", Integer.toString(pageNumber))
+            .replaceQueryParam("size", Integer.toString(pageSize))
+            .toUriString()
+            .replace(",", "%2C")
+            .replace(";", "%3B");
+    }
+}
@@ -0,0 +1,23 @@
+package jerem.coopcycle.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jerem.coopcycle.web.rest.TestUtil;
+import org.junit.jupiter.api.Test;
+
+class RestaurantStatsTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(RestaurantStats.class);
+        RestaurantStats restaurantStats1 = new RestaurantStats();
+        restaurantStats1.setId(1L);
+        RestaurantStats restaurantStats2 = new RestaurantStats();
+        restaurantStats2.setId(restaurantStats1.getId());
+        assertThat(restaurantStats1).isEqualTo(restaurantStats2);
+        restaurantStats2.setId(2L);
+        assertThat(restaurantStats1).isNotEqualTo(restaurantStats2);
+        restaurantStats1.setId(null);
+        assertThat(restaurantStats1).isNotEqualTo(restaurantStats2);
+    }
+}
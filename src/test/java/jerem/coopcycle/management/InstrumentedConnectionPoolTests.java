@@ -0,0 +1,75 @@
+package jerem.coopcycle.management;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class InstrumentedConnectionPoolTests {
+
+    private static final String POOL_NAME = "primary";
+
+    private MeterRegistry meterRegistry;
+
+    private InstrumentedConnectionPool connectionPool;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration
+            .builder(H2ConnectionFactory.inMemory("pool-" + UUID.randomUUID()))
+            .initialSize(2)
+            .maxSize(4);
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry, Duration.ofSeconds(1));
+        connectionPool = new InstrumentedConnectionPool(POOL_NAME, configuration, 2, meterRegistry, queryMetrics);
+    }
+
+    @AfterEach
+    public void destroy() {
+        connectionPool.destroy();
+    }
+
+    @Test
+    void testWarmUpOpensTheInitialConnections() {
+        assertThat(connectionPool.warmUp().block()).isEqualTo(2);
+
+        assertThat(gauge("r2dbc.pool.allocated")).isEqualTo(2);
+        assertThat(gauge("r2dbc.pool.idle")).isEqualTo(2);
+        assertThat(gauge("r2dbc.pool.acquired")).isZero();
+        assertThat(gauge("r2dbc.pool.max.allocated")).isEqualTo(4);
+        assertThat(meterRegistry.get(InstrumentedConnectionPool.CREATION_METER_NAME).tag("outcome", "success").timer().count())
+            .isEqualTo(2);
+    }
+
+    @Test
+    void testAcquisitionsAreTimed() {
+        Connection connection = Mono.from(connectionPool.create()).block();
+
+        assertThat(gauge("r2dbc.pool.acquired")).isEqualTo(1);
+        assertThat(
+            meterRegistry
+                .get(InstrumentedConnectionPool.ACQUIRE_METER_NAME)
+                .tag("name", POOL_NAME)
+                .tag("outcome", "success")
+                .timer()
+                .count()
+        )
+            .isEqualTo(1);
+
+        Mono.from(connection.close()).block();
+        assertThat(gauge("r2dbc.pool.acquired")).isZero();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("name", POOL_NAME).gauge().value();
+    }
+}
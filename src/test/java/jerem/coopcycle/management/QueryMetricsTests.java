@@ -0,0 +1,92 @@
+package jerem.coopcycle.management;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Wrapped;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class QueryMetricsTests {
+
+    private static final String POOL_NAME = "primary";
+
+    private MeterRegistry meterRegistry;
+
+    private Connection rawConnection;
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        rawConnection = Mono.from(H2ConnectionFactory.inMemory("queries-" + UUID.randomUUID()).create()).block();
+        connection = new QueryMetrics(meterRegistry, Duration.ZERO).instrument(rawConnection, POOL_NAME);
+        execute("CREATE TABLE item (id BIGINT)", null).blockLast();
+        execute("INSERT INTO item VALUES (1), (2), (3)", null).blockLast();
+    }
+
+    @AfterEach
+    public void destroy() {
+        Mono.from(rawConnection.close()).block();
+    }
+
+    @Test
+    void testStatementsAreTimedByQueryName() {
+        List<Long> ids = execute("SELECT id FROM item WHERE id > $1", "ItemRepository.findAllAfter").collectList().block();
+
+        assertThat(ids).containsExactly(2L, 3L);
+        assertThat(
+            meterRegistry
+                .get(QueryMetrics.QUERY_METER_NAME)
+                .tag("query", "ItemRepository.findAllAfter")
+                .tag("pool", POOL_NAME)
+                .tag("outcome", "success")
+                .timer()
+                .count()
+        )
+            .isEqualTo(1);
+        assertThat(meterRegistry.get(QueryMetrics.ROWS_METER_NAME).tag("query", "ItemRepository.findAllAfter").summary().totalAmount())
+            .isEqualTo(2);
+    }
+
+    @Test
+    void testStatementsWithoutQueryNameAreTimed() {
+        assertThat(meterRegistry.get(QueryMetrics.QUERY_METER_NAME).tag("query", QueryMetrics.UNKNOWN_QUERY).timers()).isNotEmpty();
+    }
+
+    @Test
+    void testFailedStatementsAreTimed() {
+        Flux<Long> failing = execute("SELECT id / (id - id) FROM item WHERE id > $1", "ItemRepository.findAllRatios");
+
+        assertThat(failing.onErrorResume(e -> Flux.empty()).collectList().block()).isEmpty();
+        assertThat(meterRegistry.get(QueryMetrics.QUERY_METER_NAME).tag("outcome", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testInstrumentedConnectionCanBeUnwrapped() {
+        assertThat(((Wrapped<?>) connection).unwrap()).isSameAs(rawConnection);
+    }
+
+    private Flux<Long> execute(String sql, String queryName) {
+        Flux<Long> rows = Flux
+            .defer(() -> {
+                var statement = connection.createStatement(sql);
+                if (sql.contains("$1")) {
+                    statement.bind("$1", 1L);
+                }
+                return Flux.from(statement.execute());
+            })
+            .concatMap(result -> result.map((row, metadata) -> row.get(0, Long.class)));
+        return queryName == null ? rows : rows.contextWrite(context -> context.put(QueryMetrics.QUERY_NAME_CONTEXT_KEY, queryName));
+    }
+}
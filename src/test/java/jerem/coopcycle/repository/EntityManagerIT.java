@@ -0,0 +1,41 @@
+package jerem.coopcycle.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jerem.coopcycle.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Integration tests for the {@link EntityManager} select templates.
+ */
+@IntegrationTest
+class EntityManagerIT {
+
+    @Autowired
+    private CommandeRepository commandeRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void selectTemplateIsReusedAcrossIds() {
+        double hitsBefore = templateCacheCount("hit");
+        double missesBefore = templateCacheCount("miss");
+
+        commandeRepository.findById(Long.MAX_VALUE).block();
+        commandeRepository.findById(Long.MAX_VALUE - 1).block();
+
+        assertThat(templateCacheCount("hit") + templateCacheCount("miss") - hitsBefore - missesBefore).isEqualTo(2);
+        assertThat(templateCacheCount("miss") - missesBefore).isLessThanOrEqualTo(1);
+    }
+
+    private double templateCacheCount(String result) {
+        return meterRegistry
+            .get(EntityManager.SELECT_TEMPLATE_CACHE_METER_NAME)
+            .tag(EntityManager.SELECT_TEMPLATE_CACHE_RESULT_DIMENSION, result)
+            .counter()
+            .count();
+    }
+}
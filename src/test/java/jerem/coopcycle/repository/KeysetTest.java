@@ -0,0 +1,51 @@
+package jerem.coopcycle.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+class KeysetTest {
+
+    @Test
+    void firstPageIsSortedByIdWhenUnsorted() {
+        Keyset keyset = Keyset.first(Sort.unsorted());
+        assertThat(keyset.isFirst()).isTrue();
+        assertThat(keyset.isById()).isTrue();
+        assertThat(keyset.getDirection()).isEqualTo(Sort.Direction.ASC);
+    }
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        Instant dateTime = Instant.parse("2023-03-19T15:01:36Z");
+        Keyset keyset = Keyset.first(Sort.by(Sort.Direction.DESC, "dateTime")).after(dateTime, 42L);
+        Keyset decoded = Keyset.decode(keyset.encode());
+        assertThat(decoded).isEqualTo(keyset);
+        assertThat(decoded.getLastValue()).isEqualTo(dateTime.toString());
+        assertThat(decoded.getLastId()).isEqualTo(42L);
+        assertThat(decoded.getDirection()).isEqualTo(Sort.Direction.DESC);
+    }
+
+    @Test
+    void enumValuesAreStoredByName() {
+        Keyset keyset = Keyset.first(Sort.by("status")).after(CommandeStatus.PRETE, 1L);
+        assertThat(Keyset.decode(keyset.encode()).getLastValue()).isEqualTo("PRETE");
+    }
+
+    @Test
+    void idKeysetIgnoresSortValue() {
+        Keyset keyset = Keyset.first(Sort.by("id")).after(null, 7L);
+        assertThat(Keyset.decode(keyset.encode())).isEqualTo(keyset);
+        assertThat(keyset.getLastValue()).isNull();
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> Keyset.decode("not a cursor")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Keyset.decode("QVNDfG5hbWV8eHw")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Keyset.first(Sort.by("name; drop table"))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,511 @@
+package jerem.coopcycle.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import jerem.coopcycle.IntegrationTest;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Query plan regression harness: checks that no query of the repositories scans a large table to filter it.
+ * <p>
+ * The tables are seeded with {@link #SEEDED_ROWS} rows each, then every read method of the custom repository fragments - which
+ * run the queries rendered by the {@link EntityManager} - is called with sample arguments, and the statements it runs are
+ * recorded with their bound values. Each recorded statement, and each {@code @Query} of the repositories, is then explained.
+ * A sequential scan with a filter over a table of more than {@link #LARGE_TABLE_ROWS} rows fails the test: it is the plan of a
+ * query missing an index. Sequential scans without a filter are reads of a whole table, or of a page of it, and are accepted.
+ * <p>
+ * The plans only make sense on PostgreSQL, so the harness runs with the {@code testprod} profile and is skipped on H2.
+ */
+@IntegrationTest
+@Import(QueryPlanIT.StatementRecorderConfiguration.class)
+class QueryPlanIT {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanIT.class);
+
+    private static final int SEEDED_ROWS = 5000;
+    private static final long LARGE_TABLE_ROWS = 1000;
+    private static final String SEED_MARKER = "plan";
+
+    private static final List<String> TABLES = List.of(
+        "societaire",
+        "restaurateur",
+        "restaurant",
+        "panier",
+        "paiement",
+        "commande",
+        "client",
+        "jhi_user",
+        "jhi_user_authority"
+    );
+
+    private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<!:):(\\w+)");
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private R2dbcDialect dialect;
+
+    @Autowired
+    private StatementRecorder statementRecorder;
+
+    @Test
+    void queriesDoNotScanLargeTables() throws Exception {
+        Assumptions.assumeTrue(dialect instanceof PostgresDialect, "Query plans are only checked on PostgreSQL");
+        try {
+            seed();
+            Set<String> largeTables = findLargeTables();
+            assertThat(largeTables).as("tables seeded above the threshold").isNotEmpty();
+
+            Map<String, List<Object>> statements = new LinkedHashMap<>();
+            statementRecorder.start();
+            try {
+                callReadMethods();
+            } finally {
+                statements.putAll(statementRecorder.stop());
+            }
+            statements.putAll(findQueryAnnotations());
+
+            List<String> violations = new ArrayList<>();
+            for (Map.Entry<String, List<Object>> statement : statements.entrySet()) {
+                JsonNode plan = explain(statement.getKey(), statement.getValue());
+                collectSequentialScans(plan, largeTables, statement.getKey(), violations);
+            }
+            log.info("Explained {} statements", statements.size());
+            assertThat(violations).as("sequential scans with a filter over large tables").isEmpty();
+        } finally {
+            cleanup();
+        }
+    }
+
+    private void seed() {
+        execute(
+            "INSERT INTO societaire (first_name, last_name, type) " +
+            "SELECT '" +
+            SEED_MARKER +
+            "', 'societaire' || i, 'RESTAURATEUR' FROM generate_series(1, " +
+            SEEDED_ROWS +
+            ") i"
+        );
+        execute(
+            "INSERT INTO restaurateur (first_name, last_name, societaire_id) " +
+            "SELECT first_name, 'restaurateur' || id, id FROM societaire WHERE first_name = '" +
+            SEED_MARKER +
+            "'"
+        );
+        execute(
+            "INSERT INTO restaurant (name, address, menu, restaurateur_id) " +
+            "SELECT first_name, 'address' || id, 'menu', id FROM restaurateur WHERE first_name = '" +
+            SEED_MARKER +
+            "'"
+        );
+        execute(
+            "INSERT INTO panier (description, price, restaurant_id) " +
+            "SELECT name, 10, id FROM restaurant WHERE name = '" +
+            SEED_MARKER +
+            "'"
+        );
+        execute("INSERT INTO paiement (amount, payment_type) SELECT -1, 'BITCOIN' FROM generate_series(1, " + SEEDED_ROWS + ") i");
+        execute(
+            "INSERT INTO commande (date_time, status, panier_id, paiement_id) " +
+            "SELECT now() - p.rn * interval '1 minute', (ARRAY['EN_COURS', 'PRETE', 'LIVREE'])[1 + p.rn % 3], p.id, q.id " +
+            "FROM (SELECT id, row_number() OVER (ORDER BY id) rn FROM panier WHERE description = '" +
+            SEED_MARKER +
+            "') p " +
+            "JOIN (SELECT id, row_number() OVER (ORDER BY id) rn FROM paiement WHERE amount = -1 AND payment_type = 'BITCOIN') q " +
+            "ON p.rn = q.rn"
+        );
+        execute(
+            "INSERT INTO client (first_name, last_name, email, phone, address, commande_id) " +
+            "SELECT '" +
+            SEED_MARKER +
+            "', 'client' || c.id, '" +
+            SEED_MARKER +
+            "-' || c.id || '@localhost', '0600000000', 'address', c.id " +
+            "FROM commande c JOIN panier p ON p.id = c.panier_id WHERE p.description = '" +
+            SEED_MARKER +
+            "'"
+        );
+        execute(
+            "UPDATE restaurateur r SET commande_id = c.id FROM restaurant re " +
+            "JOIN panier p ON p.restaurant_id = re.id JOIN commande c ON c.panier_id = p.id " +
+            "WHERE re.restaurateur_id = r.id AND r.first_name = '" +
+            SEED_MARKER +
+            "'"
+        );
+        execute(
+            "INSERT INTO jhi_user (login, password_hash, email, activated, lang_key, created_by) " +
+            "SELECT '" +
+            SEED_MARKER +
+            "-' || i, repeat('x', 60), '" +
+            SEED_MARKER +
+            "-' || i || '@localhost', true, 'fr', 'system' FROM generate_series(1, " +
+            SEEDED_ROWS +
+            ") i"
+        );
+        execute(
+            "INSERT INTO jhi_user_authority (user_id, authority_name) " +
+            "SELECT id, 'ROLE_USER' FROM jhi_user WHERE login LIKE '" +
+            SEED_MARKER +
+            "-%'"
+        );
+        for (String table : TABLES) {
+            execute("ANALYZE " + table);
+        }
+    }
+
+    private void cleanup() {
+        if (!(dialect instanceof PostgresDialect)) {
+            return;
+        }
+        String seededCommandes =
+            "SELECT c.id FROM commande c JOIN panier p ON p.id = c.panier_id WHERE p.description = '" + SEED_MARKER + "'";
+        execute("DELETE FROM client WHERE first_name = '" + SEED_MARKER + "'");
+        execute("UPDATE restaurateur SET commande_id = NULL WHERE first_name = '" + SEED_MARKER + "'");
+        execute("DELETE FROM commande WHERE id IN (" + seededCommandes + ")");
+        execute("DELETE FROM paiement WHERE amount = -1 AND payment_type = 'BITCOIN'");
+        execute("DELETE FROM panier WHERE description = '" + SEED_MARKER + "'");
+        execute("DELETE FROM restaurant WHERE name = '" + SEED_MARKER + "'");
+        execute("DELETE FROM restaurateur WHERE first_name = '" + SEED_MARKER + "'");
+        execute("DELETE FROM societaire WHERE first_name = '" + SEED_MARKER + "'");
+        execute("DELETE FROM jhi_user_authority WHERE user_id IN (SELECT id FROM jhi_user WHERE login LIKE '" + SEED_MARKER + "-%')");
+        execute("DELETE FROM jhi_user WHERE login LIKE '" + SEED_MARKER + "-%'");
+    }
+
+    private Set<String> findLargeTables() {
+        return Flux
+            .usingWhen(
+                statementRecorder.getConnectionFactory().create(),
+                connection ->
+                    Flux
+                        .from(
+                            connection
+                                .createStatement("SELECT relname, reltuples FROM pg_class WHERE relkind = 'r' AND reltuples >= $1")
+                                .bind("$1", (float) LARGE_TABLE_ROWS)
+                                .execute()
+                        )
+                        .flatMap(result -> result.map((row, metadata) -> row.get("relname", String.class))),
+                Connection::close
+            )
+            .collect(Collectors.toSet())
+            .block();
+    }
+
+    /**
+     * Calls the read methods of the custom repository fragments, so that the statements they render are recorded.
+     */
+    private void callReadMethods() throws Exception {
+        for (Object repository : applicationContext.getBeansOfType(ReactiveCrudRepository.class).values()) {
+            for (Class<?> repositoryInterface : AopProxyUtils.proxiedUserInterfaces(repository)) {
+                for (Class<?> fragment : repositoryInterface.getInterfaces()) {
+                    if (fragment.getSimpleName().endsWith("RepositoryInternal")) {
+                        callReadMethods(repository, fragment);
+                    }
+                }
+            }
+        }
+    }
+
+    private void callReadMethods(Object repository, Class<?> fragment) throws Exception {
+        for (Method method : fragment.getDeclaredMethods()) {
+            if (!method.getName().startsWith("find") && !method.getName().startsWith("count")) {
+                continue;
+            }
+            Object[] arguments = new Object[method.getParameterCount()];
+            boolean supported = true;
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = sampleArgument(method.getParameterTypes()[i], method.getGenericParameterTypes()[i]);
+                supported &= arguments[i] != null || Set.class.equals(method.getParameterTypes()[i]);
+            }
+            if (!supported) {
+                log.warn("Cannot call {}.{}, its queries are not explained", fragment.getSimpleName(), method.getName());
+                continue;
+            }
+            method.setAccessible(true);
+            Object result;
+            try {
+                result = method.invoke(repository, arguments);
+            } catch (InvocationTargetException e) {
+                throw new AssertionError("Cannot call " + fragment.getSimpleName() + "." + method.getName(), e.getCause());
+            }
+            if (result instanceof Mono) {
+                ((Mono<?>) result).block();
+            } else if (result instanceof Flux) {
+                ((Flux<?>) result).collectList().block();
+            }
+        }
+    }
+
+    /**
+     * @return a sample value of the given parameter type, {@code null} for the unsupported types and the optional sets.
+     */
+    private static Object sampleArgument(Class<?> type, Type genericType) {
+        if (Long.class.equals(type) || long.class.equals(type)) {
+            return 1L;
+        }
+        if (String.class.equals(type)) {
+            return SEED_MARKER + "-1";
+        }
+        if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+            // includes the archive where a query can
+            return true;
+        }
+        if (Pageable.class.equals(type)) {
+            return PageRequest.of(1, 20, Sort.by(Keyset.ID_PROPERTY));
+        }
+        if (Keyset.class.equals(type)) {
+            return Keyset.first(Sort.by(Keyset.ID_PROPERTY)).after(null, 1L);
+        }
+        if (Instant.class.equals(type)) {
+            return Instant.now();
+        }
+        if (LocalDateTime.class.equals(type)) {
+            return LocalDateTime.now();
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        if (
+            Collection.class.isAssignableFrom(type) &&
+            !Set.class.equals(type) &&
+            genericType instanceof ParameterizedType &&
+            Long.class.equals(((ParameterizedType) genericType).getActualTypeArguments()[0])
+        ) {
+            return List.of(1L, 2L);
+        }
+        return null;
+    }
+
+    /**
+     * Finds the {@code @Query} statements of the repositories, with sample values for their parameters.
+     */
+    private Map<String, List<Object>> findQueryAnnotations() {
+        Map<String, List<Object>> statements = new LinkedHashMap<>();
+        for (Object repository : applicationContext.getBeansOfType(ReactiveCrudRepository.class).values()) {
+            for (Class<?> repositoryInterface : AopProxyUtils.proxiedUserInterfaces(repository)) {
+                for (Method method : repositoryInterface.getDeclaredMethods()) {
+                    Query query = method.getAnnotation(Query.class);
+                    if (query == null || query.value().trim().toUpperCase().startsWith("INSERT")) {
+                        continue;
+                    }
+                    List<Object> bindings = new ArrayList<>();
+                    StringBuilder sql = new StringBuilder();
+                    Matcher matcher = NAMED_PARAMETER.matcher(query.value());
+                    while (matcher.find()) {
+                        int parameter = bindings.size();
+                        for (int i = 0; i < method.getParameterCount(); i++) {
+                            if (method.getParameters()[i].getName().equals(matcher.group(1))) {
+                                parameter = i;
+                            }
+                        }
+                        bindings.add(sampleArgument(method.getParameterTypes()[parameter], method.getGenericParameterTypes()[parameter]));
+                        matcher.appendReplacement(sql, "\\$" + bindings.size());
+                    }
+                    matcher.appendTail(sql);
+                    statements.put(sql.toString(), bindings);
+                }
+            }
+        }
+        return statements;
+    }
+
+    private JsonNode explain(String sql, List<Object> bindings) throws Exception {
+        String plan = Mono
+            .usingWhen(
+                statementRecorder.getConnectionFactory().create(),
+                connection -> {
+                    Statement statement = connection.createStatement("EXPLAIN (FORMAT JSON) " + sql);
+                    for (int i = 0; i < bindings.size(); i++) {
+                        Object value = bindings.get(i);
+                        if (value instanceof Class) {
+                            statement.bindNull(i, (Class<?>) value);
+                        } else {
+                            statement.bind(i, value);
+                        }
+                    }
+                    return Flux.from(statement.execute()).flatMap(result -> result.map((row, metadata) -> row.get(0, String.class))).next();
+                },
+                Connection::close
+            )
+            .block();
+        return objectMapper.readTree(plan).get(0).get("Plan");
+    }
+
+    private static void collectSequentialScans(JsonNode node, Set<String> largeTables, String sql, List<String> violations) {
+        if (
+            "Seq Scan".equals(node.path("Node Type").asText()) &&
+            largeTables.contains(node.path("Relation Name").asText()) &&
+            node.has("Filter")
+        ) {
+            violations.add(node.path("Relation Name").asText() + " filtered by " + node.path("Filter").asText() + " in: " + sql);
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSequentialScans(child, largeTables, sql, violations);
+        }
+    }
+
+    private void execute(String sql) {
+        Mono
+            .usingWhen(
+                statementRecorder.getConnectionFactory().create(),
+                connection -> Flux.from(connection.createStatement(sql).execute()).flatMap(result -> result.getRowsUpdated()).then(),
+                Connection::close
+            )
+            .block();
+    }
+
+    @TestConfiguration
+    static class StatementRecorderConfiguration {
+
+        @Bean
+        static StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+    }
+
+    /**
+     * Wraps the {@code connectionFactory} bean of the application to record the statements run through it, with their first bound values.
+     * The null values are recorded as their type.
+     */
+    static class StatementRecorder implements BeanPostProcessor {
+
+        private final Map<String, List<Object>> statements = new ConcurrentHashMap<>();
+        private volatile boolean recording;
+        private ConnectionFactory connectionFactory;
+
+        void start() {
+            statements.clear();
+            recording = true;
+        }
+
+        Map<String, List<Object>> stop() {
+            recording = false;
+            return new LinkedHashMap<>(statements);
+        }
+
+        /**
+         * @return the connection factory of the application, without recording.
+         */
+        ConnectionFactory getConnectionFactory() {
+            return connectionFactory;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof ConnectionFactory) || !"connectionFactory".equals(beanName)) {
+                return bean;
+            }
+            connectionFactory = (ConnectionFactory) bean;
+            return Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { ConnectionFactory.class, DisposableBean.class },
+                (proxy, method, args) -> {
+                    if ("destroy".equals(method.getName())) {
+                        if (bean instanceof DisposableBean) {
+                            ((DisposableBean) bean).destroy();
+                        }
+                        return null;
+                    }
+                    Object result = invoke(bean, method, args);
+                    if ("create".equals(method.getName())) {
+                        return Mono.from((Publisher<?>) result).map(connection -> recordingConnection((Connection) connection));
+                    }
+                    return result;
+                }
+            );
+        }
+
+        private Connection recordingConnection(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if ("createStatement".equals(method.getName())) {
+                        return recordingStatement((Statement) result, (String) args[0]);
+                    }
+                    return result;
+                }
+            );
+        }
+
+        private Statement recordingStatement(Statement statement, String sql) {
+            Map<Integer, Object> bindings = new ConcurrentHashMap<>();
+            return (Statement) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { Statement.class },
+                (proxy, method, args) -> {
+                    Object result = invoke(statement, method, args);
+                    if (!recording) {
+                        return result == statement ? proxy : result;
+                    }
+                    if (method.getName().startsWith("bind")) {
+                        // the PostgreSQL markers are $1, $2... when bound by name
+                        int index = args[0] instanceof Integer ? (Integer) args[0] : Integer.parseInt(((String) args[0]).substring(1)) - 1;
+                        bindings.putIfAbsent(index, args[1]);
+                    } else if ("execute".equals(method.getName())) {
+                        List<Object> values = new ArrayList<>();
+                        for (int i = 0; i < bindings.size(); i++) {
+                            values.add(bindings.get(i));
+                        }
+                        statements.putIfAbsent(sql, values);
+                    }
+                    return result == statement ? proxy : result;
+                }
+            );
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package jerem.coopcycle.repository.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test class for the {@link ReplicaRoutingConnectionFactory}, with two in-memory H2 databases standing for the primary and the replica.
+ */
+class ReplicaRoutingConnectionFactoryTest {
+
+    private static final Duration LAG_TOLERANCE = Duration.ofSeconds(5);
+
+    private ConnectionFactory primary;
+    private ConnectionFactory replica;
+    private ReplicaRoutingConnectionFactory routingConnectionFactory;
+
+    @BeforeEach
+    void initDatabases() {
+        primary = createDatabase("primary");
+        replica = createDatabase("replica");
+    }
+
+    @AfterEach
+    void destroyRoutingConnectionFactory() throws Exception {
+        if (routingConnectionFactory != null) {
+            routingConnectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void readWriteTransactionsUseThePrimary() {
+        createRoutingConnectionFactory(null);
+
+        assertThat(readDatabaseName(false).block()).isEqualTo("primary");
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplica() {
+        createRoutingConnectionFactory(null);
+
+        assertThat(readDatabaseName(true).block()).isEqualTo("replica");
+    }
+
+    @Test
+    void readsWithoutTransactionUseThePrimary() {
+        createRoutingConnectionFactory(null);
+
+        assertThat(databaseName(routingConnectionFactory).block()).isEqualTo("primary");
+    }
+
+    @Test
+    void pinnedReadOnlyTransactionsUseThePrimary() {
+        createRoutingConnectionFactory(null);
+
+        String name = readDatabaseName(true)
+            .contextWrite(context -> context.put(ReplicaRoutingConnectionFactory.PIN_PRIMARY_CONTEXT_KEY, true))
+            .block();
+
+        assertThat(name).isEqualTo("primary");
+    }
+
+    @Test
+    void replicasWithinTheLagToleranceAreUsed() {
+        createRoutingConnectionFactory("SELECT 1000");
+        routingConnectionFactory.checkLags().block();
+
+        assertThat(routingConnectionFactory.getReplicaLags()).containsEntry("replica-0", Duration.ofSeconds(1));
+        assertThat(readDatabaseName(true).block()).isEqualTo("replica");
+    }
+
+    @Test
+    void laggingReplicasAreSkipped() {
+        createRoutingConnectionFactory("SELECT 60000");
+        routingConnectionFactory.checkLags().block();
+
+        assertThat(readDatabaseName(true).block()).isEqualTo("primary");
+    }
+
+    @Test
+    void replicasWithUnknownLagAreSkipped() {
+        createRoutingConnectionFactory("SELECT lag FROM missing_table");
+        routingConnectionFactory.checkLags().block();
+
+        assertThat(routingConnectionFactory.getReplicaLags()).containsEntry("replica-0", null);
+        assertThat(readDatabaseName(true).block()).isEqualTo("primary");
+    }
+
+    private void createRoutingConnectionFactory(String lagQuery) {
+        // the periodic check only runs once at start, the tests wait for an explicit check instead
+        routingConnectionFactory =
+            new ReplicaRoutingConnectionFactory(primary, List.of(replica), LAG_TOLERANCE, Duration.ofHours(1), lagQuery);
+        routingConnectionFactory.afterPropertiesSet();
+    }
+
+    private Mono<String> readDatabaseName(boolean readOnly) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(readOnly);
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(
+            new ReplicaRoutingTransactionManager(routingConnectionFactory),
+            definition
+        );
+        return transactionalOperator.transactional(databaseName(routingConnectionFactory));
+    }
+
+    private static Mono<String> databaseName(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory).sql("SELECT name FROM node").map(row -> row.get(0, String.class)).one();
+    }
+
+    private static ConnectionFactory createDatabase(String name) {
+        ConnectionFactory connectionFactory = H2ConnectionFactory.inMemory("routing-" + name + "-" + UUID.randomUUID());
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        client.sql("CREATE TABLE node (name VARCHAR(20))").then().block();
+        client.sql("INSERT INTO node (name) VALUES (:name)").bind("name", name).then().block();
+        return connectionFactory;
+    }
+}
@@ -0,0 +1,77 @@
+package jerem.coopcycle.repository.rowmapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.r2dbc.spi.RowMetadata;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link ColumnPositions}.
+ */
+class ColumnPositionsTest {
+
+    private final ColumnPositions columnPositions = new ColumnPositions("id", "date_time", "status");
+
+    @Test
+    void resolvesPrefixedColumnsIgnoringCase() {
+        RowMetadata metadata = createMetadata("PANIER_ID", "E_STATUS", "E_ID", "E_DATE_TIME");
+
+        int[] positions = columnPositions.resolve(row(metadata), "e");
+
+        assertThat(positions).containsExactly(2, 3, 1);
+    }
+
+    @Test
+    void resolvesMissingColumnsAsAbsent() {
+        RowMetadata metadata = createMetadata("e_id", "e_status");
+
+        int[] positions = columnPositions.resolve(row(metadata), "e");
+
+        assertThat(positions).containsExactly(0, ColumnPositions.ABSENT, 1);
+    }
+
+    @Test
+    void resolvesOncePerResult() {
+        RowMetadata metadata = createMetadata("e_id", "e_date_time", "e_status");
+
+        int[] positions = columnPositions.resolve(row(metadata), "e");
+
+        assertThat(columnPositions.resolve(row(metadata), "e")).isSameAs(positions);
+        assertThat(columnPositions.resolve(row(createMetadata("e_id", "e_date_time", "e_status")), "e")).isSameAs(positions);
+    }
+
+    @Test
+    void resolvesAgainWhenTheResultLayoutChanges() {
+        columnPositions.resolve(row(createMetadata("e_id", "e_date_time", "e_status")), "e");
+
+        int[] positions = columnPositions.resolve(row(createMetadata("x", "e_status", "e_id")), "e");
+
+        assertThat(positions).containsExactly(2, ColumnPositions.ABSENT, 1);
+    }
+
+    @Test
+    void keepsThePositionsOfEachResultLayout() {
+        int[] positions = columnPositions.resolve(row(createMetadata("e_id", "e_date_time", "e_status")), "e");
+        int[] otherPositions = columnPositions.resolve(row(createMetadata("x", "e_status", "e_id")), "e");
+
+        // the queries alternating with the same prefix reuse the positions of their layout
+        assertThat(columnPositions.resolve(row(createMetadata("e_id", "e_date_time", "e_status")), "e")).isSameAs(positions);
+        assertThat(columnPositions.resolve(row(createMetadata("x", "e_status", "e_id")), "e")).isSameAs(otherPositions);
+    }
+
+    @Test
+    void resolvesEachPrefixSeparately() {
+        RowMetadata metadata = createMetadata("e_id", "e_date_time", "e_status", "commande_id", "commande_date_time", "commande_status");
+
+        assertThat(columnPositions.resolve(row(metadata), "e")).containsExactly(0, 1, 2);
+        assertThat(columnPositions.resolve(row(metadata), "commande")).containsExactly(3, 4, 5);
+    }
+
+    private static RowMetadata createMetadata(String... names) {
+        return ColumnConverterTest.createMetadata(names, new Class<?>[names.length]);
+    }
+
+    private static ColumnConverterTest.StubRow row(RowMetadata metadata) {
+        return new ColumnConverterTest.StubRow(0, new Object[metadata.getColumnMetadatas().size()], metadata);
+    }
+}
@@ -0,0 +1,48 @@
+package jerem.coopcycle.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class BackgroundJobTest {
+
+    private static void waitUntilDone(BackgroundJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (job.isRunning()) {
+            assertThat(System.nanoTime()).as("waiting for the job").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testARunIsSkippedWhileThePreviousOneIsNotDone() throws InterruptedException {
+        BackgroundJob job = new BackgroundJob("test");
+        Sinks.One<Integer> firstRun = Sinks.one();
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThat(job.start(() -> Mono.fromRunnable(runs::incrementAndGet).then(firstRun.asMono()))).isTrue();
+        assertThat(job.start(() -> Mono.fromRunnable(runs::incrementAndGet))).isFalse();
+        assertThat(job.isRunning()).isTrue();
+
+        firstRun.tryEmitValue(1);
+        waitUntilDone(job);
+        assertThat(job.start(() -> Mono.fromRunnable(runs::incrementAndGet))).isTrue();
+        waitUntilDone(job);
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void testAFailedRunDoesNotStopTheNextOnes() throws InterruptedException {
+        BackgroundJob job = new BackgroundJob("test");
+
+        assertThat(job.start(() -> Mono.error(new IllegalStateException("failed")))).isTrue();
+        waitUntilDone(job);
+
+        assertThat(job.start(() -> Mono.just(1))).isTrue();
+        waitUntilDone(job);
+    }
+}
@@ -0,0 +1,165 @@
+package jerem.coopcycle.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import jerem.coopcycle.IntegrationTest;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Paiement;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.repository.CommandeRepository;
+import jerem.coopcycle.repository.EntityManager;
+import jerem.coopcycle.repository.PaiementRepository;
+import jerem.coopcycle.repository.PanierRepository;
+import jerem.coopcycle.web.rest.CommandeResourceIT;
+import jerem.coopcycle.web.rest.PaiementResourceIT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Integration tests for {@link CommandeArchiveService}.
+ */
+@IntegrationTest
+class CommandeArchiveServiceIT {
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    private static final Instant CUTOFF = NOW.minus(28, ChronoUnit.DAYS);
+
+    @Autowired
+    private CommandeArchiveService commandeArchiveService;
+
+    @Autowired
+    private CommandeRepository commandeRepository;
+
+    @Autowired
+    private PanierRepository panierRepository;
+
+    @Autowired
+    private PaiementRepository paiementRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private R2dbcDialect dialect;
+
+    @BeforeEach
+    public void init() {
+        deleteEntities();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        deleteEntities();
+    }
+
+    private void deleteEntities() {
+        for (String table : new String[] { "commande_archive", "panier_archive", "paiement_archive" }) {
+            databaseClient.sql("DELETE FROM " + table).fetch().rowsUpdated().block();
+        }
+        CommandeResourceIT.deleteEntities(em);
+        PaiementResourceIT.deleteEntities(em);
+    }
+
+    private Commande createCommande(CommandeStatus status, Instant dateTime) {
+        Commande commande = CommandeResourceIT.createEntity(em).status(status).dateTime(dateTime);
+        commande.setPaiement(em.insert(PaiementResourceIT.createEntity(em)).block());
+        return commandeRepository.save(commande).block();
+    }
+
+    @Test
+    void assertThatOldDeliveredCommandesAreArchivedWithTheirPanierAndPaiement() {
+        Commande old = createCommande(CommandeStatus.LIVREE, CUTOFF.minus(1, ChronoUnit.DAYS));
+        Commande recent = createCommande(CommandeStatus.LIVREE, NOW);
+        Commande undelivered = createCommande(CommandeStatus.EN_COURS, CUTOFF.minus(1, ChronoUnit.DAYS));
+
+        Integer archived = commandeArchiveService.archiveDeliveredCommandes(CUTOFF).block();
+
+        assertThat(archived).isEqualTo(1);
+        assertThat(commandeRepository.findById(old.getId()).blockOptional()).isEmpty();
+        assertThat(panierRepository.findById(old.getPanierId()).blockOptional()).isEmpty();
+        assertThat(paiementRepository.findById(old.getPaiementId()).blockOptional()).isEmpty();
+        Commande archivedCommande = commandeRepository.findById(old.getId(), true).block();
+        assertThat(archivedCommande).isNotNull();
+        assertThat(archivedCommande.getStatus()).isEqualTo(CommandeStatus.LIVREE);
+        assertThat(archivedCommande.getPanier().getId()).isEqualTo(old.getPanierId());
+        assertThat(archivedCommande.getPaiement().getId()).isEqualTo(old.getPaiementId());
+
+        assertThat(commandeRepository.findById(recent.getId()).blockOptional()).isPresent();
+        assertThat(commandeRepository.findById(undelivered.getId()).blockOptional()).isPresent();
+        assertThat(commandeRepository.count().block()).isEqualTo(2);
+        assertThat(commandeRepository.countWithArchive().block()).isEqualTo(3);
+    }
+
+    @Test
+    void assertThatCommandesAreArchivedByChunks() {
+        int chunkSize = applicationProperties.getArchive().getChunkSize();
+        applicationProperties.getArchive().setChunkSize(2);
+        try {
+            for (int i = 0; i < 5; i++) {
+                createCommande(CommandeStatus.LIVREE, CUTOFF.minus(i + 1, ChronoUnit.DAYS));
+            }
+
+            assertThat(commandeArchiveService.archiveDeliveredCommandes(CUTOFF).block()).isEqualTo(5);
+            assertThat(commandeRepository.count().block()).isZero();
+            assertThat(commandeArchiveService.archiveDeliveredCommandes(CUTOFF).block()).isZero();
+        } finally {
+            applicationProperties.getArchive().setChunkSize(chunkSize);
+        }
+    }
+
+    @Test
+    void assertThatANewPartitionTakesTheCommandesOfItsMonthFromTheDefaultPartition() {
+        Assumptions.assumeTrue(dialect instanceof PostgresDialect, "The commandes are only partitioned on PostgreSQL");
+        // two years ahead, beyond the partitions created by the archival job
+        int monthsAhead = 24;
+        LocalDateTime month = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1).plusMonths(monthsAhead).atStartOfDay();
+        Commande commande = createCommande(CommandeStatus.EN_COURS, month.plusDays(1).toInstant(ZoneOffset.UTC));
+        String partition = "commande_" + month.format(DateTimeFormatter.ofPattern("yyyy_MM"));
+
+        databaseClient
+            .sql("SELECT create_commande_partitions(:month, :monthsAhead)")
+            .bind("month", month)
+            .bind("monthsAhead", monthsAhead)
+            .fetch()
+            .rowsUpdated()
+            .block();
+
+        assertThat(
+            databaseClient
+                .sql("SELECT tableoid::regclass::text AS partition FROM commande WHERE id = :id")
+                .bind("id", commande.getId())
+                .map(row -> row.get("partition", String.class))
+                .one()
+                .block()
+        )
+            .isEqualTo(partition);
+        assertThat(
+            databaseClient
+                .sql("SELECT COUNT(*) AS total FROM commande_key WHERE id = :id")
+                .bind("id", commande.getId())
+                .map(row -> row.get("total", Long.class))
+                .one()
+                .block()
+        )
+            .isEqualTo(1L);
+    }
+}
@@ -0,0 +1,138 @@
+package jerem.coopcycle.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import jerem.coopcycle.IntegrationTest;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.domain.Panier;
+import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.repository.CommandeRepository;
+import jerem.coopcycle.repository.EntityManager;
+import jerem.coopcycle.repository.NotificationChannel;
+import jerem.coopcycle.service.dto.CommandeStatusChangeDTO;
+import jerem.coopcycle.web.rest.CommandeResourceIT;
+import jerem.coopcycle.web.rest.PanierResourceIT;
+import jerem.coopcycle.web.rest.RestaurantResourceIT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.BaseSubscriber;
+
+/**
+ * Integration tests for {@link CommandeStatusStreamService}, with the in-memory broadcast.
+ */
+@IntegrationTest
+class CommandeStatusStreamServiceIT {
+
+    private static final int BUFFER_SIZE = 2;
+
+    @Autowired
+    private CommandeRepository commandeRepository;
+
+    @Autowired
+    private NotificationChannel notificationChannel;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ReactiveTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager em;
+
+    private CommandeStatusStreamService commandeStatusStreamService;
+
+    private Restaurant restaurant;
+
+    private final List<CommandeStatusChangeDTO> received = new CopyOnWriteArrayList<>();
+
+    /**
+     * A subscriber reading the changes on demand only.
+     */
+    private final BaseSubscriber<CommandeStatusChangeDTO> subscriber = new BaseSubscriber<>() {
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // nothing is requested until the test reads
+        }
+
+        @Override
+        protected void hookOnNext(CommandeStatusChangeDTO change) {
+            received.add(change);
+        }
+    };
+
+    @BeforeEach
+    public void init() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCommandeStream().setListenNotify(false);
+        applicationProperties.getCommandeStream().setBufferSize(BUFFER_SIZE);
+        commandeStatusStreamService =
+            new CommandeStatusStreamService(commandeRepository, notificationChannel, objectMapper, applicationProperties);
+        restaurant = em.insert(RestaurantResourceIT.createEntity(em)).block();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        subscriber.dispose();
+        CommandeResourceIT.deleteEntities(em);
+        RestaurantResourceIT.deleteEntities(em);
+    }
+
+    private Long insertCommande() {
+        Panier panier = em.insert(PanierResourceIT.createEntity(em).restaurant(restaurant)).block();
+        return commandeRepository.save(CommandeResourceIT.createEntity(em).status(CommandeStatus.EN_COURS).panier(panier)).block().getId();
+    }
+
+    private static CommandeStatusChangeDTO change(Long commandeId) {
+        return new CommandeStatusChangeDTO(commandeId, CommandeStatus.EN_COURS, CommandeStatus.PRETE);
+    }
+
+    private List<Long> receivedCommandeIds() {
+        return received.stream().map(CommandeStatusChangeDTO::getCommandeId).collect(Collectors.toList());
+    }
+
+    @Test
+    void assertThatTheChangesAreOnlySentWhenTheirTransactionCommits() {
+        Long rolledBack = insertCommande();
+        Long committed = insertCommande();
+        commandeStatusStreamService.stream(restaurant.getId()).subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(transactionManager);
+
+        transactionalOperator
+            .execute(transaction -> {
+                transaction.setRollbackOnly();
+                return commandeStatusStreamService.publish(List.of(change(rolledBack)));
+            })
+            .blockLast(Duration.ofSeconds(10));
+        transactionalOperator.transactional(commandeStatusStreamService.publish(List.of(change(committed)))).block(Duration.ofSeconds(10));
+
+        assertThat(receivedCommandeIds()).containsExactly(committed);
+        assertThat(received.get(0).getRestaurantId()).isEqualTo(restaurant.getId());
+    }
+
+    @Test
+    void assertThatTheOldestChangesAreDroppedForASlowSubscriber() {
+        List<Long> commandeIds = List.of(insertCommande(), insertCommande(), insertCommande(), insertCommande());
+        commandeStatusStreamService.stream(restaurant.getId()).subscribe(subscriber);
+
+        for (Long commandeId : commandeIds) {
+            commandeStatusStreamService.publish(List.of(change(commandeId))).block(Duration.ofSeconds(10));
+        }
+        subscriber.request(Long.MAX_VALUE);
+
+        // only the latest changes are left in the buffer
+        assertThat(receivedCommandeIds()).hasSize(BUFFER_SIZE).containsExactly(commandeIds.get(2), commandeIds.get(3));
+    }
+}
@@ -0,0 +1,163 @@
+package jerem.coopcycle.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import jerem.coopcycle.IntegrationTest;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.config.Constants;
+import jerem.coopcycle.domain.IdempotencyKey;
+import jerem.coopcycle.domain.enumeration.PaymentType;
+import jerem.coopcycle.repository.IdempotencyKeyRepository;
+import jerem.coopcycle.service.dto.PaiementDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.ReactiveTransactionManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Integration tests for {@link IdempotencyService}.
+ */
+@IntegrationTest
+class IdempotencyServiceIT {
+
+    private static final String SCOPE = "paiement";
+    private static final String KEY = "3f2b7c1e-idempotency-key";
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ReactiveTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    private final AtomicLong runs = new AtomicLong();
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    public void init() {
+        idempotencyKeyRepository.deleteAll().block();
+        idempotencyService = newInstance();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        idempotencyKeyRepository.deleteAll().block();
+    }
+
+    /**
+     * Creates an instance of the service, with an empty cache.
+     */
+    private IdempotencyService newInstance() {
+        return new IdempotencyService(idempotencyKeyRepository, objectMapper, transactionManager, applicationProperties);
+    }
+
+    private static PaiementDTO request(float amount) {
+        PaiementDTO paiementDTO = new PaiementDTO();
+        paiementDTO.setAmount(amount);
+        paiementDTO.setPaymentType(PaymentType.CB);
+        return paiementDTO;
+    }
+
+    /**
+     * A creation which takes some time, and answers the request with the number of its runs as id.
+     */
+    private Supplier<Mono<PaiementDTO>> create(PaiementDTO request) {
+        return () ->
+            Mono
+                .delay(Duration.ofMillis(200))
+                .map(tick -> {
+                    PaiementDTO response = request(request.getAmount());
+                    response.setId(runs.incrementAndGet());
+                    return response;
+                });
+    }
+
+    @Test
+    void assertThatConcurrentDuplicatesRunTheCreationOnce() {
+        PaiementDTO request = request(10F);
+
+        List<PaiementDTO> responses = Flux
+            .range(0, 5)
+            .flatMap(i -> idempotencyService.execute(SCOPE, KEY, request(10F), PaiementDTO.class, create(request)))
+            .collectList()
+            .block();
+
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(responses).hasSize(5).allSatisfy(response -> assertThat(response.getId()).isEqualTo(1L));
+        IdempotencyKey idempotencyKey = idempotencyKeyRepository.findOneByScopeAndLoginAndKey(SCOPE, Constants.SYSTEM, KEY).block();
+        assertThat(idempotencyKey.getResponse()).isNotNull();
+    }
+
+    @Test
+    void assertThatRetriesReplayTheStoredResponse() {
+        PaiementDTO request = request(10F);
+        PaiementDTO first = idempotencyService.execute(SCOPE, KEY, request, PaiementDTO.class, create(request)).block();
+
+        // another instance, without the response in memory
+        PaiementDTO replayed = newInstance().execute(SCOPE, KEY, request(10F), PaiementDTO.class, create(request)).block();
+
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(replayed.getId()).isEqualTo(first.getId());
+        assertThat(replayed.getAmount()).isEqualTo(first.getAmount());
+    }
+
+    @Test
+    void assertThatAKeyCannotBeReusedForAnotherRequest() {
+        PaiementDTO request = request(10F);
+        idempotencyService.execute(SCOPE, KEY, request, PaiementDTO.class, create(request)).block();
+
+        PaiementDTO other = request(20F);
+        assertThatThrownBy(() -> idempotencyService.execute(SCOPE, KEY, other, PaiementDTO.class, create(other)).block())
+            .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void assertThatAFailedCreationReleasesItsKey() {
+        PaiementDTO request = request(10F);
+        Mono<PaiementDTO> failure = idempotencyService.execute(
+            SCOPE,
+            KEY,
+            request,
+            PaiementDTO.class,
+            () -> Mono.error(new IllegalStateException("failure"))
+        );
+        assertThatThrownBy(failure::block).isInstanceOf(IllegalStateException.class);
+        assertThat(idempotencyKeyRepository.count().block()).isZero();
+
+        PaiementDTO retried = idempotencyService.execute(SCOPE, KEY, request, PaiementDTO.class, create(request)).block();
+        assertThat(retried.getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void assertThatAnExpiredKeyIsTakenOver() {
+        PaiementDTO request = request(10F);
+        idempotencyService.execute(SCOPE, KEY, request, PaiementDTO.class, create(request)).block();
+        // the key of a request whose instance stopped before its response
+        IdempotencyKey idempotencyKey = idempotencyKeyRepository.findOneByScopeAndLoginAndKey(SCOPE, Constants.SYSTEM, KEY).block();
+        idempotencyKey.response(null).createdDate(Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS));
+        idempotencyKeyRepository.save(idempotencyKey).block();
+
+        PaiementDTO response = newInstance().execute(SCOPE, KEY, request, PaiementDTO.class, create(request)).block();
+
+        assertThat(response.getId()).isEqualTo(2L);
+        assertThat(idempotencyKeyRepository.findOneByScopeAndLoginAndKey(SCOPE, Constants.SYSTEM, KEY).block().getResponse()).isNotNull();
+    }
+}
@@ -2,16 +2,23 @@ package jerem.coopcycle.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import jerem.coopcycle.IntegrationTest;
 import jerem.coopcycle.config.Constants;
+import jerem.coopcycle.domain.Authority;
 import jerem.coopcycle.domain.User;
+import jerem.coopcycle.management.QueryMetrics;
 import jerem.coopcycle.repository.UserRepository;
+import jerem.coopcycle.security.AuthoritiesConstants;
 import jerem.coopcycle.service.dto.AdminUserDTO;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -44,6 +51,9 @@ class UserServiceIT {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private User user;
 
     @BeforeEach
@@ -167,4 +177,84 @@ class UserServiceIT {
         Optional<User> maybeDbUser = userRepository.findById(dbUser.getId()).blockOptional();
         assertThat(maybeDbUser).contains(dbUser);
     }
+
+    @Test
+    void assertThatUpdateUserReplacesAuthorities() {
+        User dbUser = userRepository.save(user).block();
+        userRepository.saveUserAuthorities(dbUser.getId(), Set.of(AuthoritiesConstants.USER)).block();
+
+        AdminUserDTO userDTO = new AdminUserDTO(dbUser);
+        userDTO.setAuthorities(Set.of(AuthoritiesConstants.ADMIN));
+        userService.updateUser(userDTO).block();
+        assertThat(getAuthorityNames(DEFAULT_LOGIN)).containsExactly(AuthoritiesConstants.ADMIN);
+
+        userDTO.setAuthorities(Set.of(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER));
+        userService.updateUser(userDTO).block();
+        assertThat(getAuthorityNames(DEFAULT_LOGIN)).containsExactlyInAnyOrder(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+
+        userDTO.setAuthorities(Set.of());
+        userService.updateUser(userDTO).block();
+        assertThat(getAuthorityNames(DEFAULT_LOGIN)).isEmpty();
+    }
+
+    @Test
+    void assertThatSaveUserKeepsStoredAuthorities() {
+        User dbUser = userRepository.save(user).block();
+        userRepository.saveUserAuthorities(dbUser.getId(), Set.of(AuthoritiesConstants.USER)).block();
+
+        userService.saveUser(userRepository.findOneByLogin(DEFAULT_LOGIN).block()).block();
+        assertThat(getAuthorityNames(DEFAULT_LOGIN)).containsExactly(AuthoritiesConstants.USER);
+
+        User userWithAuthorities = userRepository.findOneWithAuthoritiesByLogin(DEFAULT_LOGIN).block();
+        Authority admin = new Authority();
+        admin.setName(AuthoritiesConstants.ADMIN);
+        userWithAuthorities.getAuthorities().add(admin);
+        userService.saveUser(userWithAuthorities).block();
+        assertThat(getAuthorityNames(DEFAULT_LOGIN)).containsExactlyInAnyOrder(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+    }
+
+    @Test
+    void assertThatAPageOfUsersRunsTheSameStatementsWhateverItsSize() {
+        for (int i = 0; i < 50; i++) {
+            User pagedUser = new User();
+            pagedUser.setLogin(String.format("user%02d", i));
+            pagedUser.setPassword(RandomStringUtils.randomAlphanumeric(60));
+            pagedUser.setActivated(true);
+            pagedUser.setEmail(pagedUser.getLogin() + "@localhost");
+            pagedUser.setLangKey(DEFAULT_LANGKEY);
+            pagedUser.setCreatedBy(Constants.SYSTEM);
+            User dbUser = userRepository.save(pagedUser).block();
+            userRepository.saveUserAuthorities(dbUser.getId(), Set.of(AuthoritiesConstants.USER)).block();
+        }
+
+        // the page, then the authorities of its users
+        assertThat(statementsToGetUsers(PageRequest.of(0, 5))).isEqualTo(2);
+        assertThat(statementsToGetUsers(PageRequest.of(1, 20))).isEqualTo(2);
+        assertThat(statementsToGetUsers(PageRequest.of(0, 50))).isEqualTo(2);
+    }
+
+    private long statementsToGetUsers(PageRequest pageable) {
+        long before = findAllWithAuthoritiesStatements();
+        List<AdminUserDTO> users = userService.getAllManagedUsers(pageable).collectList().block();
+        assertThat(users).hasSize(pageable.getPageSize());
+        assertThat(users).allSatisfy(pagedUser -> assertThat(pagedUser.getAuthorities()).containsExactly(AuthoritiesConstants.USER));
+        return findAllWithAuthoritiesStatements() - before;
+    }
+
+    private long findAllWithAuthoritiesStatements() {
+        return meterRegistry
+            .find(QueryMetrics.QUERY_METER_NAME)
+            .timers()
+            .stream()
+            .filter(timer -> String.valueOf(timer.getId().getTag(QueryMetrics.QUERY_DIMENSION)).endsWith(".findAllWithAuthorities"))
+            .mapToLong(Timer::count)
+            .sum();
+    }
+
+        private Set<String> getAuthorityNames(String login) {
+        return userRepository
+            .findOneWithAuthoritiesByLogin(login)
+            .map(dbUser -> dbUser.getAuthorities().stream().map(Authority::getName).collect(Collectors.toSet()))
+            .block();
+    }
 }
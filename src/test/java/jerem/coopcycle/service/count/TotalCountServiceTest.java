@@ -0,0 +1,78 @@
+package jerem.coopcycle.service.count;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Panier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class TotalCountServiceTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private AtomicLong exactCounts;
+
+    private Supplier<Mono<Long>> exactCount;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        exactCounts = new AtomicLong();
+        exactCount = () -> Mono.fromCallable(exactCounts::incrementAndGet);
+    }
+
+    @Test
+    void testExactCountByDefault() {
+        TotalCountService totalCountService = createTotalCountService();
+
+        assertThat(totalCountService.count(Commande.class, exactCount).block()).isEqualTo(1L);
+        assertThat(totalCountService.count(Commande.class, exactCount).block()).isEqualTo(2L);
+    }
+
+    @Test
+    void testCachedCountIsReusedUntilInvalidated() {
+        applicationProperties.getPagination().getTotalCount().getEntities().put("commande", TotalCountMode.CACHED);
+        TotalCountService totalCountService = createTotalCountService();
+
+        assertThat(totalCountService.count(Commande.class, exactCount).block()).isEqualTo(1L);
+        assertThat(totalCountService.count(Commande.class, exactCount).block()).isEqualTo(1L);
+
+        totalCountService.invalidate(Commande.class);
+        assertThat(totalCountService.count(Commande.class, exactCount).block()).isEqualTo(2L);
+
+        // entities without an override use the default mode
+        assertThat(totalCountService.count(Panier.class, exactCount).block()).isEqualTo(3L);
+        assertThat(totalCountService.count(Panier.class, exactCount).block()).isEqualTo(4L);
+    }
+
+    @Test
+    void testCachedCountIsInvalidatedAtOnceWithoutTransaction() {
+        applicationProperties.getPagination().getTotalCount().getEntities().put("commande", TotalCountMode.CACHED);
+        TotalCountService totalCountService = createTotalCountService();
+
+        assertThat(totalCountService.count(Commande.class, exactCount).block()).isEqualTo(1L);
+        totalCountService.invalidateAfterCommit(Commande.class).block();
+        assertThat(totalCountService.count(Commande.class, exactCount).block()).isEqualTo(2L);
+    }
+
+    @Test
+    void testMissingStrategyFallsBackToExactCount() {
+        applicationProperties.getPagination().getTotalCount().setDefaultMode(TotalCountMode.ESTIMATED);
+        TotalCountService totalCountService = createTotalCountService();
+
+        assertThat(totalCountService.count(Commande.class, exactCount).block()).isEqualTo(1L);
+    }
+
+    private TotalCountService createTotalCountService() {
+        return new TotalCountService(
+            applicationProperties,
+            List.of(new ExactTotalCountStrategy(), new CachedTotalCountStrategy(applicationProperties))
+        );
+    }
+}
@@ -0,0 +1,89 @@
+package jerem.coopcycle.service.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class DispatchMatcherTest {
+
+    private static final Instant NOON = Instant.parse("2026-10-18T12:00:00Z");
+
+    private static PendingCommande commande(long id, Long restaurantId, int minutes) {
+        return new PendingCommande(id, restaurantId, NOON.plus(Duration.ofMinutes(minutes)));
+    }
+
+    private static AvailableLivreur livreur(long id, Long restaurantId, int minutes) {
+        return new AvailableLivreur(id, restaurantId, NOON.plus(Duration.ofMinutes(minutes)));
+    }
+
+    private static List<Long> pairs(List<DispatchAssignment> assignments) {
+        List<Long> pairs = new ArrayList<>();
+        for (DispatchAssignment assignment : assignments) {
+            pairs.add(assignment.getCommande().getId());
+            pairs.add(assignment.getLivreur().getId());
+        }
+        return pairs;
+    }
+
+    @Test
+    void testOldestCommandesGetTheLongestWaitingLivreurs() {
+        DispatchMatcher matcher = new DispatchMatcher(false);
+
+        List<DispatchAssignment> assignments = matcher.match(
+            List.of(commande(1L, 1L, 5), commande(2L, 1L, 0), commande(3L, 2L, 10)),
+            List.of(livreur(10L, 2L, 3), livreur(11L, null, 1))
+        );
+
+        // the youngest commande waits for the next cycle, and the restaurants are ignored
+        assertThat(pairs(assignments)).containsExactly(2L, 11L, 1L, 10L);
+    }
+
+    @Test
+    void testLivreursWaitingAtTheRestaurantAreOfferedFirst() {
+        DispatchMatcher matcher = new DispatchMatcher(true);
+
+        List<DispatchAssignment> assignments = matcher.match(
+            List.of(commande(1L, 1L, 0), commande(2L, 2L, 1), commande(3L, 3L, 2), commande(4L, null, 3)),
+            List.of(livreur(10L, null, 0), livreur(11L, 2L, 1), livreur(12L, 1L, 2), livreur(13L, 2L, 3))
+        );
+
+        assertThat(pairs(assignments)).containsExactly(1L, 12L, 2L, 11L, 3L, 10L, 4L, 13L);
+    }
+
+    @Test
+    void testNothingIsMatchedWithoutLivreur() {
+        DispatchMatcher matcher = new DispatchMatcher(true);
+
+        assertThat(matcher.match(List.of(commande(1L, 1L, 0)), List.of())).isEmpty();
+        assertThat(matcher.match(List.of(), List.of(livreur(10L, 1L, 0)))).isEmpty();
+    }
+
+    @Test
+    void testLunchPeakAssignsEachLivreurOnce() {
+        Random random = new Random(42);
+        List<PendingCommande> commandes = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            commandes.add(commande(id, (long) random.nextInt(300), random.nextInt(60)));
+        }
+        List<AvailableLivreur> livreurs = new ArrayList<>();
+        for (long id = 1; id <= 2_000; id++) {
+            livreurs.add(livreur(id, random.nextBoolean() ? (long) random.nextInt(300) : null, random.nextInt(60)));
+        }
+        DispatchMatcher matcher = new DispatchMatcher(true);
+
+        List<DispatchAssignment> assignments = matcher.match(commandes, livreurs);
+
+        assertThat(assignments).hasSize(livreurs.size());
+        Set<Long> livreurIds = assignments.stream().map(assignment -> assignment.getLivreur().getId()).collect(Collectors.toSet());
+        assertThat(livreurIds).hasSize(livreurs.size());
+        Set<Long> commandeIds = assignments.stream().map(assignment -> assignment.getCommande().getId()).collect(Collectors.toSet());
+        assertThat(commandeIds).hasSize(livreurs.size());
+    }
+}
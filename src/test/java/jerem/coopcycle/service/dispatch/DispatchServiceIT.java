@@ -0,0 +1,240 @@
+package jerem.coopcycle.service.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import jerem.coopcycle.IntegrationTest;
+import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Panier;
+import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.domain.Societaire;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.SocietaireType;
+import jerem.coopcycle.repository.CommandeRepository;
+import jerem.coopcycle.repository.EntityManager;
+import jerem.coopcycle.repository.SocietaireRepository;
+import jerem.coopcycle.service.CommandeService;
+import jerem.coopcycle.service.dto.LivreurAvailabilityDTO;
+import jerem.coopcycle.web.rest.CommandeResourceIT;
+import jerem.coopcycle.web.rest.PanierResourceIT;
+import jerem.coopcycle.web.rest.RestaurantResourceIT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Integration tests for {@link DispatchService}, with a simulated lunch peak.
+ */
+@IntegrationTest
+class DispatchServiceIT {
+
+    private static final int RESTAURANTS = 4;
+
+    private static final int LIVREURS = 12;
+
+    private static final int COMMANDES = 60;
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private DispatchService dispatchService;
+
+    @Autowired
+    private CommandeService commandeService;
+
+    @Autowired
+    private CommandeRepository commandeRepository;
+
+    @Autowired
+    private SocietaireRepository societaireRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    private final Random random = new Random(20261018L);
+
+    private final List<Restaurant> restaurants = new ArrayList<>();
+
+    private final List<Long> livreurIds = new ArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        for (int i = 0; i < RESTAURANTS; i++) {
+            restaurants.add(em.insert(RestaurantResourceIT.createEntity(em)).block());
+        }
+        for (int i = 0; i < LIVREURS; i++) {
+            livreurIds.add(insertSocietaire(SocietaireType.LIVREUR));
+        }
+        dispatchService.reload().block(TIMEOUT);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        for (Long livreurId : livreurIds) {
+            dispatchService.updateAvailability(livreurId, new LivreurAvailabilityDTO(false, null)).block(TIMEOUT);
+        }
+        CommandeResourceIT.deleteEntities(em);
+        PanierResourceIT.deleteEntities(em);
+        RestaurantResourceIT.deleteEntities(em);
+        em.deleteAll(Societaire.class).block();
+        dispatchService.reload().block(TIMEOUT);
+    }
+
+    private Long insertSocietaire(SocietaireType type) {
+        return societaireRepository.save(new Societaire().firstName("Prénom").lastName("Nom").type(type)).block().getId();
+    }
+
+    private Long insertCommande(Restaurant restaurant, Instant dateTime) {
+        Panier panier = em.insert(PanierResourceIT.createEntity(em).restaurant(restaurant)).block();
+        return commandeRepository.save(new Commande().dateTime(dateTime).status(CommandeStatus.EN_COURS).panier(panier)).block().getId();
+    }
+
+    private Restaurant anyRestaurant() {
+        return restaurants.get(random.nextInt(restaurants.size()));
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("waiting for the dispatch engine").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void assertThatALunchPeakIsDispatched() throws InterruptedException {
+        Instant noon = Instant.parse("2026-10-18T12:00:00Z");
+        List<Long> waiting = new ArrayList<>();
+        for (int i = 0; i < COMMANDES; i++) {
+            waiting.add(insertCommande(anyRestaurant(), noon.plusSeconds(random.nextInt(3600))));
+        }
+        for (Long livreurId : livreurIds) {
+            Long restaurantId = random.nextBoolean() ? anyRestaurant().getId() : null;
+            dispatchService.updateAvailability(livreurId, new LivreurAvailabilityDTO(true, restaurantId)).block(TIMEOUT);
+        }
+
+        Map<Long, Long> livreurByCommande = new HashMap<>();
+        long assigned = 0;
+        for (int cycle = 0; cycle < 100 && livreurByCommande.size() < COMMANDES; cycle++) {
+            // a wave of commandes is ready
+            Collections.shuffle(waiting, random);
+            List<Long> ready = new ArrayList<>(waiting.subList(0, Math.min(waiting.size(), 1 + random.nextInt(10))));
+            waiting.removeAll(ready);
+            if (!ready.isEmpty()) {
+                commandeService.updateStatus(ready, CommandeStatus.EN_COURS, CommandeStatus.PRETE).collectList().block(TIMEOUT);
+                waitUntil(() -> dispatchService.getPendingCommandeIds().containsAll(ready));
+            }
+
+            assigned += dispatchService.dispatch().block(TIMEOUT);
+
+            List<Commande> commandes = commandeRepository.findAll().collectList().block(TIMEOUT);
+            for (Commande commande : commandes) {
+                if (commande.getLivreurId() != null) {
+                    // a commande keeps its first livreur
+                    assertThat(livreurByCommande.putIfAbsent(commande.getId(), commande.getLivreurId()))
+                        .isIn(null, commande.getLivreurId());
+                }
+            }
+            Map<Long, Long> undeliveredByLivreur = commandes
+                .stream()
+                .filter(commande -> commande.getLivreurId() != null && commande.getStatus() != CommandeStatus.LIVREE)
+                .collect(Collectors.groupingBy(Commande::getLivreurId, Collectors.counting()));
+            assertThat(undeliveredByLivreur.values()).allMatch(count -> count == 1L);
+
+            // some livreurs deliver their commande, and are available again
+            for (Commande commande : commandes) {
+                if (commande.getLivreurId() != null && commande.getStatus() == CommandeStatus.PRETE && random.nextBoolean()) {
+                    commandeService.updateStatus(commande.getId(), CommandeStatus.PRETE, CommandeStatus.LIVREE).block(TIMEOUT);
+                    waitUntil(() -> dispatchService.getAvailableLivreurIds().contains(commande.getLivreurId()));
+                }
+            }
+        }
+
+        assertThat(livreurByCommande).hasSize(COMMANDES);
+        assertThat(assigned).isEqualTo(COMMANDES);
+        assertThat(livreurByCommande.values()).allMatch(livreurIds::contains);
+        assertThat(dispatchService.getPendingCommandeIds()).isEmpty();
+    }
+
+    @Test
+    void assertThatAConflictingAssignmentGivesTheLivreurBack() throws InterruptedException {
+        Long commandeId = insertCommande(anyRestaurant(), Instant.now());
+        commandeService.updateStatus(commandeId, CommandeStatus.EN_COURS, CommandeStatus.PRETE).block(TIMEOUT);
+        waitUntil(() -> dispatchService.getPendingCommandeIds().contains(commandeId));
+        // another instance assigns the commande first
+        assertThat(commandeRepository.assignLivreur(commandeId, livreurIds.get(0)).block(TIMEOUT)).isEqualTo(1);
+        dispatchService.updateAvailability(livreurIds.get(1), new LivreurAvailabilityDTO(true, null)).block(TIMEOUT);
+
+        assertThat(dispatchService.dispatch().block(TIMEOUT)).isZero();
+
+        assertThat(commandeRepository.findById(commandeId).block(TIMEOUT).getLivreurId()).isEqualTo(livreurIds.get(0));
+        assertThat(dispatchService.getAvailableLivreurIds()).containsExactly(livreurIds.get(1));
+        assertThat(dispatchService.getPendingCommandeIds()).isEmpty();
+    }
+
+    @Test
+    void assertThatADeletedCommandeGivesItsLivreurBack() throws InterruptedException {
+        Long commandeId = insertCommande(anyRestaurant(), Instant.now());
+        commandeService.updateStatus(commandeId, CommandeStatus.EN_COURS, CommandeStatus.PRETE).block(TIMEOUT);
+        waitUntil(() -> dispatchService.getPendingCommandeIds().contains(commandeId));
+        dispatchService.updateAvailability(livreurIds.get(0), new LivreurAvailabilityDTO(true, null)).block(TIMEOUT);
+        assertThat(dispatchService.dispatch().block(TIMEOUT)).isEqualTo(1);
+        assertThat(dispatchService.getAvailableLivreurIds()).isEmpty();
+
+        commandeService.delete(commandeId).block(TIMEOUT);
+
+        waitUntil(() -> dispatchService.getAvailableLivreurIds().contains(livreurIds.get(0)));
+    }
+
+    @Test
+    void assertThatAnAssignedLivreurStaysUnavailableUntilItsCommandeIsDelivered() throws InterruptedException {
+        Long commandeId = insertCommande(anyRestaurant(), Instant.now());
+        commandeService.updateStatus(commandeId, CommandeStatus.EN_COURS, CommandeStatus.PRETE).block(TIMEOUT);
+        waitUntil(() -> dispatchService.getPendingCommandeIds().contains(commandeId));
+        dispatchService.updateAvailability(livreurIds.get(0), new LivreurAvailabilityDTO(true, null)).block(TIMEOUT);
+        assertThat(dispatchService.dispatch().block(TIMEOUT)).isEqualTo(1);
+
+        dispatchService.updateAvailability(livreurIds.get(0), new LivreurAvailabilityDTO(true, null)).block(TIMEOUT);
+        assertThat(dispatchService.getAvailableLivreurIds()).isEmpty();
+
+        commandeService.updateStatus(commandeId, CommandeStatus.PRETE, CommandeStatus.LIVREE).block(TIMEOUT);
+        waitUntil(() -> dispatchService.getAvailableLivreurIds().contains(livreurIds.get(0)));
+    }
+
+        @Test
+    void assertThatAMissedChangeGivesTheLivreurBackAtTheReload() throws InterruptedException {
+        Long commandeId = insertCommande(anyRestaurant(), Instant.now());
+        commandeService.updateStatus(commandeId, CommandeStatus.EN_COURS, CommandeStatus.PRETE).block(TIMEOUT);
+        waitUntil(() -> dispatchService.getPendingCommandeIds().contains(commandeId));
+        dispatchService.updateAvailability(livreurIds.get(0), new LivreurAvailabilityDTO(true, null)).block(TIMEOUT);
+        assertThat(dispatchService.dispatch().block(TIMEOUT)).isEqualTo(1);
+        // the commande is delivered without going through the stream
+        commandeRepository.updateStatus(commandeId, CommandeStatus.PRETE, CommandeStatus.LIVREE).block(TIMEOUT);
+        assertThat(dispatchService.getAvailableLivreurIds()).isEmpty();
+
+        dispatchService.reload().block(TIMEOUT);
+
+        assertThat(dispatchService.getAvailableLivreurIds()).containsExactly(livreurIds.get(0));
+    }
+
+    @Test
+    void assertThatOnlyTheLivreursAreAvailable() {
+        Long clientId = insertSocietaire(SocietaireType.CLIENT);
+
+        assertThatThrownBy(() -> dispatchService.updateAvailability(clientId, new LivreurAvailabilityDTO(true, null)).block(TIMEOUT))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(dispatchService.updateAvailability(Long.MAX_VALUE, new LivreurAvailabilityDTO(true, null)).block(TIMEOUT)).isNull();
+        assertThat(dispatchService.getAvailableLivreurIds()).isEmpty();
+    }
+}
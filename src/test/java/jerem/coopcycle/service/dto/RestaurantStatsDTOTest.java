@@ -0,0 +1,24 @@
+package jerem.coopcycle.service.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jerem.coopcycle.web.rest.TestUtil;
+import org.junit.jupiter.api.Test;
+
+class RestaurantStatsDTOTest {
+
+    @Test
+    void dtoEqualsVerifier() throws Exception {
+        TestUtil.equalsVerifier(RestaurantStatsDTO.class);
+        RestaurantStatsDTO restaurantStatsDTO1 = new RestaurantStatsDTO();
+        restaurantStatsDTO1.setId(1L);
+        RestaurantStatsDTO restaurantStatsDTO2 = new RestaurantStatsDTO();
+        assertThat(restaurantStatsDTO1).isNotEqualTo(restaurantStatsDTO2);
+        restaurantStatsDTO2.setId(restaurantStatsDTO1.getId());
+        assertThat(restaurantStatsDTO1).isEqualTo(restaurantStatsDTO2);
+        restaurantStatsDTO2.setId(2L);
+        assertThat(restaurantStatsDTO1).isNotEqualTo(restaurantStatsDTO2);
+        restaurantStatsDTO1.setId(null);
+        assertThat(restaurantStatsDTO1).isNotEqualTo(restaurantStatsDTO2);
+    }
+}
@@ -0,0 +1,42 @@
+package jerem.coopcycle.service.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jerem.coopcycle.config.ApplicationProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+class GazetteerGeocoderTest {
+
+    private static GazetteerGeocoder geocoder(String gazetteer) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getGeolocation().setGazetteer(gazetteer);
+        return new GazetteerGeocoder(applicationProperties, new DefaultResourceLoader());
+    }
+
+    @Test
+    void testTheMostPreciseContainedPlaceIsFound() {
+        GazetteerGeocoder geocoder = geocoder("classpath:config/gazetteer.csv");
+
+        assertThat(geocoder.geocode("Grenoble").block()).isEqualTo(new GeoPoint(45.1885, 5.7245));
+        assertThat(geocoder.geocode("3 place Grenette, Grenoble").block()).isEqualTo(new GeoPoint(45.1905, 5.7275));
+        // the case, the accents and the punctuation are ignored
+        assertThat(geocoder.geocode("12 RUE FELIX-POULAT - GRENOBLE").block()).isEqualTo(new GeoPoint(45.1893, 5.7240));
+        assertThat(geocoder.geocode("1 rue Inconnue, 38000 Grenoble").block()).isEqualTo(new GeoPoint(45.1885, 5.7245));
+        // the places are matched on whole words
+        assertThat(geocoder.geocode("Grenobleville").block()).isNull();
+        assertThat(geocoder.geocode("Nowhere street").block()).isNull();
+        assertThat(geocoder.geocode(null).block()).isNull();
+    }
+
+    @Test
+    void testNothingIsGeocodedWithoutGazetteer() {
+        assertThat(geocoder(null).geocode("Grenoble").block()).isNull();
+        assertThat(geocoder("").geocode("Grenoble").block()).isNull();
+    }
+
+    @Test
+    void testAddressesAreNormalized() {
+        assertThat(GazetteerGeocoder.normalize("  Rue Félix-Poulat,  GRENOBLE ")).isEqualTo("rue felix poulat grenoble");
+    }
+}
@@ -0,0 +1,147 @@
+package jerem.coopcycle.service.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class GeoGridTest {
+
+    private static final GeoPoint GRENOBLE = new GeoPoint(45.1885, 5.7245);
+
+    private static List<Long> ids(List<GeoGrid.Neighbour<String>> neighbours) {
+        return neighbours.stream().map(GeoGrid.Neighbour::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testNearestValuesWithinTheRadiusComeFirst() {
+        GeoGrid<String> grid = new GeoGrid<>(0.01);
+        grid.put(1L, new GeoPoint(45.1905, 5.7275), "Place Grenette");
+        grid.put(2L, new GeoPoint(45.1880, 5.7120), "Cours Berriat");
+        grid.put(3L, new GeoPoint(45.1889, 5.7248), "Place Victor Hugo");
+        grid.put(4L, new GeoPoint(45.7640, 4.8357), "Lyon");
+
+        List<GeoGrid.Neighbour<String>> nearest = grid.nearest(GRENOBLE, 2_000, 10);
+
+        assertThat(ids(nearest)).containsExactly(3L, 1L, 2L);
+        assertThat(nearest.get(0).getValue()).isEqualTo("Place Victor Hugo");
+        assertThat(nearest.get(2).getDistance()).isBetween(900.0, 1_100.0);
+        assertThat(ids(grid.nearest(GRENOBLE, 2_000, 2))).containsExactly(3L, 1L);
+        assertThat(ids(grid.nearest(GRENOBLE, 200_000, 10))).containsExactly(3L, 1L, 2L, 4L);
+        assertThat(grid.nearest(GRENOBLE, 10, 10)).isEmpty();
+    }
+
+    @Test
+    void testValuesCanBeMovedAndRemoved() {
+        GeoGrid<String> grid = new GeoGrid<>(0.01);
+        grid.put(1L, new GeoPoint(45.1905, 5.7275), "Place Grenette");
+        grid.put(2L, new GeoPoint(45.1880, 5.7120), "Cours Berriat");
+
+        grid.put(1L, new GeoPoint(45.7640, 4.8357), "Lyon");
+        assertThat(grid.size()).isEqualTo(2);
+        assertThat(ids(grid.nearest(GRENOBLE, 5_000, 10))).containsExactly(2L);
+
+        grid.remove(2L);
+        grid.remove(3L);
+        assertThat(grid.nearest(GRENOBLE, 5_000, 10)).isEmpty();
+
+        grid.replaceAll(List.of(new GeoGrid.Entry<>(5L, GRENOBLE, "Grenoble")));
+        assertThat(grid.size()).isEqualTo(1);
+        assertThat(ids(grid.nearest(GRENOBLE, 5_000, 10))).containsExactly(5L);
+    }
+
+    @Test
+    void testWritesDuringARefreshAreKeptOverItsSnapshot() {
+        GeoGrid<String> grid = new GeoGrid<>(0.01);
+        grid.put(1L, new GeoPoint(45.1905, 5.7275), "Place Grenette");
+
+        grid.beginRefresh();
+        // the snapshot was read before these writes
+        List<GeoGrid.Entry<String>> snapshot = List.of(
+            new GeoGrid.Entry<>(1L, new GeoPoint(45.1905, 5.7275), "Place Grenette"),
+            new GeoGrid.Entry<>(2L, new GeoPoint(45.1880, 5.7120), "Cours Berriat")
+        );
+        grid.put(3L, new GeoPoint(45.1889, 5.7248), "Place Victor Hugo");
+        grid.remove(2L);
+        grid.replaceAll(snapshot);
+
+        assertThat(ids(grid.nearest(GRENOBLE, 5_000, 10))).containsExactly(3L, 1L);
+
+        // the writes are no longer recorded once the refresh is done
+        grid.remove(3L);
+        grid.replaceAll(snapshot);
+        assertThat(ids(grid.nearest(GRENOBLE, 5_000, 10))).containsExactly(1L, 2L);
+    }
+
+        @Test
+    void testValuesAcrossTheAntimeridianAreFound() {
+        GeoGrid<String> grid = new GeoGrid<>(0.01);
+        for (long id = 0; id < 1_000; id++) {
+            // enough values elsewhere for the cells to be read rather than all the values
+            grid.put(id, new GeoPoint(0, id / 10.0), "elsewhere");
+        }
+        grid.put(1_000L, new GeoPoint(-17.7, -179.99), "east");
+        grid.put(1_001L, new GeoPoint(-17.7, 179.99), "west");
+
+        assertThat(ids(grid.nearest(new GeoPoint(-17.7, 179.995), 5_000, 10))).containsExactlyInAnyOrder(1_000L, 1_001L);
+    }
+
+    @Test
+    void testNearestValuesAreTheSameAsWithAFullScan() {
+        Random random = new Random(20261018L);
+        GeoGrid<String> grid = new GeoGrid<>(0.01);
+        List<GeoGrid.Entry<String>> entries = new ArrayList<>();
+        List<GeoPoint> points = new ArrayList<>();
+        for (long id = 0; id < 10_000; id++) {
+            GeoPoint point = new GeoPoint(45 + random.nextDouble(), 5 + random.nextDouble());
+            entries.add(new GeoGrid.Entry<>(id, point, "restaurant " + id));
+            points.add(point);
+        }
+        grid.replaceAll(entries);
+
+        for (int i = 0; i < 100; i++) {
+            GeoPoint center = new GeoPoint(45 + random.nextDouble(), 5 + random.nextDouble());
+            double radius = 100 + random.nextInt(5_000);
+            List<Long> expected = new ArrayList<>();
+            for (int id = 0; id < points.size(); id++) {
+                if (center.distanceTo(points.get(id)) <= radius) {
+                    expected.add((long) id);
+                }
+            }
+            expected.sort(Comparator.<Long>comparingDouble(id -> center.distanceTo(points.get(id.intValue()))).thenComparing(id -> id));
+
+            assertThat(ids(grid.nearest(center, radius, 20))).isEqualTo(expected.subList(0, Math.min(20, expected.size())));
+        }
+    }
+
+    @Test
+    void testNearestValuesAreFoundQuickly() {
+        Random random = new Random(20261018L);
+        GeoGrid<String> grid = new GeoGrid<>(0.01);
+        for (long id = 0; id < 100_000; id++) {
+            grid.put(id, new GeoPoint(45 + random.nextDouble(), 5 + random.nextDouble()), "restaurant " + id);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            grid.nearest(new GeoPoint(45 + random.nextDouble(), 5 + random.nextDouble()), 1_000, 10);
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // a generous bound, the searches taking a few microseconds each
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void testInvalidPointsAreRejected() {
+        assertThatThrownBy(() -> new GeoPoint(95, 5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GeoPoint(45, 185)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GeoGrid<>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,183 @@
+package jerem.coopcycle.service.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import jerem.coopcycle.IntegrationTest;
+import jerem.coopcycle.config.ApplicationProperties;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.repository.EntityManager;
+import jerem.coopcycle.repository.OutboxEventRepository;
+import jerem.coopcycle.service.CommandeService;
+import jerem.coopcycle.service.dto.CommandeDTO;
+import jerem.coopcycle.service.dto.OutboxEventDTO;
+import jerem.coopcycle.service.mapper.CommandeMapper;
+import jerem.coopcycle.service.mapper.OutboxEventMapper;
+import jerem.coopcycle.web.rest.CommandeResourceIT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.ReactiveTransactionManager;
+import reactor.core.publisher.Mono;
+
+/**
+ * Integration tests for {@link OutboxService} and {@link OutboxRelay}.
+ */
+@IntegrationTest
+class OutboxRelayIT {
+
+    @Autowired
+    private CommandeService commandeService;
+
+    @Autowired
+    private CommandeMapper commandeMapper;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OutboxEventMapper outboxEventMapper;
+
+    @Autowired
+    private ReactiveTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private EntityManager em;
+
+    private final List<OutboxEventDTO> received = new CopyOnWriteArrayList<>();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void init() {
+        outboxEventRepository.deleteAll().block();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        outboxEventRepository.deleteAll().block();
+        CommandeResourceIT.deleteEntities(em);
+    }
+
+    /**
+     * Creates a relay delivering the events to the given subscriber.
+     */
+    private OutboxRelay newRelay(OutboxEventSubscriber subscriber) {
+        return new OutboxRelay(
+            outboxEventRepository,
+            outboxEventMapper,
+            new StaticListableBeanFactory(Map.of("subscriber", subscriber)).getBeanProvider(OutboxEventSubscriber.class),
+            transactionManager,
+            meterRegistry,
+            applicationProperties
+        );
+    }
+
+    private OutboxEventSubscriber recorder() {
+        return event -> Mono.fromRunnable(() -> received.add(event));
+    }
+
+    private CommandeDTO createCommande() {
+        return commandeService.save(commandeMapper.toDto(CommandeResourceIT.createEntity(em))).block();
+    }
+
+    private static List<String> summarize(List<OutboxEventDTO> events) {
+        return events.stream().map(event -> event.getAggregateId() + " " + event.getEventType()).collect(Collectors.toList());
+    }
+
+    @Test
+    void assertThatTheChangesOfACommandeAreRelayedOnceInOrder() {
+        CommandeDTO commande = createCommande();
+        commandeService.updateStatus(commande.getId(), CommandeStatus.EN_COURS, CommandeStatus.PRETE).block();
+        commandeService.updateStatus(List.of(commande.getId()), CommandeStatus.PRETE, CommandeStatus.LIVREE).blockLast();
+        commandeService.delete(commande.getId()).block();
+        OutboxRelay relay = newRelay(recorder());
+
+        assertThat(relay.relay().block()).isEqualTo(4L);
+        assertThat(relay.relay().block()).isZero();
+
+        Long id = commande.getId();
+        assertThat(summarize(received)).containsExactly(id + " CREATED", id + " STATUS_CHANGED", id + " STATUS_CHANGED", id + " DELETED");
+        assertThat(received.get(0).getAggregateType()).isEqualTo("commande");
+        assertThat(received.get(0).getPayload()).contains("\"id\":" + id);
+        assertThat(received.get(2).getPayload()).contains("LIVREE");
+        assertThat(outboxEventRepository.countPending().block()).isZero();
+        assertThat(meterRegistry.get(OutboxRelay.EVENTS_METER_NAME).tag(OutboxRelay.OUTCOME_DIMENSION, "delivered").counter().count())
+            .isEqualTo(4);
+        assertThat(meterRegistry.get(OutboxRelay.PENDING_METER_NAME).gauge().value()).isZero();
+    }
+
+    @Test
+    void assertThatAFailedTransitionHasNoEvent() {
+        CommandeDTO commande = createCommande();
+        outboxEventRepository.deleteAll().block();
+
+        assertThatThrownBy(() -> commandeService.updateStatus(commande.getId(), CommandeStatus.PRETE, CommandeStatus.LIVREE).block())
+            .isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(outboxEventRepository.count().block()).isZero();
+    }
+
+    @Test
+    void assertThatAFailedEventIsDeliveredAgainBeforeTheLaterEventsOfItsCommande() {
+        CommandeDTO failing = createCommande();
+        CommandeDTO other = createCommande();
+        commandeService.updateStatus(failing.getId(), CommandeStatus.EN_COURS, CommandeStatus.PRETE).block();
+        AtomicInteger failures = new AtomicInteger();
+        OutboxEventSubscriber recorder = recorder();
+        OutboxRelay relay = newRelay(event -> {
+            if (event.getAggregateId().equals(failing.getId()) && failures.getAndIncrement() == 0) {
+                return Mono.error(new IllegalStateException("unavailable"));
+            }
+            return recorder.onEvent(event);
+        });
+
+        // the events of the other commande are not held back
+        assertThat(relay.relay().block()).isEqualTo(1L);
+        assertThat(summarize(received)).containsExactly(other.getId() + " CREATED");
+        assertThat(outboxEventRepository.countPending().block()).isEqualTo(2L);
+
+        assertThat(relay.relay().block()).isEqualTo(2L);
+        assertThat(summarize(received))
+            .containsExactly(other.getId() + " CREATED", failing.getId() + " CREATED", failing.getId() + " STATUS_CHANGED");
+        assertThat(received.get(1).getAttempts()).isEqualTo(1);
+        assertThat(meterRegistry.get(OutboxRelay.EVENTS_METER_NAME).tag(OutboxRelay.OUTCOME_DIMENSION, "retried").counter().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void assertThatAnEventIsDroppedAfterTheMaximumAttempts() {
+        createCommande();
+        outboxEventRepository
+            .findAll()
+            .flatMap(event -> outboxEventRepository.save(event.attempts(applicationProperties.getOutbox().getMaxAttempts() - 1)))
+            .blockLast();
+        OutboxRelay relay = newRelay(event -> Mono.error(new IllegalStateException("unavailable")));
+
+        assertThat(relay.relay().block()).isEqualTo(1L);
+
+        assertThat(outboxEventRepository.countPending().block()).isZero();
+        assertThat(
+            meterRegistry
+                .get(OutboxRelay.EVENTS_METER_NAME)
+                .tags(OutboxRelay.AGGREGATE_DIMENSION, "commande", OutboxRelay.OUTCOME_DIMENSION, "dropped")
+                .counter()
+                .count()
+        )
+            .isEqualTo(1);
+        assertThat(received).isEmpty();
+    }
+}
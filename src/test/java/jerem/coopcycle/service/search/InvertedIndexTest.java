@@ -0,0 +1,91 @@
+package jerem.coopcycle.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class InvertedIndexTest {
+
+    private static void put(InvertedIndex index, long id, String name, String menu) {
+        index.put(id, new InvertedIndex.Field(name, 1.0), new InvertedIndex.Field(menu, 0.4));
+    }
+
+    @Test
+    void testDocumentsWithAllTheWordsAreRankedByWeight() {
+        InvertedIndex index = new InvertedIndex();
+        put(index, 1L, "Chez Luigi", "Pizza margherita, pizza quatre fromages, tiramisu");
+        put(index, 2L, "Pizza Express", "Pizza reine");
+        put(index, 3L, "Le Bistrot", "Salade, quiche, tiramisu");
+        put(index, 4L, "Sushi Bar", null);
+
+        // the name weighs more than the menu, then the occurrences add up
+        assertThat(index.search("pizza")).containsExactly(2L, 1L);
+        assertThat(index.search("tiramisu")).containsExactly(1L, 3L);
+        assertThat(index.search("Pizza tiramisu")).containsExactly(1L);
+        assertThat(index.search("sushi")).containsExactly(4L);
+        assertThat(index.search("burger")).isEmpty();
+        assertThat(index.search("pizza burger")).isEmpty();
+    }
+
+    @Test
+    void testTheCaseTheAccentsAndThePunctuationAreIgnored() {
+        InvertedIndex index = new InvertedIndex();
+        put(index, 1L, "La Crêperie", "Crêpes, galettes au sarrasin");
+
+        assertThat(index.search("CREPERIE")).containsExactly(1L);
+        assertThat(index.search("crêpes, galettes!")).containsExactly(1L);
+        assertThatThrownBy(() -> index.search(" ,; ")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.search(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testDocumentsCanBeReplacedAndRemoved() {
+        InvertedIndex index = new InvertedIndex();
+        put(index, 1L, "Chez Luigi", "Pizza");
+        put(index, 2L, "Pizza Express", "Pizza");
+
+        put(index, 1L, "Chez Luigi", "Pâtes");
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.search("pizza")).containsExactly(2L);
+        assertThat(index.search("pates")).containsExactly(1L);
+
+        index.remove(2L);
+        index.remove(3L);
+        assertThat(index.search("pizza")).isEmpty();
+
+        index.replaceAll(Map.of(5L, new InvertedIndex.Field[] { new InvertedIndex.Field("Pizza Roma", 1.0) }));
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("pizza")).containsExactly(5L);
+        assertThat(index.search("pates")).isEmpty();
+    }
+
+    @Test
+    void testRareWordsAreFoundQuickly() {
+        Random random = new Random(20261018L);
+        String[] dishes = { "pizza", "burger", "salade", "sushi", "tacos", "couscous", "ramen", "curry" };
+        Map<Long, InvertedIndex.Field[]> documents = new HashMap<>();
+        for (long id = 0; id < 100_000; id++) {
+            String menu = dishes[random.nextInt(dishes.length)] + " " + dishes[random.nextInt(dishes.length)] + " plat" + id;
+            documents.put(
+                id,
+                new InvertedIndex.Field[] { new InvertedIndex.Field("Restaurant " + id, 1.0), new InvertedIndex.Field(menu, 0.4) }
+            );
+        }
+        InvertedIndex index = new InvertedIndex();
+        index.replaceAll(documents);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(index.search("pizza plat" + random.nextInt(100_000))).hasSizeLessThanOrEqualTo(1);
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // a generous bound, the searches only reading the documents of their rarest word
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(2));
+    }
+}
@@ -0,0 +1,217 @@
+package jerem.coopcycle.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import jerem.coopcycle.IntegrationTest;
+import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Paiement;
+import jerem.coopcycle.domain.Panier;
+import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.domain.enumeration.PaymentType;
+import jerem.coopcycle.domain.enumeration.StatsGranularity;
+import jerem.coopcycle.repository.EntityManager;
+import jerem.coopcycle.repository.PaiementRepository;
+import jerem.coopcycle.repository.PanierRepository;
+import jerem.coopcycle.repository.RestaurantRepository;
+import jerem.coopcycle.security.AuthoritiesConstants;
+import jerem.coopcycle.service.CommandeService;
+import jerem.coopcycle.service.RestaurantStatsService;
+import jerem.coopcycle.service.dto.CommandeDTO;
+import jerem.coopcycle.service.dto.RestaurantStatsDTO;
+import jerem.coopcycle.service.mapper.CommandeMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+/**
+ * Integration tests for the {@link AnalyticsResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureWebTestClient(timeout = IntegrationTest.DEFAULT_ENTITY_TIMEOUT)
+@WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+class AnalyticsResourceIT {
+
+    private static final Instant DATE_TIME = Instant.parse("2026-10-18T10:15:00Z");
+    private static final Instant FROM = DATE_TIME.truncatedTo(ChronoUnit.DAYS);
+    private static final Instant TO = FROM.plus(1, ChronoUnit.DAYS);
+
+    private static final String API_URL = "/api/analytics/restaurant-stats";
+
+    @Autowired
+    private CommandeService commandeService;
+
+    @Autowired
+    private RestaurantStatsService restaurantStatsService;
+
+    @Autowired
+    private CommandeMapper commandeMapper;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private PanierRepository panierRepository;
+
+    @Autowired
+    private PaiementRepository paiementRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private Restaurant restaurant;
+
+    @BeforeEach
+    public void initTest() {
+        deleteEntities();
+        restaurant = restaurantRepository.save(RestaurantResourceIT.createEntity(em)).block();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        deleteEntities();
+    }
+
+    private void deleteEntities() {
+        databaseClient.sql("DELETE FROM restaurant_stats").fetch().rowsUpdated().block();
+        CommandeResourceIT.deleteEntities(em);
+        PaiementResourceIT.deleteEntities(em);
+        RestaurantResourceIT.deleteEntities(em);
+    }
+
+    private CommandeDTO createCommande(CommandeStatus status, Instant dateTime, float amount, PaymentType paymentType) {
+        Panier panier = panierRepository.save(PanierResourceIT.createEntity(em).restaurant(restaurant)).block();
+        Paiement paiement = paiementRepository.save(new Paiement().amount(amount).paymentType(paymentType)).block();
+        Commande commande = new Commande().dateTime(dateTime).status(status);
+        commande.setPanier(panier);
+        commande.setPaiement(paiement);
+        return commandeService.save(commandeMapper.toDto(commande)).block();
+    }
+
+    private List<RestaurantStatsDTO> getStats(StatsGranularity granularity) {
+        return webTestClient
+            .get()
+            .uri(
+                API_URL + "?granularity={granularity}&from={from}&to={to}&restaurantId={restaurantId}",
+                granularity,
+                FROM,
+                TO,
+                restaurant.getId()
+            )
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBodyList(RestaurantStatsDTO.class)
+            .returnResult()
+            .getResponseBody();
+    }
+
+    private static List<String> summarize(List<RestaurantStatsDTO> stats) {
+        return stats
+            .stream()
+            .map(stat ->
+                stat.getGranularity() +
+                " " +
+                stat.getBucket() +
+                " " +
+                stat.getStatus() +
+                " " +
+                stat.getPaymentType() +
+                " " +
+                stat.getCommandeCount() +
+                " " +
+                stat.getRevenue()
+            )
+            .sorted(Comparator.naturalOrder())
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void getRestaurantStatsAfterTheWritesOfCommandes() {
+        createCommande(CommandeStatus.EN_COURS, DATE_TIME, 10F, PaymentType.CB);
+        createCommande(CommandeStatus.EN_COURS, DATE_TIME.plus(20, ChronoUnit.MINUTES), 5F, PaymentType.CB);
+        CommandeDTO other = createCommande(CommandeStatus.EN_COURS, DATE_TIME.plus(3, ChronoUnit.HOURS), 7F, PaymentType.PAYPAL);
+
+        List<RestaurantStatsDTO> hours = getStats(StatsGranularity.HOUR);
+        assertThat(summarize(hours))
+            .containsExactly(
+                "HOUR " + DATE_TIME.truncatedTo(ChronoUnit.HOURS) + " EN_COURS CB 2 15.0",
+                "HOUR " + DATE_TIME.plus(3, ChronoUnit.HOURS).truncatedTo(ChronoUnit.HOURS) + " EN_COURS PAYPAL 1 7.0"
+            );
+        assertThat(summarize(getStats(StatsGranularity.DAY)))
+            .containsExactly("DAY " + FROM + " EN_COURS CB 2 15.0", "DAY " + FROM + " EN_COURS PAYPAL 1 7.0");
+
+        commandeService.updateStatus(other.getId(), CommandeStatus.EN_COURS, CommandeStatus.PRETE).block();
+        assertThat(summarize(getStats(StatsGranularity.DAY)))
+            .containsExactly("DAY " + FROM + " EN_COURS CB 2 15.0", "DAY " + FROM + " PRETE PAYPAL 1 7.0");
+
+        commandeService.delete(other.getId()).block();
+        assertThat(summarize(getStats(StatsGranularity.DAY))).containsExactly("DAY " + FROM + " EN_COURS CB 2 15.0");
+    }
+
+    @Test
+    void assertThatTheReconciliationRebuildsTheSameStats() {
+        createCommande(CommandeStatus.EN_COURS, DATE_TIME, 10F, PaymentType.CB);
+        createCommande(CommandeStatus.LIVREE, DATE_TIME.plus(2, ChronoUnit.HOURS), 5F, PaymentType.VISA);
+
+        List<String> hours = summarize(getStats(StatsGranularity.HOUR));
+        List<String> days = summarize(getStats(StatsGranularity.DAY));
+        databaseClient.sql("DELETE FROM restaurant_stats").fetch().rowsUpdated().block();
+
+        assertThat(restaurantStatsService.rebuild().block()).isEqualTo(4);
+        assertThat(summarize(getStats(StatsGranularity.HOUR))).isEqualTo(hours);
+        assertThat(summarize(getStats(StatsGranularity.DAY))).isEqualTo(days);
+    }
+
+    @Test
+    void getRestaurantStatsWithAnEmptyRange() {
+        webTestClient
+            .get()
+            .uri(API_URL + "?from={from}&to={to}", TO, FROM)
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+    }
+
+    @Test
+    void getRestaurantStatsWithATooLargeRange() {
+        webTestClient
+            .get()
+            .uri(API_URL + "?granularity=HOUR&from={from}&to={to}", FROM, FROM.plus(AnalyticsResource.MAX_BUCKETS + 1, ChronoUnit.HOURS))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+    }
+
+    @Test
+    @WithMockUser
+    void getRestaurantStatsAsUser() {
+        webTestClient
+            .get()
+            .uri(API_URL + "?from={from}&to={to}", FROM, TO)
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isForbidden();
+    }
+}
@@ -392,7 +392,7 @@ class ClientResourceIT {
         // Create the Client
         ClientDTO clientDTO = clientMapper.toDto(client);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .put()
             .uri(ENTITY_API_URL_ID, clientDTO.getId())
@@ -400,7 +400,7 @@ class ClientResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(clientDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Client in the database
         List<Client> clientList = clientRepository.findAll().collectList().block();
@@ -532,7 +532,7 @@ class ClientResourceIT {
         // Create the Client
         ClientDTO clientDTO = clientMapper.toDto(client);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .patch()
             .uri(ENTITY_API_URL_ID, clientDTO.getId())
@@ -540,7 +540,7 @@ class ClientResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(clientDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Client in the database
         List<Client> clientList = clientRepository.findAll().collectList().block();
@@ -16,15 +16,23 @@ import jerem.coopcycle.domain.Panier;
 import jerem.coopcycle.domain.enumeration.CommandeStatus;
 import jerem.coopcycle.repository.CommandeRepository;
 import jerem.coopcycle.repository.EntityManager;
+import jerem.coopcycle.service.CommandeArchiveService;
+import jerem.coopcycle.service.dto.CommandeBulkStatusTransitionDTO;
 import jerem.coopcycle.service.dto.CommandeDTO;
+import jerem.coopcycle.service.dto.CommandeStatusTransitionDTO;
 import jerem.coopcycle.service.mapper.CommandeMapper;
+import jerem.coopcycle.web.rest.util.UncountedPaginationUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 /**
@@ -33,7 +41,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 @IntegrationTest
 @AutoConfigureWebTestClient(timeout = IntegrationTest.DEFAULT_ENTITY_TIMEOUT)
 @WithMockUser
-class CommandeResourceIT {
+public class CommandeResourceIT {
 
     private static final Instant DEFAULT_DATE_TIME = Instant.ofEpochMilli(0L);
     private static final Instant UPDATED_DATE_TIME = Instant.now().truncatedTo(ChronoUnit.MILLIS);
@@ -59,6 +67,12 @@ class CommandeResourceIT {
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private CommandeArchiveService commandeArchiveService;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
     private Commande commande;
 
     /**
@@ -224,6 +238,75 @@ class CommandeResourceIT {
             .value(hasItem(DEFAULT_STATUS.toString()));
     }
 
+    @Test
+    void getAllCommandesWithoutTotalCount() {
+        // Initialize the database
+        commandeRepository.save(commande).block();
+
+        // Get all the commandeList, opting out of the total count
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?sort=id,desc")
+            .header(UncountedPaginationUtil.SKIP_TOTAL_COUNT_HEADER, "true")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .doesNotExist("X-Total-Count")
+            .expectBody()
+            .jsonPath("$.[*].id")
+            .value(hasItem(commande.getId().intValue()));
+    }
+
+    @Test
+    void getAllCommandesByCursor() {
+        // Initialize the database
+        Instant secondDateTime = DEFAULT_DATE_TIME.plusSeconds(60);
+        commandeRepository.save(commande).block();
+        commandeRepository.save(createEntity(em).dateTime(UPDATED_DATE_TIME)).block();
+        commandeRepository.save(createEntity(em).dateTime(secondDateTime)).block();
+
+        // Get the first keyset page
+        EntityExchangeResult<List<CommandeDTO>> firstPage = webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?cursor=&size=2&sort=dateTime,asc")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBodyList(CommandeDTO.class)
+            .returnResult();
+        assertThat(firstPage.getResponseBody()).extracting(CommandeDTO::getDateTime).containsExactly(DEFAULT_DATE_TIME, secondDateTime);
+        String link = firstPage.getResponseHeaders().getFirst(HttpHeaders.LINK);
+        assertThat(link).endsWith("rel=\"next\"");
+
+        // Follow the next link
+        String next = link.substring(link.indexOf(ENTITY_API_URL), link.indexOf('>'));
+        EntityExchangeResult<List<CommandeDTO>> secondPage = webTestClient
+            .get()
+            .uri(next)
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBodyList(CommandeDTO.class)
+            .returnResult();
+        assertThat(secondPage.getResponseBody()).extracting(CommandeDTO::getDateTime).containsExactly(UPDATED_DATE_TIME);
+        assertThat(secondPage.getResponseHeaders().getFirst(HttpHeaders.LINK)).isNull();
+    }
+
+    @Test
+    void getAllCommandesWithInvalidCursor() {
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?cursor=invalid")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+    }
+
     @Test
     void getCommande() {
         // Initialize the database
@@ -248,6 +331,51 @@ class CommandeResourceIT {
             .value(is(DEFAULT_STATUS.toString()));
     }
 
+    @Test
+    void getArchivedCommande() {
+        // Initialize the database
+        commande.setStatus(CommandeStatus.LIVREE);
+        commandeRepository.save(commande).block();
+        commandeArchiveService.archiveDeliveredCommandes(Instant.now()).block();
+
+        try {
+            // The archived commande is only found in the archive
+            webTestClient
+                .get()
+                .uri(ENTITY_API_URL_ID, commande.getId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+            webTestClient
+                .get()
+                .uri(ENTITY_API_URL_ID + "?archive=true", commande.getId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.id")
+                .value(is(commande.getId().intValue()))
+                .jsonPath("$.status")
+                .value(is(CommandeStatus.LIVREE.toString()));
+            webTestClient
+                .get()
+                .uri(ENTITY_API_URL + "?archive=true&sort=id,desc")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.[*].id")
+                .value(hasItem(commande.getId().intValue()));
+        } finally {
+            for (String table : new String[] { "commande_archive", "panier_archive", "paiement_archive" }) {
+                databaseClient.sql("DELETE FROM " + table).fetch().rowsUpdated().block();
+            }
+        }
+    }
+
     @Test
     void getNonExistingCommande() {
         // Get the commande
@@ -290,6 +418,42 @@ class CommandeResourceIT {
     }
 
     @Test
+    void putCommandeWithInvalidStatusTransition() throws Exception {
+        // Initialize the database
+        commandeRepository.save(commande).block();
+
+        // A commande cannot be delivered before it is ready
+        Commande updatedCommande = commandeRepository.findById(commande.getId()).block();
+        updatedCommande.status(CommandeStatus.LIVREE);
+        CommandeDTO commandeDTO = commandeMapper.toDto(updatedCommande);
+
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID, commandeDTO.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(commandeDTO))
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+
+        // The partial update is rejected too
+        Commande partialUpdatedCommande = new Commande();
+        partialUpdatedCommande.setId(commande.getId());
+        partialUpdatedCommande.status(CommandeStatus.LIVREE);
+
+        webTestClient
+            .patch()
+            .uri(ENTITY_API_URL_ID, partialUpdatedCommande.getId())
+            .contentType(MediaType.valueOf("application/merge-patch+json"))
+            .bodyValue(TestUtil.convertObjectToJsonBytes(partialUpdatedCommande))
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+
+        assertThat(commandeRepository.findById(commande.getId()).block().getStatus()).isEqualTo(DEFAULT_STATUS);
+    }
+
+        @Test
     void putNonExistingCommande() throws Exception {
         int databaseSizeBeforeUpdate = commandeRepository.findAll().collectList().block().size();
         commande.setId(count.incrementAndGet());
@@ -297,7 +461,7 @@ class CommandeResourceIT {
         // Create the Commande
         CommandeDTO commandeDTO = commandeMapper.toDto(commande);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .put()
             .uri(ENTITY_API_URL_ID, commandeDTO.getId())
@@ -305,7 +469,7 @@ class CommandeResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(commandeDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Commande in the database
         List<Commande> commandeList = commandeRepository.findAll().collectList().block();
@@ -388,6 +552,33 @@ class CommandeResourceIT {
         assertThat(testCommande.getStatus()).isEqualTo(DEFAULT_STATUS);
     }
 
+    @Test
+    void patchCommandeReturnsTheUnsentFields() throws Exception {
+        // Initialize the database
+        commandeRepository.save(commande).block();
+
+        Commande partialUpdatedCommande = new Commande();
+        partialUpdatedCommande.setId(commande.getId());
+        partialUpdatedCommande.dateTime(UPDATED_DATE_TIME);
+
+        // the response is the updated row, not the properties sent
+        webTestClient
+            .patch()
+            .uri(ENTITY_API_URL_ID, partialUpdatedCommande.getId())
+            .contentType(MediaType.valueOf("application/merge-patch+json"))
+            .bodyValue(TestUtil.convertObjectToJsonBytes(partialUpdatedCommande))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.id")
+            .value(is(commande.getId().intValue()))
+            .jsonPath("$.dateTime")
+            .value(is(UPDATED_DATE_TIME.toString()))
+            .jsonPath("$.status")
+            .value(is(DEFAULT_STATUS.toString()));
+    }
+
     @Test
     void fullUpdateCommandeWithPatch() throws Exception {
         // Initialize the database
@@ -426,7 +617,7 @@ class CommandeResourceIT {
         // Create the Commande
         CommandeDTO commandeDTO = commandeMapper.toDto(commande);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .patch()
             .uri(ENTITY_API_URL_ID, commandeDTO.getId())
@@ -434,7 +625,7 @@ class CommandeResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(commandeDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Commande in the database
         List<Commande> commandeList = commandeRepository.findAll().collectList().block();
@@ -487,6 +678,129 @@ class CommandeResourceIT {
         assertThat(commandeList).hasSize(databaseSizeBeforeUpdate);
     }
 
+    @Test
+    void updateCommandeStatus() throws Exception {
+        // Initialize the database
+        commandeRepository.save(commande).block();
+
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID + "/status", commande.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(new CommandeStatusTransitionDTO(CommandeStatus.EN_COURS, CommandeStatus.PRETE)))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.to")
+            .value(is(CommandeStatus.PRETE.toString()));
+
+        Commande testCommande = commandeRepository.findById(commande.getId()).block();
+        assertThat(testCommande.getStatus()).isEqualTo(CommandeStatus.PRETE);
+        assertThat(testCommande.getDateTime()).isEqualTo(DEFAULT_DATE_TIME);
+        assertThat(testCommande.getVersion()).isEqualTo(commande.getVersion() + 1);
+    }
+
+    @Test
+    void updateCommandeStatusWithStaleStatus() throws Exception {
+        // Initialize the database
+        commande.setStatus(CommandeStatus.PRETE);
+        commandeRepository.save(commande).block();
+
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID + "/status", commande.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(new CommandeStatusTransitionDTO(CommandeStatus.EN_COURS, CommandeStatus.PRETE)))
+            .exchange()
+            .expectStatus()
+            .isEqualTo(HttpStatus.CONFLICT);
+
+        assertThat(commandeRepository.findById(commande.getId()).block().getStatus()).isEqualTo(CommandeStatus.PRETE);
+    }
+
+    @Test
+    void updateCommandeStatusWithInvalidTransition() throws Exception {
+        // Initialize the database
+        commandeRepository.save(commande).block();
+
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID + "/status", commande.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(new CommandeStatusTransitionDTO(CommandeStatus.EN_COURS, CommandeStatus.LIVREE)))
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+
+        assertThat(commandeRepository.findById(commande.getId()).block().getStatus()).isEqualTo(CommandeStatus.EN_COURS);
+    }
+
+    @Test
+    void updateNonExistingCommandeStatus() throws Exception {
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID + "/status", Long.MAX_VALUE)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(new CommandeStatusTransitionDTO(CommandeStatus.EN_COURS, CommandeStatus.PRETE)))
+            .exchange()
+            .expectStatus()
+            .isNotFound();
+    }
+
+    @Test
+    void updateCommandeStatuses() throws Exception {
+        // Initialize the database
+        commandeRepository.save(commande).block();
+        Commande preparedCommande = commandeRepository.save(createEntity(em).status(CommandeStatus.PRETE)).block();
+
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL + "/status")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(
+                TestUtil.convertObjectToJsonBytes(
+                    new CommandeBulkStatusTransitionDTO(
+                        List.of(commande.getId(), preparedCommande.getId(), Long.MAX_VALUE),
+                        CommandeStatus.EN_COURS,
+                        CommandeStatus.PRETE
+                    )
+                )
+            )
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.[*].id")
+            .value(is(List.of(commande.getId().intValue(), preparedCommande.getId().intValue(), Long.MAX_VALUE)))
+            .jsonPath("$.[*].outcome")
+            .value(is(List.of("UPDATED", "CONFLICT", "NOT_FOUND")));
+
+        assertThat(commandeRepository.findById(commande.getId()).block().getStatus()).isEqualTo(CommandeStatus.PRETE);
+        assertThat(commandeRepository.findById(preparedCommande.getId()).block().getStatus()).isEqualTo(CommandeStatus.PRETE);
+    }
+
+    @Test
+    void updateCommandeStatusesWithInvalidTransition() throws Exception {
+        // Initialize the database
+        commandeRepository.save(commande).block();
+
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL + "/status")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(
+                TestUtil.convertObjectToJsonBytes(
+                    new CommandeBulkStatusTransitionDTO(List.of(commande.getId()), CommandeStatus.PRETE, CommandeStatus.EN_COURS)
+                )
+            )
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+
+        assertThat(commandeRepository.findById(commande.getId()).block().getStatus()).isEqualTo(CommandeStatus.EN_COURS);
+    }
+
     @Test
     void deleteCommande() {
         // Initialize the database
@@ -9,17 +9,21 @@ import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 import jerem.coopcycle.IntegrationTest;
+import jerem.coopcycle.domain.IdempotencyKey;
 import jerem.coopcycle.domain.Paiement;
 import jerem.coopcycle.domain.enumeration.PaymentType;
 import jerem.coopcycle.repository.EntityManager;
 import jerem.coopcycle.repository.PaiementRepository;
 import jerem.coopcycle.service.dto.PaiementDTO;
 import jerem.coopcycle.service.mapper.PaiementMapper;
+import jerem.coopcycle.web.rest.util.IdempotencyUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -30,7 +34,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 @IntegrationTest
 @AutoConfigureWebTestClient(timeout = IntegrationTest.DEFAULT_ENTITY_TIMEOUT)
 @WithMockUser
-class PaiementResourceIT {
+public class PaiementResourceIT {
 
     private static final Float DEFAULT_AMOUNT = 0F;
     private static final Float UPDATED_AMOUNT = 1F;
@@ -91,6 +95,7 @@ class PaiementResourceIT {
     @AfterEach
     public void cleanup() {
         deleteEntities(em);
+        em.deleteAll(IdempotencyKey.class).block();
     }
 
     @BeforeEach
@@ -121,6 +126,66 @@ class PaiementResourceIT {
         assertThat(testPaiement.getPaymentType()).isEqualTo(DEFAULT_PAYMENT_TYPE);
     }
 
+    @Test
+    void createPaiementWithIdempotencyKey() throws Exception {
+        int databaseSizeBeforeCreate = paiementRepository.findAll().collectList().block().size();
+        String idempotencyKey = "createPaiementWithIdempotencyKey-" + count.incrementAndGet();
+        PaiementDTO paiementDTO = paiementMapper.toDto(paiement);
+
+        // The retries of the creation get the same paiement
+        Long[] ids = new Long[2];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] =
+                webTestClient
+                    .post()
+                    .uri(ENTITY_API_URL)
+                    .header(IdempotencyUtil.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(TestUtil.convertObjectToJsonBytes(paiementDTO))
+                    .exchange()
+                    .expectStatus()
+                    .isCreated()
+                    .expectBody(PaiementDTO.class)
+                    .returnResult()
+                    .getResponseBody()
+                    .getId();
+        }
+        assertThat(ids[1]).isEqualTo(ids[0]);
+
+        // Validate that a single Paiement was created
+        List<Paiement> paiementList = paiementRepository.findAll().collectList().block();
+        assertThat(paiementList).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
+    @Test
+    void createPaiementWithReusedIdempotencyKey() throws Exception {
+        String idempotencyKey = "createPaiementWithReusedIdempotencyKey-" + count.incrementAndGet();
+        webTestClient
+            .post()
+            .uri(ENTITY_API_URL)
+            .header(IdempotencyUtil.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(paiementMapper.toDto(paiement)))
+            .exchange()
+            .expectStatus()
+            .isCreated();
+        int databaseSizeBeforeCreate = paiementRepository.findAll().collectList().block().size();
+
+        // The same key cannot create another paiement
+        webTestClient
+            .post()
+            .uri(ENTITY_API_URL)
+            .header(IdempotencyUtil.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(paiementMapper.toDto(paiement.amount(UPDATED_AMOUNT))))
+            .exchange()
+            .expectStatus()
+            .isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+
+        List<Paiement> paiementList = paiementRepository.findAll().collectList().block();
+        assertThat(paiementList).hasSize(databaseSizeBeforeCreate);
+    }
+
     @Test
     void createPaiementWithExistingId() throws Exception {
         // Create the Paiement with an existing ID
@@ -285,7 +350,7 @@ class PaiementResourceIT {
         // Create the Paiement
         PaiementDTO paiementDTO = paiementMapper.toDto(paiement);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .put()
             .uri(ENTITY_API_URL_ID, paiementDTO.getId())
@@ -293,7 +358,7 @@ class PaiementResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(paiementDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Paiement in the database
         List<Paiement> paiementList = paiementRepository.findAll().collectList().block();
@@ -346,6 +411,140 @@ class PaiementResourceIT {
         assertThat(paiementList).hasSize(databaseSizeBeforeUpdate);
     }
 
+    @Test
+    void putPaiementWithIfMatch() throws Exception {
+        // Initialize the database
+        paiementRepository.save(paiement).block();
+
+        String eTag = webTestClient
+            .get()
+            .uri(ENTITY_API_URL_ID, paiement.getId())
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .valueEquals(HttpHeaders.ETAG, "\"0\"")
+            .returnResult(PaiementDTO.class)
+            .getResponseHeaders()
+            .getETag();
+
+        // Update the paiement at the version read
+        PaiementDTO paiementDTO = paiementMapper.toDto(createUpdatedEntity(em).id(paiement.getId()));
+
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID, paiementDTO.getId())
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(paiementDTO))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .valueEquals(HttpHeaders.ETAG, "\"1\"")
+            .expectBody()
+            .jsonPath("$.version")
+            .value(is(1));
+
+        // A concurrent writer which read the same version fails
+        paiementDTO.setAmount(DEFAULT_AMOUNT);
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID, paiementDTO.getId())
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(paiementDTO))
+            .exchange()
+            .expectStatus()
+            .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // Validate the Paiement in the database
+        Paiement testPaiement = paiementRepository.findById(paiement.getId()).block();
+        assertThat(testPaiement.getAmount()).isEqualTo(UPDATED_AMOUNT);
+        assertThat(testPaiement.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void putPaiementWithWeakIfMatch() throws Exception {
+        // Initialize the database
+        paiementRepository.save(paiement).block();
+
+        PaiementDTO paiementDTO = paiementMapper.toDto(createUpdatedEntity(em).id(paiement.getId()));
+
+        // If-Match uses the strong comparison, so a weak entity tag never matches
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID, paiementDTO.getId())
+            .header(HttpHeaders.IF_MATCH, "W/\"0\"")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(paiementDTO))
+            .exchange()
+            .expectStatus()
+            .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        assertThat(paiementRepository.findById(paiement.getId()).block().getAmount()).isEqualTo(DEFAULT_AMOUNT);
+    }
+
+    @Test
+    void patchPaiementWithStaleVersion() throws Exception {
+        // Initialize the database
+        paiementRepository.save(paiement).block();
+
+        // Another writer updated the paiement since version 0
+        paiementRepository.updateNonNullById(new Paiement().id(paiement.getId()).paymentType(UPDATED_PAYMENT_TYPE)).block();
+
+        Paiement partialUpdatedPaiement = new Paiement();
+        partialUpdatedPaiement.setId(paiement.getId());
+        partialUpdatedPaiement.version(0L).amount(UPDATED_AMOUNT);
+
+        webTestClient
+            .patch()
+            .uri(ENTITY_API_URL_ID, partialUpdatedPaiement.getId())
+            .contentType(MediaType.valueOf("application/merge-patch+json"))
+            .bodyValue(TestUtil.convertObjectToJsonBytes(partialUpdatedPaiement))
+            .exchange()
+            .expectStatus()
+            .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // Validate the Paiement in the database
+        Paiement testPaiement = paiementRepository.findById(paiement.getId()).block();
+        assertThat(testPaiement.getAmount()).isEqualTo(DEFAULT_AMOUNT);
+        assertThat(testPaiement.getPaymentType()).isEqualTo(UPDATED_PAYMENT_TYPE);
+        assertThat(testPaiement.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void patchPaiementReturnsTheUnsentFields() throws Exception {
+        // Initialize the database
+        paiementRepository.save(paiement).block();
+
+        Paiement partialUpdatedPaiement = new Paiement();
+        partialUpdatedPaiement.setId(paiement.getId());
+        partialUpdatedPaiement.amount(UPDATED_AMOUNT);
+
+        // the response is the updated row, not the properties sent
+        webTestClient
+            .patch()
+            .uri(ENTITY_API_URL_ID, partialUpdatedPaiement.getId())
+            .contentType(MediaType.valueOf("application/merge-patch+json"))
+            .bodyValue(TestUtil.convertObjectToJsonBytes(partialUpdatedPaiement))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .valueEquals(HttpHeaders.ETAG, "\"1\"")
+            .expectBody()
+            .jsonPath("$.id")
+            .value(is(paiement.getId().intValue()))
+            .jsonPath("$.amount")
+            .value(is(UPDATED_AMOUNT.doubleValue()))
+            .jsonPath("$.paymentType")
+            .value(is(DEFAULT_PAYMENT_TYPE.toString()))
+            .jsonPath("$.version")
+            .value(is(1));
+    }
+
     @Test
     void partialUpdatePaiementWithPatch() throws Exception {
         // Initialize the database
@@ -414,7 +613,7 @@ class PaiementResourceIT {
         // Create the Paiement
         PaiementDTO paiementDTO = paiementMapper.toDto(paiement);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .patch()
             .uri(ENTITY_API_URL_ID, paiementDTO.getId())
@@ -422,7 +621,7 @@ class PaiementResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(paiementDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Paiement in the database
         List<Paiement> paiementList = paiementRepository.findAll().collectList().block();
@@ -29,7 +29,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 @IntegrationTest
 @AutoConfigureWebTestClient(timeout = IntegrationTest.DEFAULT_ENTITY_TIMEOUT)
 @WithMockUser
-class PanierResourceIT {
+public class PanierResourceIT {
 
     private static final String DEFAULT_DESCRIPTION = "AAAAAAAAAA";
     private static final String UPDATED_DESCRIPTION = "BBBBBBBBBB";
@@ -262,7 +262,7 @@ class PanierResourceIT {
         // Create the Panier
         PanierDTO panierDTO = panierMapper.toDto(panier);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .put()
             .uri(ENTITY_API_URL_ID, panierDTO.getId())
@@ -270,7 +270,7 @@ class PanierResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(panierDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Panier in the database
         List<Panier> panierList = panierRepository.findAll().collectList().block();
@@ -389,7 +389,7 @@ class PanierResourceIT {
         // Create the Panier
         PanierDTO panierDTO = panierMapper.toDto(panier);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .patch()
             .uri(ENTITY_API_URL_ID, panierDTO.getId())
@@ -397,7 +397,7 @@ class PanierResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(panierDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Panier in the database
         List<Panier> panierList = panierRepository.findAll().collectList().block();
@@ -7,19 +7,33 @@ import static org.hamcrest.Matchers.is;
 import java.time.Duration;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import jerem.coopcycle.IntegrationTest;
+import jerem.coopcycle.domain.Commande;
+import jerem.coopcycle.domain.Panier;
 import jerem.coopcycle.domain.Restaurant;
+import jerem.coopcycle.domain.enumeration.CommandeStatus;
+import jerem.coopcycle.repository.CommandeRepository;
 import jerem.coopcycle.repository.EntityManager;
+import jerem.coopcycle.repository.PanierRepository;
 import jerem.coopcycle.repository.RestaurantRepository;
+import jerem.coopcycle.service.CommandeService;
+import jerem.coopcycle.service.dto.CommandeStatusChangeDTO;
+import jerem.coopcycle.service.dto.NearbyRestaurantDTO;
 import jerem.coopcycle.service.dto.RestaurantDTO;
+import jerem.coopcycle.service.geo.RestaurantLocationIndex;
 import jerem.coopcycle.service.mapper.RestaurantMapper;
+import jerem.coopcycle.service.search.RestaurantSearchService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
@@ -29,7 +43,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 @IntegrationTest
 @AutoConfigureWebTestClient(timeout = IntegrationTest.DEFAULT_ENTITY_TIMEOUT)
 @WithMockUser
-class RestaurantResourceIT {
+public class RestaurantResourceIT {
 
     private static final String DEFAULT_NAME = "AAAAAAAAAA";
     private static final String UPDATED_NAME = "BBBBBBBBBB";
@@ -49,9 +63,24 @@ class RestaurantResourceIT {
     @Autowired
     private RestaurantRepository restaurantRepository;
 
+    @Autowired
+    private PanierRepository panierRepository;
+
+    @Autowired
+    private CommandeRepository commandeRepository;
+
+    @Autowired
+    private CommandeService commandeService;
+
     @Autowired
     private RestaurantMapper restaurantMapper;
 
+    @Autowired
+    private RestaurantLocationIndex restaurantLocationIndex;
+
+    @Autowired
+    private RestaurantSearchService restaurantSearchService;
+
     @Autowired
     private EntityManager em;
 
@@ -92,6 +121,8 @@ class RestaurantResourceIT {
 
     @AfterEach
     public void cleanup() {
+        CommandeResourceIT.deleteEntities(em);
+        PanierResourceIT.deleteEntities(em);
         deleteEntities(em);
     }
 
@@ -217,6 +248,109 @@ class RestaurantResourceIT {
             .value(hasItem(DEFAULT_MENU));
     }
 
+    @Test
+    void getAllRestaurantsWithPaniers() {
+        // Initialize the database
+        restaurantRepository.save(restaurant).block();
+        Restaurant otherRestaurant = restaurantRepository.save(createEntity(em)).block();
+        Panier firstPanier = panierRepository.save(PanierResourceIT.createEntity(em).restaurant(restaurant)).block();
+        Panier secondPanier = panierRepository.save(PanierResourceIT.createEntity(em).restaurant(restaurant)).block();
+
+        // Get all the restaurantList with their paniers
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?sort=id,asc&expand=paniers")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.[0].id")
+            .isEqualTo(restaurant.getId().intValue())
+            .jsonPath("$.[0].paniers[*].id")
+            .isEqualTo(List.of(firstPanier.getId().intValue(), secondPanier.getId().intValue()))
+            .jsonPath("$.[0].paniers[0].description")
+            .isEqualTo(firstPanier.getDescription())
+            .jsonPath("$.[1].id")
+            .isEqualTo(otherRestaurant.getId().intValue())
+            .jsonPath("$.[1].paniers")
+            .isEmpty();
+
+        // The paniers are only sent when requested
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?sort=id,asc")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.[0].paniers")
+            .doesNotExist();
+    }
+
+    @Test
+    void getAllRestaurantsWithUnknownExpand() {
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?expand=restaurateur")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+    }
+
+    @Test
+    void getAllRestaurantsWithFields() {
+        // Initialize the database
+        restaurantRepository.save(restaurant).block();
+
+        // Get the names of the restaurants only
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?sort=id,desc&fields=name")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.[0].id")
+            .isEqualTo(restaurant.getId().intValue())
+            .jsonPath("$.[0].name")
+            .isEqualTo(DEFAULT_NAME)
+            .jsonPath("$.[0].address")
+            .doesNotExist()
+            .jsonPath("$.[0].menu")
+            .doesNotExist();
+    }
+
+    @Test
+    void getAllRestaurantsWithUnknownField() {
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?fields=paniers")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+    }
+
+    @Test
+    void getAllRestaurantsByCursorOnANullSortValue() {
+        // Initialize the database
+        restaurantRepository.save(restaurant.menu(null)).block();
+        restaurantRepository.save(createEntity(em).menu(null)).block();
+
+        // the cursor of the next page cannot be built from a null menu
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?cursor=&size=1&sort=menu,asc")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+    }
+
     @Test
     void getRestaurant() {
         // Initialize the database
@@ -293,7 +427,7 @@ class RestaurantResourceIT {
         // Create the Restaurant
         RestaurantDTO restaurantDTO = restaurantMapper.toDto(restaurant);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .put()
             .uri(ENTITY_API_URL_ID, restaurantDTO.getId())
@@ -301,7 +435,7 @@ class RestaurantResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(restaurantDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Restaurant in the database
         List<Restaurant> restaurantList = restaurantRepository.findAll().collectList().block();
@@ -422,7 +556,7 @@ class RestaurantResourceIT {
         // Create the Restaurant
         RestaurantDTO restaurantDTO = restaurantMapper.toDto(restaurant);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .patch()
             .uri(ENTITY_API_URL_ID, restaurantDTO.getId())
@@ -430,7 +564,7 @@ class RestaurantResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(restaurantDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Restaurant in the database
         List<Restaurant> restaurantList = restaurantRepository.findAll().collectList().block();
@@ -483,6 +617,181 @@ class RestaurantResourceIT {
         assertThat(restaurantList).hasSize(databaseSizeBeforeUpdate);
     }
 
+    @Test
+    void streamCommandeStatusChanges() throws Exception {
+        // Initialize the database
+        restaurantRepository.save(restaurant).block();
+        Restaurant otherRestaurant = restaurantRepository.save(createEntity(em)).block();
+        Commande commande = insertCommande(restaurant);
+        Commande otherCommande = insertCommande(otherRestaurant);
+
+        CompletableFuture<ServerSentEvent<CommandeStatusChangeDTO>> received = webTestClient
+            .get()
+            .uri(ENTITY_API_URL_ID + "/commandes/stream", restaurant.getId())
+            .accept(MediaType.TEXT_EVENT_STREAM)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(new ParameterizedTypeReference<ServerSentEvent<CommandeStatusChangeDTO>>() {})
+            .getResponseBody()
+            // skip the heartbeats
+            .filter(event -> event.data() != null)
+            .next()
+            .toFuture();
+
+        // the changes of the other restaurants are not streamed
+        commandeService.updateStatus(otherCommande.getId(), CommandeStatus.EN_COURS, CommandeStatus.PRETE).block();
+        commandeService.updateStatus(commande.getId(), CommandeStatus.EN_COURS, CommandeStatus.PRETE).block();
+
+        ServerSentEvent<CommandeStatusChangeDTO> event = received.get(10, TimeUnit.SECONDS);
+        assertThat(event.event()).isEqualTo(RestaurantResource.STATUS_EVENT);
+        assertThat(event.id()).isEqualTo(commande.getId().toString());
+        assertThat(event.data().getCommandeId()).isEqualTo(commande.getId());
+        assertThat(event.data().getRestaurantId()).isEqualTo(restaurant.getId());
+        assertThat(event.data().getPreviousStatus()).isEqualTo(CommandeStatus.EN_COURS);
+        assertThat(event.data().getStatus()).isEqualTo(CommandeStatus.PRETE);
+    }
+
+    private Commande insertCommande(Restaurant restaurant) {
+        Panier panier = em.insert(PanierResourceIT.createEntity(em).restaurant(restaurant)).block();
+        return commandeRepository.save(CommandeResourceIT.createEntity(em).status(CommandeStatus.EN_COURS).panier(panier)).block();
+    }
+
+    private RestaurantDTO postRestaurant(Restaurant restaurant) throws Exception {
+        return webTestClient
+            .post()
+            .uri(ENTITY_API_URL)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(TestUtil.convertObjectToJsonBytes(restaurantMapper.toDto(restaurant)))
+            .exchange()
+            .expectStatus()
+            .isCreated()
+            .returnResult(RestaurantDTO.class)
+            .getResponseBody()
+            .blockFirst();
+    }
+
+    private List<NearbyRestaurantDTO> getNearbyRestaurants(String query) {
+        return webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "/nearby?" + query)
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBodyList(NearbyRestaurantDTO.class)
+            .returnResult()
+            .getResponseBody();
+    }
+
+    @Test
+    void getNearbyRestaurants() throws Exception {
+        // forget the restaurants of the other tests
+        restaurantLocationIndex.refresh().block();
+        // the addresses are geocoded with the gazetteer of the tests
+        RestaurantDTO grenette = postRestaurant(createEntity(em).address("3 place Grenette, Grenoble"));
+        RestaurantDTO berriat = postRestaurant(createEntity(em).address("10 cours Berriat, Grenoble"));
+        RestaurantDTO lyon = postRestaurant(createEntity(em).address("Place Bellecour, Lyon"));
+        postRestaurant(createEntity(em).address("Nowhere street"));
+        assertThat(grenette.getLatitude()).isEqualTo(45.1905);
+        assertThat(grenette.getLongitude()).isEqualTo(5.7275);
+        assertThat(restaurantRepository.findById(lyon.getId()).block().getLatitude()).isEqualTo(45.764);
+
+        // near the place Victor Hugo
+        List<NearbyRestaurantDTO> nearby = getNearbyRestaurants("lat=45.1889&lon=5.7248&radius=2000");
+        assertThat(nearby).extracting(NearbyRestaurantDTO::getId).containsExactly(grenette.getId(), berriat.getId());
+        assertThat(nearby.get(0).getName()).isEqualTo(DEFAULT_NAME);
+        assertThat(nearby.get(0).getDistance()).isBetween(200.0, 400.0);
+        assertThat(getNearbyRestaurants("lat=45.1889&lon=5.7248&radius=2000&size=1"))
+            .extracting(NearbyRestaurantDTO::getId)
+            .containsExactly(grenette.getId());
+
+        // a restaurant moving to Lyon leaves the index of Grenoble
+        Restaurant partialUpdatedRestaurant = new Restaurant().address("Rue de la République, Lyon");
+        partialUpdatedRestaurant.setId(berriat.getId());
+        webTestClient
+            .patch()
+            .uri(ENTITY_API_URL_ID, berriat.getId())
+            .contentType(MediaType.valueOf("application/merge-patch+json"))
+            .bodyValue(TestUtil.convertObjectToJsonBytes(partialUpdatedRestaurant))
+            .exchange()
+            .expectStatus()
+            .isOk();
+        webTestClient.delete().uri(ENTITY_API_URL_ID, grenette.getId()).exchange().expectStatus().isNoContent();
+
+        assertThat(getNearbyRestaurants("lat=45.1889&lon=5.7248&radius=2000")).isEmpty();
+        assertThat(getNearbyRestaurants("lat=45.7640&lon=4.8357"))
+            .extracting(NearbyRestaurantDTO::getId)
+            .containsExactlyInAnyOrder(lyon.getId(), berriat.getId());
+    }
+
+    @Test
+    void getNearbyRestaurantsOutOfRange() {
+        webTestClient.get().uri(ENTITY_API_URL + "/nearby?lat=45.1889&lon=5.7248&radius=0").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri(ENTITY_API_URL + "/nearby?lat=95&lon=5.7248").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri(ENTITY_API_URL + "/nearby?lat=45.1889&lon=5.7248&size=1000").exchange().expectStatus().isBadRequest();
+    }
+
+    private List<RestaurantDTO> searchRestaurants(String query) {
+        return webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "/search?" + query)
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBodyList(RestaurantDTO.class)
+            .returnResult()
+            .getResponseBody();
+    }
+
+    @Test
+    void searchRestaurants() throws Exception {
+        // forget the restaurants of the other tests
+        restaurantSearchService.refresh().block();
+        RestaurantDTO luigi = postRestaurant(createEntity(em).name("Chez Luigi").menu("Pizza margherita, pizza 4 fromages, tiramisù"));
+        RestaurantDTO express = postRestaurant(createEntity(em).name("Pizza Express").menu("Pizza reine"));
+        RestaurantDTO bistrot = postRestaurant(createEntity(em).name("Le Bistrot").menu("Salade, quiche, tiramisu"));
+
+        // the name weighs more than the menu
+        assertThat(searchRestaurants("q=pizza")).extracting(RestaurantDTO::getId).containsExactly(express.getId(), luigi.getId());
+        assertThat(searchRestaurants("q=Pizza+Tiramisu")).extracting(RestaurantDTO::getId).containsExactly(luigi.getId());
+        assertThat(searchRestaurants("q=pizza&size=1&page=1"))
+            .extracting(RestaurantDTO::getMenu)
+            .containsExactly("Pizza margherita, pizza 4 fromages, tiramisù");
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "/search?q=tiramisu&size=1")
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .valueEquals("X-Total-Count", "2");
+
+        // the writes update the index
+        Restaurant partialUpdatedRestaurant = new Restaurant().menu("Pizza au feu de bois");
+        partialUpdatedRestaurant.setId(bistrot.getId());
+        webTestClient
+            .patch()
+            .uri(ENTITY_API_URL_ID, bistrot.getId())
+            .contentType(MediaType.valueOf("application/merge-patch+json"))
+            .bodyValue(TestUtil.convertObjectToJsonBytes(partialUpdatedRestaurant))
+            .exchange()
+            .expectStatus()
+            .isOk();
+        webTestClient.delete().uri(ENTITY_API_URL_ID, express.getId()).exchange().expectStatus().isNoContent();
+
+        assertThat(searchRestaurants("q=pizza")).extracting(RestaurantDTO::getId).containsExactly(luigi.getId(), bistrot.getId());
+        assertThat(searchRestaurants("q=tiramisu")).extracting(RestaurantDTO::getId).containsExactly(luigi.getId());
+        assertThat(searchRestaurants("q=burger")).isEmpty();
+    }
+
+    @Test
+    void searchRestaurantsWithoutWords() {
+        webTestClient.get().uri(ENTITY_API_URL + "/search?q=+,").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri(ENTITY_API_URL + "/search").exchange().expectStatus().isBadRequest();
+    }
+
     @Test
     void deleteRestaurant() {
         // Initialize the database
@@ -284,7 +284,7 @@ class RestaurateurResourceIT {
         // Create the Restaurateur
         RestaurateurDTO restaurateurDTO = restaurateurMapper.toDto(restaurateur);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .put()
             .uri(ENTITY_API_URL_ID, restaurateurDTO.getId())
@@ -292,7 +292,7 @@ class RestaurateurResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(restaurateurDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Restaurateur in the database
         List<Restaurateur> restaurateurList = restaurateurRepository.findAll().collectList().block();
@@ -413,7 +413,7 @@ class RestaurateurResourceIT {
         // Create the Restaurateur
         RestaurateurDTO restaurateurDTO = restaurateurMapper.toDto(restaurateur);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .patch()
             .uri(ENTITY_API_URL_ID, restaurateurDTO.getId())
@@ -421,7 +421,7 @@ class RestaurateurResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(restaurateurDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Restaurateur in the database
         List<Restaurateur> restaurateurList = restaurateurRepository.findAll().collectList().block();
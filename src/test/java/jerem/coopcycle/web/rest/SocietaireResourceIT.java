@@ -316,7 +316,7 @@ class SocietaireResourceIT {
         // Create the Societaire
         SocietaireDTO societaireDTO = societaireMapper.toDto(societaire);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .put()
             .uri(ENTITY_API_URL_ID, societaireDTO.getId())
@@ -324,7 +324,7 @@ class SocietaireResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(societaireDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Societaire in the database
         List<Societaire> societaireList = societaireRepository.findAll().collectList().block();
@@ -447,7 +447,7 @@ class SocietaireResourceIT {
         // Create the Societaire
         SocietaireDTO societaireDTO = societaireMapper.toDto(societaire);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // An entity which doesn't exist can't be updated
         webTestClient
             .patch()
             .uri(ENTITY_API_URL_ID, societaireDTO.getId())
@@ -455,7 +455,7 @@ class SocietaireResourceIT {
             .bodyValue(TestUtil.convertObjectToJsonBytes(societaireDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Societaire in the database
         List<Societaire> societaireList = societaireRepository.findAll().collectList().block();
@@ -284,6 +284,43 @@ class UserResourceIT {
         assertThat(foundUser.getAuthorities()).containsExactly(AuthoritiesConstants.USER);
     }
 
+    @Test
+    void getAllUsersIsPagedInDatabase() {
+        // Initialize the database with many users, only the requested page has authorities
+        int userCount = 2000;
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            User pagedUser = createEntity(em);
+            pagedUser.setLogin(String.format("user%04d", i));
+            pagedUser.setEmail(pagedUser.getLogin() + "@localhost");
+            users.add(pagedUser);
+        }
+        userRepository.saveAll(users).blockLast();
+        List<String> expectedLogins = new ArrayList<>();
+        for (int i = userCount - 1 - 5 * 20; i > userCount - 1 - 6 * 20; i--) {
+            User pagedUser = users.get(i);
+            expectedLogins.add(pagedUser.getLogin());
+            userRepository.saveUserAuthority(pagedUser.getId(), AuthoritiesConstants.USER).block();
+        }
+
+        // Get the 6th page of the users
+        List<AdminUserDTO> page = webTestClient
+            .get()
+            .uri("/api/admin/users?page=5&size=20&sort=login,desc")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .valueEquals("X-Total-Count", String.valueOf(userCount))
+            .expectBodyList(AdminUserDTO.class)
+            .returnResult()
+            .getResponseBody();
+
+        assertThat(page).extracting(AdminUserDTO::getLogin).containsExactlyElementsOf(expectedLogins);
+        assertThat(page).allSatisfy(pagedUser -> assertThat(pagedUser.getAuthorities()).containsExactly(AuthoritiesConstants.USER));
+    }
+
     @Test
     void getUser() {
         // Initialize the database
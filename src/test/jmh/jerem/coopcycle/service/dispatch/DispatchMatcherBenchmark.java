@@ -0,0 +1,65 @@
+package jerem.coopcycle.service.dispatch;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a dispatch cycle at the lunch peak: 10,000 ready commandes over 300 restaurants for 2,000 available livreurs, half
+ * of them waiting at a restaurant. A cycle runs every second, so the matching must take a small part of it.
+ * <p>
+ * Run with {@code ./mvnw -Pbenchmark test-compile exec:exec -Dbenchmark.includes=DispatchMatcherBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchMatcherBenchmark {
+
+    private static final Instant NOON = Instant.parse("2026-10-18T12:00:00Z");
+
+    @Param({ "false", "true" })
+    private boolean restaurantAffinity;
+
+    private DispatchMatcher matcher;
+
+    private List<PendingCommande> commandes;
+
+    private List<AvailableLivreur> livreurs;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        commandes = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            commandes.add(new PendingCommande(id, (long) random.nextInt(300), NOON.plus(Duration.ofMinutes(random.nextInt(60)))));
+        }
+        livreurs = new ArrayList<>();
+        for (long id = 1; id <= 2_000; id++) {
+            Long restaurantId = random.nextBoolean() ? (long) random.nextInt(300) : null;
+            livreurs.add(new AvailableLivreur(id, restaurantId, NOON.plus(Duration.ofMinutes(random.nextInt(60)))));
+        }
+        matcher = new DispatchMatcher(restaurantAffinity);
+    }
+
+    @Benchmark
+    public List<DispatchAssignment> lunchPeak() {
+        return matcher.match(commandes, livreurs);
+    }
+}